@@ -1,6 +1,8 @@
 package org.opentripplanner.analyst;
 
+import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,8 +21,17 @@ public abstract class PointSetCache {
     public PointSetCache () {
     }
 
+    /** @return the PointSet with the given ID, or null if there is none or it could not be loaded. */
     public  PointSet get(String pointSetId) {
-    	return pointSets.getUnchecked(pointSetId);
+        if (pointSetId == null) {
+            return null;
+        }
+        try {
+            return pointSets.getUnchecked(pointSetId);
+        } catch (CacheLoader.InvalidCacheLoadException | UncheckedExecutionException e) {
+            LOG.warn("Could not load pointset '{}': {}", pointSetId, e.getMessage());
+            return null;
+        }
     };
 	
 	public abstract List<String> getPointSetIds();
@@ -26,7 +26,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.commons.math3.util.FastMath.toRadians;
 
@@ -37,7 +39,8 @@ public class TimeSurface implements Serializable {
 
     private static final Logger LOG = LoggerFactory.getLogger(TimeSurface.class);
     public static final int UNREACHABLE = -1;
-    private static int nextId = 0;
+    /** Shared by all surfaces, so that surfaces built concurrently never get the same id. */
+    private static final AtomicInteger nextId = new AtomicInteger();
 
     public final String routerId;
     public final int id;
@@ -50,6 +53,9 @@ public class TimeSurface implements Serializable {
     public String description;
     public double walkSpeed = 1.33; // meters/sec TODO could we just store the whole routing request instead of params?
 
+    /** The same times as the map above, in an array indexed by vertex index. Built lazily for tile rendering. */
+    private transient volatile int[] timesByIndex;
+
     /** Create a time surface with a sample grid */
     public TimeSurface(ShortestPathTree spt) {
         this(spt, true);
@@ -170,12 +176,35 @@ public class TimeSurface implements Serializable {
         return times.get(v);
     }
 
-    private synchronized int makeUniqueId() {
-        int id = nextId++;
-        return id;
+    /**
+     * @return the travel times in this surface as an array indexed by vertex index, with UNREACHABLE for vertices
+     * that are not in the surface. The array is built on the first call, so it will not reflect any times added to
+     * the surface after that point. Callers must not modify the returned array.
+     */
+    public int[] getTimesByIndex() {
+        int[] result = timesByIndex;
+        if (result == null) {
+            synchronized (this) {
+                result = timesByIndex;
+                if (result == null) {
+                    result = new int[Vertex.getMaxIndex()];
+                    Arrays.fill(result, UNREACHABLE);
+                    for (TObjectIntIterator<Vertex> iter = times.iterator(); iter.hasNext(); ) {
+                        iter.advance();
+                        result[iter.key().getIndex()] = iter.value();
+                    }
+                    timesByIndex = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int makeUniqueId() {
+        return nextId.getAndIncrement();
     }
 
-    public int size() { return nextId; }
+    public int size() { return nextId.get(); }
 
     // TODO Lazy-initialize sample grid on demand so initial SPT finishes faster, and only isolines lag behind.
     // however, the existing sampler needs an SPT, not general vertex-time mappings.
@@ -0,0 +1,279 @@
+package org.opentripplanner.analyst;
+
+import org.opentripplanner.common.model.GenericLocation;
+import org.opentripplanner.routing.algorithm.AStar;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.error.VertexNotFoundException;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.spt.ShortestPathTree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Computes a many-to-many travel time matrix between two PointSets, one batch-mode search per origin, and hands the
+ * results to a RowWriter one origin at a time. Only a bounded number of rows are held in memory at once, so the
+ * matrix can be streamed out to a client no matter how many origins and destinations there are.
+ *
+ * Rows are written in the order the searches complete, not in origin order. Each row carries the index of its origin.
+ */
+public class TravelTimeMatrix {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TravelTimeMatrix.class);
+
+    /** Written in place of a travel time when a destination cannot be reached. */
+    public static final int UNREACHABLE = -1;
+
+    private final Graph graph;
+    private final RoutingRequest prototypeRequest;
+    private final PointSet origins;
+    private final PointSet destinations;
+    private final SampleSet destinationSamples;
+    private final int cutoffSeconds;
+
+    /**
+     * @param prototypeRequest a request holding the routing parameters and date/time, which will be cloned for each
+     *                         origin. Its from and to places are ignored.
+     */
+    public TravelTimeMatrix (Graph graph, RoutingRequest prototypeRequest, PointSet origins, PointSet destinations,
+            int cutoffSeconds) {
+        this.graph = graph;
+        this.prototypeRequest = prototypeRequest;
+        this.origins = origins;
+        this.destinations = destinations;
+        // Destinations are linked to the graph once and the samples are kept in the PointSet for later requests.
+        this.destinationSamples = destinations.getOrCreateSampleSet(graph);
+        this.cutoffSeconds = cutoffSeconds;
+    }
+
+    /**
+     * Run one search per origin on the given executor, writing each row as soon as it is available.
+     * At most maxInFlight searches are queued or running at any time, which bounds the memory used by pending rows
+     * when the writer is slower than the searches.
+     */
+    public void run (ExecutorService executor, int maxInFlight, RowWriter writer)
+            throws IOException, InterruptedException {
+        long t0 = System.currentTimeMillis();
+        writer.writeHeader(origins, destinations);
+        CompletionService<Row> ecs = new ExecutorCompletionService<>(executor);
+        int nOrigins = origins.capacity;
+        Set<Future<Row>> pending = new HashSet<>();
+        int nSubmitted = 0;
+        int nWritten = 0;
+        try {
+            while (nWritten < nOrigins) {
+                while (nSubmitted < nOrigins && nSubmitted - nWritten < maxInFlight) {
+                    pending.add(ecs.submit(new OriginTask(nSubmitted++)));
+                }
+                Future<Row> future = ecs.take();
+                pending.remove(future);
+                Row row;
+                try {
+                    row = future.get();
+                } catch (ExecutionException e) {
+                    throw new IOException("Travel time matrix search failed.", e.getCause());
+                }
+                writer.writeRow(row.originIndex, origins.ids[row.originIndex], row.times);
+                nWritten++;
+            }
+        } finally {
+            // If the client went away or a search failed, don't keep the pool busy with searches nobody will read.
+            if (nWritten < nOrigins) {
+                LOG.warn("Travel time matrix aborted after {} of {} origins.", nWritten, nOrigins);
+                for (Future<Row> future : pending) {
+                    future.cancel(true);
+                }
+            }
+        }
+        writer.finish();
+        long t1 = System.currentTimeMillis();
+        LOG.info("Computed {}x{} travel time matrix in {} msec.", nOrigins, destinations.capacity, t1 - t0);
+    }
+
+    /** The travel times from a single origin to every destination. */
+    private static class Row {
+        final int originIndex;
+        final int[] times;
+        Row (int originIndex, int[] times) {
+            this.originIndex = originIndex;
+            this.times = times;
+        }
+    }
+
+    private class OriginTask implements Callable<Row> {
+
+        final int originIndex;
+
+        OriginTask (int originIndex) {
+            this.originIndex = originIndex;
+        }
+
+        @Override
+        public Row call() {
+            int[] times = null;
+            RoutingRequest req = prototypeRequest.clone();
+            GenericLocation latLon = new GenericLocation(origins.getLat(originIndex), origins.getLon(originIndex));
+            req.batch = true;
+            if (req.arriveBy) {
+                req.to = latLon;
+                req.worstTime = req.dateTime - cutoffSeconds;
+            } else {
+                req.from = latLon;
+                req.worstTime = req.dateTime + cutoffSeconds;
+            }
+            try {
+                req.setRoutingContext(graph);
+                ShortestPathTree spt = new AStar().getShortestPathTree(req);
+                if (spt != null) {
+                    times = destinationSamples.eval(timesByVertexIndex(spt));
+                }
+            } catch (VertexNotFoundException vnfe) {
+                LOG.debug("no vertex could be created near origin {}", originIndex);
+            } finally {
+                if (req.rctx != null) {
+                    req.cleanup();
+                }
+            }
+            if (times == null) {
+                times = new int[destinations.capacity];
+                Arrays.fill(times, Integer.MAX_VALUE);
+            }
+            return new Row(originIndex, times);
+        }
+    }
+
+    /**
+     * Flatten the SPT into an array of times indexed by vertex index, with Integer.MAX_VALUE for unreached vertices,
+     * as expected by SampleSet.eval(int[]). This avoids building a hash-based TimeSurface for every origin.
+     */
+    private static int[] timesByVertexIndex (ShortestPathTree spt) {
+        int[] times = new int[Vertex.getMaxIndex()];
+        Arrays.fill(times, Integer.MAX_VALUE);
+        for (State state : spt.getAllStates()) {
+            int index = state.getVertex().getIndex();
+            // Temporary vertices created by other concurrent searches may have indexes past the end of the array.
+            if (index >= times.length) continue;
+            int t = (int) state.getActiveTime();
+            if (t < times[index]) {
+                times[index] = t;
+            }
+        }
+        return times;
+    }
+
+    /** Receives the rows of a travel time matrix as they are computed. Calls are made from a single thread. */
+    public interface RowWriter {
+
+        void writeHeader (PointSet origins, PointSet destinations) throws IOException;
+
+        /** @param times travel times in seconds to every destination, Integer.MAX_VALUE where unreachable. */
+        void writeRow (int originIndex, String originId, int[] times) throws IOException;
+
+        void finish () throws IOException;
+
+    }
+
+    /**
+     * Writes a wide CSV table: a header line with the destination IDs, then one line per origin containing the
+     * origin ID and the travel time in seconds to each destination (-1 where unreachable).
+     */
+    public static class CsvRowWriter implements RowWriter {
+
+        private final Writer writer;
+
+        public CsvRowWriter (OutputStream out) {
+            this.writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void writeHeader (PointSet origins, PointSet destinations) throws IOException {
+            writer.write("origin");
+            for (int d = 0; d < destinations.capacity; d++) {
+                writer.write(',');
+                writer.write(destinations.ids[d]);
+            }
+            writer.write('\n');
+        }
+
+        @Override
+        public void writeRow (int originIndex, String originId, int[] times) throws IOException {
+            StringBuilder sb = new StringBuilder(times.length * 5 + 16);
+            sb.append(originId);
+            for (int t : times) {
+                sb.append(',');
+                sb.append(t == Integer.MAX_VALUE ? UNREACHABLE : t);
+            }
+            sb.append('\n');
+            writer.write(sb.toString());
+        }
+
+        @Override
+        public void finish () throws IOException {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Writes a compact binary matrix. The header is the ASCII magic "OTPM", a format version int, and the number of
+     * origins and destinations as ints. Each row is the origin index as an int followed by one unsigned LEB128 varint
+     * per destination, holding zero for unreachable destinations and the travel time in seconds plus one otherwise.
+     * Typical travel times take two bytes per cell. All ints are big-endian.
+     */
+    public static class BinaryRowWriter implements RowWriter {
+
+        public static final int VERSION = 1;
+
+        private final DataOutputStream out;
+
+        public BinaryRowWriter (OutputStream out) {
+            this.out = new DataOutputStream(out);
+        }
+
+        @Override
+        public void writeHeader (PointSet origins, PointSet destinations) throws IOException {
+            out.writeBytes("OTPM");
+            out.writeInt(VERSION);
+            out.writeInt(origins.capacity);
+            out.writeInt(destinations.capacity);
+        }
+
+        @Override
+        public void writeRow (int originIndex, String originId, int[] times) throws IOException {
+            out.writeInt(originIndex);
+            for (int t : times) {
+                writeVarint(t == Integer.MAX_VALUE ? 0 : t + 1);
+            }
+        }
+
+        private void writeVarint (int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+
+        @Override
+        public void finish () throws IOException {
+            out.flush();
+        }
+    }
+
+}
@@ -9,16 +9,22 @@ import java.awt.image.WritableRaster;
 import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.Map;
+import java.util.stream.IntStream;
 
+import org.geotools.coverage.grid.GridCoordinates2D;
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.coverage.grid.GridCoverageFactory;
 import org.geotools.coverage.grid.GridEnvelope2D;
 import org.geotools.coverage.grid.GridGeometry2D;
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.opengis.geometry.DirectPosition;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
 import org.opentripplanner.analyst.TimeSurface;
 import org.opentripplanner.analyst.request.RenderRequest;
 import org.opentripplanner.analyst.request.TileRequest;
 import org.opentripplanner.api.parameter.Style;
-import org.opentripplanner.routing.spt.ShortestPathTree;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -182,10 +188,24 @@ public abstract class Tile {
         modelsByStyle.put(Style.BOARDINGS, buildBoardingColorMap());
     }
     
+    /** Tiles with at least this many pixels have their rows rendered in parallel. */
+    public static final int PARALLEL_RENDER_THRESHOLD = 512 * 512;
+
+    /** Stored in the vertex index columns for pixels that have no sample or no vertex at one end. */
+    public static final int NO_VERTEX = -1;
+
     /* INSTANCE */
     final GridGeometry2D gg;
     final int width, height;
-    
+
+    /*
+     * Samples are stored as a column store, one entry per pixel in row-major order: the indexes of the vertices at
+     * the two ends of the road and the distances in meters to those vertices. This avoids holding one Sample object
+     * per pixel and allows rendering directly against an index-addressed time surface.
+     */
+    final int[] v0s, v1s;
+    final int[] d0s, d1s;
+
     Tile(TileRequest req) {
         GridEnvelope2D gridEnv = new GridEnvelope2D(0, 0, req.width, req.height);
         this.gg = new GridGeometry2D(gridEnv, (org.opengis.geometry.Envelope)(req.bbox));
@@ -194,8 +214,66 @@ public abstract class Tile {
         // Envelope2D worldEnv = gg.getEnvelope2D();
         this.width = gridEnv.width;
         this.height = gridEnv.height;
+        int nPixels = width * height;
+        this.v0s = new int[nPixels];
+        this.v1s = new int[nPixels];
+        this.d0s = new int[nPixels];
+        this.d1s = new int[nPixels];
+        Arrays.fill(v0s, NO_VERTEX);
+        Arrays.fill(v1s, NO_VERTEX);
     }
-    
+
+    /** Record the sample for the pixel at the given row-major index. A null sample leaves the pixel unreachable. */
+    protected void setSample(int i, Sample s) {
+        if (s == null) return;
+        v0s[i] = s.v0 == null ? NO_VERTEX : s.v0.getIndex();
+        v1s[i] = s.v1 == null ? NO_VERTEX : s.v1.getIndex();
+        d0s[i] = s.d0;
+        d1s[i] = s.d1;
+    }
+
+    /**
+     * Fill in the samples for every pixel of this tile from the given sample source.
+     * @return the number of pixels for which a sample was found, or -1 if the tile CRS could not be transformed.
+     */
+    protected int fillSamples(SampleSource sampleSource) {
+        CoordinateReferenceSystem crs = gg.getCoordinateReferenceSystem2D();
+        int i = 0, ns = 0;
+        try {
+            MathTransform tr = CRS.findMathTransform(crs, DefaultGeographicCRS.WGS84);
+            // grid coordinate object to be reused for examining each cell 
+            GridCoordinates2D coord = new GridCoordinates2D();
+            for (int gy = 0; gy < height; gy++) {
+                if (gy % 100 == 0)
+                    LOG.trace("raster line {} / {}", gy, height);
+                for (int gx = 0; gx < width; gx++) {
+                    coord.x = gx;
+                    coord.y = gy;
+                    // find coordinates for current raster cell in tile CRS
+                    DirectPosition sourcePos = gg.gridToWorld(coord);
+                    // convert coordinates in tile CRS to WGS84
+                    tr.transform(sourcePos, sourcePos);
+                    // axis order can vary
+                    double lon = sourcePos.getOrdinate(0);
+                    double lat = sourcePos.getOrdinate(1);
+                    Sample s = sampleSource.getSample(lon, lat);
+                    if (s != null)
+                        ns++;
+                    setSample(i++, s);
+                }
+            }
+        } catch (Exception e) {
+            LOG.error("Could not sample tile", e);
+            return -1;
+        }
+        return ns;
+    }
+
+    /** @return the number of pixels (and therefore samples) in this tile. */
+    public int getSampleCount() {
+        return v0s.length;
+    }
+
     private static IndexColorModel buildOldDefaultColorMap() {
     	Color[] palette = new Color[256];
     	final int ALPHA = 0x60FFFFFF; // ARGB
@@ -253,70 +331,107 @@ public abstract class Tile {
             return new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, colorModel);
     }
     
-    final byte UNREACHABLE = Byte.MIN_VALUE;
+    static final byte UNREACHABLE = Byte.MIN_VALUE;
 
-    public BufferedImage generateImage(TimeSurface surf, RenderRequest renderRequest) {
+    /**
+     * Evaluate the travel time to the sample at pixel i against a time surface stored as an array indexed by vertex
+     * index (see TimeSurface.getTimesByIndex()).
+     * @return the travel time in seconds, or Integer.MAX_VALUE if the pixel is unreachable.
+     */
+    final int eval(int i, int[] times, double walkSpeed) {
+        int m0 = Integer.MAX_VALUE;
+        int m1 = Integer.MAX_VALUE;
+        int v0 = v0s[i];
+        if (v0 != NO_VERTEX && v0 < times.length) {
+            int s0 = times[v0];
+            if (s0 != TimeSurface.UNREACHABLE) {
+                m0 = (int) (s0 + d0s[i] / walkSpeed);
+            }
+        }
+        int v1 = v1s[i];
+        if (v1 != NO_VERTEX && v1 < times.length) {
+            int s1 = times[v1];
+            if (s1 != TimeSurface.UNREACHABLE) {
+                m1 = (int) (s1 + d1s[i] / walkSpeed);
+            }
+        }
+        return (m0 < m1) ? m0 : m1;
+    }
+
+    /** Clamp a time in minutes to the +-120 range representable in a tile pixel. */
+    private static byte clampMinutes(double t) {
+        if (t < -120)
+            t = -120;
+        else if (t > 120)
+            t = 120;
+        return (byte) t;
+    }
+
+    /** Renders all pixels of one image row; implementations must only write to pixels within that row. */
+    private interface RowRenderer {
+        void renderRow(int row, byte[] imagePixelData);
+    }
+
+    /** Render all rows of the image, in parallel if the tile is large enough to make this worthwhile. */
+    private BufferedImage render(Style style, RowRenderer rowRenderer) {
         long t0 = System.currentTimeMillis();
-        BufferedImage image = getEmptyImage(renderRequest.style);
+        BufferedImage image = getEmptyImage(style);
         byte[] imagePixelData = ((DataBufferByte)image.getRaster().getDataBuffer()).getData();
-        int i = 0;
-        for (Sample s : getSamples()) {
-            byte pixel;
-            if (s != null) {
-                if (renderRequest.style == Style.BOARDINGS) {
-                    pixel = 0; // FIXME s.evalBoardings(surf);
-                } else {
-                    long t = s.eval(surf); // renderRequest.style
-                    if (t == Long.MAX_VALUE)
-                        pixel = UNREACHABLE;
-                    else {
-                        t /= 60;
-                        if (t < -120)
-                            t = -120;
-                        else if (t > 120)
-                            t = 120;
-                        pixel = (byte) t;
-                    }
-                }
-            } else {
-                pixel = UNREACHABLE;
+        if (width * height >= PARALLEL_RENDER_THRESHOLD) {
+            IntStream.range(0, height).parallel().forEach(row -> rowRenderer.renderRow(row, imagePixelData));
+        } else {
+            for (int row = 0; row < height; row++) {
+                rowRenderer.renderRow(row, imagePixelData);
             }
-            imagePixelData[i] = pixel;
-            i++;
         }
         long t1 = System.currentTimeMillis();
-        LOG.debug("filled in tile image from SPT in {}msec", t1 - t0);
+        LOG.debug("filled in tile image from time surface in {}msec", t1 - t0);
         return image;
     }
 
+    public BufferedImage generateImage(TimeSurface surf, RenderRequest renderRequest) {
+        final int[] times = surf.getTimesByIndex();
+        final double walkSpeed = surf.walkSpeed;
+        final boolean boardings = renderRequest.style == Style.BOARDINGS;
+        return render(renderRequest.style, (row, imagePixelData) -> {
+            for (int i = row * width, end = i + width; i < end; i++) {
+                byte pixel = UNREACHABLE;
+                if (v0s[i] != NO_VERTEX || v1s[i] != NO_VERTEX) {
+                    if (boardings) {
+                        pixel = 0; // FIXME s.evalBoardings(surf);
+                    } else {
+                        int t = eval(i, times, walkSpeed);
+                        if (t != Integer.MAX_VALUE) {
+                            pixel = clampMinutes(t / 60);
+                        }
+                    }
+                }
+                imagePixelData[i] = pixel;
+            }
+        });
+    }
+
     public BufferedImage linearCombination(
             double k1, TimeSurface surfA,
             double k2, TimeSurface surfB,
             double intercept, RenderRequest renderRequest) {
-        long t0 = System.currentTimeMillis();
-        BufferedImage image = getEmptyImage(renderRequest.style);
-        byte[] imagePixelData = ((DataBufferByte)image.getRaster().getDataBuffer()).getData();
-        int i = 0;
-        for (Sample s : getSamples()) {
-            byte pixel = UNREACHABLE;
-            if (s != null) {
-                long t1 = s.eval(surfA);
-                long t2 = s.eval(surfB);
-                if (t1 != Long.MAX_VALUE && t2 != Long.MAX_VALUE) {
-                    double t = (k1 * t1 + k2 * t2) / 60 + intercept; 
-                    if (t < -120)
-                        t = -120;
-                    else if (t > 120)
-                        t = 120;
-                    pixel = (byte) t;
+        final int[] timesA = surfA.getTimesByIndex();
+        final int[] timesB = surfB.getTimesByIndex();
+        final double walkSpeedA = surfA.walkSpeed;
+        final double walkSpeedB = surfB.walkSpeed;
+        return render(renderRequest.style, (row, imagePixelData) -> {
+            for (int i = row * width, end = i + width; i < end; i++) {
+                byte pixel = UNREACHABLE;
+                if (v0s[i] != NO_VERTEX || v1s[i] != NO_VERTEX) {
+                    int t1 = eval(i, timesA, walkSpeedA);
+                    int t2 = eval(i, timesB, walkSpeedB);
+                    if (t1 != Integer.MAX_VALUE && t2 != Integer.MAX_VALUE) {
+                        pixel = clampMinutes((k1 * t1 + k2 * t2) / 60 + intercept);
+                    }
                 }
+                imagePixelData[i] = pixel;
             }
-            imagePixelData[i] = pixel;
-            i++;
-        }
-        long t1 = System.currentTimeMillis();
-        LOG.debug("filled in tile image from SPT in {}msec", t1 - t0);
-        return image;
+        });
     }
 
     public GridCoverage2D getGridCoverage2D(BufferedImage image) {
@@ -325,8 +440,6 @@ public abstract class Tile {
         return gridCoverage;
     }
 
-    public abstract Sample[] getSamples();
-
     public static BufferedImage getLegend(Style style, int width, int height) {
         IndexColorModel model = modelsByStyle.get(style);
         if (width < 140 || width > 2000)
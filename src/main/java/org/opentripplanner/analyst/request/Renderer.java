@@ -6,9 +6,11 @@ import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
 import java.text.DateFormat;
 import java.util.Date;
+import java.util.Objects;
 import java.util.TimeZone;
 
 import javax.imageio.ImageIO;
@@ -24,20 +26,39 @@ import org.geotools.gce.geotiff.GeoTiffWriteParams;
 import org.geotools.gce.geotiff.GeoTiffWriter;
 import org.opengis.parameter.GeneralParameterValue;
 import org.opengis.parameter.ParameterValueGroup;
+import org.opentripplanner.analyst.SurfaceCache;
 import org.opentripplanner.analyst.TimeSurface;
 import org.opentripplanner.analyst.core.Tile;
+import org.opentripplanner.api.parameter.Layer;
 import org.opentripplanner.api.parameter.MIMEImageFormat;
+import org.opentripplanner.api.parameter.Style;
 import org.opentripplanner.routing.core.RoutingRequest;
 import org.opentripplanner.routing.spt.ShortestPathTree;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
 public class Renderer {
 
     private static final Logger LOG = LoggerFactory.getLogger(Renderer.class);
 
+    /** Upper bound on the total size of the encoded images kept in the image cache. */
+    public static final long IMAGE_CACHE_MAX_BYTES = 64 * 1024 * 1024;
+
     private TileCache tileCache;
 
+    /**
+     * Encoded PNG images, keyed on the surfaces, tile and style they were rendered from. TimeSurfaces are immutable
+     * once they are in the SurfaceCache and their IDs are never reused, so these entries never need to be invalidated.
+     */
+    private final Cache<ImageKey, byte[]> imageCache = CacheBuilder.newBuilder()
+            .maximumWeight(IMAGE_CACHE_MAX_BYTES)
+            .weigher((Weigher<ImageKey, byte[]>) (key, bytes) -> bytes.length)
+            .build();
+
     public Renderer(TileCache tileCache) {
         this.tileCache = tileCache;
     }
@@ -47,21 +68,20 @@ public class Renderer {
             TimeSurface surfA, TimeSurface surfB,
             RenderRequest renderRequest) throws Exception {
 
-        Tile tile = tileCache.get(tileRequest);
-        BufferedImage image;
-        switch (renderRequest.layer) {
-        case DIFFERENCE :
-            image = tile.linearCombination(1, surfA, -1, surfB, 0, renderRequest);
-            break;
-        case HAGERSTRAND :
-            long elapsed = Math.abs(surfB.dateTime - surfA.dateTime);
-            image = tile.linearCombination(-1, surfA, -1, surfB, elapsed/60, renderRequest);
-            break;
-        case TRAVELTIME :
-        default :
-            image = tile.generateImage(surfA, renderRequest);
+        // Plain PNG tiles are the bulk of the traffic from map clients, so we keep their encoded bytes.
+        // Timestamped images and other formats are rendered on each request as before.
+        if ("png".equals(renderRequest.format.type) && !renderRequest.timestamp) {
+            ImageKey key = new ImageKey(surfA, surfB, tileRequest, renderRequest);
+            byte[] png = imageCache.get(key, () -> {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                ImageIO.write(renderImage(tileRequest, surfA, surfB, renderRequest), "png", out);
+                return out.toByteArray();
+            });
+            return generateImageBytesResponse(png, renderRequest.format);
         }
-        
+
+        Tile tile = tileCache.get(tileRequest);
+        BufferedImage image = renderImage(tile, surfA, surfB, renderRequest);
         // add a timestamp to the image if requested. 
         // of course this will make it useless as a raster for analysis, but it's good for animations.
         if (renderRequest.timestamp) {
@@ -84,6 +104,29 @@ public class Renderer {
             return generateStreamingImageResponse(image, renderRequest.format);
         }
     }
+
+    private BufferedImage renderImage (TileRequest tileRequest, TimeSurface surfA, TimeSurface surfB,
+            RenderRequest renderRequest) throws Exception {
+        return renderImage(tileCache.get(tileRequest), surfA, surfB, renderRequest);
+    }
+
+    private BufferedImage renderImage (Tile tile, TimeSurface surfA, TimeSurface surfB,
+            RenderRequest renderRequest) {
+        BufferedImage image;
+        switch (renderRequest.layer) {
+        case DIFFERENCE :
+            image = tile.linearCombination(1, surfA, -1, surfB, 0, renderRequest);
+            break;
+        case HAGERSTRAND :
+            long elapsed = Math.abs(surfB.dateTime - surfA.dateTime);
+            image = tile.linearCombination(-1, surfA, -1, surfB, elapsed/60, renderRequest);
+            break;
+        case TRAVELTIME :
+        default :
+            image = tile.generateImage(surfA, renderRequest);
+        }
+        return image;
+    }
     
     private void shadowWrite(BufferedImage image, String... strings) {
         Graphics2D g2d = image.createGraphics();
@@ -141,6 +184,51 @@ public class Renderer {
     }
     
     
+    private static Response generateImageBytesResponse(final byte[] bytes, final MIMEImageFormat format) {
+        CacheControl cc = new CacheControl();
+        cc.setMaxAge(3600);
+        cc.setNoCache(false);
+        return Response.ok(bytes)
+                       .type(format.toString())
+                       .cacheControl(cc)
+                       .build();
+    }
+
+    /** Identifies a rendered image by the surfaces, tile and style it was rendered from. */
+    private static class ImageKey {
+
+        final int surfaceIdA, surfaceIdB;
+        final TileRequest tileRequest;
+        final Layer layer;
+        final Style style;
+
+        ImageKey (TimeSurface surfA, TimeSurface surfB, TileRequest tileRequest, RenderRequest renderRequest) {
+            this.surfaceIdA = surfA.id;
+            this.surfaceIdB = surfB == null ? SurfaceCache.NONE : surfB.id;
+            this.tileRequest = tileRequest;
+            this.layer = renderRequest.layer;
+            this.style = renderRequest.style;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(surfaceIdA, surfaceIdB, tileRequest, layer, style);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other instanceof ImageKey) {
+                ImageKey that = (ImageKey) other;
+                return this.surfaceIdA == that.surfaceIdA &&
+                       this.surfaceIdB == that.surfaceIdB &&
+                       this.tileRequest.equals(that.tileRequest) &&
+                       this.layer == that.layer &&
+                       this.style == that.style;
+            }
+            return false;
+        }
+    }
+
     private static Response generateStreamingGeotiffResponse(final GridCoverage2D coverage) {
         
         StreamingOutput streamingOutput = new StreamingOutput() {
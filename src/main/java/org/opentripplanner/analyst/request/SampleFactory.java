@@ -33,6 +33,8 @@ public class SampleFactory implements SampleSource {
     private double searchRadiusM;
     private double searchRadiusLat;
 
+    private static final TraverseModeSet WALK = new TraverseModeSet(TraverseMode.WALK);
+
     /** When are two vertices considered equidistant and the origin should be moved slightly to avoid numerical issues? */
     private final double EPSILON = 1e-10;
 
@@ -50,37 +52,28 @@ public class SampleFactory implements SampleSource {
         // find scaling factor for equirectangular projection
         double xscale = Math.cos(c.y * Math.PI / 180);
         env.expandBy(searchRadiusLat / xscale, searchRadiusLat);
-        @SuppressWarnings("unchecked")
-        Collection<Vertex> vertices = graph.streetIndex.getVerticesForEnvelope(env);
-
         // make sure things are in the radius
         final TIntDoubleMap distances = new TIntDoubleHashMap();
+        final List<Vertex> sorted = new ArrayList<Vertex>();
 
-        for (Vertex v : vertices) {
-            if (!(v instanceof OsmVertex)) continue;
+        graph.streetIndex.visitVerticesInEnvelope(env, v -> {
+            if (!(v instanceof OsmVertex)) return;
 
             // figure ersatz distance
             double dx = (lon - v.getLon()) * xscale;
             double dy = lat - v.getLat();
-            distances.put(v.getIndex(), dx * dx + dy * dy);
-        }
-
-        
-        List<Vertex> sorted = new ArrayList<Vertex>();
-        
-        for (Vertex input : vertices) {
-            if (!(input instanceof OsmVertex &&
-                    distances.get(input.getIndex()) < searchRadiusLat * searchRadiusLat))
-                continue;
+            double distance = dx * dx + dy * dy;
+            if (distance >= searchRadiusLat * searchRadiusLat) return;
 
-            for (StreetEdge e : Iterables.filter(input.getOutgoing(), StreetEdge.class)) {
-                if (e.canTraverse(new TraverseModeSet(TraverseMode.WALK))) {
-                    sorted.add(input);
+            for (StreetEdge e : Iterables.filter(v.getOutgoing(), StreetEdge.class)) {
+                if (e.canTraverse(WALK)) {
+                    distances.put(v.getIndex(), distance);
+                    sorted.add(v);
                     break;
                 }
             }
-        }
-        
+        });
+
         // sort list by distance
         Collections.sort(sorted, new Comparator<Vertex>() {
 
@@ -47,7 +47,7 @@ public class TileCache extends CacheLoader<TileRequest, Tile>
     
     @Override
     public int weigh(TileRequest req, Tile tile) {
-        return tile.getSamples().length;
+        return tile.getSampleCount();
     }
     
 }
@@ -5,10 +5,10 @@ import org.opentripplanner.api.parameter.QualifiedMode;
 import org.opentripplanner.api.parameter.QualifiedModeSet;
 import org.opentripplanner.model.FeedScopedId;
 import org.opentripplanner.routing.core.OptimizeType;
+import org.opentripplanner.routing.core.PriorityQueueType;
 import org.opentripplanner.routing.core.RoutingRequest;
-import org.opentripplanner.routing.error.TransportationNetworkCompanyAvailabilityException;
 import org.opentripplanner.routing.request.BannedStopSet;
-import org.opentripplanner.routing.transportation_network_company.ArrivalTime;
+import org.opentripplanner.routing.transportation_network_company.TransportationNetworkCompanyEta;
 import org.opentripplanner.routing.transportation_network_company.TransportationNetworkCompanyService;
 import org.opentripplanner.standalone.OTPServer;
 import org.opentripplanner.standalone.Router;
@@ -425,6 +425,10 @@ public abstract class RoutingResource {
     @QueryParam("disableRemainingWeightHeuristic")
     protected Boolean disableRemainingWeightHeuristic;
 
+    /** The priority queue of the search, see PriorityQueueType. */
+    @QueryParam("priorityQueue")
+    protected PriorityQueueType priorityQueue;
+
     /*
      * Control the size of flag-stop buffer returned in API response. This parameter only applies
      * to GTFS-Flex routing, which must be explicitly turned on via the useFlexService parameter in
@@ -704,7 +708,7 @@ public abstract class RoutingResource {
         HashMap<FeedScopedId, BannedStopSet> bannedTripMap = makeBannedTripMap(bannedTrips);
 
         if (bannedTripMap != null)
-            request.bannedTrips = bannedTripMap;
+            request.banTrips(bannedTripMap);
 
         if (bannedStops != null)
             request.setBannedStops(bannedStops);
@@ -788,6 +792,9 @@ public abstract class RoutingResource {
         if (disableRemainingWeightHeuristic != null)
             request.disableRemainingWeightHeuristic = disableRemainingWeightHeuristic;
 
+        if (priorityQueue != null)
+            request.priorityQueue = priorityQueue;
+
         if (flexFlagStopBufferSize != null)
             request.flexFlagStopBufferSize = flexFlagStopBufferSize;
 
@@ -840,56 +847,29 @@ public abstract class RoutingResource {
                 throw new ParameterException(Message.TRANSPORTATION_NETWORK_COMPANY_CONFIG_INVALID);
             }
 
-            List<ArrivalTime> arrivalEstimates;
-
-            try {
-                arrivalEstimates = service.getArrivalTimes(
+            // Only start requesting the arrival estimates here. They are waited for when the search first boards a
+            // TNC, or at the latest once the search is done, so the latency of the TNC providers overlaps the setup of
+            // the search. If no acceptable ride type is found, the TransportationNetworkCompanyAvailabilityException
+            // is thrown then.
+            //
+            // store the earliest ETA if planning a "depart at" trip that begins soonish (within + or - 30 minutes)
+            long now = (new Date()).getTime() / 1000;
+            long departureTimeWindow = 1800;
+            boolean useEtaAtOrigin = this.arriveBy == false &&
+                request.dateTime < now + departureTimeWindow &&
+                request.dateTime > now - departureTimeWindow;
+            request.transportationNetworkCompanyEta = new TransportationNetworkCompanyEta(
+                service.getArrivalTimesAsync(
                     companies,
                     new Place(
                         request.from.lng,
                         request.from.lat,
                         request.from.name
                     )
-                );
-            } catch (Exception e) {
-                e.printStackTrace();
-                throw new UnsupportedOperationException(
-                    "Unable to verify availability of Transportation Network Company service due to error: " +
-                        e.getMessage()
-                );
-            }
-
-            /**
-             * iterate through results and find earliest ETA of an acceptable ride type
-             * this also checks if any of the ride types are wheelchair accessible or not
-             * if the request requires a wheelchair accessible ride and no arrival estimates are
-             * found, then the TransportationNetworkCompanyAvailabilityException will be thrown.
-             */
-            int earliestEta = Integer.MAX_VALUE;
-            for (ArrivalTime arrivalEstimate : arrivalEstimates) {
-                if (
-                    arrivalEstimate.estimatedSeconds < earliestEta &&
-                        request.wheelchairAccessible == arrivalEstimate.wheelchairAccessible
-                ) {
-                    earliestEta = arrivalEstimate.estimatedSeconds;
-                }
-            }
-
-            if (earliestEta == Integer.MAX_VALUE) {
-                // no acceptable ride types found
-                throw new TransportationNetworkCompanyAvailabilityException();
-            }
-
-            // store the earliest ETA if planning a "depart at" trip that begins soonish (within + or - 30 minutes)
-            long now = (new Date()).getTime() / 1000;
-            long departureTimeWindow = 1800;
-            if (
-                this.arriveBy == false &&
-                    request.dateTime < now + departureTimeWindow &&
-                    request.dateTime > now - departureTimeWindow
-            ) {
-                request.transportationNetworkCompanyEtaAtOrigin = earliestEta;
-            }
+                ),
+                request.wheelchairAccessible,
+                useEtaAtOrigin
+            );
         }
 
         if (
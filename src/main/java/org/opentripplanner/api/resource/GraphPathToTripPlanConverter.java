@@ -571,7 +571,7 @@ public abstract class GraphPathToTripPlanConverter {
             //
             // This avoids unnecessary/redundant API requests to TNC providers.
             Place from = leg.from;
-            if (request.transportationNetworkCompanyEtaAtOrigin > -1 &&
+            if (request.getTransportationNetworkCompanyEtaAtOrigin() > -1 &&
                 (i == 0 || (i == 1 && itinerary.legs.get(0).mode.equals("WALK")))) {
                 from = new Place(request.from.lng, request.from.lat, request.from.name);
                 tncLegsAreFromOrigin.add(true);
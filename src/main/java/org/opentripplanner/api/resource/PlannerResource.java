@@ -64,6 +64,9 @@ public class PlannerResource extends RoutingResource {
             request = super.buildRequest();
             router = otpServer.getRouter(request.routerId);
             response.setRentalInfo(request, router);
+            if (router.warmUp != null) {
+                router.warmUp.recordRequest(request);
+            }
 
             /* Find some good GraphPaths through the OTP Graph. */
             GraphPathFinder gpFinder = new GraphPathFinder(router); // we could also get a persistent router-scoped GraphPathFinder but there's no setup cost here
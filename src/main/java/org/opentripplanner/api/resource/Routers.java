@@ -37,6 +37,7 @@ import org.opentripplanner.routing.services.GraphService;
 import org.opentripplanner.standalone.CommandLineParameters;
 import org.opentripplanner.standalone.OTPServer;
 import org.opentripplanner.standalone.Router;
+import org.opentripplanner.standalone.RouterWarmUp;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -70,6 +71,9 @@ import com.google.common.io.Files;
  * PUT http://localhost/otp-rest-servlet/ws/routers
  * will reload the graphs for all currently registered routerIds from disk.
  *
+ * PUT http://localhost/otp-rest-servlet/ws/routers?background=true
+ * will do the same in a background thread, warming up each new graph before it replaces the current one.
+ *
  * PUT http://localhost/otp-rest-servlet/ws/routers/paris
  * will load a Graph from a sub-directory called 'paris' and associate it with the routerId 'paris'.
  *
@@ -139,16 +143,36 @@ public class Routers {
 
     /**
      * Reload the graphs for all registered routerIds from disk.
+     * @param background reload in a background thread and return immediately. The current graphs are not pre-evicted
+     * and keep serving requests until the new ones have been warmed up and swapped in.
      */
     @RolesAllowed({ "ROUTERS" })
     @PUT @Produces({ MediaType.APPLICATION_JSON })
     public Response reloadGraphs(@QueryParam("path") String path,
         @QueryParam("preEvict") @DefaultValue("true") boolean preEvict,
-        @QueryParam("force") @DefaultValue("true") boolean force) {
+        @QueryParam("force") @DefaultValue("true") boolean force,
+        @QueryParam("background") @DefaultValue("false") boolean background) {
+        if (background) {
+            otpServer.getGraphService().reloadGraphsInBackground(force);
+            return Response.status(Status.ACCEPTED).build();
+        }
         otpServer.getGraphService().reloadGraphs(preEvict, force);
         return Response.status(Status.OK).build();
     }
 
+    /** Return the duration and number of queries of the warm-up of the current graph for the given routerId. */
+    @GET @Path("{routerId}/warmup")
+    @Produces({ MediaType.APPLICATION_JSON })
+    public RouterWarmUp getWarmUp(@PathParam("routerId") String routerId) {
+        try {
+            return otpServer.getRouter(routerId).warmUp;
+        } catch (GraphNotFoundException e) {
+            throw new WebApplicationException(Response.status(Status.NOT_FOUND)
+                .entity("Graph id '" + routerId + "' not registered.\n").type("text/plain")
+                .build());
+        }
+    }
+
     /**
      * Load the graph for the specified routerId from disk.
      * @param preEvict before reloading each graph, evict the existing graph. This will prevent 
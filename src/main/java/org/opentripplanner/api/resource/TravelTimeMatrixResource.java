@@ -0,0 +1,95 @@
+package org.opentripplanner.api.resource;
+
+import org.opentripplanner.analyst.PointSet;
+import org.opentripplanner.analyst.TravelTimeMatrix;
+import org.opentripplanner.api.common.ParameterException;
+import org.opentripplanner.api.common.RoutingResource;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.standalone.Router;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Computes many-to-many travel time matrices between two PointSets and streams them back row by row, so even very
+ * large matrices never need to be held in memory. Routing parameters (date, time, modes etc.) are taken from the
+ * usual query parameters; fromPlace and toPlace are ignored.
+ *
+ * The csv format is a wide table with one column per destination. The binary format is described in
+ * TravelTimeMatrix.BinaryRowWriter. In both formats rows appear in the order they are computed, not in origin order.
+ * Requires the server to be started in analyst mode.
+ */
+@Path("routers/{routerId}/matrix")
+public class TravelTimeMatrixResource extends RoutingResource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TravelTimeMatrixResource.class);
+
+    /** How many origins may be searched ahead of the client reading their rows, per available processor. */
+    private static final int IN_FLIGHT_PER_THREAD = 2;
+
+    @GET
+    public Response getMatrix (@QueryParam("origins") String originPointSetId,
+                               @QueryParam("destinations") String destinationPointSetId,
+                               @QueryParam("format") @DefaultValue("csv") String format,
+                               @QueryParam("cutoffMinutes") @DefaultValue("120") int cutoffMinutes) {
+
+        if (otpServer.pointSetCache == null) {
+            return badRequest("Travel time matrices are only available when the server is in analyst mode.");
+        }
+        final PointSet origins = otpServer.pointSetCache.get(originPointSetId);
+        if (origins == null) return badRequest("Missing or invalid origin PointSet ID.");
+        final PointSet destinations = otpServer.pointSetCache.get(destinationPointSetId);
+        if (destinations == null) return badRequest("Missing or invalid destination PointSet ID.");
+
+        final boolean binary;
+        if ("csv".equals(format)) {
+            binary = false;
+        } else if ("binary".equals(format)) {
+            binary = true;
+        } else {
+            return badRequest("Format must be csv or binary.");
+        }
+
+        RoutingRequest request;
+        try {
+            request = buildRequest();
+        } catch (ParameterException pex) {
+            return badRequest(pex.message.name());
+        }
+        Router router = otpServer.getRouter(request.routerId);
+        final TravelTimeMatrix matrix = new TravelTimeMatrix(router.graph, request, origins, destinations,
+                cutoffMinutes * 60);
+        final int maxInFlight = Runtime.getRuntime().availableProcessors() * IN_FLIGHT_PER_THREAD;
+
+        StreamingOutput output = out -> {
+            TravelTimeMatrix.RowWriter writer = binary ?
+                    new TravelTimeMatrix.BinaryRowWriter(out) : new TravelTimeMatrix.CsvRowWriter(out);
+            try {
+                matrix.run(otpServer.matrixExecutor, maxInFlight, writer);
+            } catch (InterruptedException e) {
+                LOG.warn("Travel time matrix request was interrupted.");
+                throw new InterruptedIOException();
+            } catch (IOException e) {
+                LOG.warn("Travel time matrix was not completed: {}", e.getMessage());
+                throw new WebApplicationException(e);
+            }
+        };
+        return Response.ok(output)
+                .type(binary ? "application/octet-stream" : "text/csv")
+                .build();
+    }
+
+    private Response badRequest(String message) {
+        return Response.status(Response.Status.BAD_REQUEST).entity("Bad request: " + message).build();
+    }
+
+}
@@ -11,6 +11,8 @@ import javax.ws.rs.*;
 import javax.ws.rs.core.*;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Report the status of the graph updaters via a web service.
@@ -40,6 +42,23 @@ public class UpdaterStatusResource {
         return Response.status(Response.Status.OK).entity(updaterManager.getUpdaterDescriptions()).build();
     }
 
+    /**
+     * Return the polling status of every updater, and the queue depth and apply latency of the
+     * graph writer that applies their updates.
+     */
+    @GET
+    @Path("/status")
+    public Response getStatus () {
+        GraphUpdaterManager updaterManager = router.graph.updaterManager;
+        if (updaterManager == null) {
+            return Response.status(Response.Status.NOT_FOUND).entity("No updaters running.").build();
+        }
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("graphWriter", updaterManager.getWriterMetrics());
+        status.put("updaters", updaterManager.getUpdaterStatuses());
+        return Response.status(Response.Status.OK).entity(status).build();
+    }
+
     /** Return status for a specific updater. */
     @GET
     @Path("/{updaterId}")
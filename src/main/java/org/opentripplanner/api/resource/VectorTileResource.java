@@ -0,0 +1,67 @@
+package org.opentripplanner.api.resource;
+
+import org.opentripplanner.standalone.OTPServer;
+import org.opentripplanner.standalone.Router;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Mapbox vector tile API for the stops, stations, vehicle rental stations and street edges of a router, so that map
+ * clients only need to fetch the features in view. Several layers can be requested in one tile as a comma-separated
+ * list, for example with Mapbox GL:
+ *
+ * <pre>
+ *   map.addSource('otp', {
+ *       type: 'vector',
+ *       tiles: ['http://localhost:8080/otp/routers/default/vectorTiles/stops,rentalStations/{z}/{x}/{y}.pbf']
+ *   });
+ * </pre>
+ *
+ * Tiles are encoded and cached per layer by VectorTileManager.
+ *
+ * @see org.opentripplanner.inspector.vector.VectorTileManager
+ */
+@Path("/routers/{routerId}/vectorTiles")
+public class VectorTileResource {
+
+    @Context
+    private OTPServer otpServer;
+
+    @GET @Path("/{layers}/{z}/{x}/{y}.pbf")
+    @Produces("application/x-protobuf")
+    public Response tileGet(@PathParam("routerId") String routerId, @PathParam("layers") String layers,
+            @PathParam("z") int z, @PathParam("x") int x, @PathParam("y") int y) {
+        if (z < 0 || z > 22 || x < 0 || y < 0 || x >= (1 << z) || y >= (1 << z)) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid tile coordinates.").build();
+        }
+        Router router = otpServer.getRouter(routerId);
+        byte[] tile;
+        try {
+            tile = router.vectorTileManager.getTile(Arrays.asList(layers.split(",")), z, x, y);
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+        // Rental station availability changes at runtime, so clients should not keep tiles for long.
+        CacheControl cc = new CacheControl();
+        cc.setMaxAge(60);
+        cc.setNoCache(false);
+        return Response.ok(tile).cacheControl(cc).build();
+    }
+
+    /** Gets the names of all layers, to build a layer chooser. */
+    @GET @Path("/layers")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Collection<String> getLayers(@PathParam("routerId") String routerId) {
+        return otpServer.getRouter(routerId).vectorTileManager.getLayerNames();
+    }
+
+}
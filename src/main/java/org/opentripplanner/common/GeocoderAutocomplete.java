@@ -0,0 +1,195 @@
+package org.opentripplanner.common;
+
+import org.opentripplanner.common.LuceneIndex.Category;
+import org.opentripplanner.common.LuceneIndex.LuceneResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * An in-memory prefix index of the names of stops, stop clusters and street corners, for the type-ahead requests of
+ * the geocoder. Every word of a name (and the code of a stop) is a key, so typing "main" finds "North Main St & 1st
+ * Ave". The keys are kept in a sorted array, and the names starting with a prefix are found by binary search, without
+ * going through Lucene. A key is not copied out of its name: it is the region of the lowercase name starting at an
+ * offset, so the index only stores one lowercase name per entry.
+ */
+public class GeocoderAutocomplete {
+
+    /** How many matching keys are considered before ranking the results. */
+    private static final int MAX_CANDIDATES = 1000;
+
+    private final Entry[] entries;
+
+    /**
+     * The text of each key, in lexicographic order of the keys: the lowercase name of the entry (shared by all its
+     * keys), or its lowercase stop code.
+     */
+    private final String[] keyTexts;
+
+    /**
+     * The position in the text where each key starts, 0 for a match at the start of the name. A key is a lowercase
+     * name from the start of one of its words, or a stop code.
+     */
+    private final int[] keyOffsets;
+
+    /** The index in entries of the entry of each key. */
+    private final int[] keyEntries;
+
+    public GeocoderAutocomplete(List<Entry> entries) {
+        this.entries = entries.toArray(new Entry[entries.size()]);
+        List<Key> keyList = new ArrayList<>();
+        for (int e = 0; e < this.entries.length; e++) {
+            Entry entry = this.entries[e];
+            String name = entry.name.toLowerCase(Locale.ROOT);
+            for (int i = 0; i < name.length(); i++) {
+                if (Character.isLetterOrDigit(name.charAt(i)) && (i == 0 || !Character.isLetterOrDigit(name.charAt(i - 1)))) {
+                    keyList.add(new Key(name, i, e));
+                }
+            }
+            if (entry.code != null) {
+                keyList.add(new Key(entry.code.toLowerCase(Locale.ROOT), 0, e));
+            }
+        }
+        Key[] sorted = keyList.toArray(new Key[keyList.size()]);
+        Arrays.sort(sorted, (a, b) -> compareRegions(a.text, a.offset, b.text, b.offset));
+        keyTexts = new String[sorted.length];
+        keyOffsets = new int[sorted.length];
+        keyEntries = new int[sorted.length];
+        for (int k = 0; k < sorted.length; k++) {
+            keyTexts[k] = sorted[k].text;
+            keyOffsets[k] = sorted[k].offset;
+            keyEntries[k] = sorted[k].entry;
+        }
+    }
+
+    /**
+     * @return at most maxResults places of the given categories, with a word starting with the given prefix. Names
+     * starting with the prefix come first, then the shorter names.
+     */
+    public List<LuceneResult> query(String prefix, boolean stops, boolean clusters, boolean corners, int maxResults) {
+        String lowerCasePrefix = prefix.trim().toLowerCase(Locale.ROOT);
+        List<LuceneResult> results = new ArrayList<>();
+        if (lowerCasePrefix.isEmpty()) {
+            return results;
+        }
+        // Keep the best match of each entry, the keys of an entry matching at the start of its name come first.
+        Set<Integer> startMatches = new LinkedHashSet<>();
+        Set<Integer> otherMatches = new LinkedHashSet<>();
+        int candidates = 0;
+        for (int k = lowerBound(lowerCasePrefix);
+                k < keyTexts.length && keyTexts[k].startsWith(lowerCasePrefix, keyOffsets[k]); k++) {
+            Entry entry = entries[keyEntries[k]];
+            boolean wanted = entry.category == Category.STOP ? stops
+                    : entry.category == Category.CLUSTER ? clusters : corners;
+            if (!wanted) continue;
+            if (keyOffsets[k] == 0) {
+                startMatches.add(keyEntries[k]);
+            } else {
+                otherMatches.add(keyEntries[k]);
+            }
+            if (++candidates >= MAX_CANDIDATES) break;
+        }
+        otherMatches.removeAll(startMatches);
+        for (Set<Integer> matches : Arrays.asList(startMatches, otherMatches)) {
+            List<Entry> ranked = new ArrayList<>();
+            for (int e : matches) {
+                ranked.add(entries[e]);
+            }
+            ranked.sort(Comparator.comparingInt((Entry entry) -> entry.name.length()).thenComparing(entry -> entry.name));
+            for (Entry entry : ranked) {
+                if (results.size() >= maxResults) {
+                    return results;
+                }
+                results.add(entry.toResult());
+            }
+        }
+        return results;
+    }
+
+    /** @return the number of keys in this index. */
+    public int size() {
+        return keyTexts.length;
+    }
+
+    /** @return the position of the first key greater than or equal to the given one. */
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = keyTexts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareRegions(keyTexts[mid], keyOffsets[mid], key, 0) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compare the end of a starting at aOffset with the end of b starting at bOffset, as String.compareTo would compare
+     * these substrings.
+     */
+    private static int compareRegions(String a, int aOffset, String b, int bOffset) {
+        int aLength = a.length() - aOffset;
+        int bLength = b.length() - bOffset;
+        int length = Math.min(aLength, bLength);
+        for (int i = 0; i < length; i++) {
+            char aChar = a.charAt(aOffset + i);
+            char bChar = b.charAt(bOffset + i);
+            if (aChar != bChar) {
+                return aChar - bChar;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    private static class Key {
+        final String text;
+        final int offset;
+        final int entry;
+
+        Key(String text, int offset, int entry) {
+            this.text = text;
+            this.offset = offset;
+            this.entry = entry;
+        }
+    }
+
+    /** A place which can be found by the geocoder, as it is stored in the Lucene index. */
+    public static class Entry {
+        public final Category category;
+        public final String name;
+        /** The stop code, or null. */
+        public final String code;
+        /** The id of a stop or cluster, null for corners. */
+        public final String id;
+        public final double lat;
+        public final double lon;
+
+        public Entry(Category category, String name, String code, String id, double lat, double lon) {
+            this.category = category;
+            this.name = name;
+            this.code = code;
+            this.id = id;
+            this.lat = lat;
+            this.lon = lon;
+        }
+
+        /** @return the result for this place, in the same format as the results of a Lucene query. */
+        public LuceneResult toResult() {
+            LuceneResult lr = new LuceneResult();
+            lr.lat = lat;
+            lr.lng = lon;
+            lr.id = id;
+            String code = this.code != null ? "(" + this.code + ")" : "";
+            lr.description = category.name().toLowerCase() + " " + name + " " + code;
+            return lr;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.opentripplanner.common;
+
+/**
+ * Latency counters of the geocoder queries, kept separately for the full-text queries answered by Lucene and for the
+ * type-ahead queries answered by the in-memory autocomplete index. Exposed by the geocoder metrics API.
+ */
+public class GeocoderMetrics {
+
+    private final Counter fullText = new Counter();
+
+    private final Counter autocomplete = new Counter();
+
+    synchronized void recordQuery(boolean autocomplete, long latencyNanos) {
+        (autocomplete ? this.autocomplete : fullText).record(latencyNanos / 1000);
+    }
+
+    public synchronized long getFullTextQueries() {
+        return fullText.queries;
+    }
+
+    public synchronized long getFullTextLastLatencyMicros() {
+        return fullText.lastLatencyMicros;
+    }
+
+    public synchronized long getFullTextMaxLatencyMicros() {
+        return fullText.maxLatencyMicros;
+    }
+
+    /** @return the mean latency of the full-text queries, or 0 if there have been none. */
+    public synchronized long getFullTextMeanLatencyMicros() {
+        return fullText.meanLatencyMicros();
+    }
+
+    public synchronized long getAutocompleteQueries() {
+        return autocomplete.queries;
+    }
+
+    public synchronized long getAutocompleteLastLatencyMicros() {
+        return autocomplete.lastLatencyMicros;
+    }
+
+    public synchronized long getAutocompleteMaxLatencyMicros() {
+        return autocomplete.maxLatencyMicros;
+    }
+
+    /** @return the mean latency of the autocomplete queries, or 0 if there have been none. */
+    public synchronized long getAutocompleteMeanLatencyMicros() {
+        return autocomplete.meanLatencyMicros();
+    }
+
+    private static class Counter {
+        long queries;
+        long lastLatencyMicros;
+        long maxLatencyMicros;
+        long totalLatencyMicros;
+
+        void record(long latencyMicros) {
+            queries++;
+            lastLatencyMicros = latencyMicros;
+            maxLatencyMicros = Math.max(maxLatencyMicros, latencyMicros);
+            totalLatencyMicros += latencyMicros;
+        }
+
+        long meanLatencyMicros() {
+            return queries == 0 ? 0 : totalLatencyMicros / queries;
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package org.opentripplanner.common;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
@@ -14,7 +17,6 @@ import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.*;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
@@ -29,8 +31,12 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -43,12 +49,20 @@ public class LuceneIndex {
 
     private static final Logger LOG = LoggerFactory.getLogger(LuceneIndex.class);
 
+    private static final int MAX_RESULTS = 10;
+
+    /** The keys of the commit data, which record the graph and places an index on disk was built from. */
+    private static final String GRAPH_BUILD_ID = "graphBuildId";
+    private static final String STOPS_HASH = "stopsHash";
+    private static final String CORNERS_HASH = "cornersHash";
+
     private Analyzer analyzer = new StandardAnalyzer(Version.LUCENE_47);
-    private QueryParser parser = new QueryParser(Version.LUCENE_47, "name", analyzer);
     private GraphIndex graphIndex;
     private File basePath;
     private Directory directory; // the Lucene Directory, not to be confused with a filesystem directory
-    private IndexSearcher searcher; // Will be null until index is built.
+    private volatile IndexSearcher searcher; // Will be null until index is built.
+    private volatile GeocoderAutocomplete autocomplete; // Will be null until index is built.
+    public final GeocoderMetrics metrics = new GeocoderMetrics();
 
     /**
      * @param basePath the filesystem location under which to save indexes
@@ -66,27 +80,70 @@ public class LuceneIndex {
 
     /**
      * Index stations, stops, intersections, streets, and addresses by name and location.
+     * The index is saved in a directory per router, along with the build time of the graph and hashes of the stops and
+     * corners it contains. When the server is restarted on the same places the index on disk is reused as it is, and
+     * when only the stops have changed (for instance after a transit-only graph rebuild) only they are re-indexed.
      */
     private void index() {
         try {
             long startTime = System.currentTimeMillis();
-            /* Create or re-open a disk-backed Lucene Directory under the OTP server base filesystem directory. */
-            directory = FSDirectory.open(new File(basePath, "lucene"));
-            // TODO reuse the index if it exists?
-            //directory = new RAMDirectory(); // only a little faster
-            IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_47, analyzer).setOpenMode(OpenMode.CREATE);
-            final IndexWriter writer = new IndexWriter(directory, config);
+            List<GeocoderAutocomplete.Entry> stopEntries = new ArrayList<>();
             for (Stop stop : graphIndex.stopForId.values()) {
-                addStop(writer, stop);
+                stopEntries.add(new GeocoderAutocomplete.Entry(Category.STOP, stop.getName(), stop.getCode(),
+                        stop.getId().toString(), stop.getLat(), stop.getLon()));
             }
-            graphIndex.clusterStopsAsNeeded();
-            for (StopCluster stopCluster : graphIndex.stopClusterForId.values()) {
-                addCluster(writer, stopCluster);
+            for (StopCluster stopCluster : graphIndex.getStopClusters()) {
+                stopEntries.add(new GeocoderAutocomplete.Entry(Category.CLUSTER, stopCluster.name, null,
+                        stopCluster.id, stopCluster.lat, stopCluster.lon));
             }
+            List<GeocoderAutocomplete.Entry> cornerEntries = new ArrayList<>();
             for (StreetVertex sv : Iterables.filter(graphIndex.vertexForId.values(), StreetVertex.class)) {
-                addCorner(writer, sv);
+                GeocoderAutocomplete.Entry corner = cornerEntry(sv);
+                if (corner != null) cornerEntries.add(corner);
+            }
+            String graphBuildId = Long.toString(graphIndex.graph.buildTime.getTime());
+            String stopsHash = hash(stopEntries);
+            String cornersHash = hash(cornerEntries);
+
+            /* Create or re-open a disk-backed Lucene Directory under the OTP server base filesystem directory. */
+            String routerId = graphIndex.graph.routerId == null ? "default" : graphIndex.graph.routerId;
+            directory = FSDirectory.open(new File(new File(basePath, "lucene"), routerId));
+            Map<String, String> commitData = Collections.emptyMap();
+            if (DirectoryReader.indexExists(directory)) {
+                try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                    commitData = reader.getIndexCommit().getUserData();
+                }
+            }
+            if (stopsHash.equals(commitData.get(STOPS_HASH)) && cornersHash.equals(commitData.get(CORNERS_HASH))) {
+                LOG.info("Reusing Lucene index of graph {}.", commitData.get(GRAPH_BUILD_ID));
+            } else {
+                IndexWriter writer;
+                if (cornersHash.equals(commitData.get(CORNERS_HASH))) {
+                    LOG.info("Only the stops have changed, updating them in the Lucene index.");
+                    writer = new IndexWriter(directory,
+                            new IndexWriterConfig(Version.LUCENE_47, analyzer).setOpenMode(OpenMode.APPEND));
+                    writer.deleteDocuments(new Term("category", Category.STOP.name()),
+                            new Term("category", Category.CLUSTER.name()));
+                } else {
+                    writer = new IndexWriter(directory,
+                            new IndexWriterConfig(Version.LUCENE_47, analyzer).setOpenMode(OpenMode.CREATE));
+                    for (GeocoderAutocomplete.Entry corner : cornerEntries) {
+                        addEntry(writer, corner);
+                    }
+                }
+                for (GeocoderAutocomplete.Entry stop : stopEntries) {
+                    addEntry(writer, stop);
+                }
+                Map<String, String> newCommitData = new HashMap<>();
+                newCommitData.put(GRAPH_BUILD_ID, graphBuildId);
+                newCommitData.put(STOPS_HASH, stopsHash);
+                newCommitData.put(CORNERS_HASH, cornersHash);
+                writer.setCommitData(newCommitData);
+                writer.close();
             }
-            writer.close();
+            List<GeocoderAutocomplete.Entry> entries = new ArrayList<>(stopEntries);
+            entries.addAll(cornerEntries);
+            autocomplete = new GeocoderAutocomplete(entries);
             long elapsedTime = System.currentTimeMillis() - startTime;
             LOG.info("Built Lucene index in {} msec", elapsedTime);
             // Make the IndexSearcher necessary for querying.
@@ -96,30 +153,8 @@ public class LuceneIndex {
         }
     }
 
-    private void addStop(IndexWriter iwriter, Stop stop) throws IOException {
-        Document doc = new Document();
-        doc.add(new TextField("name", stop.getName(), Field.Store.YES));
-        if (stop.getCode() != null) {
-            doc.add(new StringField("code", stop.getCode(), Field.Store.YES));
-        }
-        doc.add(new DoubleField("lat", stop.getLat(), Field.Store.YES));
-        doc.add(new DoubleField("lon", stop.getLon(), Field.Store.YES));
-        doc.add(new StringField("id", stop.getId().toString(), Field.Store.YES));
-        doc.add(new StringField("category", Category.STOP.name(), Field.Store.YES));
-        iwriter.addDocument(doc);
-    }
-
-    private void addCluster(IndexWriter iwriter, StopCluster stopCluster) throws IOException {
-        Document doc = new Document();
-        doc.add(new TextField("name", stopCluster.name, Field.Store.YES));
-        doc.add(new DoubleField("lat", stopCluster.lat, Field.Store.YES));
-        doc.add(new DoubleField("lon", stopCluster.lon, Field.Store.YES));
-        doc.add(new StringField("id", stopCluster.id, Field.Store.YES));
-        doc.add(new StringField("category", Category.CLUSTER.name(), Field.Store.YES));
-        iwriter.addDocument(doc);
-    }
-
-    private void addCorner(IndexWriter iwriter, StreetVertex sv) throws IOException {
+    /** @return the corner of the first two streets leaving the given vertex, or null if it is not a corner. */
+    private static GeocoderAutocomplete.Entry cornerEntry(StreetVertex sv) {
         String mainStreet = null;
         String crossStreet = null;
         // TODO score based on OSM street type, using intersection nodes instead of vertices.
@@ -127,13 +162,38 @@ public class LuceneIndex {
             if (mainStreet == null) mainStreet = pse.getName();
             else crossStreet = pse.getName();
         }
-        if (mainStreet == null || crossStreet == null) return;
-        if (mainStreet.equals(crossStreet)) return;
+        if (mainStreet == null || crossStreet == null) return null;
+        if (mainStreet.equals(crossStreet)) return null;
+        return new GeocoderAutocomplete.Entry(Category.CORNER, mainStreet + " & " + crossStreet, null, null,
+                sv.getLat(), sv.getLon());
+    }
+
+    /** @return a hash of everything stored in the index about the given places. */
+    private static String hash(List<GeocoderAutocomplete.Entry> entries) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (GeocoderAutocomplete.Entry entry : entries) {
+            hasher.putInt(entry.category.ordinal());
+            hasher.putString(entry.name, StandardCharsets.UTF_8);
+            hasher.putString(Strings.nullToEmpty(entry.code), StandardCharsets.UTF_8);
+            hasher.putString(Strings.nullToEmpty(entry.id), StandardCharsets.UTF_8);
+            hasher.putDouble(entry.lat);
+            hasher.putDouble(entry.lon);
+        }
+        return hasher.hash().toString();
+    }
+
+    private void addEntry(IndexWriter iwriter, GeocoderAutocomplete.Entry entry) throws IOException {
         Document doc = new Document();
-        doc.add(new TextField("name", mainStreet + " & " + crossStreet, Field.Store.YES));
-        doc.add(new DoubleField("lat", sv.getLat(), Field.Store.YES));
-        doc.add(new DoubleField("lon", sv.getLon(), Field.Store.YES));
-        doc.add(new StringField("category", Category.CORNER.name(), Field.Store.YES));
+        doc.add(new TextField("name", entry.name, Field.Store.YES));
+        if (entry.code != null) {
+            doc.add(new StringField("code", entry.code, Field.Store.YES));
+        }
+        doc.add(new DoubleField("lat", entry.lat, Field.Store.YES));
+        doc.add(new DoubleField("lon", entry.lon, Field.Store.YES));
+        if (entry.id != null) {
+            doc.add(new StringField("id", entry.id, Field.Store.YES));
+        }
+        doc.add(new StringField("category", entry.category.name(), Field.Store.YES));
         iwriter.addDocument(doc);
     }
 
@@ -148,7 +208,8 @@ public class LuceneIndex {
     /** Fetch results for the geocoder using the OTP graph for stops, clusters and street names
      *
      * @param queryString
-     * @param autocomplete Whether we should use the query string to do a prefix match
+     * @param autocomplete Whether we should use the query string to do a prefix match, using the in-memory
+     *                     autocomplete index instead of Lucene
      * @param stops Search for stops, either by name or stop code
      * @param clusters Search for clusters by their name
      * @param corners Search for street corners using at least one of the street names
@@ -156,31 +217,35 @@ public class LuceneIndex {
      */
     public List<LuceneResult> query (String queryString, boolean autocomplete,
                                      boolean stops, boolean clusters, boolean corners) {
+        long startTime = System.nanoTime();
+        if (autocomplete) {
+            if (!(stops || clusters || corners)) {
+                stops = clusters = corners = true;
+            }
+            List<LuceneResult> result = this.autocomplete.query(queryString, stops, clusters, corners, MAX_RESULTS);
+            metrics.recordQuery(true, System.nanoTime() - startTime);
+            return result;
+        }
         /* Turn the query string into a Lucene query.*/
         BooleanQuery query = new BooleanQuery();
         BooleanQuery termQuery = new BooleanQuery();
 
-        if (autocomplete) {
-            termQuery.add(new PrefixQuery(new Term("name", queryString)), BooleanClause.Occur.SHOULD);
-        } else {
-            List<String> list = new ArrayList<String>();
-            Matcher m = Pattern.compile("([^\"]\\S*|\".+?\")\\s*").matcher(queryString);
-            while (m.find()) {
-                String token = m.group(1);
-
-                // if token is a quoted search phrase
-                if (token.startsWith("\"") && token.endsWith("\"")) {
-                    PhraseQuery phraseQuery = new PhraseQuery();
-                    for (String phraseToken : token.substring(1, token.length() - 1).split(" ")) {
-                        phraseQuery.add(new Term("name", phraseToken.toLowerCase()));
-                    }
-                    termQuery.add(phraseQuery, BooleanClause.Occur.SHOULD);
-                } else { // a regular unquoted search term
-                    termQuery.add(new FuzzyQuery(new Term("name", token)), BooleanClause.Occur.SHOULD);
+        Matcher m = Pattern.compile("([^\"]\\S*|\".+?\")\\s*").matcher(queryString);
+        while (m.find()) {
+            String token = m.group(1);
 
-                    // This makes it possible to search for a stop code
-                    termQuery.add(new TermQuery(new Term("code", token)), BooleanClause.Occur.SHOULD);
+            // if token is a quoted search phrase
+            if (token.startsWith("\"") && token.endsWith("\"")) {
+                PhraseQuery phraseQuery = new PhraseQuery();
+                for (String phraseToken : token.substring(1, token.length() - 1).split(" ")) {
+                    phraseQuery.add(new Term("name", phraseToken.toLowerCase()));
                 }
+                termQuery.add(phraseQuery, BooleanClause.Occur.SHOULD);
+            } else { // a regular unquoted search term
+                termQuery.add(new FuzzyQuery(new Term("name", token)), BooleanClause.Occur.SHOULD);
+
+                // This makes it possible to search for a stop code
+                termQuery.add(new TermQuery(new Term("code", token)), BooleanClause.Occur.SHOULD);
             }
         }
 
@@ -201,7 +266,7 @@ public class LuceneIndex {
         }
         List<LuceneResult> result = Lists.newArrayList();
         try {
-            TopScoreDocCollector collector = TopScoreDocCollector.create(10, true);
+            TopScoreDocCollector collector = TopScoreDocCollector.create(MAX_RESULTS, true);
             searcher.search(query, collector);
             ScoreDoc[] docs = collector.topDocs().scoreDocs;
             for (int i = 0; i < docs.length; i++) {
@@ -227,6 +292,7 @@ public class LuceneIndex {
         } catch (Exception ex) {
             LOG.error("Error during Lucene search", ex);
         } finally {
+            metrics.recordQuery(false, System.nanoTime() - startTime);
             return result;
         }
     }
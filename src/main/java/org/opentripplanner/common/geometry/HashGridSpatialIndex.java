@@ -244,6 +244,11 @@ public class HashGridSpatialIndex<T> implements SpatialIndex, Serializable {
         }
     }
 
+    /** @return the number of objects in this index. */
+    public int size() {
+        return nObjects;
+    }
+
     public String toString() {
         return String
                 .format("HashGridSpatialIndex %f x %f, %d bins allocated, %d objs, %d entries (avg %.2f entries/bin, %.2f entries/object)",
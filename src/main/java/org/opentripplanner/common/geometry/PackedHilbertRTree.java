@@ -0,0 +1,192 @@
+package org.opentripplanner.common.geometry;
+
+import org.locationtech.jts.geom.Envelope;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable R-tree bulk-loaded once from all its items, for read-mostly indexes such as the street edges, vertices
+ * and stops of a graph.
+ *
+ * The items are sorted along a Hilbert curve through the centers of their envelopes and packed into full nodes, level
+ * by level, up to the root. Bounding boxes are stored in primitive arrays, all nodes of a level being contiguous, so
+ * that the tree takes little more memory than the envelopes themselves. Unlike a hash grid, each item is stored once,
+ * so a query does not have to remove duplicates, and a query with a visitor does not allocate anything.
+ *
+ * Queries are thread-safe.
+ *
+ * @param <T> Type of objects to be spatial indexed.
+ */
+public class PackedHilbertRTree<T> {
+
+    /** Called for each item whose envelope intersects the query envelope. */
+    public interface Visitor<T> {
+        void visit(T item);
+    }
+
+    private static final int NODE_SIZE = 16;
+
+    /** The Hilbert curve is computed on a grid of HILBERT_SIZE x HILBERT_SIZE cells over the envelope of all items. */
+    private static final int HILBERT_SIZE = 1 << 15;
+
+    private final Object[] items;
+
+    /** Bounding boxes of the items sorted along the Hilbert curve, followed by the nodes of each level. */
+    private final double[] minX, minY, maxX, maxY;
+
+    /**
+     * For the items (level 0): the index of the item in the items array. For the nodes: the position of their first
+     * child in the level below.
+     */
+    private final int[] indices;
+
+    /** The end position (exclusive) of each level, the root being the last position. */
+    private final int[] levelBounds;
+
+    /**
+     * @param envelopes the envelopes of the items, in the same order.
+     */
+    public PackedHilbertRTree(List<Envelope> envelopes, List<? extends T> items) {
+        if (envelopes.size() != items.size()) {
+            throw new IllegalArgumentException("there must be exactly one envelope per item.");
+        }
+        int n = items.size();
+        this.items = items.toArray();
+
+        // compute the number of nodes of each level
+        int[] bounds = new int[32];
+        int levels = 0;
+        int count = n;
+        int numNodes = n;
+        bounds[levels++] = numNodes;
+        while (count > 1 || levels == 1 && n > 0) {
+            count = (count + NODE_SIZE - 1) / NODE_SIZE;
+            numNodes += count;
+            bounds[levels++] = numNodes;
+        }
+        levelBounds = new int[levels];
+        System.arraycopy(bounds, 0, levelBounds, 0, levels);
+        minX = new double[numNodes];
+        minY = new double[numNodes];
+        maxX = new double[numNodes];
+        maxY = new double[numNodes];
+        indices = new int[numNodes];
+        if (n == 0) {
+            return;
+        }
+
+        // sort the items by the Hilbert value of their center
+        Envelope extent = new Envelope();
+        for (Envelope envelope : envelopes) {
+            extent.expandToInclude(envelope);
+        }
+        double width = extent.getWidth() > 0 ? extent.getWidth() : 1;
+        double height = extent.getHeight() > 0 ? extent.getHeight() : 1;
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            Envelope envelope = envelopes.get(i);
+            int x = (int) ((HILBERT_SIZE - 1) * ((envelope.getMinX() + envelope.getMaxX()) / 2 - extent.getMinX()) / width);
+            int y = (int) ((HILBERT_SIZE - 1) * ((envelope.getMinY() + envelope.getMaxY()) / 2 - extent.getMinY()) / height);
+            // the Hilbert value takes 30 bits, so the keys are positive and sort by Hilbert value then item index
+            keys[i] = ((long) hilbert(x, y) << 32) | i;
+        }
+        Arrays.sort(keys);
+        for (int pos = 0; pos < n; pos++) {
+            int i = (int) keys[pos];
+            Envelope envelope = envelopes.get(i);
+            minX[pos] = envelope.getMinX();
+            minY[pos] = envelope.getMinY();
+            maxX[pos] = envelope.getMaxX();
+            maxY[pos] = envelope.getMaxY();
+            indices[pos] = i;
+        }
+
+        // pack each level into the nodes of the level above
+        for (int level = 1; level < levels; level++) {
+            int childStart = level == 1 ? 0 : levelBounds[level - 2];
+            int childEnd = levelBounds[level - 1];
+            int pos = childEnd;
+            for (int child = childStart; child < childEnd; child += NODE_SIZE, pos++) {
+                int end = Math.min(child + NODE_SIZE, childEnd);
+                minX[pos] = Double.POSITIVE_INFINITY;
+                minY[pos] = Double.POSITIVE_INFINITY;
+                maxX[pos] = Double.NEGATIVE_INFINITY;
+                maxY[pos] = Double.NEGATIVE_INFINITY;
+                for (int c = child; c < end; c++) {
+                    minX[pos] = Math.min(minX[pos], minX[c]);
+                    minY[pos] = Math.min(minY[pos], minY[c]);
+                    maxX[pos] = Math.max(maxX[pos], maxX[c]);
+                    maxY[pos] = Math.max(maxY[pos], maxY[c]);
+                }
+                indices[pos] = child;
+            }
+        }
+    }
+
+    /** Visit each item whose envelope intersects the given envelope, without allocating anything. */
+    public void visit(Envelope envelope, Visitor<? super T> visitor) {
+        if (items.length == 0 || envelope.isNull()) {
+            return;
+        }
+        int root = levelBounds[levelBounds.length - 1] - 1;
+        double qMinX = envelope.getMinX(), qMinY = envelope.getMinY();
+        double qMaxX = envelope.getMaxX(), qMaxY = envelope.getMaxY();
+        if (intersects(root, qMinX, qMinY, qMaxX, qMaxY)) {
+            visitNode(root, levelBounds.length - 1, qMinX, qMinY, qMaxX, qMaxY, visitor);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void visitNode(int node, int level, double qMinX, double qMinY, double qMaxX, double qMaxY,
+            Visitor<? super T> visitor) {
+        // the depth is the log of the number of items in base NODE_SIZE, so recursion is fine
+        int end = Math.min(indices[node] + NODE_SIZE, levelBounds[level - 1]);
+        for (int pos = indices[node]; pos < end; pos++) {
+            if (!intersects(pos, qMinX, qMinY, qMaxX, qMaxY)) {
+                continue;
+            }
+            if (level == 1) {
+                visitor.visit((T) items[indices[pos]]);
+            } else {
+                visitNode(pos, level - 1, qMinX, qMinY, qMaxX, qMaxY, visitor);
+            }
+        }
+    }
+
+    private boolean intersects(int pos, double qMinX, double qMinY, double qMaxX, double qMaxY) {
+        return minX[pos] <= qMaxX && maxX[pos] >= qMinX && minY[pos] <= qMaxY && maxY[pos] >= qMinY;
+    }
+
+    public int size() {
+        return items.length;
+    }
+
+    /**
+     * @return the position of the given cell along a Hilbert curve filling the HILBERT_SIZE x HILBERT_SIZE grid.
+     */
+    static int hilbert(int x, int y) {
+        int d = 0;
+        for (int s = HILBERT_SIZE / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = HILBERT_SIZE - 1 - x;
+                    y = HILBERT_SIZE - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PackedHilbertRTree %d items, %d levels", items.length, levelBounds.length);
+    }
+}
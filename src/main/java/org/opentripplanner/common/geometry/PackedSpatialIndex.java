@@ -0,0 +1,102 @@
+package org.opentripplanner.common.geometry;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.index.ItemVisitor;
+import org.locationtech.jts.index.SpatialIndex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A spatial index for read-mostly data: the items known when it is created are bulk-loaded into a
+ * PackedHilbertRTree, and the few items inserted afterwards (for instance the edges split when linking a bike rental
+ * station) go to a small HashGridSpatialIndex overlay. Items removed from the packed tree are remembered and skipped.
+ *
+ * As in HashGridSpatialIndex, queries may return false positives and write operations are not synchronized: they
+ * must be taken care of by the client. Read-only operations are multi-thread-safe.
+ *
+ * @param <T> Type of objects to be spatial indexed.
+ */
+public class PackedSpatialIndex<T> implements SpatialIndex {
+
+    private final PackedHilbertRTree<T> packed;
+
+    private final HashGridSpatialIndex<T> overlay = new HashGridSpatialIndex<>();
+
+    /** Items of the packed tree which have been removed from this index. */
+    private final Set<Object> removed = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    /**
+     * @param envelopes the envelopes of the items, in the same order.
+     */
+    public PackedSpatialIndex(List<Envelope> envelopes, List<? extends T> items) {
+        packed = new PackedHilbertRTree<>(envelopes, items);
+    }
+
+    @Override
+    public void insert(Envelope envelope, Object item) {
+        overlay.insert(envelope, item);
+    }
+
+    public void insert(LineString geom, Object item) {
+        overlay.insert(geom, item);
+    }
+
+    @Override
+    public boolean remove(Envelope envelope, Object item) {
+        if (overlay.remove(envelope, item)) {
+            return true;
+        }
+        if (removed.contains(item)) {
+            return false;
+        }
+        boolean[] found = new boolean[1];
+        packed.visit(envelope, candidate -> found[0] |= candidate == item);
+        if (found[0]) {
+            removed.add(item);
+        }
+        return found[0];
+    }
+
+    /**
+     * Visit each item whose envelope may intersect the given envelope. When nothing has been inserted in or removed
+     * from this index since it was created, this does not allocate anything.
+     */
+    public void visit(Envelope envelope, PackedHilbertRTree.Visitor<? super T> visitor) {
+        if (removed.isEmpty()) {
+            packed.visit(envelope, visitor);
+        } else {
+            packed.visit(envelope, item -> {
+                if (!removed.contains(item)) {
+                    visitor.visit(item);
+                }
+            });
+        }
+        if (overlay.size() > 0) {
+            for (T item : overlay.query(envelope)) {
+                visitor.visit(item);
+            }
+        }
+    }
+
+    @Override
+    public List<T> query(Envelope envelope) {
+        List<T> result = new ArrayList<>();
+        visit(envelope, result::add);
+        return result;
+    }
+
+    @Override
+    public void query(Envelope envelope, ItemVisitor visitor) {
+        visit(envelope, visitor::visitItem);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PackedSpatialIndex %s, %d removed, overlay: %s", packed, removed.size(), overlay);
+    }
+}
@@ -0,0 +1,13 @@
+package org.opentripplanner.common.pqueue;
+
+/**
+ * An element which remembers its position in an IndexedFourAryHeap, so that it can be removed or re-keyed without
+ * searching the heap. The position is only meaningful to the heap, which checks it before use: an element may carry
+ * a stale position, for instance when it was cloned from an element in the heap.
+ */
+public interface HeapElement {
+
+    int getHeapIndex();
+
+    void setHeapIndex(int heapIndex);
+}
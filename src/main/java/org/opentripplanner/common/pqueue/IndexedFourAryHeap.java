@@ -0,0 +1,194 @@
+package org.opentripplanner.common.pqueue;
+
+import java.util.Arrays;
+
+/**
+ * A min priority queue stored as a 4-ary heap, where each element knows its position in the heap. Unlike BinHeap,
+ * this supports removing an element and decreasing its key in logarithmic time, so a search can remove the states
+ * that have been dominated by a newer one instead of leaving them in the queue until they are visited.
+ *
+ * The 4-ary layout makes the heap shallower than a binary heap, and the four children of a node are contiguous in
+ * the priority array, which makes the sift-downs of extract_min cheaper.
+ *
+ * An element can only be in one IndexedFourAryHeap at a time.
+ */
+public class IndexedFourAryHeap<T extends HeapElement> implements OTPPriorityQueue<T> {
+
+    private static final int ARITY = 4;
+
+    private static final double GROW_FACTOR = 2.0;
+
+    private double[] prio;
+
+    private HeapElement[] elem;
+
+    private int size;
+
+    public IndexedFourAryHeap() {
+        this(1000);
+    }
+
+    public IndexedFourAryHeap(int capacity) {
+        if (capacity < 10) capacity = 10;
+        prio = new double[capacity];
+        elem = new HeapElement[capacity];
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean empty() {
+        return size <= 0;
+    }
+
+    @Override
+    public double peek_min_key() {
+        if (size > 0)
+            return prio[0];
+        else
+            throw new IllegalStateException("An empty queue does not have a minimum key.");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T peek_min() {
+        return size > 0 ? (T) elem[0] : null;
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(elem, 0, size, null);
+        size = 0;
+    }
+
+    /** @return true if the element is in this heap. */
+    public boolean contains(T e) {
+        int i = e.getHeapIndex();
+        return i >= 0 && i < size && elem[i] == e;
+    }
+
+    @Override
+    public void insert(T e, double p) {
+        if (size == elem.length) {
+            int capacity = (int) (elem.length * GROW_FACTOR);
+            prio = Arrays.copyOf(prio, capacity);
+            elem = Arrays.copyOf(elem, capacity);
+        }
+        siftUp(size++, e, p);
+    }
+
+    /**
+     * Insert the element, or lower its priority if it is already in the heap with a higher one.
+     */
+    public void insert_or_dec_key(T e, double p) {
+        if (!contains(e)) {
+            insert(e, p);
+        } else if (p < prio[e.getHeapIndex()]) {
+            siftUp(e.getHeapIndex(), e, p);
+        }
+    }
+
+    /**
+     * Put a new element in the place of an old one, for instance a state replacing the state it dominates. This is a
+     * decrease-key when the new priority is lower. If the old element is not in the heap, the new one is inserted.
+     */
+    public void replace(T old, T e, double p) {
+        if (!contains(old)) {
+            insert(e, p);
+            return;
+        }
+        int i = old.getHeapIndex();
+        old.setHeapIndex(-1);
+        if (p < prio[i]) {
+            siftUp(i, e, p);
+        } else {
+            siftDown(i, e, p);
+        }
+    }
+
+    /** @return true if the element was in the heap and has been removed. */
+    public boolean remove(T e) {
+        if (!contains(e)) {
+            return false;
+        }
+        int i = e.getHeapIndex();
+        e.setHeapIndex(-1);
+        size--;
+        if (i < size) {
+            HeapElement last = elem[size];
+            double lastPrio = prio[size];
+            elem[size] = null;
+            if (lastPrio < prio[i]) {
+                siftUp(i, last, lastPrio);
+            } else {
+                siftDown(i, last, lastPrio);
+            }
+        } else {
+            elem[size] = null;
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T extract_min() {
+        if (size <= 0)
+            return null;
+        HeapElement minElem = elem[0];
+        minElem.setHeapIndex(-1);
+        size--;
+        if (size > 0) {
+            HeapElement last = elem[size];
+            double lastPrio = prio[size];
+            elem[size] = null;
+            siftDown(0, last, lastPrio);
+        } else {
+            elem[0] = null;
+        }
+        return (T) minElem;
+    }
+
+    /** Move the hole at position i up until the element fits in it. */
+    private void siftUp(int i, HeapElement e, double p) {
+        while (i > 0) {
+            int parent = (i - 1) / ARITY;
+            if (prio[parent] <= p) break;
+            move(parent, i);
+            i = parent;
+        }
+        place(i, e, p);
+    }
+
+    /** Move the hole at position i down until the element fits in it. */
+    private void siftDown(int i, HeapElement e, double p) {
+        while (true) {
+            int first = i * ARITY + 1;
+            if (first >= size) break;
+            int last = Math.min(first + ARITY, size);
+            int child = first;
+            for (int c = first + 1; c < last; c++) {
+                if (prio[c] < prio[child]) child = c;
+            }
+            if (prio[child] >= p) break;
+            move(child, i);
+            i = child;
+        }
+        place(i, e, p);
+    }
+
+    private void move(int from, int to) {
+        elem[to] = elem[from];
+        prio[to] = prio[from];
+        elem[to].setHeapIndex(to);
+    }
+
+    private void place(int i, HeapElement e, double p) {
+        elem[i] = e;
+        prio[i] = p;
+        e.setHeapIndex(i);
+    }
+}
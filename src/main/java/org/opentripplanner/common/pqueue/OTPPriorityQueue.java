@@ -0,0 +1,23 @@
+package org.opentripplanner.common.pqueue;
+
+/**
+ * A min priority queue of elements with double priorities, as used by the shortest path searches.
+ */
+public interface OTPPriorityQueue<T> {
+
+    void insert(T e, double p);
+
+    /** @return the element with the lowest priority, which is removed from the queue, or null if it is empty. */
+    T extract_min();
+
+    T peek_min();
+
+    double peek_min_key();
+
+    boolean empty();
+
+    int size();
+
+    /** Empties the queue in one operation. */
+    void reset();
+}
@@ -4,10 +4,13 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.collect.Lists;
 import org.opentripplanner.common.walk.WalkComfortCalculator;
 import org.opentripplanner.graph_builder.model.GtfsBundle;
+import org.opentripplanner.graph_builder.model.StreetGraphInputs;
+import org.opentripplanner.graph_builder.module.ContractionHierarchyModule;
 import org.opentripplanner.graph_builder.module.DirectTransferGenerator;
 import org.opentripplanner.graph_builder.module.EmbedConfig;
 import org.opentripplanner.graph_builder.module.GraphBuilderModuleSummary;
 import org.opentripplanner.graph_builder.module.GtfsModule;
+import org.opentripplanner.graph_builder.module.LandmarkModule;
 import org.opentripplanner.graph_builder.module.PruneFloatingIslands;
 import org.opentripplanner.graph_builder.module.StreetLinkerModule;
 import org.opentripplanner.graph_builder.module.TransitToTaggedStopsModule;
@@ -49,6 +52,11 @@ public class GraphBuilder implements Runnable {
 
     public static final String BUILDER_CONFIG_FILENAME = "build-config.json";
 
+    public static final String GRAPH_FILENAME = "Graph.obj";
+
+    /** The street-only graph saved by --buildStreet and loaded by --loadStreet. */
+    public static final String STREET_GRAPH_FILENAME = "streetGraph.obj";
+
     private List<GraphBuilderModule> _graphBuilderModules = new ArrayList<GraphBuilderModule>();
 
     private final File graphFile;
@@ -65,7 +73,11 @@ public class GraphBuilder implements Runnable {
     public boolean serializeGraph = true;
 
     public GraphBuilder(File path, GraphBuilderParameters builderParams) {
-        graphFile = new File(path, "Graph.obj");
+        this(path, GRAPH_FILENAME, builderParams);
+    }
+
+    public GraphBuilder(File path, String graphFileName, GraphBuilderParameters builderParams) {
+        graphFile = new File(path, graphFileName);
         graph.stopClusterMode = builderParams.stopClusterMode;
     }
 
@@ -86,7 +98,7 @@ public class GraphBuilder implements Runnable {
         try {
             graph = Graph.load(new File(baseGraph));
         } catch (Exception e) {
-            throw new RuntimeException("error loading base graph");
+            throw new RuntimeException("error loading base graph", e);
         }
     }
 
@@ -182,7 +194,12 @@ public class GraphBuilder implements Runnable {
         builderConfig = OTPMain.loadJson(new File(dir, BUILDER_CONFIG_FILENAME));
         GraphBuilderParameters builderParams = new GraphBuilderParameters(builderConfig);
 
-        GraphBuilder graphBuilder = new GraphBuilder(dir, builderParams);
+        if (params.buildStreet && params.loadStreet) {
+            LOG.error("Use either --buildStreet to build the street graph or --loadStreet to reuse it, not both.");
+            return null;
+        }
+        GraphBuilder graphBuilder = new GraphBuilder(dir,
+                params.buildStreet ? STREET_GRAPH_FILENAME : GRAPH_FILENAME, builderParams);
 
         // Load the router config JSON to fail fast, but we will only apply it later when a router starts up
         routerConfig = OTPMain.loadJson(new File(dir, Router.ROUTER_CONFIG_FILENAME));
@@ -211,12 +228,32 @@ public class GraphBuilder implements Runnable {
             }
         }
         boolean hasOSM  = builderParams.streets && !osmFiles.isEmpty();
-        boolean hasGTFS = builderParams.transit && !gtfsFiles.isEmpty();
+        boolean hasGTFS = builderParams.transit && !gtfsFiles.isEmpty() && !params.buildStreet;
+        List<File> streetInputFiles = new ArrayList<>(osmFiles);
+        if (demFile != null) {
+            streetInputFiles.add(demFile);
+        }
+        StreetGraphInputs streetInputs = new StreetGraphInputs(streetInputFiles);
+        if (params.buildStreet) {
+            if ( ! hasOSM) {
+                LOG.error("Found no OSM input from which to build a street graph in {}", dir);
+                return null;
+            }
+            graphBuilder.getGraph().putService(StreetGraphInputs.class, streetInputs);
+        }
+        if (params.loadStreet) {
+            if ( ! loadStreetGraph(graphBuilder, new File(dir, STREET_GRAPH_FILENAME), streetInputs)) {
+                return null;
+            }
+            graphBuilder.getGraph().stopClusterMode = builderParams.stopClusterMode;
+            // The streets (and their elevation) come from the street graph, do not build them again.
+            hasOSM = graphBuilder.getGraph().hasStreets;
+        }
         if ( ! ( hasOSM || hasGTFS )) {
             LOG.error("Found no input files from which to build a graph in {}", dir);
             return null;
         }
-        if ( hasOSM ) {
+        if ( hasOSM && ! params.loadStreet ) {
             List<OpenStreetMapProvider> osmProviders = Lists.newArrayList();
             for (File osmFile : osmFiles) {
                 OpenStreetMapProvider osmProvider = new AnyFileBasedOpenStreetMapProviderImpl(osmFile);
@@ -264,13 +301,16 @@ public class GraphBuilder implements Runnable {
                 graphBuilder.addModule(new TransitToTaggedStopsModule());
             }
         }
-        // This module is outside the hasGTFS conditional block because it also links things like bike rental
-        // which need to be handled even when there's no transit.
-        StreetLinkerModule streetLinkerModule = new StreetLinkerModule();
-        streetLinkerModule.setAddExtraEdgesToAreas(builderParams.areaVisibility);
-        graphBuilder.addModule(streetLinkerModule);
+        if ( ! params.buildStreet) {
+            // This module is outside the hasGTFS conditional block because it also links things like bike rental
+            // which need to be handled even when there's no transit.
+            StreetLinkerModule streetLinkerModule = new StreetLinkerModule();
+            streetLinkerModule.setAddExtraEdgesToAreas(builderParams.areaVisibility);
+            graphBuilder.addModule(streetLinkerModule);
+        }
         // Load elevation data and apply it to the streets.
         // We want to do run this module after loading the OSM street network but before finding transfers.
+        // Edges split when linking do not get elevation data in either order, so a street graph can include it.
         ElevationGridCoverageFactory gcf = null;
         if (builderParams.elevationBucket != null) {
             // Download the elevation tiles from an Amazon S3 bucket
@@ -289,7 +329,7 @@ public class GraphBuilder implements Runnable {
             // Load the elevation from a file in the graph inputs directory
             gcf = new GeotiffGridCoverageFactoryImpl(demFile);
         }
-        if (gcf != null) {
+        if (gcf != null && ! params.loadStreet) {
             graphBuilder.addModule(
                 new ElevationModule(
                     gcf,
@@ -312,6 +352,18 @@ public class GraphBuilder implements Runnable {
                 ));
             }
         }
+        if (params.buildStreet) {
+            // Everything below depends on the transit data or on the linked street network.
+            graphBuilder.serializeGraph = true;
+            return graphBuilder;
+        }
+        if (hasOSM && builderParams.landmarks > 0) {
+            // Landmark costs depend on the final street edges, so this must come after linking and elevation.
+            graphBuilder.addModule(new LandmarkModule(builderParams.landmarks, builderParams.landmarkProfiles));
+        }
+        if (hasOSM && builderParams.contractionHierarchy) {
+            graphBuilder.addModule(new ContractionHierarchyModule());
+        }
         graphBuilder.addModule(new EmbedConfig(builderConfig, routerConfig));
         if (builderParams.htmlAnnotations) {
             graphBuilder.addModule(new AnnotationsToHTML(params.build, builderParams.maxHtmlAnnotationsPerFile));
@@ -320,6 +372,39 @@ public class GraphBuilder implements Runnable {
         return graphBuilder;
     }
 
+    /**
+     * Load the street graph saved by an earlier build with --buildStreet as the base of this build, checking that it
+     * was built by this version of OTP from the same OSM and elevation files.
+     *
+     * @return false if the street graph cannot be used, after logging why.
+     */
+    private static boolean loadStreetGraph(GraphBuilder graphBuilder, File streetGraphFile,
+            StreetGraphInputs streetInputs) {
+        if ( ! streetGraphFile.canRead()) {
+            LOG.error("Cannot read street graph {}, build it first with --buildStreet.", streetGraphFile);
+            return false;
+        }
+        try {
+            // This fails when the street graph was built with a different version of OTP.
+            graphBuilder.setBaseGraph(streetGraphFile.getPath());
+        } catch (RuntimeException e) {
+            LOG.error("Cannot load street graph {}, rebuild it with --buildStreet.", streetGraphFile, e);
+            return false;
+        }
+        StreetGraphInputs baseInputs = graphBuilder.getGraph().getService(StreetGraphInputs.class);
+        if (baseInputs == null) {
+            LOG.error("Graph {} was not built with --buildStreet, rebuild it.", streetGraphFile);
+            return false;
+        }
+        if ( ! baseInputs.equals(streetInputs)) {
+            LOG.error("Street graph {} was built from {} but the street inputs are now {}, rebuild it with --buildStreet.",
+                    streetGraphFile, baseInputs, streetInputs);
+            return false;
+        }
+        LOG.info("Adding transit to street graph {} built from {}.", streetGraphFile, baseInputs);
+        return true;
+    }
+
     /**
      * Represents the different types of files that might be present in a router / graph build directory.
      * We want to detect even those that are not graph builder inputs so we can effectively warn when unrecognized file
@@ -341,7 +426,7 @@ public class GraphBuilder implements Runnable {
             if (name.endsWith(".osm")) return OSM;
             if (name.endsWith(".osm.xml")) return OSM;
             if (name.endsWith(".tif") || name.endsWith(".tiff")) return DEM; // Digital elevation model (elevation raster)
-            if (name.equals("Graph.obj")) return GRAPH;
+            if (name.equals(GRAPH_FILENAME) || name.equals(STREET_GRAPH_FILENAME)) return GRAPH;
             if (name.equals(GraphBuilder.BUILDER_CONFIG_FILENAME) || name.equals(Router.ROUTER_CONFIG_FILENAME)) {
                 return CONFIG;
             }
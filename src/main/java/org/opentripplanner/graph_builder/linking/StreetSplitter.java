@@ -12,7 +12,7 @@ import gnu.trove.map.TIntDoubleMap;
 import gnu.trove.map.hash.TIntDoubleHashMap;
 import jersey.repackaged.com.google.common.collect.Lists;
 import org.opentripplanner.common.geometry.GeometryUtils;
-import org.opentripplanner.common.geometry.HashGridSpatialIndex;
+import org.opentripplanner.common.geometry.PackedSpatialIndex;
 import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
 import org.opentripplanner.common.model.GenericLocation;
 import org.opentripplanner.common.model.P2;
@@ -113,7 +113,7 @@ public class StreetSplitter {
 
     private Graph graph;
 
-    private HashGridSpatialIndex<Edge> idx;
+    private PackedSpatialIndex<Edge> idx;
 
     private SpatialIndex transitStopIndex;
 
@@ -129,12 +129,12 @@ public class StreetSplitter {
      * newly-created split edges in this street splitter won't show up in the index of the other street splitters
      * (and potentially StreetVertexIndexServices).
      *
-     * @param hashGridSpatialIndex If not null this index is used instead of creating new one
+     * @param edgeIndex If not null this index is used instead of creating new one
      * @param transitStopIndex Index of all transitStops which is generated in {@link org.opentripplanner.routing.impl.StreetVertexIndexServiceImpl}
      */
     public StreetSplitter(
         Graph graph,
-        HashGridSpatialIndex<Edge> hashGridSpatialIndex,
+        PackedSpatialIndex<Edge> edgeIndex,
         SpatialIndex transitStopIndex
     ) {
         this.graph = graph;
@@ -146,17 +146,17 @@ public class StreetSplitter {
         this.transitStopIndex = transitStopIndex;
 
         //We build a spatial index if it isn't provided
-        if (hashGridSpatialIndex == null) {
-            // build a nice private spatial index, since we're adding and removing edges
-            // place a lock while doing this to ensure thread-safe writes to the index
-            synchronized (this) {
-                idx = new HashGridSpatialIndex<>();
-                for (StreetEdge se : Iterables.filter(graph.getEdges(), StreetEdge.class)) {
-                    idx.insert(se.getGeometry(), se);
-                }
+        if (edgeIndex == null) {
+            // build a nice private spatial index, the edges added while splitting go to its mutable overlay
+            List<Envelope> envelopes = new ArrayList<>();
+            List<StreetEdge> edges = new ArrayList<>();
+            for (StreetEdge se : Iterables.filter(graph.getEdges(), StreetEdge.class)) {
+                envelopes.add(se.getGeometry().getEnvelopeInternal());
+                edges.add(se);
             }
+            idx = new PackedSpatialIndex<>(envelopes, edges);
         } else {
-            idx = hashGridSpatialIndex;
+            idx = edgeIndex;
         }
 
     }
@@ -176,30 +176,62 @@ public class StreetSplitter {
      * Link all relevant vertices to the street network.
      * This is to be called only during graph building in order to destructively split edges in order to create
      * permanent edges.
+     *
+     * Finding the closest edges is by far the most expensive part of linking and does not modify the graph, so it is
+     * done for all vertices in parallel. The edges are then split serially in the same order as before. A vertex whose
+     * closest edges were already split by an earlier vertex (that is, two stops next to the same street) searches
+     * again at that point, so the resulting split edges are the same as when linking each vertex in turn.
      */
     public void linkAllStationsToGraph() {
         int linksMade = 0;
+        int relinked = 0;
         LOG.info("Linking the street network to transit stops, static bike rentals and static bike parks.");
+        List<Vertex> vertices = new ArrayList<>();
         for (Vertex v : graph.getVertices()) {
             if (v instanceof TransitStop || v instanceof BikeRentalStationVertex || v instanceof BikeParkVertex) {
                 boolean alreadyLinked = v.getOutgoing().stream().anyMatch(e -> e instanceof StreetTransitLink);
                 if (alreadyLinked) continue;
-                if (!linkToClosestWalkableEdge(v, DESTRUCTIVE_SPLIT, false)) {
-                    if (v instanceof TransitStop)
-                        LOG.warn(graph.addBuilderAnnotation(new StopUnlinked((TransitStop) v)));
-                    else if (v instanceof BikeRentalStationVertex)
-                        LOG.warn(graph.addBuilderAnnotation(new BikeRentalStationUnlinked((BikeRentalStationVertex) v)));
-                    else if (v instanceof BikeParkVertex)
-                        LOG.warn(graph.addBuilderAnnotation(new BikeParkUnlinked((BikeParkVertex) v)));
-                } else {
-                    linksMade++;
-                    if (linksMade % 5000 == 0) {
-                        LOG.info("Made {} links from street network to transit stops, static bike rentals or static bike parks.", linksMade);
-                    }
+                vertices.add(v);
+            }
+        }
+        final TraverseModeSet walk = new TraverseModeSet(TraverseMode.WALK);
+        List<List<StreetEdge>> closestEdges = vertices.parallelStream()
+            .map(v -> findClosestEdges(v, walk, false, new TIntDoubleHashMap()))
+            .collect(Collectors.toList());
+
+        Set<StreetEdge> linkedEdges = new HashSet<>();
+        for (int i = 0; i < vertices.size(); i++) {
+            Vertex v = vertices.get(i);
+            List<StreetEdge> bestEdges = closestEdges.get(i);
+            closestEdges.set(i, null);
+            boolean linked;
+            if (bestEdges.isEmpty()) {
+                // Nothing within the search radius, splitting other edges cannot change that.
+                linked = false;
+            } else if (bestEdges.stream().anyMatch(linkedEdges::contains)) {
+                relinked++;
+                linked = linkToClosestWalkableEdge(v, DESTRUCTIVE_SPLIT, false);
+                linkedEdges.addAll(bestEdges);
+            } else {
+                linkToEdges(v, bestEdges, null, DESTRUCTIVE_SPLIT, false);
+                linkedEdges.addAll(bestEdges);
+                linked = true;
+            }
+            if (!linked) {
+                if (v instanceof TransitStop)
+                    LOG.warn(graph.addBuilderAnnotation(new StopUnlinked((TransitStop) v)));
+                else if (v instanceof BikeRentalStationVertex)
+                    LOG.warn(graph.addBuilderAnnotation(new BikeRentalStationUnlinked((BikeRentalStationVertex) v)));
+                else if (v instanceof BikeParkVertex)
+                    LOG.warn(graph.addBuilderAnnotation(new BikeParkUnlinked((BikeParkVertex) v)));
+            } else {
+                linksMade++;
+                if (linksMade % 5000 == 0) {
+                    LOG.info("Made {} links from street network to transit stops, static bike rentals or static bike parks.", linksMade);
                 }
             }
         }
-        LOG.info("{} total links made.", linksMade);
+        LOG.info("{} total links made ({} searched again after nearby splits).", linksMade, relinked);
     }
 
     /**
@@ -266,67 +298,23 @@ public class StreetSplitter {
         final boolean destructiveSplitting,
         boolean createSemiPermanentEdges
     ) {
-        // find nearby street edges
-        // TODO: we used to use an expanding-envelope search, which is more efficient in
-        // dense areas. but first let's see how inefficient this is. I suspect it's not too
-        // bad and the gains in simplicity are considerable.
-        final double radiusDeg = SphericalDistanceLibrary.metersToDegrees(MAX_SEARCH_RADIUS_METERS);
-
-        Envelope env = new Envelope(vertex.getCoordinate());
-
-        // Perform a simple local equirectangular projection, so distances are expressed in degrees latitude.
-        final double xscale = Math.cos(vertex.getLat() * Math.PI / 180);
-
-        // Expand more in the longitude direction than the latitude direction to account for converging meridians.
-        env.expandBy(radiusDeg / xscale, radiusDeg);
-
-        final double DUPLICATE_WAY_EPSILON_DEGREES = SphericalDistanceLibrary.metersToDegrees(DUPLICATE_WAY_EPSILON_METERS);
-
-        // We sort the list of candidate edges by distance to the stop
-        // This should remove any issues with things coming out of the spatial index in different orders
-        // Then we link to everything that is within DUPLICATE_WAY_EPSILON_METERS of the best distance
-        // so that we capture back edges and duplicate ways.
-        List<StreetEdge> candidateEdges = idx.query(env).stream()
-            .filter(
-                streetEdge -> streetEdge instanceof StreetEdge &&
-                    // Do not find SemiPermanentPartialStreetEdges if creating new SemiPermanentPartialStreetEdges.
-                    // Use only permanent StreetEdges instead
-                    (!createSemiPermanentEdges || !(streetEdge instanceof SemiPermanentPartialStreetEdge))
-            )
-            .map(edge -> (StreetEdge) edge)
-            // note: not filtering by radius here as distance calculation is expensive
-            // we do that below.
-            .filter(edge -> edge.canTraverse(traverseModeSet) &&
-                // only link to edges still in the graph.
-                edge.getToVertex().getIncoming().contains(edge))
-            .collect(Collectors.toList());
-
-        // Make a map of distances to all edges.
         final TIntDoubleMap distances = new TIntDoubleHashMap();
-        for (StreetEdge e : candidateEdges) {
-            distances.put(e.getId(), distance(vertex, e, xscale));
-        }
-
-        // Sort the list.
-        Collections.sort(candidateEdges, (o1, o2) -> {
-            double diff = distances.get(o1.getId()) - distances.get(o2.getId());
-            // A Comparator must return an integer but our distances are doubles.
-            if (diff < 0) return -1;
-            if (diff > 0) return 1;
-            return 0;
-        });
+        List<StreetEdge> bestEdges = findClosestEdges(vertex, traverseModeSet, createSemiPermanentEdges, distances);
 
         // find the closest candidate edges
-        if (candidateEdges.isEmpty() || distances.get(candidateEdges.get(0).getId()) > radiusDeg) {
+        if (bestEdges.isEmpty()) {
             // We only link to stops if we are searching for origin/destination and for that we need transitStopIndex.
             if (destructiveSplitting || transitStopIndex == null) {
                 return false;
             }
             LOG.debug("No street edge was found for {}", vertex);
+            final double radiusDeg = SphericalDistanceLibrary.metersToDegrees(MAX_SEARCH_RADIUS_METERS);
+            final double xscale = Math.cos(vertex.getLat() * Math.PI / 180);
+            final double DUPLICATE_WAY_EPSILON_DEGREES = SphericalDistanceLibrary.metersToDegrees(DUPLICATE_WAY_EPSILON_METERS);
             // We search for closest stops (since this is only used in origin/destination linking if no edges were found)
             // in the same way the closest edges are found.
             List<TransitStop> candidateStops = new ArrayList<>();
-            transitStopIndex.query(env).forEach(candidateStop ->
+            transitStopIndex.query(searchEnvelope(vertex)).forEach(candidateStop ->
                 candidateStops.add((TransitStop) candidateStop)
             );
 
@@ -365,36 +353,128 @@ public class StreetSplitter {
                 return true;
             }
         } else {
+            linkToEdges(vertex, bestEdges, options, destructiveSplitting, createSemiPermanentEdges);
+            return true;
+        }
+    }
 
-            // find the best edges
-            List<StreetEdge> bestEdges = Lists.newArrayList();
-
-            // add edges until there is a break of epsilon meters.
-            // we do this to enforce determinism. if there are a lot of edges that are all extremely close to each other,
-            // we want to be sure that we deterministically link to the same ones every time. Any hard cutoff means things can
-            // fall just inside or beyond the cutoff depending on floating-point operations.
-            int i = 0;
-            do {
-                bestEdges.add(candidateEdges.get(i++));
-            } while (i < candidateEdges.size() &&
-                distances.get(candidateEdges.get(i).getId()) - distances
-                    .get(candidateEdges.get(i - 1).getId()) < DUPLICATE_WAY_EPSILON_DEGREES);
-
-            for (StreetEdge edge : bestEdges) {
-                linkToEdge(vertex, edge, xscale, options, destructiveSplitting, createSemiPermanentEdges);
-            }
+    /** The envelope around a vertex in which street edges and stops are considered for linking. */
+    private static Envelope searchEnvelope(Vertex vertex) {
+        final double radiusDeg = SphericalDistanceLibrary.metersToDegrees(MAX_SEARCH_RADIUS_METERS);
 
-            // Warn if a linkage was made, but the linkage was suspiciously long.
-            if (vertex instanceof TransitStop) {
-                double distanceDegreesLatitude = distances.get(candidateEdges.get(0).getId());
-                int distanceMeters = (int)SphericalDistanceLibrary.degreesLatitudeToMeters(distanceDegreesLatitude);
-                if (distanceMeters > WARNING_DISTANCE_METERS) {
-                    // Registering an annotation but not logging because tests produce thousands of these warnings.
-                    graph.addBuilderAnnotation(new StopLinkedTooFar((TransitStop)vertex, distanceMeters));
-                }
+        Envelope env = new Envelope(vertex.getCoordinate());
+
+        // Perform a simple local equirectangular projection, so distances are expressed in degrees latitude.
+        final double xscale = Math.cos(vertex.getLat() * Math.PI / 180);
+
+        // Expand more in the longitude direction than the latitude direction to account for converging meridians.
+        env.expandBy(radiusDeg / xscale, radiusDeg);
+        return env;
+    }
+
+    /**
+     * Find the street edges a vertex should be linked to: the closest edge within the search radius that allows the
+     * given modes, plus all edges that are within DUPLICATE_WAY_EPSILON_METERS of each other from there on. This does
+     * not modify the graph or the spatial index, so it may be called from several threads as long as no edges are
+     * being split at the same time.
+     *
+     * @param distances receives the projected distance from the vertex to each candidate edge, keyed on edge ID.
+     * @return the edges to link to, sorted by distance, or an empty list if there is no edge within the radius.
+     */
+    private List<StreetEdge> findClosestEdges(
+        Vertex vertex,
+        TraverseModeSet traverseModeSet,
+        boolean createSemiPermanentEdges,
+        TIntDoubleMap distances
+    ) {
+        // find nearby street edges
+        // TODO: we used to use an expanding-envelope search, which is more efficient in
+        // dense areas. but first let's see how inefficient this is. I suspect it's not too
+        // bad and the gains in simplicity are considerable.
+        final double radiusDeg = SphericalDistanceLibrary.metersToDegrees(MAX_SEARCH_RADIUS_METERS);
+
+        Envelope env = searchEnvelope(vertex);
+
+        // Perform a simple local equirectangular projection, so distances are expressed in degrees latitude.
+        final double xscale = Math.cos(vertex.getLat() * Math.PI / 180);
+
+        final double DUPLICATE_WAY_EPSILON_DEGREES = SphericalDistanceLibrary.metersToDegrees(DUPLICATE_WAY_EPSILON_METERS);
+
+        // We sort the list of candidate edges by distance to the stop
+        // This should remove any issues with things coming out of the spatial index in different orders
+        // Then we link to everything that is within DUPLICATE_WAY_EPSILON_METERS of the best distance
+        // so that we capture back edges and duplicate ways.
+        List<StreetEdge> candidateEdges = new ArrayList<>();
+        idx.visit(env, edge -> {
+            if (edge instanceof StreetEdge &&
+                // Do not find SemiPermanentPartialStreetEdges if creating new SemiPermanentPartialStreetEdges.
+                // Use only permanent StreetEdges instead
+                (!createSemiPermanentEdges || !(edge instanceof SemiPermanentPartialStreetEdge)) &&
+                // note: not filtering by radius here as distance calculation is expensive
+                // we do that below.
+                ((StreetEdge) edge).canTraverse(traverseModeSet) &&
+                // only link to edges still in the graph.
+                edge.getToVertex().getIncoming().contains(edge)) {
+                candidateEdges.add((StreetEdge) edge);
             }
+        });
 
-            return true;
+        // Make a map of distances to all edges.
+        for (StreetEdge e : candidateEdges) {
+            distances.put(e.getId(), distance(vertex, e, xscale));
+        }
+
+        // Sort the list.
+        Collections.sort(candidateEdges, (o1, o2) -> {
+            double diff = distances.get(o1.getId()) - distances.get(o2.getId());
+            // A Comparator must return an integer but our distances are doubles.
+            if (diff < 0) return -1;
+            if (diff > 0) return 1;
+            return 0;
+        });
+
+        // find the best edges
+        List<StreetEdge> bestEdges = Lists.newArrayList();
+        if (candidateEdges.isEmpty() || distances.get(candidateEdges.get(0).getId()) > radiusDeg) {
+            return bestEdges;
+        }
+
+        // add edges until there is a break of epsilon meters.
+        // we do this to enforce determinism. if there are a lot of edges that are all extremely close to each other,
+        // we want to be sure that we deterministically link to the same ones every time. Any hard cutoff means things can
+        // fall just inside or beyond the cutoff depending on floating-point operations.
+        int i = 0;
+        do {
+            bestEdges.add(candidateEdges.get(i++));
+        } while (i < candidateEdges.size() &&
+            distances.get(candidateEdges.get(i).getId()) - distances
+                .get(candidateEdges.get(i - 1).getId()) < DUPLICATE_WAY_EPSILON_DEGREES);
+        return bestEdges;
+    }
+
+    /**
+     * Link a vertex to the edges found by findClosestEdges, splitting them where necessary.
+     */
+    private void linkToEdges(
+        Vertex vertex,
+        List<StreetEdge> bestEdges,
+        RoutingRequest options,
+        final boolean destructiveSplitting,
+        boolean createSemiPermanentEdges
+    ) {
+        final double xscale = Math.cos(vertex.getLat() * Math.PI / 180);
+        for (StreetEdge edge : bestEdges) {
+            linkToEdge(vertex, edge, xscale, options, destructiveSplitting, createSemiPermanentEdges);
+        }
+
+        // Warn if a linkage was made, but the linkage was suspiciously long.
+        if (vertex instanceof TransitStop) {
+            double distanceDegreesLatitude = distance(vertex, bestEdges.get(0), xscale);
+            int distanceMeters = (int)SphericalDistanceLibrary.degreesLatitudeToMeters(distanceDegreesLatitude);
+            if (distanceMeters > WARNING_DISTANCE_METERS) {
+                // Registering an annotation but not logging because tests produce thousands of these warnings.
+                graph.addBuilderAnnotation(new StopLinkedTooFar((TransitStop)vertex, distanceMeters));
+            }
         }
     }
 
@@ -586,7 +666,7 @@ public class StreetSplitter {
         if (destructiveSplitting || createSemiPermanentEdges) {
             // update indices of new edges
             synchronized (this) {
-                // Note: Write operations are not synchronized in HashGridSpatialIndex, hence the lock.
+                // Note: Write operations are not synchronized in PackedSpatialIndex, hence the lock.
                 idx.insert(edges.first.getGeometry(), edges.first);
                 idx.insert(edges.second.getGeometry(), edges.second);
 
@@ -0,0 +1,47 @@
+package org.opentripplanner.graph_builder.model;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Identifies the OSM and elevation files a street graph was built from, so that a graph built with --buildStreet is
+ * only reused by --loadStreet when those files have not changed. Files are compared by name, size and modification
+ * time rather than by content, which would mean reading many gigabytes on every transit build.
+ *
+ * This is stored in the graph as a service, and therefore also ends up in the full graph built on top of it.
+ */
+public class StreetGraphInputs implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> files = new ArrayList<>();
+
+    public StreetGraphInputs(List<File> inputFiles) {
+        for (File file : inputFiles) {
+            files.add(String.format("%s (%d bytes, modified %d)", file.getName(), file.length(), file.lastModified()));
+        }
+        Collections.sort(files);
+    }
+
+    public List<String> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof StreetGraphInputs && files.equals(((StreetGraphInputs) other).files);
+    }
+
+    @Override
+    public int hashCode() {
+        return files.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return files.toString();
+    }
+}
@@ -0,0 +1,51 @@
+package org.opentripplanner.graph_builder.module;
+
+import org.opentripplanner.graph_builder.services.GraphBuilderModule;
+import org.opentripplanner.routing.contraction.ContractionHierarchy;
+import org.opentripplanner.routing.contraction.ContractionHierarchyBuilder;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.graph.Graph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Builds a contraction hierarchy over the car-traversable street edges, so that car-only searches can be answered
+ * without a full graph search. Like the landmarks this must run after all modules that add or modify street edges.
+ */
+public class ContractionHierarchyModule implements GraphBuilderModule {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ContractionHierarchyModule.class);
+
+    public List<String> provides() {
+        return Collections.emptyList();
+    }
+
+    public List<String> getPrerequisites() {
+        return Arrays.asList("streets");
+    }
+
+    @Override
+    public void buildGraph(Graph graph, GraphBuilderModuleSummary graphBuilderModuleSummary) {
+        ContractionHierarchyBuilder builder = new ContractionHierarchyBuilder();
+        for (StreetEdge edge : graph.getStreetEdges()) {
+            if (edge.canTraverseIncludingBarrier(TraverseMode.CAR)) {
+                builder.addEdge(edge);
+            }
+        }
+        ContractionHierarchy hierarchy = builder.build();
+        LOG.info("Built car contraction hierarchy with {} nodes and {} arcs.", hierarchy.getNodeCount(),
+                hierarchy.getArcCount());
+        graph.putService(ContractionHierarchy.class, hierarchy);
+    }
+
+    @Override
+    public void checkInputs() {
+        //no inputs
+    }
+
+}
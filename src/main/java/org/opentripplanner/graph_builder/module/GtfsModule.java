@@ -148,6 +148,7 @@ public class GtfsModule implements GraphBuilderModule {
 
                 hf.setStopContext(stopContext);
                 hf.setFareServiceFactory(fareServiceFactory);
+                hf.setGraphBuilderModuleSummary(graphBuilderModuleSummary);
                 hf.setMaxStopToShapeSnapDistance(gtfsBundle.getMaxStopToShapeSnapDistance());
 
                 calendarService.addData(
@@ -0,0 +1,251 @@
+package org.opentripplanner.graph_builder.module;
+
+import org.opentripplanner.common.pqueue.BinHeap;
+import org.opentripplanner.graph_builder.services.GraphBuilderModule;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.landmarks.LandmarkProfile;
+import org.opentripplanner.routing.landmarks.LandmarkService;
+import org.opentripplanner.routing.landmarks.LandmarkSet;
+import org.opentripplanner.routing.vertextype.StreetVertex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Selects landmark vertices and stores the cost of the shortest path from and to each landmark for every vertex,
+ * for use by LandmarkRemainingWeightHeuristic. This must run after all modules that add or modify street edges
+ * (including elevation), since the costs are only valid for the edges present when they are computed.
+ *
+ * Landmarks are chosen by farthest-point selection: each new landmark is the vertex whose cost from the nearest
+ * landmark already chosen is largest. This tends to place landmarks around the edge of the graph, where they give
+ * the best bounds.
+ */
+public class LandmarkModule implements GraphBuilderModule {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LandmarkModule.class);
+
+    private final int nLandmarks;
+
+    private final Collection<LandmarkProfile> profiles;
+
+    public LandmarkModule(int nLandmarks, Collection<LandmarkProfile> profiles) {
+        this.nLandmarks = nLandmarks;
+        this.profiles = profiles;
+    }
+
+    public List<String> provides() {
+        return Collections.emptyList();
+    }
+
+    public List<String> getPrerequisites() {
+        return Arrays.asList("streets");
+    }
+
+    @Override
+    public void buildGraph(Graph graph, GraphBuilderModuleSummary graphBuilderModuleSummary) {
+        LandmarkService service = new LandmarkService();
+        Vertex[] vertices = graph.getVertices().toArray(new Vertex[0]);
+        for (LandmarkProfile profile : profiles) {
+            GraphBuilderTaskSummary profileTask = graphBuilderModuleSummary.addSubTask(
+                String.format("Compute %s landmarks", profile)
+            );
+            LOG.info(profileTask.start());
+            LandmarkSet landmarkSet = new Builder(vertices, profile).build(nLandmarks);
+            if (landmarkSet == null) {
+                LOG.warn("No street vertices usable for {} landmarks.", profile);
+            } else {
+                service.put(landmarkSet);
+                LOG.info("Computed {} {} landmarks for {} vertices.", landmarkSet.getLandmarkCount(), profile,
+                        landmarkSet.getVertexCount());
+            }
+            LOG.info(profileTask.finish());
+        }
+        graph.putService(LandmarkService.class, service);
+    }
+
+    @Override
+    public void checkInputs() {
+        //no inputs
+    }
+
+    /**
+     * Holds the graph in compressed sparse row form with the costs of one profile, so the many Dijkstra searches
+     * don't need to go through edge objects.
+     */
+    static class Builder {
+
+        final Vertex[] vertices;
+        final LandmarkProfile profile;
+        final int[] outStart, outTarget, inStart, inTarget;
+        final float[] outCost, inCost;
+
+        Builder(Vertex[] vertices, LandmarkProfile profile) {
+            this.vertices = vertices;
+            this.profile = profile;
+            int n = vertices.length;
+            int maxIndex = 0;
+            for (Vertex v : vertices) {
+                maxIndex = Math.max(maxIndex, v.getIndex());
+            }
+            int[] positionByIndex = new int[maxIndex + 1];
+            Arrays.fill(positionByIndex, -1);
+            for (int p = 0; p < n; p++) {
+                positionByIndex[vertices[p].getIndex()] = p;
+            }
+            outStart = new int[n + 1];
+            inStart = new int[n + 1];
+            for (int p = 0; p < n; p++) {
+                for (Edge e : vertices[p].getOutgoing()) {
+                    if (isUsable(e, positionByIndex)) {
+                        outStart[p + 1]++;
+                        inStart[positionByIndex[e.getToVertex().getIndex()] + 1]++;
+                    }
+                }
+            }
+            for (int p = 0; p < n; p++) {
+                outStart[p + 1] += outStart[p];
+                inStart[p + 1] += inStart[p];
+            }
+            int nEdges = outStart[n];
+            outTarget = new int[nEdges];
+            outCost = new float[nEdges];
+            inTarget = new int[nEdges];
+            inCost = new float[nEdges];
+            int[] inFill = Arrays.copyOf(inStart, n);
+            for (int p = 0; p < n; p++) {
+                int o = outStart[p];
+                for (Edge e : vertices[p].getOutgoing()) {
+                    if (isUsable(e, positionByIndex)) {
+                        int q = positionByIndex[e.getToVertex().getIndex()];
+                        float cost = (float) profile.edgeCost(e);
+                        outTarget[o] = q;
+                        outCost[o++] = cost;
+                        inTarget[inFill[q]] = p;
+                        inCost[inFill[q]++] = cost;
+                    }
+                }
+            }
+        }
+
+        private boolean isUsable(Edge e, int[] positionByIndex) {
+            Vertex to = e.getToVertex();
+            if (to == null || to.getIndex() >= positionByIndex.length || positionByIndex[to.getIndex()] < 0) {
+                return false;
+            }
+            double cost = profile.edgeCost(e);
+            return cost != LandmarkProfile.NOT_TRAVERSABLE && !Double.isInfinite(cost) && !Double.isNaN(cost);
+        }
+
+        LandmarkSet build(int nLandmarks) {
+            int n = vertices.length;
+            int start = findCentralStreetVertex();
+            if (start < 0) return null;
+            // The first landmark is the vertex farthest from the center, then each one is farthest from all others.
+            float[] fromStart = dijkstra(start, true);
+            float[] minFromLandmarks = fromStart;
+            int[] landmarks = new int[nLandmarks];
+            float[][] forward = new float[nLandmarks][];
+            int nChosen = 0;
+            while (nChosen < nLandmarks) {
+                int farthest = -1;
+                for (int p = 0; p < n; p++) {
+                    // Only consider vertices reachable from the center, which excludes unlinked islands.
+                    if (Float.isInfinite(fromStart[p])) continue;
+                    if (farthest < 0 || minFromLandmarks[p] > minFromLandmarks[farthest]) farthest = p;
+                }
+                if (farthest < 0 || (nChosen > 0 && minFromLandmarks[farthest] <= 0)) break;
+                landmarks[nChosen] = farthest;
+                forward[nChosen] = dijkstra(farthest, true);
+                float[] min = nChosen == 0 ? forward[0].clone() : minFromLandmarks;
+                for (int p = 0; p < n; p++) {
+                    min[p] = Math.min(min[p], forward[nChosen][p]);
+                }
+                minFromLandmarks = min;
+                nChosen++;
+            }
+            final int nL = nChosen;
+            float[][] backward = new float[nL][];
+            IntStream.range(0, nL).parallel().forEach(l -> backward[l] = dijkstra(landmarks[l], false));
+
+            // Interleave by vertex, the order in which the heuristic reads the costs.
+            float[] fromLandmark = new float[n * nL];
+            float[] toLandmark = new float[n * nL];
+            Vertex[] landmarkVertices = new Vertex[nL];
+            for (int l = 0; l < nL; l++) {
+                landmarkVertices[l] = vertices[landmarks[l]];
+                for (int p = 0; p < n; p++) {
+                    fromLandmark[p * nL + l] = forward[l][p];
+                    toLandmark[p * nL + l] = backward[l][p];
+                }
+            }
+            return new LandmarkSet(profile, vertices, landmarkVertices, fromLandmark, toLandmark);
+        }
+
+        /** @return the position of the street vertex with at least one usable edge nearest the mean coordinate. */
+        private int findCentralStreetVertex() {
+            double sumLat = 0, sumLon = 0;
+            int count = 0;
+            for (int p = 0; p < vertices.length; p++) {
+                if (vertices[p] instanceof StreetVertex && outStart[p + 1] > outStart[p]) {
+                    sumLat += vertices[p].getLat();
+                    sumLon += vertices[p].getLon();
+                    count++;
+                }
+            }
+            if (count == 0) return -1;
+            double lat = sumLat / count, lon = sumLon / count;
+            int best = -1;
+            double bestDistance = Double.POSITIVE_INFINITY;
+            for (int p = 0; p < vertices.length; p++) {
+                if (vertices[p] instanceof StreetVertex && outStart[p + 1] > outStart[p]) {
+                    double dLat = vertices[p].getLat() - lat, dLon = vertices[p].getLon() - lon;
+                    double distance = dLat * dLat + dLon * dLon;
+                    if (distance < bestDistance) {
+                        bestDistance = distance;
+                        best = p;
+                    }
+                }
+            }
+            return best;
+        }
+
+        /** @return the cost from (or to, if not forward) the source to every vertex, infinite where unreachable. */
+        float[] dijkstra(int source, boolean forward) {
+            int[] start = forward ? outStart : inStart;
+            int[] target = forward ? outTarget : inTarget;
+            float[] cost = forward ? outCost : inCost;
+            double[] dist = new double[vertices.length];
+            Arrays.fill(dist, Double.POSITIVE_INFINITY);
+            dist[source] = 0;
+            BinHeap<Integer> queue = new BinHeap<>();
+            queue.insert(source, 0);
+            while (!queue.empty()) {
+                double d = queue.peek_min_key();
+                int p = queue.extract_min();
+                // Skip stale queue entries, this vertex has already been settled at a lower cost.
+                if (d > dist[p]) continue;
+                for (int e = start[p]; e < start[p + 1]; e++) {
+                    int q = target[e];
+                    double dq = d + cost[e];
+                    if (dq < dist[q]) {
+                        dist[q] = dq;
+                        queue.insert(q, dq);
+                    }
+                }
+            }
+            float[] result = new float[dist.length];
+            for (int p = 0; p < dist.length; p++) {
+                result[p] = (float) dist[p];
+            }
+            return result;
+        }
+    }
+
+}
@@ -489,9 +489,7 @@ public class OpenStreetMapModule implements GraphBuilderModule {
                     walkableAreaBuilder.buildWithoutVisibility(group);
                 }
             } else {
-                for (AreaGroup group : areaGroups) {
-                    walkableAreaBuilder.buildWithVisibility(group, platformEntriesLinking);
-                }
+                walkableAreaBuilder.buildWithVisibility(areaGroups, platformEntriesLinking);
 
                 if(platformEntriesLinking){
                     List<Area> platforms = osmdb.getWalkableAreas().stream().
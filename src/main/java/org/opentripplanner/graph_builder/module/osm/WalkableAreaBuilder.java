@@ -7,6 +7,9 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
+
+import gnu.trove.list.array.TIntArrayList;
 
 import org.opentripplanner.common.geometry.GeometryUtils;
 import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
@@ -40,6 +43,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
@@ -48,6 +52,8 @@ import org.locationtech.jts.geom.MultiLineString;
 import org.locationtech.jts.geom.MultiPolygon;
 import org.locationtech.jts.geom.Point;
 import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
 import org.opentripplanner.util.I18NString;
 
 /**
@@ -134,26 +140,58 @@ public class WalkableAreaBuilder {
         }
     }
 
-    public void buildWithVisibility(AreaGroup group, boolean platformEntriesLinking) {
-        Set<OSMNode> startingNodes = new HashSet<OSMNode>();
-        Set<Vertex> startingVertices = new HashSet<Vertex>();
-        Set<Edge> edges = new HashSet<Edge>();
+    /**
+     * Build visibility graphs for all the given area groups. Computing the visibility polygons is by far the most
+     * expensive part, and does not touch the graph, so it is done for several groups in parallel. Vertices and edges
+     * are then created serially in the order of the groups, so the resulting graph does not depend on scheduling.
+     */
+    public void buildWithVisibility(List<AreaGroup> groups, boolean platformEntriesLinking) {
+        List<List<RingVisibility>> visibilities = groups.parallelStream()
+                .map(group -> computeVisibility(group, platformEntriesLinking))
+                .collect(Collectors.toList());
+        for (int g = 0; g < groups.size(); g++) {
+            addVisibilityEdges(groups.get(g), visibilities.get(g));
+            // release the visibility pairs of this group as soon as its edges exist
+            visibilities.set(g, null);
+        }
+    }
+
+    /**
+     * The result of the visibility computation for one of the outermost rings of an area group: the areas inside the
+     * ring, the nodes that become vertices of the visibility graph, and the pairs of those nodes that can see each
+     * other. The pairs are null when the ring was too complicated or not valid.
+     */
+    private static class RingVisibility {
+        final Ring ring;
+        final List<Area> areas = new ArrayList<Area>();
+        final ArrayList<OSMNode> visibilityNodes = new ArrayList<OSMNode>();
+        final Set<OSMNode> startingNodes = new HashSet<OSMNode>();
+        TIntArrayList visiblePairs;
+
+        RingVisibility(Ring ring) {
+            this.ring = ring;
+        }
+    }
 
+    /**
+     * Compute which visibility nodes of each ring of the group can see each other. This only reads the OSM data and
+     * builds its own geometries, so it may be called for different groups concurrently.
+     */
+    private List<RingVisibility> computeVisibility(AreaGroup group, boolean platformEntriesLinking) {
+        List<RingVisibility> result = new ArrayList<RingVisibility>();
         // create polygon and accumulate nodes for area
         for (Ring ring : group.outermostRings) {
-
-            AreaEdgeList edgeList = new AreaEdgeList();
+            RingVisibility ringVisibility = new RingVisibility(ring);
+            result.add(ringVisibility);
+            Set<OSMNode> startingNodes = ringVisibility.startingNodes;
+            ArrayList<OSMNode> visibilityNodes = ringVisibility.visibilityNodes;
             // the points corresponding to concave or hole vertices
             // or those linked to ways
             ArrayList<VLPoint> visibilityPoints = new ArrayList<VLPoint>();
-            ArrayList<OSMNode> visibilityNodes = new ArrayList<OSMNode>();
             HashSet<P2<OSMNode>> alreadyAddedEdges = new HashSet<P2<OSMNode>>();
             // we need to accumulate visibility points from all contained areas
             // inside this ring, but only for shared nodes; we don't care about
             // convexity, which we'll handle for the grouped area only.
-
-            // we also want to fill in the edges of this area anyway, because we can,
-            // and to avoid the numerical problems that they tend to cause
             for (Area area : group.areas) {
 
                 // public transform platforms will be handled separately if platformEntriesLinking
@@ -166,6 +204,7 @@ public class WalkableAreaBuilder {
                 if (!ring.toJtsPolygon().contains(area.toJTSMultiPolygon())) {
                     continue;
                 }
+                ringVisibility.areas.add(area);
 
                 // Add stops from public transit relations into the area
                 Collection<OSMNode> nodes = osmdb.getStopsInArea(area.parent);
@@ -179,16 +218,14 @@ public class WalkableAreaBuilder {
                 for (Ring outerRing : area.outermostRings) {
                     for (int i = 0; i < outerRing.nodes.size(); ++i) {
                         OSMNode node = outerRing.nodes.get(i);
-                        createEdgesForRingSegment(edges, edgeList, area, outerRing, i,
-                                alreadyAddedEdges);
+                        addRingSegment(outerRing, i, alreadyAddedEdges);
                         addtoVisibilityAndStartSets(startingNodes, visibilityPoints,
                                 visibilityNodes, node);
                     }
                     for (Ring innerRing : outerRing.holes) {
                         for (int j = 0; j < innerRing.nodes.size(); ++j) {
                             OSMNode node = innerRing.nodes.get(j);
-                            createEdgesForRingSegment(edges, edgeList, area, innerRing, j,
-                                    alreadyAddedEdges);
+                            addRingSegment(innerRing, j, alreadyAddedEdges);
                             addtoVisibilityAndStartSets(startingNodes, visibilityPoints,
                                     visibilityNodes, node);
                         }
@@ -231,45 +268,103 @@ public class WalkableAreaBuilder {
                 continue;
             }
 
-            edgeList.setOriginalEdges(ring.toJtsPolygon());
-
-            createNamedAreas(edgeList, ring, group.areas);
-
-            OSMWithTags areaEntity = group.getSomeOSMObject();
-
+            GeometryFactory geometryFactory = GeometryUtils.getGeometryFactory();
+            TIntArrayList visiblePairs = new TIntArrayList();
             for (int i = 0; i < visibilityNodes.size(); ++i) {
                 OSMNode nodeI = visibilityNodes.get(i);
                 VisibilityPolygon visibilityPolygon = new VisibilityPolygon(
                         visibilityPoints.get(i), areaEnv, VISIBILITY_EPSILON);
                 Polygon poly = toJTSPolygon(visibilityPolygon);
+                if (poly == null) {
+                    continue;
+                }
+                // A node outside the bounding box of the visibility polygon is certainly hidden, which rules out
+                // most pairs in large areas before the exact (prepared) containment test.
+                Envelope visibleEnvelope = poly.getEnvelopeInternal();
+                PreparedGeometry visibleArea = PreparedGeometryFactory.prepare(poly);
+                Coordinate coordinateI = new Coordinate(nodeI.lon, nodeI.lat);
                 for (int j = 0; j < visibilityNodes.size(); ++j) {
                     OSMNode nodeJ = visibilityNodes.get(j);
-                    P2<OSMNode> nodePair = new P2<OSMNode>(nodeI, nodeJ);
-                    if (alreadyAddedEdges.contains(nodePair))
+                    Coordinate coordinateJ = new Coordinate(nodeJ.lon, nodeJ.lat);
+                    if (!visibleEnvelope.contains(coordinateJ)) {
+                        continue;
+                    }
+                    if (alreadyAddedEdges.contains(new P2<OSMNode>(nodeI, nodeJ))) {
                         continue;
+                    }
+                    LineString line = geometryFactory.createLineString(
+                            new Coordinate[] { coordinateI, coordinateJ });
+                    if (visibleArea.contains(line)) {
+                        visiblePairs.add(i);
+                        visiblePairs.add(j);
+                    }
+                }
+            }
+            ringVisibility.visiblePairs = visiblePairs;
+        }
+        return result;
+    }
 
-                    IntersectionVertex startEndpoint = handler.getVertexForOsmNode(nodeI,
-                            areaEntity);
-                    IntersectionVertex endEndpoint = handler.getVertexForOsmNode(nodeJ,
-                            areaEntity);
-
-                    Coordinate[] coordinates = new Coordinate[] { startEndpoint.getCoordinate(),
-                            endEndpoint.getCoordinate() };
-                    GeometryFactory geometryFactory = GeometryUtils.getGeometryFactory();
-                    LineString line = geometryFactory.createLineString(coordinates);
-                    if (poly != null && poly.contains(line)) {
-
-                        createSegments(nodeI, nodeJ, startEndpoint, endEndpoint, group.areas,
-                                edgeList, edges);
-                        if (startingNodes.contains(nodeI)) {
-                            startingVertices.add(startEndpoint);
-                        }
-                        if (startingNodes.contains(nodeJ)) {
-                            startingVertices.add(endEndpoint);
+    /**
+     * Create the ring edges and visibility edges of one area group from its precomputed visibility, then prune the
+     * visibility edges that are not on any shortest path between the starting vertices.
+     */
+    private void addVisibilityEdges(AreaGroup group, List<RingVisibility> visibilities) {
+        Set<Vertex> startingVertices = new HashSet<Vertex>();
+        Set<Edge> edges = new HashSet<Edge>();
+
+        for (RingVisibility ringVisibility : visibilities) {
+            Ring ring = ringVisibility.ring;
+            AreaEdgeList edgeList = new AreaEdgeList();
+            HashSet<P2<OSMNode>> alreadyAddedEdges = new HashSet<P2<OSMNode>>();
+
+            // we also want to fill in the edges of this area anyway, because we can,
+            // and to avoid the numerical problems that they tend to cause
+            for (Area area : ringVisibility.areas) {
+                for (Ring outerRing : area.outermostRings) {
+                    for (int i = 0; i < outerRing.nodes.size(); ++i) {
+                        createEdgesForRingSegment(edges, edgeList, area, outerRing, i,
+                                alreadyAddedEdges);
+                    }
+                    for (Ring innerRing : outerRing.holes) {
+                        for (int j = 0; j < innerRing.nodes.size(); ++j) {
+                            createEdgesForRingSegment(edges, edgeList, area, innerRing, j,
+                                    alreadyAddedEdges);
                         }
                     }
                 }
             }
+            TIntArrayList visiblePairs = ringVisibility.visiblePairs;
+            if (visiblePairs == null) {
+                continue;
+            }
+
+            edgeList.setOriginalEdges(ring.toJtsPolygon());
+
+            createNamedAreas(edgeList, ring, group.areas);
+
+            OSMWithTags areaEntity = group.getSomeOSMObject();
+
+            List<OSMNode> visibilityNodes = ringVisibility.visibilityNodes;
+            IntersectionVertex[] visibilityVertices = new IntersectionVertex[visibilityNodes.size()];
+            for (int i = 0; i < visibilityVertices.length; ++i) {
+                visibilityVertices[i] = handler.getVertexForOsmNode(visibilityNodes.get(i),
+                        areaEntity);
+            }
+            for (int p = 0; p < visiblePairs.size(); p += 2) {
+                int i = visiblePairs.get(p);
+                int j = visiblePairs.get(p + 1);
+                OSMNode nodeI = visibilityNodes.get(i);
+                OSMNode nodeJ = visibilityNodes.get(j);
+                createSegments(nodeI, nodeJ, visibilityVertices[i], visibilityVertices[j],
+                        group.areas, edgeList, edges);
+                if (ringVisibility.startingNodes.contains(nodeI)) {
+                    startingVertices.add(visibilityVertices[i]);
+                }
+                if (ringVisibility.startingNodes.contains(nodeJ)) {
+                    startingVertices.add(visibilityVertices[j]);
+                }
+            }
         }
         pruneAreaEdges(startingVertices, edges);
     }
@@ -364,6 +459,12 @@ public class WalkableAreaBuilder {
         return poly;
     }
 
+    private void addRingSegment(Ring ring, int i, HashSet<P2<OSMNode>> alreadyAddedEdges) {
+        OSMNode node = ring.nodes.get(i);
+        OSMNode nextNode = ring.nodes.get((i + 1) % ring.nodes.size());
+        alreadyAddedEdges.add(new P2<OSMNode>(node, nextNode));
+    }
+
     private void createEdgesForRingSegment(Set<Edge> edges, AreaEdgeList edgeList, Area area,
             Ring ring, int i, HashSet<P2<OSMNode>> alreadyAddedEdges) {
         OSMNode node = ring.nodes.get(i);
@@ -1,5 +1,6 @@
 package org.opentripplanner.index;
 
+import org.opentripplanner.common.GeocoderMetrics;
 import org.opentripplanner.common.LuceneIndex;
 import org.opentripplanner.routing.graph.GraphIndex;
 import org.opentripplanner.standalone.OTPServer;
@@ -57,4 +58,11 @@ public class GeocoderResource {
         return Response.status(Response.Status.OK).entity(index.query(query, autocomplete, stops, clusters, corners)).build();
     }
 
+    /** Return the number and latency of the full-text and autocomplete queries answered by this router's geocoder. */
+    @GET
+    @Path("/metrics")
+    public GeocoderMetrics getMetrics () {
+        return index.metrics;
+    }
+
 }
@@ -38,6 +38,8 @@ import org.opentripplanner.routing.services.StreetVertexIndexService;
 import org.opentripplanner.routing.vertextype.TransitStop;
 import org.opentripplanner.standalone.OTPServer;
 import org.opentripplanner.standalone.Router;
+import org.opentripplanner.updater.vehicle_positions.VehiclePositionStore;
+import org.opentripplanner.updater.vehicle_positions.VehiclePositionStore.VehiclePositionQueryResult;
 import org.opentripplanner.util.PolylineEncoder;
 import org.opentripplanner.util.model.EncodedPolylineBean;
 import org.slf4j.Logger;
@@ -64,7 +66,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 // TODO move to org.opentripplanner.api.resource, this is a Jersey resource class
 
@@ -86,12 +87,14 @@ public class IndexAPI {
 
     private final GraphIndex index;
     private final StreetVertexIndexService streetIndex;
+    private final VehiclePositionStore vehiclePositionStore;
     private final ObjectMapper deserializer = new ObjectMapper();
 
     public IndexAPI (@Context OTPServer otpServer, @PathParam("routerId") String routerId) {
         Router router = otpServer.getRouter(routerId);
         index = router.graph.index;
         streetIndex = router.graph.streetIndex;
+        vehiclePositionStore = router.graph.vehiclePositionStore;
     }
 
     /* Needed to check whether query parameter map is empty, rather than chaining " && x == null"s */
@@ -410,13 +413,7 @@ public class IndexAPI {
         FeedScopedId routeId = GtfsLibrary.convertIdFromString(routeIdString);
         Route route = index.routeForId.get(routeId);
         if (route != null) {
-            Collection<TripPattern> patterns = index.patternsForRoute.get(route);
-            List<RealtimeVehiclePosition> vehiclePositions = patterns
-                    .stream()
-                    .map(TripPattern::getVehiclePositions)
-                    .flatMap(Collection::stream)
-                    .collect(Collectors.toList());
-
+            List<RealtimeVehiclePosition> vehiclePositions = queryVehiclePositions(null, routeId, null, null).vehicles;
             return Response.status(Status.OK).entity(vehiclePositions).build();
         } else {
             return Response.status(Status.NOT_FOUND).entity(MSG_404).build();
@@ -581,13 +578,59 @@ public class IndexAPI {
         // Pattern names are graph-unique because we made them that way (did not read them from GTFS).
         TripPattern pattern = index.patternForId.get(patternIdString);
         if (pattern != null) {
-            List<RealtimeVehiclePosition> vehiclePositions = pattern.getVehiclePositions();
+            List<RealtimeVehiclePosition> vehiclePositions =
+                    queryVehiclePositions(null, null, pattern.code, null).vehicles;
             return Response.status(Status.OK).entity(vehiclePositions).build();
         } else {
             return Response.status(Status.NOT_FOUND).entity(MSG_404).build();
         }
     }
 
+    /**
+     * Return the vehicle positions within a box and/or on a route. When the version of an earlier response is given,
+     * only the vehicles that changed since are returned, along with the trips of the vehicles to remove.
+     */
+    @GET
+    @Path("/vehicles")
+    public Response getVehiclePositions (
+            @QueryParam("minLat") Double minLat,
+            @QueryParam("minLon") Double minLon,
+            @QueryParam("maxLat") Double maxLat,
+            @QueryParam("maxLon") Double maxLon,
+            @QueryParam("route") String routeIdString,
+            @QueryParam("since") Long sinceVersion) {
+        Envelope envelope = null;
+        if (minLat != null || minLon != null || maxLat != null || maxLon != null) {
+            if (minLat == null || minLon == null || maxLat == null || maxLon == null) {
+                return Response.status(Status.BAD_REQUEST).entity(MSG_400).build();
+            }
+            if (maxLat <= minLat || maxLon <= minLon) {
+                return Response.status(Status.BAD_REQUEST).entity(MSG_400).build();
+            }
+            envelope = new Envelope(new Coordinate(minLon, minLat), new Coordinate(maxLon, maxLat));
+        }
+        FeedScopedId routeId = null;
+        if (routeIdString != null) {
+            routeId = GtfsLibrary.convertIdFromString(routeIdString);
+            if (index.routeForId.get(routeId) == null) {
+                return Response.status(Status.NOT_FOUND).entity(MSG_404).build();
+            }
+        }
+        return Response.status(Status.OK)
+                .entity(queryVehiclePositions(envelope, routeId, null, sinceVersion)).build();
+    }
+
+    private VehiclePositionQueryResult queryVehiclePositions(Envelope envelope, FeedScopedId routeId,
+            String patternId, Long sinceVersion) {
+        if (vehiclePositionStore == null) {
+            // No vehicle position updater is configured.
+            VehiclePositionQueryResult result = new VehiclePositionQueryResult();
+            result.complete = true;
+            return result;
+        }
+        return vehiclePositionStore.query(envelope, routeId, patternId, sinceVersion);
+    }
+
     @GET
     @Path("/patterns/{patternId}/semanticHash")
     public Response getSemanticHashForPattern (@PathParam("patternId") String patternIdString) {
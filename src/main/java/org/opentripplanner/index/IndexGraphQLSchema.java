@@ -132,7 +132,6 @@ public class IndexGraphQLSchema {
     public IndexGraphQLSchema(GraphIndex index) {
 
         fuzzyTripMatcher = new GtfsRealtimeFuzzyTripMatcher(index);
-        index.clusterStopsAsNeeded();
 
         stopAtDistanceType = GraphQLObjectType.newObject()
             .name("stopAtDistance")
@@ -279,8 +278,7 @@ public class IndexGraphQLSchema {
             .field(GraphQLFieldDefinition.newFieldDefinition()
                 .name("cluster")
                 .type(clusterType)
-                .dataFetcher(environment -> index.stopClusterForStop
-                    .get((Stop) environment.getSource()))
+                .dataFetcher(environment -> index.getStopClusterForStop((Stop) environment.getSource()))
                 .build())
             .field(GraphQLFieldDefinition.newFieldDefinition()
                 .name("routes")
@@ -815,7 +813,7 @@ public class IndexGraphQLSchema {
             .field(relay.nodeField(nodeInterface, environment -> {
                 Relay.ResolvedGlobalId id = relay.fromGlobalId(environment.getArgument("id"));
                 if (id.type.equals(clusterType.getName())) {
-                    return index.stopClusterForId.get(id.id);
+                    return index.getStopClusterForId(id.id);
                 }
                 if (id.type.equals(stopType.getName())) {
                     return index.stopForId.get(GtfsLibrary.convertIdFromString(id.id));
@@ -1055,7 +1053,7 @@ public class IndexGraphQLSchema {
                 .name("clusters")
                 .description("Get all clusters for the specified graph")
                 .type(new GraphQLList(clusterType))
-                .dataFetcher(environment -> new ArrayList<>(index.stopClusterForId.values()))
+                .dataFetcher(environment -> new ArrayList<>(index.getStopClusters()))
                 .build())
             .field(GraphQLFieldDefinition.newFieldDefinition()
                 .name("cluster")
@@ -1066,7 +1064,7 @@ public class IndexGraphQLSchema {
                     .type(new GraphQLNonNull(Scalars.GraphQLString))
                     .build())
                 .dataFetcher(
-                    environment -> index.stopClusterForId.get(environment.getArgument("id")))
+                    environment -> index.getStopClusterForId(environment.getArgument("id")))
                 .build())
             .field(GraphQLFieldDefinition.newFieldDefinition()
                 .name("viewer")
@@ -4,6 +4,8 @@ import com.google.transit.realtime.GtfsRealtime.VehiclePosition.CongestionLevel;
 import com.google.transit.realtime.GtfsRealtime.VehiclePosition.VehicleStopStatus;
 import org.opentripplanner.model.FeedScopedId;
 
+import java.util.Objects;
+
 /**
  * A simplified vehicle position class that supports being output to HTTP.
  * Compatible with https://github.com/opentripplanner/otp-ui/blob/master/packages/core-utils/src/types.js#L86
@@ -21,10 +23,41 @@ public class RealtimeVehiclePosition {
 
     public String patternId;
 
+    public FeedScopedId tripId;
+
+    public FeedScopedId routeId;
+
     public VehicleStopStatus stopStatus;
     public String nextStopName;
     public FeedScopedId nextStopId;
     public int nextStopSequenceId;
 
     public CongestionLevel congestionLevel;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RealtimeVehiclePosition that = (RealtimeVehiclePosition) o;
+        return Double.compare(that.lat, lat) == 0 &&
+                Double.compare(that.lon, lon) == 0 &&
+                Double.compare(that.speed, speed) == 0 &&
+                Double.compare(that.heading, heading) == 0 &&
+                seconds == that.seconds &&
+                nextStopSequenceId == that.nextStopSequenceId &&
+                Objects.equals(vehicleId, that.vehicleId) &&
+                Objects.equals(label, that.label) &&
+                Objects.equals(patternId, that.patternId) &&
+                Objects.equals(tripId, that.tripId) &&
+                Objects.equals(routeId, that.routeId) &&
+                stopStatus == that.stopStatus &&
+                Objects.equals(nextStopName, that.nextStopName) &&
+                Objects.equals(nextStopId, that.nextStopId) &&
+                congestionLevel == that.congestionLevel;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(vehicleId, tripId, lat, lon, seconds);
+    }
 }
@@ -0,0 +1,38 @@
+package org.opentripplanner.inspector.vector;
+
+import org.locationtech.jts.geom.Envelope;
+import org.opentripplanner.model.Stop;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.vertextype.TransitStation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/** The parent stations, taken from the vertex index of the StreetVertexIndexService. */
+public class StationsLayer implements VectorTileLayer {
+
+    @Override
+    public String getName() {
+        return "stations";
+    }
+
+    @Override
+    public int getMinZoom() {
+        return 11;
+    }
+
+    @Override
+    public void addFeatures(Graph graph, Envelope envelope, VectorTileEncoder encoder) {
+        for (Vertex vertex : graph.streetIndex.getVerticesForEnvelope(envelope)) {
+            if (!(vertex instanceof TransitStation)) continue;
+            Stop station = ((TransitStation) vertex).getStop();
+            Map<String, Object> attributes = new HashMap<>();
+            attributes.put("id", station.getId().toString());
+            attributes.put("name", station.getName());
+            attributes.put("code", station.getCode());
+            encoder.addPoint(vertex.getIndex(), vertex.getCoordinate(), attributes);
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+package org.opentripplanner.inspector.vector;
+
+import org.locationtech.jts.geom.Envelope;
+import org.opentripplanner.model.Stop;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.vertextype.TransitStop;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/** The transit stops, taken from the transit stop index of the StreetVertexIndexService. */
+public class StopsLayer implements VectorTileLayer {
+
+    @Override
+    public String getName() {
+        return "stops";
+    }
+
+    @Override
+    public int getMinZoom() {
+        return 13;
+    }
+
+    @Override
+    public void addFeatures(Graph graph, Envelope envelope, VectorTileEncoder encoder) {
+        for (TransitStop transitStop : graph.streetIndex.getTransitStopForEnvelope(envelope)) {
+            Stop stop = transitStop.getStop();
+            Map<String, Object> attributes = new HashMap<>();
+            attributes.put("id", stop.getId().toString());
+            attributes.put("name", stop.getName());
+            attributes.put("code", stop.getCode());
+            attributes.put("parentStation", stop.getParentStation());
+            attributes.put("wheelchairBoarding", stop.getWheelchairBoarding());
+            attributes.put("entrance", transitStop.isEntrance());
+            encoder.addPoint(transitStop.getIndex(), transitStop.getCoordinate(), attributes);
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+package org.opentripplanner.inspector.vector;
+
+import org.locationtech.jts.geom.Envelope;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Graph;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The street edges, taken from the edge index of the StreetVertexIndexService. Both directions of a street are
+ * included as separate features, as their permissions can differ.
+ */
+public class StreetEdgesLayer implements VectorTileLayer {
+
+    @Override
+    public String getName() {
+        return "edges";
+    }
+
+    @Override
+    public int getMinZoom() {
+        return 15;
+    }
+
+    @Override
+    public void addFeatures(Graph graph, Envelope envelope, VectorTileEncoder encoder) {
+        for (Edge edge : graph.streetIndex.getEdgesForEnvelope(envelope)) {
+            if (!(edge instanceof StreetEdge)) continue;
+            StreetEdge streetEdge = (StreetEdge) edge;
+            Map<String, Object> attributes = new HashMap<>();
+            attributes.put("name", streetEdge.getName());
+            attributes.put("permission", streetEdge.getPermission());
+            attributes.put("wheelchairAccessible", streetEdge.isWheelchairAccessible());
+            attributes.put("bicycleSafetyFactor", streetEdge.getBicycleSafetyFactor());
+            attributes.put("back", streetEdge.isBack());
+            encoder.addLineString(streetEdge.getId(), streetEdge.getGeometry(), attributes);
+        }
+    }
+
+}
@@ -0,0 +1,264 @@
+package org.opentripplanner.inspector.vector;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import gnu.trove.list.array.TIntArrayList;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.opentripplanner.common.geometry.GeometryUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes the features of one layer of a Mapbox vector tile (version 2 of the specification at
+ * https://github.com/mapbox/vector-tile-spec). Only points and line strings are supported, which is all the inspector
+ * layers need.
+ *
+ * A tile is nothing but a sequence of layers, so the bytes of separately encoded layers can simply be concatenated to
+ * form a tile. This is what allows layers to be cached and invalidated independently of each other.
+ */
+public class VectorTileEncoder {
+
+    /** The number of integer coordinate units along each side of a tile. */
+    public static final int EXTENT = 4096;
+
+    /** Features are clipped to the tile extended by this many units on each side, so that lines join across tiles. */
+    public static final int BUFFER = 64;
+
+    /* Field numbers from vector_tile.proto */
+    private static final int TILE_LAYERS = 3;
+    private static final int LAYER_NAME = 1;
+    private static final int LAYER_FEATURES = 2;
+    private static final int LAYER_KEYS = 3;
+    private static final int LAYER_VALUES = 4;
+    private static final int LAYER_EXTENT = 5;
+    private static final int LAYER_VERSION = 15;
+    private static final int FEATURE_ID = 1;
+    private static final int FEATURE_TAGS = 2;
+    private static final int FEATURE_TYPE = 3;
+    private static final int FEATURE_GEOMETRY = 4;
+    private static final int VALUE_STRING = 1;
+    private static final int VALUE_DOUBLE = 3;
+    private static final int VALUE_SINT = 6;
+    private static final int VALUE_BOOL = 7;
+
+    private static final int TYPE_POINT = 1;
+    private static final int TYPE_LINESTRING = 2;
+
+    private static final int COMMAND_MOVE_TO = 1;
+    private static final int COMMAND_LINE_TO = 2;
+
+    private final String name;
+
+    private final double scale;
+
+    private final double originX;
+
+    private final double originY;
+
+    /** The area in which features are kept, in tile units. */
+    private final Envelope clipEnvelope = new Envelope(-BUFFER, EXTENT + BUFFER, -BUFFER, EXTENT + BUFFER);
+
+    private final Map<String, Integer> keys = new LinkedHashMap<>();
+
+    private final Map<Object, Integer> values = new LinkedHashMap<>();
+
+    private final List<byte[]> features = new ArrayList<>();
+
+    public VectorTileEncoder(String name, int z, int x, int y) {
+        this.name = name;
+        this.scale = (1 << z) * (double) EXTENT;
+        this.originX = x * (double) EXTENT;
+        this.originY = y * (double) EXTENT;
+    }
+
+    /** @return the number of features added so far. */
+    public int size() {
+        return features.size();
+    }
+
+    public void addPoint(long id, Coordinate coordinate, Map<String, Object> attributes) {
+        Coordinate point = project(coordinate);
+        if (!clipEnvelope.contains(point)) return;
+        TIntArrayList geometry = new TIntArrayList(3);
+        geometry.add(command(COMMAND_MOVE_TO, 1));
+        geometry.add(zigZag((int) Math.round(point.x)));
+        geometry.add(zigZag((int) Math.round(point.y)));
+        addFeature(id, TYPE_POINT, geometry, attributes);
+    }
+
+    /** Add a line, clipped to the buffered tile. Lines that become shorter than a tile unit are dropped. */
+    public void addLineString(long id, LineString lineString, Map<String, Object> attributes) {
+        Coordinate[] coordinates = lineString.getCoordinates();
+        Coordinate[] projected = new Coordinate[coordinates.length];
+        for (int i = 0; i < coordinates.length; i++) {
+            projected[i] = project(coordinates[i]);
+        }
+        GeometryFactory geometryFactory = GeometryUtils.getGeometryFactory();
+        Geometry tileLine = geometryFactory.createLineString(projected);
+        if (!clipEnvelope.contains(tileLine.getEnvelopeInternal())) {
+            if (!clipEnvelope.intersects(tileLine.getEnvelopeInternal())) return;
+            tileLine = tileLine.intersection(geometryFactory.toGeometry(clipEnvelope));
+        }
+        TIntArrayList geometry = new TIntArrayList();
+        int[] cursor = new int[2];
+        for (int g = 0; g < tileLine.getNumGeometries(); g++) {
+            Geometry part = tileLine.getGeometryN(g);
+            if (part instanceof LineString) {
+                encodeLine(part.getCoordinates(), cursor, geometry);
+            }
+        }
+        if (!geometry.isEmpty()) {
+            addFeature(id, TYPE_LINESTRING, geometry, attributes);
+        }
+    }
+
+    /** Append the commands for one line, skipping points that round to the same tile unit as the previous one. */
+    private static void encodeLine(Coordinate[] coordinates, int[] cursor, TIntArrayList geometry) {
+        TIntArrayList xs = new TIntArrayList(coordinates.length);
+        TIntArrayList ys = new TIntArrayList(coordinates.length);
+        for (Coordinate c : coordinates) {
+            int x = (int) Math.round(c.x);
+            int y = (int) Math.round(c.y);
+            int n = xs.size();
+            if (n > 0 && xs.get(n - 1) == x && ys.get(n - 1) == y) continue;
+            xs.add(x);
+            ys.add(y);
+        }
+        if (xs.size() < 2) return;
+        geometry.add(command(COMMAND_MOVE_TO, 1));
+        geometry.add(zigZag(xs.get(0) - cursor[0]));
+        geometry.add(zigZag(ys.get(0) - cursor[1]));
+        geometry.add(command(COMMAND_LINE_TO, xs.size() - 1));
+        for (int i = 1; i < xs.size(); i++) {
+            geometry.add(zigZag(xs.get(i) - xs.get(i - 1)));
+            geometry.add(zigZag(ys.get(i) - ys.get(i - 1)));
+        }
+        cursor[0] = xs.get(xs.size() - 1);
+        cursor[1] = ys.get(ys.size() - 1);
+    }
+
+    /** Project a WGS84 coordinate into the units of this tile, with the origin at the top left corner. */
+    private Coordinate project(Coordinate coordinate) {
+        double lat = Math.toRadians(coordinate.y);
+        double x = (coordinate.x + 180) / 360 * scale - originX;
+        double y = (1 - Math.log(Math.tan(lat) + 1 / Math.cos(lat)) / Math.PI) / 2 * scale - originY;
+        return new Coordinate(x, y);
+    }
+
+    private void addFeature(long id, int type, TIntArrayList geometry, Map<String, Object> attributes) {
+        TIntArrayList tags = new TIntArrayList(attributes.size() * 2);
+        for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+            Object value = attribute.getValue();
+            if (value == null) continue;
+            if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                value = ((Number) value).longValue();
+            } else if (value instanceof Float) {
+                value = ((Float) value).doubleValue();
+            } else if (!(value instanceof Long || value instanceof Double || value instanceof Boolean)) {
+                value = value.toString();
+            }
+            tags.add(index(keys, attribute.getKey()));
+            tags.add(index(values, value));
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+            out.writeUInt64(FEATURE_ID, id);
+            writePacked(out, FEATURE_TAGS, tags);
+            out.writeEnum(FEATURE_TYPE, type);
+            writePacked(out, FEATURE_GEOMETRY, geometry);
+            out.flush();
+            features.add(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static <T> int index(Map<T, Integer> map, T item) {
+        Integer index = map.get(item);
+        if (index == null) {
+            index = map.size();
+            map.put(item, index);
+        }
+        return index;
+    }
+
+    /**
+     * @return the layer wrapped as a tile, or an empty array when the layer has no features, as empty layers are
+     * pointless in a tile.
+     */
+    public byte[] toByteArray() {
+        if (features.isEmpty()) return new byte[0];
+        try {
+            ByteArrayOutputStream layerBytes = new ByteArrayOutputStream();
+            CodedOutputStream layer = CodedOutputStream.newInstance(layerBytes);
+            layer.writeUInt32(LAYER_VERSION, 2);
+            layer.writeString(LAYER_NAME, name);
+            for (byte[] feature : features) {
+                layer.writeByteArray(LAYER_FEATURES, feature);
+            }
+            for (String key : keys.keySet()) {
+                layer.writeString(LAYER_KEYS, key);
+            }
+            for (Object value : values.keySet()) {
+                layer.writeByteArray(LAYER_VALUES, encodeValue(value));
+            }
+            layer.writeUInt32(LAYER_EXTENT, EXTENT);
+            layer.flush();
+
+            ByteArrayOutputStream tileBytes = new ByteArrayOutputStream();
+            CodedOutputStream tile = CodedOutputStream.newInstance(tileBytes);
+            tile.writeByteArray(TILE_LAYERS, layerBytes.toByteArray());
+            tile.flush();
+            return tileBytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] encodeValue(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+        if (value instanceof Long) {
+            out.writeSInt64(VALUE_SINT, (Long) value);
+        } else if (value instanceof Double) {
+            out.writeDouble(VALUE_DOUBLE, (Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeBool(VALUE_BOOL, (Boolean) value);
+        } else {
+            out.writeString(VALUE_STRING, (String) value);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writePacked(CodedOutputStream out, int field, TIntArrayList ints) throws IOException {
+        int size = 0;
+        for (int i = 0; i < ints.size(); i++) {
+            size += CodedOutputStream.computeUInt32SizeNoTag(ints.get(i));
+        }
+        out.writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(size);
+        for (int i = 0; i < ints.size(); i++) {
+            out.writeUInt32NoTag(ints.get(i));
+        }
+    }
+
+    private static int command(int id, int count) {
+        return (id & 0x7) | (count << 3);
+    }
+
+    private static int zigZag(int n) {
+        return (n << 1) ^ (n >> 31);
+    }
+
+}
@@ -0,0 +1,31 @@
+package org.opentripplanner.inspector.vector;
+
+import org.locationtech.jts.geom.Envelope;
+import org.opentripplanner.routing.graph.Graph;
+
+/**
+ * A layer of the vector tiles served by VectorTileResource. Each layer is encoded and cached separately by
+ * VectorTileManager, so a layer whose data changes at runtime only needs to report a new version to have its cached
+ * tiles dropped, without affecting the tiles of other layers.
+ *
+ * @see VectorTileManager
+ */
+public interface VectorTileLayer {
+
+    String getName();
+
+    /** Tiles at lower zoom levels than this do not contain any features of this layer. */
+    int getMinZoom();
+
+    /**
+     * @return a number that changes whenever the features of this layer may have changed. Layers built from the
+     * graph alone do not change and can keep the default.
+     */
+    default long getVersion(Graph graph) {
+        return 0;
+    }
+
+    /** Add the features found in the given WGS84 envelope to the encoder. */
+    void addFeatures(Graph graph, Envelope envelope, VectorTileEncoder encoder);
+
+}
@@ -0,0 +1,127 @@
+package org.opentripplanner.inspector.vector;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.locationtech.jts.geom.Envelope;
+import org.opentripplanner.analyst.core.SlippyTile;
+import org.opentripplanner.routing.graph.Graph;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Serves Mapbox vector tiles combining any of the registered layers. Each layer is encoded and cached per tile on its
+ * own, and a tile is assembled by concatenating the cached layers. The cache of a layer is dropped as soon as the
+ * layer reports a new version, e.g. when a rental updater has changed the state of the stations, so the other layers
+ * stay cached.
+ *
+ * @see org.opentripplanner.api.resource.VectorTileResource
+ */
+public class VectorTileManager {
+
+    /** The maximum number of cached tiles per layer. */
+    private static final int MAX_CACHED_TILES = 10000;
+
+    /** The tile envelope is expanded by this fraction on each side to find features in the buffer around it. */
+    private static final double BUFFER_FRACTION = (double) VectorTileEncoder.BUFFER / VectorTileEncoder.EXTENT;
+
+    private final Graph graph;
+
+    private final Map<String, LayerCache> layers = new LinkedHashMap<>();
+
+    public VectorTileManager(Graph graph) {
+        this.graph = graph;
+
+        // Register layers.
+        registerLayer(new StopsLayer());
+        registerLayer(new StationsLayer());
+        registerLayer(new VehicleRentalStationsLayer());
+        registerLayer(new StreetEdgesLayer());
+    }
+
+    public void registerLayer(VectorTileLayer layer) {
+        layers.put(layer.getName(), new LayerCache(layer));
+    }
+
+    public Collection<String> getLayerNames() {
+        return layers.keySet();
+    }
+
+    /** Drop all cached tiles of the given layer. */
+    public void invalidate(String layerName) {
+        LayerCache layerCache = layers.get(layerName);
+        if (layerCache != null) {
+            layerCache.tiles.invalidateAll();
+        }
+    }
+
+    /**
+     * @param layerNames the layers to include in the tile, in drawing order.
+     * @return the encoded tile, which is empty when none of the layers have features in it.
+     */
+    public byte[] getTile(List<String> layerNames, int z, int x, int y) {
+        List<LayerCache> requested = new ArrayList<>();
+        for (String layerName : layerNames) {
+            LayerCache layerCache = layers.get(layerName);
+            if (layerCache == null) {
+                throw new IllegalArgumentException("Unknown layer: " + layerName);
+            }
+            requested.add(layerCache);
+        }
+        ByteArrayOutputStream tile = new ByteArrayOutputStream();
+        for (LayerCache layerCache : requested) {
+            if (z < layerCache.layer.getMinZoom()) continue;
+            byte[] layerBytes = layerCache.getTile(z, x, y);
+            tile.write(layerBytes, 0, layerBytes.length);
+        }
+        return tile.toByteArray();
+    }
+
+    private class LayerCache {
+
+        final VectorTileLayer layer;
+
+        final Cache<String, byte[]> tiles = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_TILES).build();
+
+        long version = Long.MIN_VALUE;
+
+        LayerCache(VectorTileLayer layer) {
+            this.layer = layer;
+        }
+
+        byte[] getTile(int z, int x, int y) {
+            long currentVersion = layer.getVersion(graph);
+            synchronized (this) {
+                if (currentVersion != version) {
+                    tiles.invalidateAll();
+                    version = currentVersion;
+                }
+            }
+            // The version is part of the key so a tile encoded from old data while invalidating is never served.
+            String key = currentVersion + ":" + z + "/" + x + "/" + y;
+            try {
+                return tiles.get(key, () -> encode(z, x, y));
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        byte[] encode(int z, int x, int y) {
+            double minLon = SlippyTile.tile2lon(x, z);
+            double maxLon = SlippyTile.tile2lon(x + 1, z);
+            double maxLat = SlippyTile.tile2lat(y, z);
+            double minLat = SlippyTile.tile2lat(y + 1, z);
+            Envelope envelope = new Envelope(minLon, maxLon, minLat, maxLat);
+            envelope.expandBy((maxLon - minLon) * BUFFER_FRACTION, (maxLat - minLat) * BUFFER_FRACTION);
+            VectorTileEncoder encoder = new VectorTileEncoder(layer.getName(), z, x, y);
+            layer.addFeatures(graph, envelope, encoder);
+            return encoder.toByteArray();
+        }
+    }
+
+}
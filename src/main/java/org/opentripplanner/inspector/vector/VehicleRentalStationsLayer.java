@@ -0,0 +1,61 @@
+package org.opentripplanner.inspector.vector;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.vehicle_rental.VehicleRentalStation;
+import org.opentripplanner.routing.vehicle_rental.VehicleRentalStationService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The vehicle rental stations and floating vehicles added by the vehicle rental updaters. These change at runtime, so
+ * the version of this layer follows the version of the VehicleRentalStationService.
+ */
+public class VehicleRentalStationsLayer implements VectorTileLayer {
+
+    @Override
+    public String getName() {
+        return "rentalStations";
+    }
+
+    @Override
+    public int getMinZoom() {
+        return 13;
+    }
+
+    @Override
+    public long getVersion(Graph graph) {
+        VehicleRentalStationService service = graph.getService(VehicleRentalStationService.class);
+        return service == null ? 0 : service.getVersion();
+    }
+
+    @Override
+    public void addFeatures(Graph graph, Envelope envelope, VectorTileEncoder encoder) {
+        VehicleRentalStationService service = graph.getService(VehicleRentalStationService.class);
+        if (service == null) return;
+        List<VehicleRentalStation> stations;
+        // The updaters modify the station collection while tiles are being encoded.
+        synchronized (service) {
+            stations = new ArrayList<>(service.getVehicleRentalStations());
+        }
+        for (VehicleRentalStation station : stations) {
+            if (station.isBorderDropoff || !envelope.contains(station.x, station.y)) continue;
+            Map<String, Object> attributes = new HashMap<>();
+            attributes.put("id", station.id);
+            attributes.put("name", station.getName());
+            attributes.put("networks", station.networks == null ? null : String.join(",", station.networks));
+            attributes.put("vehiclesAvailable", station.vehiclesAvailable);
+            attributes.put("spacesAvailable", station.spacesAvailable);
+            attributes.put("floatingVehicle", station.isFloatingVehicle);
+            attributes.put("allowPickup", station.allowPickup);
+            attributes.put("allowDropoff", station.allowDropoff);
+            // Rental station ids are strings, so features are numbered in iteration order within the tile.
+            encoder.addPoint(encoder.size(), new Coordinate(station.x, station.y), attributes);
+        }
+    }
+
+}
@@ -114,19 +114,8 @@ public class ProfileRouter {
 
     public ProfileResponse route () {
 
-        // Lazy-initialize stop clusters (threadsafe method)
-        graph.index.clusterStopsAsNeeded();
-
-        // Lazy-initialize profile transfers (before setting timeouts, since this is slow)
-        if (graph.index.transfersFromStopCluster == null) {
-            synchronized (graph.index) {
-                // why another if statement? so that if another thread initialized this in the meantime
-                // we don't initialize it again.
-                if (graph.index.transfersFromStopCluster == null) {
-                    graph.index.initializeProfileTransfers();
-                }
-            }
-        }
+        // Lazy-initialize stop clusters and profile transfers (before setting timeouts, since this is slow)
+        graph.index.initializeProfileTransfersAsNeeded();
         LOG.info("access modes: {}", request.accessModes);
         LOG.info("egress modes: {}", request.egressModes);
         LOG.info("direct modes: {}", request.directModes);
@@ -2,9 +2,12 @@ package org.opentripplanner.routing.algorithm;
 
 import com.beust.jcommander.internal.Lists;
 import org.opentripplanner.common.pqueue.BinHeap;
+import org.opentripplanner.common.pqueue.IndexedFourAryHeap;
+import org.opentripplanner.common.pqueue.OTPPriorityQueue;
 import org.opentripplanner.routing.algorithm.strategies.RemainingWeightHeuristic;
 import org.opentripplanner.routing.algorithm.strategies.SearchTerminationStrategy;
 import org.opentripplanner.routing.algorithm.strategies.TrivialRemainingWeightHeuristic;
+import org.opentripplanner.routing.core.PriorityQueueType;
 import org.opentripplanner.routing.core.RoutingContext;
 import org.opentripplanner.routing.core.RoutingRequest;
 import org.opentripplanner.routing.core.State;
@@ -18,6 +21,7 @@ import org.opentripplanner.util.monitoring.MonitoringStoreFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -50,7 +54,12 @@ public class AStar {
 
         public State u;
         public ShortestPathTree spt;
-        BinHeap<State> pq;
+        OTPPriorityQueue<State> pq;
+        /** The queue if it can remove dominated states, otherwise null. */
+        IndexedFourAryHeap<State> indexedPq;
+        /** The states at the vertex of a new state before it is added to the SPT, to find the ones it dominates. */
+        final List<State> previousStates = new ArrayList<>();
+        int maxQueueSize;
         RemainingWeightHeuristic heuristic;
         public RoutingContext rctx;
         public int nVisited;
@@ -121,7 +130,12 @@ public class AStar {
         // before reaching its target.
         int initialSize = runState.rctx.graph.getVertices().size();
         initialSize = (int) Math.ceil(2 * (Math.sqrt((double) initialSize + 1)));
-        runState.pq = new BinHeap<>(initialSize);
+        if (options.priorityQueue == PriorityQueueType.INDEXED_FOUR_ARY_HEAP) {
+            runState.indexedPq = new IndexedFourAryHeap<>(initialSize);
+            runState.pq = runState.indexedPq;
+        } else {
+            runState.pq = new BinHeap<>(initialSize);
+        }
         runState.nVisited = 0;
         runState.targetAcceptedStates = Lists.newArrayList();
         
@@ -206,13 +220,16 @@ public class AStar {
                     continue;
                 }
                 
+                if (runState.indexedPq != null) {
+                    rememberPreviousStates(v.getVertex());
+                }
                 // spt.add returns true if the state is hopeful; enqueue state if it's hopeful
                 if (runState.spt.add(v)) {
                     // report to the visitor if there is one
                     if (traverseVisitor != null)
                         traverseVisitor.visitEnqueue(v);
                     //LOG.info("u.w={} v.w={} h={}", runState.u.weight, v.weight, remaining_w);
-                    runState.pq.insert(v, estimate);
+                    enqueue(v, estimate);
                 } 
             }
         }
@@ -220,6 +237,50 @@ public class AStar {
         return true;
     }
     
+    private void rememberPreviousStates(Vertex vertex) {
+        runState.previousStates.clear();
+        List<State> states = runState.spt.getStates(vertex);
+        if (states != null) {
+            runState.previousStates.addAll(states);
+        }
+    }
+
+    /**
+     * Insert a state just added to the SPT in the queue. With an indexed heap, the states it dominated (those no
+     * longer in the SPT) are removed from the queue. When it dominated exactly one queued state, which is the usual
+     * case on car and bicycle searches, it takes the place of that state in the heap (a decrease-key).
+     */
+    private void enqueue(State v, double estimate) {
+        IndexedFourAryHeap<State> heap = runState.indexedPq;
+        if (heap == null) {
+            runState.pq.insert(v, estimate);
+        } else {
+            List<State> states = runState.spt.getStates(v.getVertex());
+            State replaced = null;
+            for (State previous : runState.previousStates) {
+                if (containsIdentical(states, previous) || !heap.contains(previous)) continue;
+                if (replaced == null) {
+                    replaced = previous;
+                } else {
+                    heap.remove(previous);
+                }
+            }
+            if (replaced != null) {
+                heap.replace(replaced, v, estimate);
+            } else {
+                heap.insert(v, estimate);
+            }
+        }
+        runState.maxQueueSize = Math.max(runState.maxQueueSize, runState.pq.size());
+    }
+
+    private static boolean containsIdentical(List<State> states, State state) {
+        for (State s : states) {
+            if (s == state) return true;
+        }
+        return false;
+    }
+
     void runSearch(long abortTime){
         /* the core of the A* algorithm */
         while (!runState.pq.empty()) { // Until the priority queue is empty:
@@ -277,7 +338,8 @@ public class AStar {
                 }
                 /* Break out of the search if we've found the requested number of paths. */
                 if (runState.targetAcceptedStates.size() >= runState.options.getNumItineraries()) {
-                    LOG.debug("total vertices visited {}", runState.nVisited);
+                    LOG.debug("total vertices visited {}, max queue size {} ({})", runState.nVisited,
+                        runState.maxQueueSize, runState.options.priorityQueue);
                     break;
                 }
             }
@@ -313,10 +375,13 @@ public class AStar {
         
         if (runState != null) {
             for (State state : initialStates) {
+                if (runState.indexedPq != null) {
+                    rememberPreviousStates(state.getVertex());
+                }
                 runState.spt.add(state);
                 // TODO: hardwired for earliest arrival
                 // TODO: weights are seconds, no?
-                runState.pq.insert(state, state.getElapsedTimeSeconds());
+                enqueue(state, state.getElapsedTimeSeconds());
             }
             
             runSearch(abortTime);
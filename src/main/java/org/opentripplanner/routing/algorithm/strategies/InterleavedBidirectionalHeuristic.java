@@ -206,8 +206,8 @@ public class InterleavedBidirectionalHeuristic implements RemainingWeightHeurist
         // change the defaults in bikeWalkingOptions because traversals of one-way streets or
         // otherwise non-traversable streets may occur while walking a bicycle that extend the
         // pretransit search further than is needed
-        request.bikeWalkingOptions.softWalkLimiting = false;
-        request.bikeWalkingOptions.softPreTransitLimiting = false;
+        request.mutableBikeWalkingOptions().softWalkLimiting = false;
+        request.mutableBikeWalkingOptions().softPreTransitLimiting = false;
         transitQueue = new BinHeap<>();
         // Forward street search first, mark street vertices around the origin so H evaluates to 0.
         preTransitVertices = streetSearch(request, false, abortTime);
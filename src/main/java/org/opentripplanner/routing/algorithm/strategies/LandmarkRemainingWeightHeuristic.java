@@ -0,0 +1,163 @@
+package org.opentripplanner.routing.algorithm.strategies;
+
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.landmarks.LandmarkSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A goal direction heuristic for street searches based on precomputed costs to and from landmark vertices
+ * ("A*, Landmarks and Triangle inequality", Goldberg and Harrelson 2005). By the triangle inequality, for any landmark
+ * L the cost of getting from v to t is at least d(L, t) - d(L, v) and at least d(v, L) - d(t, L). The landmark costs
+ * are lower bounds on weight under the LandmarkProfile, so scaling them by the profile's weight factor for the
+ * current request keeps the heuristic admissible.
+ *
+ * The search target is usually a temporary vertex which has no landmark costs. It is replaced by the graph vertices
+ * from which it can be reached through temporary edges, and the bound is taken over all of them. Temporary vertices
+ * near the origin get no landmark bound. In all cases the Euclidean bound is also computed and the larger of the two
+ * is used, so this heuristic is never weaker than EuclideanRemainingWeightHeuristic.
+ */
+public class LandmarkRemainingWeightHeuristic implements RemainingWeightHeuristic {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(LandmarkRemainingWeightHeuristic.class);
+
+    /** Limits the search through temporary vertices around the target. */
+    private static final int MAX_TARGET_EXPANSION = 1000;
+
+    /** Relative slack absorbing float rounding in the stored costs, so the bound never exceeds the true cost. */
+    private static final double ROUNDING_SLACK = 1e-6;
+
+    private final LandmarkSet landmarks;
+
+    private final EuclideanRemainingWeightHeuristic euclidean = new EuclideanRemainingWeightHeuristic();
+
+    private double weightPerCost;
+
+    private boolean arriveBy;
+
+    /**
+     * For each landmark, the smallest cost between the landmark and the target anchors in the direction the bound
+     * subtracts from, or null if no anchor was found.
+     */
+    private float[] targetMinimum;
+
+    /** For each landmark, the largest cost between the target anchors and the landmark in the other direction. */
+    private float[] targetMaximum;
+
+    public LandmarkRemainingWeightHeuristic(LandmarkSet landmarks) {
+        this.landmarks = landmarks;
+    }
+
+    @Override
+    public void initialize(RoutingRequest options, long abortTime) {
+        euclidean.initialize(options, abortTime);
+        weightPerCost = landmarks.profile.weightPerCost(options);
+        arriveBy = options.arriveBy;
+        targetMinimum = null;
+        targetMaximum = null;
+
+        List<Integer> anchors = findAnchors(options.rctx.target);
+        if (anchors.isEmpty()) {
+            LOG.debug("No landmark costs near target {}, using Euclidean heuristic only.", options.rctx.target);
+            return;
+        }
+        int nLandmarks = landmarks.getLandmarkCount();
+        float[] min = new float[nLandmarks];
+        float[] max = new float[nLandmarks];
+        Arrays.fill(min, Float.POSITIVE_INFINITY);
+        Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        for (int anchor : anchors) {
+            for (int l = 0; l < nLandmarks; l++) {
+                min[l] = Math.min(min[l], subtrahend(anchor, l));
+                max[l] = Math.max(max[l], minuend(anchor, l));
+            }
+        }
+        targetMinimum = min;
+        targetMaximum = max;
+    }
+
+    /**
+     * In a forward search we bound d(v, t) by d(L, t) - d(L, v) and d(v, L) - d(t, L). In an arriveBy search the
+     * target is the trip origin and we bound d(t, v) by d(t, L) - d(v, L) and d(L, v) - d(L, t). These two methods
+     * return the landmark costs playing the role of d(L, x) and d(x, L) respectively in the forward case.
+     */
+    private float subtrahend(int position, int l) {
+        return arriveBy ? landmarks.toLandmark(position, l) : landmarks.fromLandmark(position, l);
+    }
+
+    private float minuend(int position, int l) {
+        return arriveBy ? landmarks.fromLandmark(position, l) : landmarks.toLandmark(position, l);
+    }
+
+    /**
+     * Find the vertices with landmark costs from which the target can be reached (or which can be reached from the
+     * target in an arriveBy search) only through vertices without landmark costs.
+     */
+    private List<Integer> findAnchors(Vertex target) {
+        List<Integer> anchors = new ArrayList<>();
+        Set<Vertex> seen = new HashSet<>();
+        ArrayDeque<Vertex> queue = new ArrayDeque<>();
+        queue.add(target);
+        seen.add(target);
+        while (!queue.isEmpty() && seen.size() < MAX_TARGET_EXPANSION) {
+            Vertex v = queue.poll();
+            int position = landmarks.getPosition(v);
+            if (position >= 0) {
+                anchors.add(position);
+                continue;
+            }
+            Collection<Edge> edges = arriveBy ? v.getOutgoing() : v.getIncoming();
+            for (Edge e : edges) {
+                Vertex next = arriveBy ? e.getToVertex() : e.getFromVertex();
+                if (next != null && seen.add(next)) {
+                    queue.add(next);
+                }
+            }
+        }
+        if (!queue.isEmpty()) {
+            // The expansion was cut off, so there may be other ways into the target: the bound would be unsafe.
+            anchors.clear();
+        }
+        return anchors;
+    }
+
+    @Override
+    public double estimateRemainingWeight(State s) {
+        double euclideanWeight = euclidean.estimateRemainingWeight(s);
+        if (targetMinimum == null) return euclideanWeight;
+        int position = landmarks.getPosition(s.getVertex());
+        if (position < 0) return euclideanWeight;
+        double bound = 0;
+        for (int l = 0; l < targetMinimum.length; l++) {
+            bound = Math.max(bound, difference(targetMinimum[l], subtrahend(position, l)));
+            bound = Math.max(bound, difference(minuend(position, l), targetMaximum[l]));
+        }
+        return Math.max(euclideanWeight, bound * weightPerCost);
+    }
+
+    /** @return a - b reduced by the rounding slack, or zero if either is infinite and the term gives no bound. */
+    private static double difference(float a, float b) {
+        if (Float.isInfinite(a) || Float.isInfinite(b)) return 0;
+        return (a - b) - ROUNDING_SLACK * (Math.abs(a) + Math.abs(b));
+    }
+
+    @Override
+    public void reset() {}
+
+    @Override
+    public void doSomeWork() {}
+
+}
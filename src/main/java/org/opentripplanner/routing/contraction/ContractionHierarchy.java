@@ -0,0 +1,366 @@
+package org.opentripplanner.routing.contraction;
+
+import gnu.trove.map.hash.TIntDoubleHashMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import org.opentripplanner.common.pqueue.BinHeap;
+import org.opentripplanner.routing.core.ConstantIntersectionTraversalCostModel;
+import org.opentripplanner.routing.core.IntersectionTraversalCostModel;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.TemporaryEdge;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.spt.GraphPath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A contraction hierarchy over the car street network, built by ContractionHierarchyModule and stored as a graph
+ * service. Every arc is either an original car-traversable StreetEdge or a shortcut standing for two other arcs
+ * through a less important node. A query is a bidirectional Dijkstra search that only moves up the hierarchy, after
+ * which shortcuts are unpacked back into the real StreetEdges so that itinerary generation sees a normal path.
+ *
+ * Arc weights are driving times at each edge's car speed, ignoring intersection costs and turn restrictions. Only the
+ * requests whose street weights are proportional to driving time are answered from the hierarchy (see appliesTo), so
+ * that its path is also the one a normal search would find. The path found is re-traversed with the real request
+ * before it is returned, and null is returned (so the caller can fall back to a normal search) if any edge refuses
+ * the traversal, e.g. because of a turn restriction.
+ *
+ * Only point-to-point searches use the hierarchy. The car access and egress searches of mixed-mode requests (see
+ * InterleavedBidirectionalHeuristic.streetSearch) explore every stop or park within reach of one point, which a
+ * hierarchy built for one origin and one destination does not speed up, so they still run a plain street search.
+ */
+public class ContractionHierarchy implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(ContractionHierarchy.class);
+
+    /** Limits the search through temporary vertices around the origin and destination. */
+    private static final int MAX_TEMPORARY_EXPANSION = 100;
+
+    private final Vertex[] vertices;
+
+    /** Arcs leading from each node to more important nodes, in compressed sparse row form. */
+    private final int[] upStart, upArc;
+
+    /** Arcs arriving at each node from more important nodes, in compressed sparse row form. */
+    private final int[] downStart, downArc;
+
+    private final int[] arcTail, arcHead;
+
+    private final float[] arcWeight;
+
+    /** For original arcs, the edge they represent. Null for shortcuts. */
+    private final StreetEdge[] arcEdge;
+
+    /** For shortcuts, the two arcs they replace. */
+    private final int[] arcFirst, arcSecond;
+
+    private transient volatile int[] nodeByVertexIndex;
+
+    ContractionHierarchy(Vertex[] vertices, int[] rank, int[] arcTail, int[] arcHead, float[] arcWeight,
+            StreetEdge[] arcEdge, int[] arcFirst, int[] arcSecond) {
+        this.vertices = vertices;
+        this.arcTail = arcTail;
+        this.arcHead = arcHead;
+        this.arcWeight = arcWeight;
+        this.arcEdge = arcEdge;
+        this.arcFirst = arcFirst;
+        this.arcSecond = arcSecond;
+        int n = vertices.length;
+        int nArcs = arcTail.length;
+        upStart = new int[n + 1];
+        downStart = new int[n + 1];
+        for (int a = 0; a < nArcs; a++) {
+            if (rank[arcHead[a]] > rank[arcTail[a]]) {
+                upStart[arcTail[a] + 1]++;
+            } else {
+                downStart[arcHead[a] + 1]++;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            upStart[v + 1] += upStart[v];
+            downStart[v + 1] += downStart[v];
+        }
+        upArc = new int[upStart[n]];
+        downArc = new int[downStart[n]];
+        int[] upFill = Arrays.copyOf(upStart, n);
+        int[] downFill = Arrays.copyOf(downStart, n);
+        for (int a = 0; a < nArcs; a++) {
+            if (rank[arcHead[a]] > rank[arcTail[a]]) {
+                upArc[upFill[arcTail[a]]++] = a;
+            } else {
+                downArc[downFill[arcHead[a]]++] = a;
+            }
+        }
+    }
+
+    public int getNodeCount() {
+        return vertices.length;
+    }
+
+    public int getArcCount() {
+        return arcTail.length;
+    }
+
+    /**
+     * @return whether the given request can be answered from this hierarchy. The request must opt in with
+     * carContractionHierarchy and weigh car edges by their driving time alone, like the hierarchy does: intersections
+     * must cost nothing and driving distance must not be penalized. Default requests qualify on neither count, so they
+     * always get a normal search.
+     */
+    public boolean appliesTo(RoutingRequest options) {
+        return options.carContractionHierarchy && options.isCarOnly() && options.rctx != null
+                && hasNoIntersectionCosts(options) && options.driveDistanceReluctance <= 0;
+    }
+
+    private static boolean hasNoIntersectionCosts(RoutingRequest options) {
+        if (options.turnReluctance == 0) return true;
+        IntersectionTraversalCostModel costModel = options.getIntersectionTraversalCostModel();
+        return costModel instanceof ConstantIntersectionTraversalCostModel
+                && ((ConstantIntersectionTraversalCostModel) costModel).getCost() == 0;
+    }
+
+    /**
+     * Find the fastest car path between the from and to vertices of the request's routing context and traverse it
+     * with the request, in the direction of the request.
+     *
+     * @return the path, or null if there is none or it cannot be traversed under the request's rules.
+     */
+    public GraphPath findPath(RoutingRequest options) {
+        List<Edge> edges = findEdges(options.rctx.fromVertex, options.rctx.toVertex);
+        if (edges == null) return null;
+        if (options.arriveBy) {
+            edges = new ArrayList<>(edges);
+            Collections.reverse(edges);
+        }
+        State state = new State(options);
+        for (Edge edge : edges) {
+            state = edge.traverse(state);
+            if (state == null) {
+                LOG.debug("Contraction hierarchy path is not traversable at {}, falling back to search.", edge);
+                return null;
+            }
+        }
+        if (state.getVertex() != options.rctx.target || !state.isFinal()) return null;
+        return new GraphPath(state, true);
+    }
+
+    /** @return the edges of the fastest car path from one vertex to another in forward order, or null if none. */
+    public List<Edge> findEdges(Vertex from, Vertex to) {
+        Seeds sources = new Seeds(from, true, to);
+        Seeds targets = new Seeds(to, false, null);
+        if (sources.nodes.isEmpty() && sources.directPath == null) return null;
+
+        TIntDoubleHashMap forwardWeight = new TIntDoubleHashMap(64, 0.5f, -1, Double.POSITIVE_INFINITY);
+        TIntDoubleHashMap backwardWeight = new TIntDoubleHashMap(64, 0.5f, -1, Double.POSITIVE_INFINITY);
+        TIntIntHashMap forwardArc = new TIntIntHashMap(64, 0.5f, -1, -1);
+        TIntIntHashMap backwardArc = new TIntIntHashMap(64, 0.5f, -1, -1);
+        BinHeap<Integer> forwardQueue = new BinHeap<>();
+        BinHeap<Integer> backwardQueue = new BinHeap<>();
+        sources.nodes.forEach((node, weight) -> {
+            forwardWeight.put(node, weight);
+            forwardQueue.insert(node, weight);
+        });
+        targets.nodes.forEach((node, weight) -> {
+            backwardWeight.put(node, weight);
+            backwardQueue.insert(node, weight);
+        });
+
+        double best = sources.directWeight;
+        int meetingNode = -1;
+        while (true) {
+            boolean forwardDone = forwardQueue.empty() || forwardQueue.peek_min_key() >= best;
+            boolean backwardDone = backwardQueue.empty() || backwardQueue.peek_min_key() >= best;
+            if (forwardDone && backwardDone) break;
+            boolean forward = backwardDone ||
+                    (!forwardDone && forwardQueue.peek_min_key() <= backwardQueue.peek_min_key());
+            BinHeap<Integer> queue = forward ? forwardQueue : backwardQueue;
+            TIntDoubleHashMap weights = forward ? forwardWeight : backwardWeight;
+            TIntDoubleHashMap otherWeights = forward ? backwardWeight : forwardWeight;
+            TIntIntHashMap arcs = forward ? forwardArc : backwardArc;
+
+            double w = queue.peek_min_key();
+            int node = queue.extract_min();
+            if (w > weights.get(node)) continue; // Stale queue entry.
+            double meeting = w + otherWeights.get(node);
+            if (meeting < best) {
+                best = meeting;
+                meetingNode = node;
+            }
+            int[] start = forward ? upStart : downStart;
+            int[] adjacent = forward ? upArc : downArc;
+            for (int i = start[node]; i < start[node + 1]; i++) {
+                int a = adjacent[i];
+                int next = forward ? arcHead[a] : arcTail[a];
+                double nextWeight = w + arcWeight[a];
+                if (nextWeight < weights.get(next)) {
+                    weights.put(next, nextWeight);
+                    arcs.put(next, a);
+                    queue.insert(next, nextWeight);
+                }
+            }
+        }
+        if (meetingNode < 0) {
+            return sources.directPath;
+        }
+
+        // Arcs from the meeting node back to a source node, then forward to a target node.
+        Deque<Integer> upArcs = new ArrayDeque<>();
+        int node = meetingNode;
+        for (int a = forwardArc.get(node); a >= 0; a = forwardArc.get(node)) {
+            upArcs.addFirst(a);
+            node = arcTail[a];
+        }
+        List<Edge> edges = new ArrayList<>(sources.pathTo(node));
+        for (int a : upArcs) {
+            unpack(a, edges);
+        }
+        node = meetingNode;
+        for (int a = backwardArc.get(node); a >= 0; a = backwardArc.get(node)) {
+            unpack(a, edges);
+            node = arcHead[a];
+        }
+        edges.addAll(targets.pathTo(node));
+        return edges;
+    }
+
+    /** Append the original edges represented by the given arc, in order. */
+    private void unpack(int arc, List<Edge> edges) {
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(arc);
+        while (!stack.isEmpty()) {
+            int a = stack.pop();
+            if (arcEdge[a] != null) {
+                edges.add(arcEdge[a]);
+            } else {
+                stack.push(arcSecond[a]);
+                stack.push(arcFirst[a]);
+            }
+        }
+    }
+
+    /** @return the node for the given vertex, or -1 if it is not part of the hierarchy. */
+    int getNode(Vertex vertex) {
+        int[] nodes = nodeByVertexIndex;
+        if (nodes == null) {
+            nodes = buildNodeIndex();
+        }
+        int index = vertex.getIndex();
+        if (index < 0 || index >= nodes.length) return -1;
+        int node = nodes[index];
+        if (node < 0 || vertices[node] != vertex) return -1;
+        return node;
+    }
+
+    private synchronized int[] buildNodeIndex() {
+        if (nodeByVertexIndex == null) {
+            int maxIndex = 0;
+            for (Vertex v : vertices) {
+                maxIndex = Math.max(maxIndex, v.getIndex());
+            }
+            int[] nodes = new int[maxIndex + 1];
+            Arrays.fill(nodes, -1);
+            for (int node = 0; node < vertices.length; node++) {
+                nodes[vertices[node].getIndex()] = node;
+            }
+            nodeByVertexIndex = nodes;
+        }
+        return nodeByVertexIndex;
+    }
+
+    /** @return the driving time on a street edge, or -1 if it cannot be driven. Temporary connectors cost nothing. */
+    private static double carTime(Edge edge) {
+        if (edge instanceof StreetEdge) {
+            StreetEdge streetEdge = (StreetEdge) edge;
+            if (!streetEdge.canTraverseIncludingBarrier(TraverseMode.CAR)) return -1;
+            return streetEdge.getDistance() / streetEdge.getCarSpeed();
+        }
+        return edge instanceof TemporaryEdge ? 0 : -1;
+    }
+
+    /**
+     * The hierarchy nodes nearest to an origin or destination that may be a temporary vertex, found by a small
+     * Dijkstra search through the vertices that are not part of the hierarchy, along with the paths to them.
+     */
+    private class Seeds {
+
+        final Map<Integer, Double> nodes = new HashMap<>();
+        private final Map<Integer, Vertex> vertexByNode = new HashMap<>();
+        private final Map<Vertex, Edge> parentEdge = new HashMap<>();
+        private final boolean forward;
+
+        /** A path from the origin to the destination that does not touch the hierarchy, if one was found. */
+        List<Edge> directPath = null;
+        double directWeight = Double.POSITIVE_INFINITY;
+
+        Seeds(Vertex start, boolean forward, Vertex other) {
+            this.forward = forward;
+            Map<Vertex, Double> weights = new HashMap<>();
+            BinHeap<Vertex> queue = new BinHeap<>();
+            weights.put(start, 0.0);
+            queue.insert(start, 0);
+            int nExpanded = 0;
+            while (!queue.empty() && nExpanded < MAX_TEMPORARY_EXPANSION) {
+                double w = queue.peek_min_key();
+                Vertex v = queue.extract_min();
+                if (w > weights.get(v)) continue;
+                int node = getNode(v);
+                if (node >= 0) {
+                    nodes.put(node, w);
+                    vertexByNode.put(node, v);
+                    continue;
+                }
+                if (v == other) {
+                    directWeight = w;
+                    directPath = pathTo(v);
+                    continue;
+                }
+                nExpanded++;
+                for (Edge e : forward ? v.getOutgoing() : v.getIncoming()) {
+                    double time = carTime(e);
+                    if (time < 0) continue;
+                    Vertex next = forward ? e.getToVertex() : e.getFromVertex();
+                    double nextWeight = w + time;
+                    Double oldWeight = weights.get(next);
+                    if (oldWeight == null || nextWeight < oldWeight) {
+                        weights.put(next, nextWeight);
+                        parentEdge.put(next, e);
+                        queue.insert(next, nextWeight);
+                    }
+                }
+            }
+        }
+
+        /** @return the edges between the start vertex and the given node in forward order. */
+        List<Edge> pathTo(int node) {
+            return pathTo(vertexByNode.get(node));
+        }
+
+        private List<Edge> pathTo(Vertex v) {
+            List<Edge> path = new ArrayList<>();
+            for (Edge e = parentEdge.get(v); e != null; e = parentEdge.get(v)) {
+                path.add(e);
+                v = forward ? e.getFromVertex() : e.getToVertex();
+            }
+            if (forward) {
+                Collections.reverse(path);
+            }
+            return path;
+        }
+    }
+
+}
@@ -0,0 +1,243 @@
+package org.opentripplanner.routing.contraction;
+
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongIntHashMap;
+import org.opentripplanner.common.pqueue.BinHeap;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.graph.Vertex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a ContractionHierarchy from a set of street edges. Nodes are contracted in order of increasing priority,
+ * where the priority is the edge difference (shortcuts added minus arcs removed) plus the number of neighbors that
+ * were already contracted, which keeps the contraction spread evenly over the graph. Priorities are updated lazily:
+ * a node taken from the queue is re-evaluated and put back if it is no longer the best candidate.
+ *
+ * When a node v is contracted, a shortcut u->w is added for each pair of arcs u->v->w unless a witness search finds
+ * a path from u to w that avoids v and is no longer. Witness searches are limited in size, which can only add
+ * unnecessary shortcuts and never makes query results wrong.
+ */
+public class ContractionHierarchyBuilder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ContractionHierarchyBuilder.class);
+
+    /** Maximum number of nodes settled by a single witness search. */
+    private static final int WITNESS_SETTLED_LIMIT = 500;
+
+    private final Map<Vertex, Integer> nodeByVertex = new HashMap<>();
+    private final List<Vertex> vertices = new ArrayList<>();
+    private final List<TIntArrayList> outArcs = new ArrayList<>();
+    private final List<TIntArrayList> inArcs = new ArrayList<>();
+
+    private final TIntArrayList arcTail = new TIntArrayList();
+    private final TIntArrayList arcHead = new TIntArrayList();
+    private final TDoubleArrayList arcWeight = new TDoubleArrayList();
+    private final List<StreetEdge> arcEdge = new ArrayList<>();
+    private final TIntArrayList arcFirst = new TIntArrayList();
+    private final TIntArrayList arcSecond = new TIntArrayList();
+
+    /** Only the fastest of several parallel street edges is kept. */
+    private final TLongIntHashMap originalArcByNodePair = new TLongIntHashMap(1000, 0.5f, -1, -1);
+
+    private boolean[] contracted;
+
+    /* Witness search state, reused between searches. */
+    private double[] witnessWeight;
+    private final TIntArrayList witnessTouched = new TIntArrayList();
+
+    /** Add a car-traversable street edge to the graph that will be contracted. */
+    public void addEdge(StreetEdge edge) {
+        double weight = edge.getDistance() / edge.getCarSpeed();
+        if (!(weight >= 0) || Double.isInfinite(weight)) return;
+        int tail = getOrCreateNode(edge.getFromVertex());
+        int head = getOrCreateNode(edge.getToVertex());
+        if (tail == head) return;
+        long pair = ((long) tail << 32) | head;
+        int existing = originalArcByNodePair.get(pair);
+        if (existing >= 0) {
+            if (arcWeight.get(existing) > weight) {
+                arcWeight.set(existing, weight);
+                arcEdge.set(existing, edge);
+            }
+            return;
+        }
+        originalArcByNodePair.put(pair, addArc(tail, head, weight, edge, -1, -1));
+    }
+
+    private int getOrCreateNode(Vertex vertex) {
+        Integer node = nodeByVertex.get(vertex);
+        if (node == null) {
+            node = vertices.size();
+            nodeByVertex.put(vertex, node);
+            vertices.add(vertex);
+            outArcs.add(new TIntArrayList(4));
+            inArcs.add(new TIntArrayList(4));
+        }
+        return node;
+    }
+
+    private int addArc(int tail, int head, double weight, StreetEdge edge, int first, int second) {
+        int arc = arcTail.size();
+        arcTail.add(tail);
+        arcHead.add(head);
+        arcWeight.add(weight);
+        arcEdge.add(edge);
+        arcFirst.add(first);
+        arcSecond.add(second);
+        outArcs.get(tail).add(arc);
+        inArcs.get(head).add(arc);
+        return arc;
+    }
+
+    public ContractionHierarchy build() {
+        int n = vertices.size();
+        int nOriginalArcs = arcTail.size();
+        contracted = new boolean[n];
+        witnessWeight = new double[n];
+        Arrays.fill(witnessWeight, Double.POSITIVE_INFINITY);
+        int[] rank = new int[n];
+        int[] contractedNeighbors = new int[n];
+
+        BinHeap<Integer> queue = new BinHeap<>(n);
+        for (int v = 0; v < n; v++) {
+            queue.insert(v, priority(v, 0));
+        }
+        int nextRank = 0;
+        while (!queue.empty()) {
+            int v = queue.extract_min();
+            double priority = priority(v, contractedNeighbors[v]);
+            if (!queue.empty() && priority > queue.peek_min_key()) {
+                queue.insert(v, priority);
+                continue;
+            }
+            contract(v, true);
+            contracted[v] = true;
+            rank[v] = nextRank++;
+            for (int neighbor : uncontractedNeighbors(inArcs.get(v), false).keySet()) {
+                contractedNeighbors[neighbor]++;
+            }
+            for (int neighbor : uncontractedNeighbors(outArcs.get(v), true).keySet()) {
+                contractedNeighbors[neighbor]++;
+            }
+            if (nextRank % 100000 == 0) {
+                LOG.info("Contracted {} of {} nodes, {} shortcuts", nextRank, n, arcTail.size() - nOriginalArcs);
+            }
+        }
+        LOG.info("Contracted {} nodes with {} original arcs and {} shortcuts", n, nOriginalArcs,
+                arcTail.size() - nOriginalArcs);
+
+        int nArcs = arcTail.size();
+        float[] weights = new float[nArcs];
+        for (int a = 0; a < nArcs; a++) {
+            weights[a] = (float) arcWeight.get(a);
+        }
+        return new ContractionHierarchy(vertices.toArray(new Vertex[n]), rank, arcTail.toArray(), arcHead.toArray(),
+                weights, arcEdge.toArray(new StreetEdge[nArcs]), arcFirst.toArray(), arcSecond.toArray());
+    }
+
+    private double priority(int v, int contractedNeighbors) {
+        int degree = uncontractedNeighbors(inArcs.get(v), false).size()
+                + uncontractedNeighbors(outArcs.get(v), true).size();
+        return contract(v, false) - degree + contractedNeighbors;
+    }
+
+    /**
+     * @return for each uncontracted node at the other end of the given arcs, the fastest arc to or from it.
+     * @param outgoing whether the arcs leave the node (so the neighbor is the head) or arrive at it.
+     */
+    private Map<Integer, Integer> uncontractedNeighbors(TIntArrayList arcs, boolean outgoing) {
+        Map<Integer, Integer> arcByNeighbor = new HashMap<>();
+        for (int i = 0; i < arcs.size(); i++) {
+            int a = arcs.get(i);
+            int neighbor = outgoing ? arcHead.get(a) : arcTail.get(a);
+            if (contracted[neighbor]) continue;
+            Integer existing = arcByNeighbor.get(neighbor);
+            if (existing == null || arcWeight.get(a) < arcWeight.get(existing)) {
+                arcByNeighbor.put(neighbor, a);
+            }
+        }
+        return arcByNeighbor;
+    }
+
+    /**
+     * Determine the shortcuts needed to remove node v from the remaining graph, and add them if requested.
+     * @return the number of shortcuts needed.
+     */
+    private int contract(int v, boolean addShortcuts) {
+        Map<Integer, Integer> in = uncontractedNeighbors(inArcs.get(v), false);
+        Map<Integer, Integer> out = uncontractedNeighbors(outArcs.get(v), true);
+        int nShortcuts = 0;
+        for (Map.Entry<Integer, Integer> inEntry : in.entrySet()) {
+            int u = inEntry.getKey();
+            int inArc = inEntry.getValue();
+            double inWeight = arcWeight.get(inArc);
+            double maxWeight = 0;
+            for (Map.Entry<Integer, Integer> outEntry : out.entrySet()) {
+                if (outEntry.getKey() != u) {
+                    maxWeight = Math.max(maxWeight, inWeight + arcWeight.get(outEntry.getValue()));
+                }
+            }
+            witnessSearch(u, v, maxWeight);
+            for (Map.Entry<Integer, Integer> outEntry : out.entrySet()) {
+                int w = outEntry.getKey();
+                if (w == u) continue;
+                int outArc = outEntry.getValue();
+                double viaWeight = inWeight + arcWeight.get(outArc);
+                if (witnessWeight[w] > viaWeight) {
+                    nShortcuts++;
+                    if (addShortcuts) {
+                        addArc(u, w, viaWeight, null, inArc, outArc);
+                    }
+                }
+            }
+            clearWitnessSearch();
+        }
+        return nShortcuts;
+    }
+
+    /** Dijkstra search from the source over uncontracted nodes except the one being contracted. */
+    private void witnessSearch(int source, int excluded, double maxWeight) {
+        BinHeap<Integer> queue = new BinHeap<>();
+        witnessWeight[source] = 0;
+        witnessTouched.add(source);
+        queue.insert(source, 0);
+        int nSettled = 0;
+        while (!queue.empty() && nSettled < WITNESS_SETTLED_LIMIT) {
+            double weight = queue.peek_min_key();
+            if (weight > maxWeight) break;
+            int node = queue.extract_min();
+            if (weight > witnessWeight[node]) continue;
+            nSettled++;
+            TIntArrayList arcs = outArcs.get(node);
+            for (int i = 0; i < arcs.size(); i++) {
+                int a = arcs.get(i);
+                int next = arcHead.get(a);
+                if (next == excluded || contracted[next]) continue;
+                double nextWeight = weight + arcWeight.get(a);
+                if (nextWeight < witnessWeight[next]) {
+                    if (witnessWeight[next] == Double.POSITIVE_INFINITY) {
+                        witnessTouched.add(next);
+                    }
+                    witnessWeight[next] = nextWeight;
+                    queue.insert(next, nextWeight);
+                }
+            }
+        }
+    }
+
+    private void clearWitnessSearch() {
+        for (int i = 0; i < witnessTouched.size(); i++) {
+            witnessWeight[witnessTouched.get(i)] = Double.POSITIVE_INFINITY;
+        }
+        witnessTouched.resetQuick();
+    }
+
+}
@@ -0,0 +1,129 @@
+package org.opentripplanner.routing.core;
+
+import gnu.trove.list.array.TIntArrayList;
+import org.opentripplanner.common.model.P2;
+import org.opentripplanner.model.FeedScopedId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An index of fare rules by feed, route, origin zone and destination zone, to find the few rules that may match a
+ * sequence of rides without checking every rule of large feeds.
+ *
+ * A rule is indexed under each of the values it restricts, and under a wildcard (null) for the values it does not
+ * restrict. A rule without agency is restricted to the feed of its fare attribute. A rule with routes can only match
+ * rides that all are on one of its routes, so also the first ride. The origin/destination pairs are indexed the way
+ * FareRuleSet.matches interprets them. The index only finds candidates: FareRuleSet.matches still has to be checked.
+ */
+public class FareRuleIndex {
+
+    private final List<FareRuleSet> fareRules;
+
+    private final Map<Key, int[]> rulesByKey = new HashMap<>();
+
+    public FareRuleIndex(Collection<FareRuleSet> fareRules) {
+        this.fareRules = new ArrayList<>(fareRules);
+        Map<Key, TIntArrayList> rules = new HashMap<>();
+        for (int i = 0; i < this.fareRules.size(); i++) {
+            FareRuleSet ruleSet = this.fareRules.get(i);
+            String feedId = ruleSet.hasAgencyDefined() ? null : ruleSet.getFareAttribute().getId().getAgencyId();
+            Collection<FeedScopedId> routes = ruleSet.getRoutes().isEmpty()
+                    ? Collections.<FeedScopedId>singleton(null) : ruleSet.getRoutes();
+            List<P2<String>> zones = new ArrayList<>();
+            if (ruleSet.getOriginDestinations().isEmpty()) {
+                zones.add(new P2<>(null, null));
+            }
+            for (P2<String> od : ruleSet.getOriginDestinations()) {
+                if (od.first != null) {
+                    // Matches the exact origin and destination, or any destination when there is none.
+                    zones.add(od);
+                } else {
+                    // Matches rides from no zone to the destination, but also rides starting in the destination zone.
+                    zones.add(new P2<>(null, od.second));
+                    zones.add(new P2<>(od.second, null));
+                }
+            }
+            for (FeedScopedId route : routes) {
+                for (P2<String> od : zones) {
+                    rules.computeIfAbsent(new Key(feedId, route, od.first, od.second), k -> new TIntArrayList())
+                            .add(i);
+                }
+            }
+        }
+        for (Map.Entry<Key, TIntArrayList> entry : rules.entrySet()) {
+            rulesByKey.put(entry.getKey(), entry.getValue().toArray());
+        }
+    }
+
+    /**
+     * @return the rules that may match rides of the given feed starting on the given route and zone and ending in
+     * the given zone, in the order the rules were given to the index.
+     */
+    public List<FareRuleSet> getCandidates(String feedId, FeedScopedId firstRoute, String startZone,
+            String endZone) {
+        TIntArrayList indexes = new TIntArrayList();
+        for (String feed : wildcards(feedId)) {
+            for (FeedScopedId route : wildcards(firstRoute)) {
+                for (String origin : wildcards(startZone)) {
+                    for (String destination : wildcards(endZone)) {
+                        int[] rules = rulesByKey.get(new Key(feed, route, origin, destination));
+                        if (rules != null) {
+                            indexes.add(rules);
+                        }
+                    }
+                }
+            }
+        }
+        // Keep the original order, which decides between rules with the same price.
+        indexes.sort();
+        List<FareRuleSet> candidates = new ArrayList<>(indexes.size());
+        for (int i = 0; i < indexes.size(); i++) {
+            if (i > 0 && indexes.get(i) == indexes.get(i - 1)) continue;
+            candidates.add(fareRules.get(indexes.get(i)));
+        }
+        return candidates;
+    }
+
+    private static <T> List<T> wildcards(T value) {
+        return value == null ? Collections.<T>singletonList(null) : Arrays.asList(value, null);
+    }
+
+    private static class Key {
+
+        final String feedId;
+
+        final FeedScopedId route;
+
+        final String origin;
+
+        final String destination;
+
+        Key(String feedId, FeedScopedId route, String origin, String destination) {
+            this.feedId = feedId;
+            this.route = route;
+            this.origin = origin;
+            this.destination = destination;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Objects.equals(feedId, key.feedId) && Objects.equals(route, key.route)
+                    && Objects.equals(origin, key.origin) && Objects.equals(destination, key.destination);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(feedId, route, origin, destination);
+        }
+    }
+}
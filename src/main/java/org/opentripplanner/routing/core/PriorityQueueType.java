@@ -0,0 +1,9 @@
+package org.opentripplanner.routing.core;
+
+/**
+ * The priority queue used by the AStar search.
+ */
+public enum PriorityQueueType {
+    BINARY_HEAP, /* no decrease-key, dominated states stay in the queue until they are visited */
+    INDEXED_FOUR_ARY_HEAP /* dominated states are removed from the queue or replaced by the state dominating them */
+}
@@ -364,7 +364,8 @@ public class RoutingContext implements Cloneable {
     /**
      * Cache ServiceDay objects representing which services are running yesterday, today, and tomorrow relative to the search time. This information
      * is very heavily used (at every transit boarding) and Date operations were identified as a performance bottleneck. Must be called after the
-     * TraverseOptions already has a CalendarService set.
+     * TraverseOptions already has a CalendarService set. The ServiceDays themselves come from the graph's ServiceDayCache and are
+     * shared with other requests.
      */
     private void setServiceDays() {
         Calendar c = Calendar.getInstance();
@@ -385,20 +386,20 @@ public class RoutingContext implements Cloneable {
         // can begin is 1 service day (e.g. a trip which started yesterday is usable today.) This
         // does not address the case where a trip started multiple days ago (e.g. a multi-day ferry
         // trip will not be board-able after day 2).
+        ServiceDayCache serviceDayCache = graph.getServiceDayCache();
         for (TimeZone timeZone : graph.getAllTimeZones()) {
             // Add today
-            addIfNotExists(this.serviceDays, new ServiceDay(graph, serviceDate, calendarService, timeZone));
+            addIfNotExists(this.serviceDays, serviceDayCache.getServiceDay(serviceDate, timeZone));
             // Add one day previous (previous in the direction of the transit search, so yesterday if
             // arriveBy=false and tomorrow if arriveBy=true
-            addIfNotExists(this.serviceDays, new ServiceDay(graph,
-                opt.arriveBy ? serviceDate.next() : serviceDate.previous(),
-                calendarService, timeZone));
+            addIfNotExists(this.serviceDays, serviceDayCache.getServiceDay(
+                opt.arriveBy ? serviceDate.next() : serviceDate.previous(), timeZone));
             // Add one or more days in the "forward" direction
             ServiceDate sd = serviceDate;
             int lookout = Math.max(1, opt.serviceDayLookout);
             for (int i = 0; i < lookout; i++) {
                 sd = opt.arriveBy ? sd.previous() : sd.next();
-                addIfNotExists(this.serviceDays, new ServiceDay(graph, sd, calendarService, timeZone));
+                addIfNotExists(this.serviceDays, serviceDayCache.getServiceDay(sd, timeZone));
             }
         }
         serviceDays.sort(Comparator.comparing(ServiceDay::getServiceDate));
@@ -19,6 +19,7 @@ import org.opentripplanner.routing.request.BannedStopSet;
 import org.opentripplanner.routing.spt.DominanceFunction;
 import org.opentripplanner.routing.spt.GraphPath;
 import org.opentripplanner.routing.spt.ShortestPathTree;
+import org.opentripplanner.routing.transportation_network_company.TransportationNetworkCompanyEta;
 import org.opentripplanner.routing.trippattern.TripTimes;
 import org.opentripplanner.util.DateUtils;
 import org.slf4j.Logger;
@@ -348,10 +349,16 @@ public class RoutingRequest implements Cloneable, Serializable {
     /** Only use certain named agencies */
     public HashSet<String> whiteListedAgencies = new HashSet<String>();
 
-    /** Do not use certain trips */
+    /**
+     * Do not use certain trips. Cloned requests share this map, so it is never modified in place: use banTrip,
+     * banTrips and clearBannedTrips, which replace it with a modified copy.
+     */
     public HashMap<FeedScopedId, BannedStopSet> bannedTrips = new HashMap<FeedScopedId, BannedStopSet>();
 
-    /** Do not use certain trip sequences */
+    /**
+     * Do not use certain trip sequences. Like bannedTrips this is shared by cloned requests and replaced rather than
+     * modified, see banTripSequencesInPath.
+     */
     public List<List<FeedScopedId>> bannedTripSequences = new LinkedList<>();
 
     /** Do not use certain stops. See for more information the bannedStops property in the RoutingResource class. */
@@ -420,9 +427,19 @@ public class RoutingRequest implements Cloneable, Serializable {
     /** For the bike triangle, how important safety is */
     public double triangleSafetyFactor;
 
-    /** Options specifically for the case that you are walking a bicycle. */
+    /**
+     * Options specifically for the case that you are walking a bicycle. This may be shared with cloned requests, see
+     * mutableBikeWalkingOptions().
+     */
     public RoutingRequest bikeWalkingOptions;
 
+    /*
+     * True when the bikeWalkingOptions object may be referenced by another request and must be copied before writing.
+     * Cloning sets it on the cloned request as well, and a prototype request may be cloned by several threads at once
+     * (e.g. TravelTimeMatrix), so it is volatile.
+     */
+    private transient volatile boolean bikeWalkingOptionsShared = false;
+
     /** This is true when a GraphPath is being traversed in reverse for optimization purposes. */
     public boolean reverseOptimizing = false;
 
@@ -488,6 +505,33 @@ public class RoutingRequest implements Cloneable, Serializable {
      */
     public boolean disableRemainingWeightHeuristic = false;
 
+    /**
+     * If true and the graph contains car landmark data, car-only street searches use the landmark (ALT) remaining
+     * weight heuristic instead of the Euclidean one. See LandmarkModule.
+     */
+    public boolean carLandmarkHeuristic = true;
+
+    /**
+     * If true and the graph contains bicycle landmark data, non-transit bicycle searches (including bike rental)
+     * use the landmark (ALT) remaining weight heuristic instead of the Euclidean one. See LandmarkModule.
+     */
+    public boolean bicycleLandmarkHeuristic = true;
+
+    /**
+     * If true and the graph contains a car contraction hierarchy, car-only searches are answered from the contraction
+     * hierarchy instead of a full AStar search. The hierarchy minimizes driving time without intersection costs, so it
+     * is only used when the request has no intersection costs either (turnReluctance of 0 or a zero constant
+     * intersection cost model). The default request has intersection costs, so this is off by default and must be
+     * enabled together with those settings, e.g. in the routingDefaults. See ContractionHierarchy.appliesTo.
+     */
+    public boolean carContractionHierarchy = false;
+
+    /**
+     * The priority queue of the AStar search. The indexed heap removes the states dominated by a newer state from the
+     * queue, which keeps it smaller on car and bicycle searches where many states are dominated.
+     */
+    public PriorityQueueType priorityQueue = PriorityQueueType.BINARY_HEAP;
+
     /**
      * Extra penalty added for flag-stop boarding/alighting. This parameter only applies to
      * GTFS-Flex routing, which must be explicitly turned on via the useFlexService parameter
@@ -711,8 +755,15 @@ public class RoutingRequest implements Cloneable, Serializable {
     // graph search can proceed and give walking a time advantage and we can reuse the estimate
     // instead of making numerous requests at very similar locaions.
     // initial value of -1 indicates ETA is not available
+    // When transportationNetworkCompanyEta is set, use getTransportationNetworkCompanyEtaAtOrigin() which waits for it.
     public int transportationNetworkCompanyEtaAtOrigin = -1;
 
+    /**
+     * The TNC arrival estimates at the origin, requested when this request was parsed and received in the background
+     * while the search is set up. Null when no estimates were requested.
+     */
+    public transient TransportationNetworkCompanyEta transportationNetworkCompanyEta;
+
     public String companies;
 
     /** If request date is invalid, apply the provided strategy to come up with a valid date. */
@@ -878,7 +929,7 @@ public class RoutingRequest implements Cloneable, Serializable {
 
     public void setArriveBy(boolean arriveBy) {
         this.arriveBy = arriveBy;
-        bikeWalkingOptions.arriveBy = arriveBy;
+        mutableBikeWalkingOptions().arriveBy = arriveBy;
         if (worstTime == Long.MAX_VALUE || worstTime == 0)
             worstTime = arriveBy ? 0 : Long.MAX_VALUE;
     }
@@ -893,6 +944,7 @@ public class RoutingRequest implements Cloneable, Serializable {
             // This alternate routing request is used when we get off a bike to take a shortcut and are
             // walking alongside the bike. FIXME why are we only copying certain fields instead of cloning the request?
             bikeWalkingOptions = new RoutingRequest();
+            bikeWalkingOptionsShared = false;
             bikeWalkingOptions.setArriveBy(this.arriveBy);
             bikeWalkingOptions.maxWalkDistance = maxWalkDistance;
             bikeWalkingOptions.maxPreTransitTime = maxPreTransitTime;
@@ -909,6 +961,7 @@ public class RoutingRequest implements Cloneable, Serializable {
             bikeWalkingOptions.stairsReluctance = stairsReluctance * 5; // carrying bikes on stairs is awful
         } else if (modes.getCar()) {
             bikeWalkingOptions = new RoutingRequest();
+            bikeWalkingOptionsShared = false;
             bikeWalkingOptions.setArriveBy(this.arriveBy);
             bikeWalkingOptions.maxWalkDistance = maxWalkDistance;
             bikeWalkingOptions.maxPreTransitTime = maxPreTransitTime;
@@ -920,7 +973,7 @@ public class RoutingRequest implements Cloneable, Serializable {
 
     public void setOptimize(OptimizeType optimize) {
         this.optimize = optimize;
-        bikeWalkingOptions.optimize = optimize;
+        mutableBikeWalkingOptions().optimize = optimize;
     }
 
     public void setWheelchairAccessible(boolean wheelchairAccessible) {
@@ -932,7 +985,9 @@ public class RoutingRequest implements Cloneable, Serializable {
      */
     public void freezeTraverseMode() {
         bikeWalkingOptions = clone();
+        bikeWalkingOptionsShared = false;
         bikeWalkingOptions.bikeWalkingOptions = new RoutingRequest(new TraverseModeSet());
+        bikeWalkingOptions.bikeWalkingOptionsShared = false;
     }
 
     /**
@@ -1210,17 +1265,17 @@ public class RoutingRequest implements Cloneable, Serializable {
 
     public void setTriangleSafetyFactor(double triangleSafetyFactor) {
         this.triangleSafetyFactor = triangleSafetyFactor;
-        bikeWalkingOptions.triangleSafetyFactor = triangleSafetyFactor;
+        mutableBikeWalkingOptions().triangleSafetyFactor = triangleSafetyFactor;
     }
 
     public void setTriangleSlopeFactor(double triangleSlopeFactor) {
         this.triangleSlopeFactor = triangleSlopeFactor;
-        bikeWalkingOptions.triangleSlopeFactor = triangleSlopeFactor;
+        mutableBikeWalkingOptions().triangleSlopeFactor = triangleSlopeFactor;
     }
 
     public void setTriangleTimeFactor(double triangleTimeFactor) {
         this.triangleTimeFactor = triangleTimeFactor;
-        bikeWalkingOptions.triangleTimeFactor = triangleTimeFactor;
+        mutableBikeWalkingOptions().triangleTimeFactor = triangleTimeFactor;
     }
 
     public NamedPlace getFromPlace() {
@@ -1233,24 +1288,26 @@ public class RoutingRequest implements Cloneable, Serializable {
 
     /* INSTANCE METHODS */
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Make a shallow copy of this request. Cloning happens several times per trip planning request (per itinerary,
+     * per reversed search, per heuristic street search...) so it must be cheap.
+     *
+     * The route and stop matchers and the agency sets are never modified in place once set (the setters replace
+     * them), so they are shared between the clones. The same holds for the trip bans, which banTrip,
+     * banTripSequencesInPath etc. replace with a modified copy. The bike walking options are adjusted by setters, so
+     * they are shared copy-on-write: both this request and the clone are marked, and whichever one modifies them first
+     * gets its own copy. Code outside this class should modify them only through mutableBikeWalkingOptions.
+     */
     @Override
     public RoutingRequest clone() {
         try {
             RoutingRequest clone = (RoutingRequest) super.clone();
-            clone.bannedRoutes = bannedRoutes.clone();
-            clone.bannedTrips = (HashMap<FeedScopedId, BannedStopSet>) bannedTrips.clone();
-            clone.bannedTripSequences = new LinkedList<>(bannedTripSequences);
-            clone.bannedStops = bannedStops.clone();
-            clone.bannedStopsHard = bannedStopsHard.clone();
-            clone.whiteListedAgencies = (HashSet<String>) whiteListedAgencies.clone();
-            clone.whiteListedRoutes = whiteListedRoutes.clone();
-            clone.preferredAgencies = (HashSet<String>) preferredAgencies.clone();
-            clone.preferredRoutes = preferredRoutes.clone();
-            if (this.bikeWalkingOptions != this)
-                clone.bikeWalkingOptions = this.bikeWalkingOptions.clone();
-            else
+            if (this.bikeWalkingOptions != this) {
+                this.bikeWalkingOptionsShared = clone.bikeWalkingOptionsShared = true;
+            } else {
                 clone.bikeWalkingOptions = clone;
+                clone.bikeWalkingOptionsShared = false;
+            }
             return clone;
         } catch (CloneNotSupportedException e) {
             /* this will never happen since our super is the cloneable object */
@@ -1258,6 +1315,58 @@ public class RoutingRequest implements Cloneable, Serializable {
         }
     }
 
+    /**
+     * @return the earliest time in seconds that a TNC vehicle can pick up at the origin, or -1 if it is not available,
+     * first waiting for the TNC arrival estimates if they have been requested and not received yet.
+     */
+    public int getTransportationNetworkCompanyEtaAtOrigin() {
+        if (transportationNetworkCompanyEta != null) {
+            transportationNetworkCompanyEtaAtOrigin = transportationNetworkCompanyEta.getEarliestEta();
+        }
+        return transportationNetworkCompanyEtaAtOrigin;
+    }
+
+    /**
+     * @return the bike walking options of this request, first making a private copy if they may be shared with
+     * another request. Use this rather than the bikeWalkingOptions field whenever the options are to be modified.
+     */
+    public RoutingRequest mutableBikeWalkingOptions() {
+        if (bikeWalkingOptionsShared) {
+            bikeWalkingOptions = bikeWalkingOptions.clone();
+            bikeWalkingOptionsShared = false;
+        }
+        return bikeWalkingOptions;
+    }
+
+    /** Do not use the given trip, or only the given stops on that trip. */
+    public void banTrip(FeedScopedId tripId, BannedStopSet stops) {
+        HashMap<FeedScopedId, BannedStopSet> banned = new HashMap<>(bannedTrips);
+        banned.put(tripId, stops);
+        bannedTrips = banned;
+    }
+
+    /** Add all the given trip bans, see banTrip. */
+    public void banTrips(Map<FeedScopedId, BannedStopSet> trips) {
+        HashMap<FeedScopedId, BannedStopSet> banned = new HashMap<>(bannedTrips);
+        banned.putAll(trips);
+        bannedTrips = banned;
+    }
+
+    /** Remove all trip bans and banned trip sequences from this request. */
+    public void clearBannedTrips() {
+        bannedTrips = new HashMap<>();
+        bannedTripSequences = new LinkedList<>();
+    }
+
+    /**
+     * Use the same trip bans as the other request, without copying them. Later bans added to either request will not
+     * be seen by the other one.
+     */
+    public void shareBannedTrips(RoutingRequest other) {
+        this.bannedTrips = other.bannedTrips;
+        this.bannedTripSequences = other.bannedTripSequences;
+    }
+
     public RoutingRequest reversedClone() {
         RoutingRequest ret = this.clone();
         ret.setArriveBy(!ret.arriveBy);
@@ -1506,6 +1615,20 @@ public class RoutingRequest implements Cloneable, Serializable {
         throw new IllegalArgumentException("getSpeed(): Invalid mode " + mode);
     }
 
+    /**
+     * @return true if this request only drives a private car on the streets, with no walking, transit, parking,
+     * rental vehicles, TNC or wheelchair constraints involved.
+     */
+    public boolean isCarOnly() {
+        return modes.equals(new TraverseModeSet(TraverseMode.CAR))
+            && !wheelchairAccessible
+            && !parkAndRide
+            && !kissAndRide
+            && !allowCarRental
+            && !allowVehicleRental
+            && !useTransportationNetworkCompany;
+    }
+
     /** @return The highest speed for all possible road-modes. */
     public double getStreetSpeedUpperBound() {
         // Assume carSpeed > bikeSpeed > walkSpeed
@@ -1569,14 +1692,14 @@ public class RoutingRequest implements Cloneable, Serializable {
     public void setMaxWalkDistance(double maxWalkDistance) {
         if (maxWalkDistance >= 0) {
             this.maxWalkDistance = maxWalkDistance;
-            bikeWalkingOptions.maxWalkDistance = maxWalkDistance;
+            mutableBikeWalkingOptions().maxWalkDistance = maxWalkDistance;
         }
     }
 
     public void setMaxPreTransitTime(int maxPreTransitTime) {
         if (maxPreTransitTime > 0) {
             this.maxPreTransitTime = maxPreTransitTime;
-            bikeWalkingOptions.maxPreTransitTime = maxPreTransitTime;
+            mutableBikeWalkingOptions().maxPreTransitTime = maxPreTransitTime;
         }
     }
 
@@ -1609,7 +1732,9 @@ public class RoutingRequest implements Cloneable, Serializable {
         List<FeedScopedId> callAndRideTripIds = path.getCallAndRideTrips();
         // ban a sequence of trips if none of the tripIds were call and ride trips
         if (tripIds.stream().noneMatch(callAndRideTripIds::contains)) {
-            bannedTripSequences.add(tripIds);
+            List<List<FeedScopedId>> banned = new LinkedList<>(bannedTripSequences);
+            banned.add(tripIds);
+            bannedTripSequences = banned;
         }
     }
 
@@ -51,17 +51,32 @@ public class ServiceDay implements Serializable {
         init(graph, cs, timeZone);
     }
 
+    /**
+     * Make a ServiceDay sharing an already computed set of service codes, which must not be modified afterwards.
+     * Used by the ServiceDayCache.
+     */
+    ServiceDay(ServiceDate serviceDate, TimeZone timeZone, BitSet serviceIdsRunning) {
+        this.serviceDate = new ServiceDate(serviceDate);
+        this.midnight = serviceDate.getAsDate(timeZone).getTime() / 1000;
+        this.serviceIdsRunning = serviceIdsRunning;
+    }
+
     private void init(Graph graph, CalendarService cs, TimeZone timeZone) {
         Date d = serviceDate.getAsDate(timeZone);
         this.midnight = d.getTime() / 1000;
-        serviceIdsRunning = new BitSet(cs.getServiceIds().size());
-        
+        serviceIdsRunning = servicesRunning(graph, cs, serviceDate);
+    }
+
+    /** @return the codes of the services running on the given date, as defined by graph.serviceCodes. */
+    static BitSet servicesRunning(Graph graph, CalendarService cs, ServiceDate serviceDate) {
+        BitSet services = new BitSet(cs.getServiceIds().size());
         for (FeedScopedId serviceId : cs.getServiceIdsOnDate(serviceDate)) {
             int n = graph.serviceCodes.get(serviceId);
             if (n < 0)
                 continue;
-            serviceIdsRunning.set(n);
+            services.set(n);
         }
+        return services;
     }
 
     /** Does the given serviceId run on this ServiceDay? */
@@ -0,0 +1,79 @@
+package org.opentripplanner.routing.core;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import org.opentripplanner.model.CalendarService;
+import org.opentripplanner.model.calendar.ServiceDate;
+import org.opentripplanner.routing.graph.Graph;
+
+import java.util.BitSet;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches the set of services running on each date and the ServiceDay objects built from them, so that they are
+ * shared by all the requests made on a graph instead of being recomputed from the calendar service for every routing
+ * request, stop times call or profile search.
+ *
+ * Only the most recently used dates are kept: requests are usually made around the current date, so this behaves
+ * like a window of dates rolling forward as time passes. The cache is held by the graph in a transient field, so it
+ * is rebuilt when a graph is loaded or reloaded, and Graph.index() clears it.
+ *
+ * The BitSets returned and those held by the ServiceDays are shared between threads and must not be modified.
+ */
+public class ServiceDayCache {
+
+    /** The number of dates kept, a month on either side of the current date. */
+    private static final int MAX_CACHED_DATES = 62;
+
+    private final Graph graph;
+
+    private final LoadingCache<ServiceDate, CachedDate> dates;
+
+    public ServiceDayCache(Graph graph) {
+        this.graph = graph;
+        this.dates = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_DATES)
+                .build(new CacheLoader<ServiceDate, CachedDate>() {
+                    @Override
+                    public CachedDate load(ServiceDate serviceDate) {
+                        return new CachedDate(serviceDate);
+                    }
+                });
+    }
+
+    /** @return the codes of the services running on the given date. The result must not be modified. */
+    public BitSet getServicesRunning(ServiceDate serviceDate) {
+        return dates.getUnchecked(serviceDate).servicesRunning;
+    }
+
+    /** @return the ServiceDay for the given date in the given time zone. */
+    public ServiceDay getServiceDay(ServiceDate serviceDate, TimeZone timeZone) {
+        CachedDate cachedDate = dates.getUnchecked(serviceDate);
+        return cachedDate.serviceDays.computeIfAbsent(timeZone,
+                tz -> new ServiceDay(serviceDate, tz, cachedDate.servicesRunning));
+    }
+
+    /** @return the ServiceDay for the given date in the time zone of the given agency. */
+    public ServiceDay getServiceDay(ServiceDate serviceDate, String agencyId) {
+        return getServiceDay(serviceDate, graph.getCalendarService().getTimeZoneForAgencyId(agencyId));
+    }
+
+    public void clear() {
+        dates.invalidateAll();
+    }
+
+    /** The services running on a date and the ServiceDays for this date in each of the time zones requested so far. */
+    private class CachedDate {
+
+        final BitSet servicesRunning;
+
+        final ConcurrentMap<TimeZone, ServiceDay> serviceDays = new ConcurrentHashMap<>();
+
+        CachedDate(ServiceDate serviceDate) {
+            CalendarService calendarService = graph.getCalendarService();
+            servicesRunning = ServiceDay.servicesRunning(graph, calendarService, serviceDate);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.opentripplanner.routing.core;
 
+import org.opentripplanner.common.pqueue.HeapElement;
 import org.opentripplanner.model.FeedScopedId;
 import org.opentripplanner.model.Stop;
 import org.opentripplanner.model.Trip;
@@ -27,7 +28,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-public class State implements Cloneable {
+public class State implements Cloneable, HeapElement {
     /* Data which is likely to change at most traversals */
 
     // the current time at this state, in milliseconds
@@ -72,6 +73,9 @@ public class State implements Cloneable {
 
     int callAndRideTime = 0;
 
+    // the position of this state in the search queue, if it is an IndexedFourAryHeap
+    private int heapIndex = -1;
+
     private static final Logger LOG = LoggerFactory.getLogger(State.class);
 
     /* CONSTRUCTORS */
@@ -214,6 +218,16 @@ public class State implements Cloneable {
         return new StateEditor(this, e);
     }
 
+    @Override
+    public int getHeapIndex() {
+        return heapIndex;
+    }
+
+    @Override
+    public void setHeapIndex(int heapIndex) {
+        this.heapIndex = heapIndex;
+    }
+
     protected State clone() {
         State ret;
         try {
@@ -610,8 +624,9 @@ public class State implements Cloneable {
             newState.stateData.hasHailedCarPreTransit = false;
             newState.stateData.backMode = TraverseMode.WALK;
             newState.stateData.nonTransitMode = TraverseMode.WALK;
-            if (stateData.opt.transportationNetworkCompanyEtaAtOrigin > -1) {
-                newState.time -= stateData.opt.transportationNetworkCompanyEtaAtOrigin * 1000;
+            int etaAtOrigin = stateData.opt.getTransportationNetworkCompanyEtaAtOrigin();
+            if (etaAtOrigin > -1) {
+                newState.time -= etaAtOrigin * 1000;
             }
         }
         newState.stateData.usingRentedCar = stateData.usingRentedCar;
@@ -1110,9 +1125,10 @@ public class State implements Cloneable {
                 //
                 // FIXME: If a non-transit mode travels a significant distance from the origin prior to boarding a TNC, the
                 // ETA will still be added when it probably shouldn't be.
-                if (options.transportationNetworkCompanyEtaAtOrigin > -1 && !stateData.everBoarded) {
+                int etaAtOrigin = options.getTransportationNetworkCompanyEtaAtOrigin();
+                if (etaAtOrigin > -1 && !stateData.everBoarded) {
                     // increment the time by the ETA at the origin.
-                    time += options.transportationNetworkCompanyEtaAtOrigin * 1000;
+                    time += etaAtOrigin * 1000;
                 }
             }
         }
@@ -172,6 +172,7 @@ public class TimetableSnapshot {
         if (readOnly) {
             throw new ConcurrentModificationException("This TimetableSnapshot is read-only.");
         }
+        updatedTripTimes.compactUpdates();
         
         Timetable tt = resolve(pattern, serviceDate);
         // we need to perform the copy of Timetable here rather than in Timetable.update()
@@ -36,6 +36,7 @@ import org.opentripplanner.common.geometry.PackedCoordinateSequence;
 import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
 import org.opentripplanner.common.model.P2;
 import org.opentripplanner.graph_builder.annotation.BogusShapeDistanceTraveled;
+import org.opentripplanner.graph_builder.annotation.GraphBuilderAnnotation;
 import org.opentripplanner.graph_builder.annotation.BogusShapeGeometry;
 import org.opentripplanner.graph_builder.annotation.BogusShapeGeometryCaught;
 import org.opentripplanner.graph_builder.annotation.HopSpeedFast;
@@ -47,6 +48,8 @@ import org.opentripplanner.graph_builder.annotation.NonStationParentStation;
 import org.opentripplanner.graph_builder.annotation.RepeatedStops;
 import org.opentripplanner.graph_builder.annotation.TripDegenerate;
 import org.opentripplanner.graph_builder.annotation.TripUndefinedService;
+import org.opentripplanner.graph_builder.module.GraphBuilderModuleSummary;
+import org.opentripplanner.graph_builder.module.GraphBuilderTaskSummary;
 import org.opentripplanner.graph_builder.module.GtfsFeedId;
 import org.opentripplanner.gtfs.GtfsContext;
 import org.opentripplanner.gtfs.GtfsLibrary;
@@ -88,10 +91,14 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 // Filtering out (removing) stoptimes from a trip forces us to either have two copies of that list,
 // or do all the steps within one loop over trips. It would be clearer if there were multiple loops over the trips.
@@ -250,7 +257,8 @@ public class PatternHopFactory {
 
     private CalendarService calendarService;
     
-    private Map<ShapeSegmentKey, LineString> geometriesByShapeSegmentKey = new HashMap<ShapeSegmentKey, LineString>();
+    /** Shared by the threads creating hop geometries, see createGeometries. */
+    private Map<ShapeSegmentKey, LineString> geometriesByShapeSegmentKey = new ConcurrentHashMap<ShapeSegmentKey, LineString>();
 
     private Map<FeedScopedId, LineString> geometriesByShapeId = new HashMap<FeedScopedId, LineString>();
 
@@ -274,6 +282,8 @@ public class PatternHopFactory {
 
     public int maxInterlineDistance = 200;
 
+    private GraphBuilderModuleSummary graphBuilderModuleSummary;
+
     public PatternHopFactory(GtfsContext context) {
         this.feedId = context.getFeedId();
         this.transitService = context.getOtpTransitService();
@@ -336,7 +346,7 @@ public class PatternHopFactory {
          *  A trip pattern actually does not have a single geometry, but one per hop, so we store an array.
          *  FIXME _why_ doesn't it have a single geometry?
          */
-        Map<TripPattern, LineString[]> geometriesByTripPattern = Maps.newHashMap();
+        Map<TripPattern, GeometryJob> geometryJobsByTripPattern = new LinkedHashMap<>();
         
         TRIP : for (Trip trip : trips) {
             if (++tripCount % 100000 == 0) {
@@ -406,11 +416,11 @@ public class PatternHopFactory {
             // create geometries if they aren't already created
             // note that this is not only done on new trip patterns, because it is possible that
             // there would be a trip pattern with no geometry yet because it failed some of these tests
-            if (!geometriesByTripPattern.containsKey(tripPattern) && 
+            if (!geometryJobsByTripPattern.containsKey(tripPattern) &&
                     trip.getShapeId() != null && trip.getShapeId().getId() != null &&
                     !trip.getShapeId().getId().equals("")) {
-                // save the geometry to later be applied to the hops
-                geometriesByTripPattern.put(tripPattern,  createGeometry(graph, trip, stopTimes));
+                // save the trip to later create the geometry that will be applied to the hops
+                geometryJobsByTripPattern.put(tripPattern, new GeometryJob(trip, stopTimes));
             }
 
 
@@ -425,6 +435,8 @@ public class PatternHopFactory {
         /* Generate unique short IDs for all the TableTripPatterns. */
         TripPattern.generateUniqueIds(tripPatterns.values());
 
+        Map<TripPattern, LineString[]> geometriesByTripPattern = createGeometries(graph, geometryJobsByTripPattern);
+
         /* Loop over all new TripPatterns, creating edges, setting the service codes and geometries, etc. */
         for (TripPattern tripPattern : tripPatterns.values()) {
             tripPattern.makePatternVerticesAndEdges(graph, context.stationStopNodes);
@@ -573,6 +585,62 @@ public class PatternHopFactory {
         LOG.info("Done finding interlining trips and creating the corresponding edges.");
     }
 
+    /** The trip and its filtered stop times from which the hop geometries of a trip pattern are created. */
+    private static class GeometryJob {
+        final Trip trip;
+        final List<StopTime> stopTimes;
+        LineString[] geometries;
+        final List<GraphBuilderAnnotation> annotations = new ArrayList<>();
+
+        GeometryJob(Trip trip, List<StopTime> stopTimes) {
+            this.trip = trip;
+            this.stopTimes = stopTimes;
+        }
+    }
+
+    /**
+     * Create the hop geometries of all trip patterns. Slicing the shapes is independent for each pattern, so this is
+     * done in parallel, sharing the geometry of identical (shape, start, end) segments between threads. Annotations
+     * are collected per pattern and added to the graph afterwards, in the order of the trips.
+     */
+    private Map<TripPattern, LineString[]> createGeometries(Graph graph, Map<TripPattern, GeometryJob> jobs) {
+        GraphBuilderTaskSummary task = null;
+        if (graphBuilderModuleSummary != null) {
+            task = graphBuilderModuleSummary.addSubTask(String.format("Create hop geometries: %s", feedId.getId()));
+            LOG.info(task.start());
+        }
+        // The transit service builds its shape point index lazily and not thread-safely, so load every shape here.
+        Set<FeedScopedId> shapeIds = new HashSet<>();
+        for (GeometryJob job : jobs.values()) {
+            if (shapeIds.add(job.trip.getShapeId())) {
+                getLineStringForShapeId(job.trip.getShapeId());
+            }
+        }
+        jobs.values().parallelStream().forEach(job ->
+            job.geometries = createGeometry(job.annotations, job.trip, job.stopTimes)
+        );
+        Map<TripPattern, LineString[]> geometriesByTripPattern = Maps.newHashMap();
+        for (Map.Entry<TripPattern, GeometryJob> entry : jobs.entrySet()) {
+            GeometryJob job = entry.getValue();
+            for (GraphBuilderAnnotation annotation : job.annotations) {
+                graph.addBuilderAnnotation(annotation);
+            }
+            geometriesByTripPattern.put(entry.getKey(), job.geometries);
+        }
+        LOG.info("Created hop geometries for {} trip patterns using {} shapes and {} distinct shape segments.",
+            jobs.size(), shapeIds.size(), geometriesByShapeSegmentKey.size());
+        if (task != null) {
+            LOG.info(task.finish());
+        }
+        return geometriesByTripPattern;
+    }
+
+    /** Record an annotation to be added to the graph later, returning its message for logging. */
+    private static String addAnnotation(List<GraphBuilderAnnotation> annotations, GraphBuilderAnnotation annotation) {
+        annotations.add(annotation);
+        return annotation.getMessage();
+    }
+
     /**
      * Creates a set of geometries for a single trip, considering the GTFS shapes.txt,
      * The geometry is broken down into one geometry per inter-stop segment ("hop"). We also need a shape for the entire
@@ -582,7 +650,8 @@ public class PatternHopFactory {
      * This geometry will in fact be used for an entire set of trips in a trip pattern. Technically one of the trips
      * with exactly the same sequence of stops could follow a different route on the streets, but that's very uncommon.
      */
-    private LineString[] createGeometry(Graph graph, Trip trip, List<StopTime> stopTimes) {
+    private LineString[] createGeometry(List<GraphBuilderAnnotation> annotations, Trip trip,
+            List<StopTime> stopTimes) {
         FeedScopedId shapeId = trip.getShapeId();
         
         // One less geometry than stoptime as array indexes represetn hops not stops (fencepost problem).
@@ -596,7 +665,7 @@ public class PatternHopFactory {
             for (int i = 0; i < stopTimes.size() - 1; ++i) {
                 st0 = stopTimes.get(i);
                 StopTime st1 = stopTimes.get(i + 1);
-                geoms[i] = getHopGeometryViaShapeDistTraveled(graph, shapeId, st0, st1);
+                geoms[i] = getHopGeometryViaShapeDistTraveled(annotations, shapeId, st0, st1);
             }
             return geoms;
         }
@@ -682,7 +751,7 @@ public class PatternHopFactory {
                 LineString geometry = createSimpleGeometry(st0.getStop(), st1.getStop());
                 geoms[i] = geometry;
                 //this warning is not strictly correct, but will do
-                LOG.warn(graph.addBuilderAnnotation(new BogusShapeGeometryCaught(shapeId, st0, st1)));
+                LOG.warn(addAnnotation(annotations, new BogusShapeGeometryCaught(shapeId, st0, st1)));
             }
             return geoms;
         }
@@ -730,6 +799,11 @@ public class PatternHopFactory {
                 CoordinateSequence sequence = new PackedCoordinateSequence.Double(geometry
                         .getCoordinates(), 2);
                 geometry = _geometryFactory.createLineString(sequence);
+                // share it with other patterns following the same stretch of this shape
+                LineString existing = geometriesByShapeSegmentKey.putIfAbsent(key, geometry);
+                if (existing != null) {
+                    geometry = existing;
+                }
             }
             geoms[i] = geometry;
         }
@@ -1088,7 +1162,8 @@ public class PatternHopFactory {
     }
 
     
-    private LineString getHopGeometryViaShapeDistTraveled(Graph graph, FeedScopedId shapeId, StopTime st0, StopTime st1) {
+    private LineString getHopGeometryViaShapeDistTraveled(List<GraphBuilderAnnotation> annotations,
+            FeedScopedId shapeId, StopTime st0, StopTime st1) {
 
         double startDistance = st0.getShapeDistTraveled();
         double endDistance = st1.getShapeDistTraveled();
@@ -1101,7 +1176,7 @@ public class PatternHopFactory {
         double[] distances = getDistanceForShapeId(shapeId);
 
         if (distances == null) {
-            LOG.warn(graph.addBuilderAnnotation(new BogusShapeGeometry(shapeId)));
+            LOG.warn(addAnnotation(annotations, new BogusShapeGeometry(shapeId)));
             return null;
         } else {
             LinearLocation startIndex = getSegmentFraction(distances, startDistance);
@@ -1109,13 +1184,13 @@ public class PatternHopFactory {
 
             if (equals(startIndex, endIndex)) {
                 //bogus shape_dist_traveled 
-                graph.addBuilderAnnotation(new BogusShapeDistanceTraveled(st1));
+                annotations.add(new BogusShapeDistanceTraveled(st1));
                 return createSimpleGeometry(st0.getStop(), st1.getStop());
             }
             LineString line = getLineStringForShapeId(shapeId);
             LocationIndexedLine lol = new LocationIndexedLine(line);
 
-            geometry = getSegmentGeometry(graph, shapeId, lol, startIndex, endIndex, startDistance,
+            geometry = getSegmentGeometry(annotations, shapeId, lol, startIndex, endIndex, startDistance,
                     endDistance, st0, st1);
 
             return geometry;
@@ -1166,7 +1241,7 @@ public class PatternHopFactory {
         return true;
     }
 
-    private LineString getSegmentGeometry(Graph graph, FeedScopedId shapeId,
+    private LineString getSegmentGeometry(List<GraphBuilderAnnotation> annotations, FeedScopedId shapeId,
             LocationIndexedLine locationIndexedLine, LinearLocation startIndex,
             LinearLocation endIndex, double startDistance, double endDistance, 
             StopTime st0, StopTime st1) {
@@ -1183,12 +1258,19 @@ public class PatternHopFactory {
                     .getCoordinates(), 2);
             geometry = _geometryFactory.createLineString(sequence);
             
-            if (!isValid(geometry, st0.getStop(), st1.getStop())) {
-                LOG.warn(graph.addBuilderAnnotation(new BogusShapeGeometryCaught(shapeId, st0, st1)));
+            boolean valid = isValid(geometry, st0.getStop(), st1.getStop());
+            if (!valid) {
                 //fall back to trivial geometry
                 geometry = createSimpleGeometry(st0.getStop(), st1.getStop());
             }
-            geometriesByShapeSegmentKey.put(key, (LineString) geometry);
+            // another thread may have created the same segment in the meantime, only the first one is kept
+            LineString existing = geometriesByShapeSegmentKey.putIfAbsent(key, geometry);
+            if (existing != null) {
+                return existing;
+            }
+            if (!valid) {
+                LOG.warn(addAnnotation(annotations, new BogusShapeGeometryCaught(shapeId, st0, st1)));
+            }
         }
 
         return geometry;
@@ -1344,6 +1426,11 @@ public class PatternHopFactory {
         return stopSequencesRemoved;
     }
 
+    /** If set, the time spent creating hop geometries is reported as a subtask of this summary. */
+    public void setGraphBuilderModuleSummary(GraphBuilderModuleSummary graphBuilderModuleSummary) {
+        this.graphBuilderModuleSummary = graphBuilderModuleSummary;
+    }
+
     public void setFareServiceFactory(FareServiceFactory fareServiceFactory) {
         this.fareServiceFactory = fareServiceFactory;
     }
@@ -60,6 +60,13 @@ public class DeviatedRouteGraphModifier extends GtfsFlexGraphModifier {
         };
     }
 
+    @Override
+    public boolean hasFlexServiceNear(Vertex initVertex, RoutingRequest rr) {
+        // Hops are only used when the origin/destination is in their service area, or within their
+        // service area radius of the hop, see checkHopAllowsBoardAlight.
+        return graph.flexIndex.hasDeviatedServiceAt(initVertex.getCoordinate());
+    }
+
     @Override
     public TemporaryPartialPatternHop makeHopNewTo(RoutingRequest opt, State state, FlexPatternHop hop, PatternArriveVertex to, Stop toStop) {
         GraphPath path = new GraphPath(state, false);
@@ -41,6 +41,12 @@ public class FlagStopGraphModifier extends GtfsFlexGraphModifier {
         return (o, t, state, s, opt) -> state.getWalkDistance() > opt.maxWalkDistance;
     }
 
+    @Override
+    public boolean hasFlexServiceNear(Vertex initVertex, RoutingRequest rr) {
+        // The walk search cannot go further than the max walk distance.
+        return graph.flexIndex.hasHopsNear(initVertex.getCoordinate(), rr.maxWalkDistance);
+    }
+
     @Override
     public TemporaryPartialPatternHop makeHopNewTo(RoutingRequest opt, State state, FlexPatternHop hop, PatternArriveVertex to, Stop toStop) {
         LengthIndexedLine line = new LengthIndexedLine(hop.getGeometry());
@@ -5,6 +5,7 @@ import com.google.common.collect.Multimap;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.index.strtree.STRtree;
 import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
 import org.opentripplanner.graph_builder.module.map.StreetMatcher;
 import org.opentripplanner.routing.edgetype.flex.FlexPatternHop;
@@ -20,6 +21,7 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -27,8 +29,9 @@ import java.util.stream.Collectors;
 
 /**
  * This class contains indices needed for flex service. Right now, that's a map between PatternHops
- * the StreetEdges which the hop is incident with. There may be more indices if new types of
- * flex transit are added.
+ * the StreetEdges which the hop is incident with, and a spatial index of those street edges which
+ * tells whether a request can reach any flex hop at all before searching the streets for them.
+ * There may be more indices if new types of flex transit are added.
  */
 public class FlexIndex {
 
@@ -36,9 +39,74 @@ public class FlexIndex {
 
     private final Multimap<Edge, FlexPatternHop> hopsForEdge = HashMultimap.create();
 
+    /** The envelopes of the street edges in hopsForEdge. */
+    private final STRtree hopEdgeIndex = new STRtree();
+
+    /**
+     * The envelopes of the areas in which a deviated-route hop can be boarded or alighted: its
+     * service area, and its street edges expanded by its service area radius.
+     */
+    private final STRtree deviatedServiceIndex = new STRtree();
+
     public void init(Graph graph) {
         LOG.info("initializing hops-for-edge map...");
         initializeHopsForEdgeMap(graph);
+        for (Edge edge : hopsForEdge.keySet()) {
+            if (edge.getGeometry() != null) {
+                hopEdgeIndex.insert(edge.getGeometry().getEnvelopeInternal(), edge);
+            }
+        }
+        Map<FlexPatternHop, Envelope> edgeEnvelopeForHop = new HashMap<>();
+        for (Map.Entry<Edge, FlexPatternHop> entry : hopsForEdge.entries()) {
+            if (entry.getKey().getGeometry() != null) {
+                edgeEnvelopeForHop.computeIfAbsent(entry.getValue(), hop -> new Envelope())
+                        .expandToInclude(entry.getKey().getGeometry().getEnvelopeInternal());
+            }
+        }
+        for (Map.Entry<FlexPatternHop, Envelope> entry : edgeEnvelopeForHop.entrySet()) {
+            FlexPatternHop hop = entry.getKey();
+            if (hop.hasServiceArea()) {
+                deviatedServiceIndex.insert(hop.getServiceArea().getEnvelopeInternal(), hop);
+            }
+            if (hop.getServiceAreaRadius() > 0) {
+                deviatedServiceIndex.insert(expand(entry.getValue(), hop.getServiceAreaRadius()), hop);
+            }
+        }
+        // Build now, the trees would otherwise be built lazily by the first of concurrent queries.
+        hopEdgeIndex.build();
+        deviatedServiceIndex.build();
+        LOG.info("indexed {} street edges used by flex hops", hopsForEdge.keySet().size());
+    }
+
+    /**
+     * A search for flex hops from the given location can skip the street search when this returns false.
+     *
+     * @param radiusMeters the straight-line distance the search can cover at most
+     * @return true if a street edge of any flex hop may be within the radius.
+     */
+    public boolean hasHopsNear(Coordinate coordinate, double radiusMeters) {
+        if (hopsForEdge.isEmpty()) {
+            return false;
+        }
+        return !hopEdgeIndex.query(expand(new Envelope(coordinate), radiusMeters)).isEmpty();
+    }
+
+    /**
+     * A search for deviated-route hops from the given location can skip the street search when this returns false.
+     *
+     * @return true if the location may be within the service area of a deviated-route hop.
+     */
+    public boolean hasDeviatedServiceAt(Coordinate coordinate) {
+        return !deviatedServiceIndex.query(new Envelope(coordinate)).isEmpty();
+    }
+
+    private static Envelope expand(Envelope envelope, double meters) {
+        Envelope env = new Envelope(envelope);
+        double radiusDeg = SphericalDistanceLibrary.metersToDegrees(meters);
+        // local equirectangular projection
+        double xscale = Math.cos(env.centre().y * Math.PI / 180);
+        env.expandBy(radiusDeg / xscale, radiusDeg);
+        return env;
     }
 
     public Collection<FlexPatternHop> getHopsForEdge(Edge e) {
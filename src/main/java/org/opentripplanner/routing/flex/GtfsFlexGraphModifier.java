@@ -84,6 +84,12 @@ public abstract class GtfsFlexGraphModifier {
      */
     public abstract SearchTerminationStrategy getSearchTerminationStrategy();
 
+    /**
+     * Return false if no flex hop can be boarded or alighted by a graph search from the given
+     * vertex, which is then skipped. This is checked against the precomputed FlexIndex.
+     */
+    public abstract boolean hasFlexServiceNear(Vertex initVertex, RoutingRequest rr);
+
     // this the core of what's different: how the hops are created
 
     /**
@@ -173,6 +179,12 @@ public abstract class GtfsFlexGraphModifier {
         if (TraverseMode.CAR.equals(getMode())) {
             modifyRequestForCarAccess(rr);
         }
+        // Most requests are nowhere near flex service, skip the graph search for them.
+        Vertex initVertex = rr.arriveBy ? rr.rctx.toVertex : rr.rctx.fromVertex;
+        if (graph.flexIndex != null && initVertex != null && !hasFlexServiceNear(initVertex, rr)) {
+            LOG.debug("No flex hops within reach of {}", initVertex);
+            return;
+        }
         for(Pair<State, FlexPatternHop> p : getClosestPatternHops(rr)) {
             State s = p.getKey();
             FlexPatternHop hop = p.getValue();
@@ -43,6 +43,7 @@ import org.opentripplanner.model.GraphBundle;
 import org.opentripplanner.profile.StopClusterMode;
 import org.opentripplanner.routing.alertpatch.AlertPatch;
 import org.opentripplanner.routing.core.MortonVertexComparatorFactory;
+import org.opentripplanner.routing.core.ServiceDayCache;
 import org.opentripplanner.routing.core.TransferTable;
 import org.opentripplanner.routing.core.TraverseMode;
 import org.opentripplanner.routing.edgetype.EdgeWithCleanup;
@@ -58,12 +59,14 @@ import org.opentripplanner.updater.GraphUpdaterConfigurator;
 import org.opentripplanner.updater.GraphUpdaterManager;
 import org.opentripplanner.updater.stoptime.TimetableSnapshotSource;
 import org.opentripplanner.updater.vehicle_positions.VehiclePositionPatternMatcher;
+import org.opentripplanner.updater.vehicle_positions.VehiclePositionStore;
 import org.opentripplanner.util.WorldEnvelope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.prefs.Preferences;
 /**
@@ -102,6 +105,8 @@ public class Graph implements Serializable {
 
     private transient CalendarService calendarService;
 
+    private transient volatile ServiceDayCache serviceDayCache;
+
     // TODO this would be more efficient if it was just an array.
     private transient Map<Integer, Vertex> vertexById;
 
@@ -133,6 +138,10 @@ public class Graph implements Serializable {
      * Class containing method to update realtime vehicle positions
      */
     public transient VehiclePositionPatternMatcher vehiclePositionPatternMatcher = null;
+    /**
+     * Spatially indexed realtime vehicle positions of all feeds, as served by the API
+     */
+    public transient VehiclePositionStore vehiclePositionStore = null;
 
     private transient List<GraphBuilderAnnotation> graphBuilderAnnotations = new LinkedList<GraphBuilderAnnotation>(); // initialize for tests
 
@@ -647,6 +656,33 @@ public class Graph implements Serializable {
         }
     }
 
+    /**
+     * Renumbers the vertices along a Morton curve (or the curve of the vertexComparatorFactory). Vertex indexes come
+     * from creation order otherwise, so the arrays indexed by vertex (shortest path trees, heuristics, time surfaces)
+     * are accessed in a random order by street searches. Vertices created afterwards get the indexes after the last
+     * renumbered one. The vertexById index must be rebuilt afterwards. Hash-based collections of vertices are not
+     * affected, see Vertex.hashCode().
+     */
+    void renumberVertices() {
+        List<Vertex> sorted = new ArrayList<>(getVertices());
+        if (sorted.isEmpty()) {
+            return;
+        }
+        VertexComparatorFactory comparatorFactory = vertexComparatorFactory != null ?
+                vertexComparatorFactory : new MortonVertexComparatorFactory();
+        Comparator<? super Vertex> comparator = comparatorFactory.getComparator(sorted);
+        // Break ties by label so the order does not depend on the iteration order of the vertex map.
+        sorted.sort((v0, v1) -> {
+            int c = comparator.compare(v0, v1);
+            return c != 0 ? c : v0.getLabel().compareTo(v1.getLabel());
+        });
+        Vertex.reserveIndices(sorted.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            sorted.get(i).setIndex(i);
+        }
+        LOG.info("Renumbered {} vertices in spatial order.", sorted.size());
+    }
+
     private void readObject(ObjectInputStream inputStream) throws ClassNotFoundException,
         IOException {
         inputStream.defaultReadObject();
@@ -735,16 +771,26 @@ public class Graph implements Serializable {
      *                            you're doing when setting this to true! See above method documentation.
      */
     public void index (boolean recreateStreetIndex) {
+        if (recreateStreetIndex) {
+            // The graph is being prepared for routing. The lookups by vertex index (vertexById, landmarks, contraction
+            // hierarchy) are built below or lazily afterwards, and vertex hash codes do not depend on the index.
+            renumberVertices();
+        }
+        // The street index only reads the graph, so it is built in parallel with the other indexes.
+        CompletableFuture<StreetVertexIndexService> newStreetIndex = null;
         if (streetIndex == null || recreateStreetIndex) {
             if (streetIndex != null && recreateStreetIndex) {
                 LOG.warn("Overwriting an existing streetIndex! This could lead to problems if both the old and new streetIndex are used. Make sure only the new streetIndex is used going forward.");
             }
             LOG.info("building street index");
-            streetIndex = new StreetVertexIndexService(this);
-            LOG.info("street index built");
+            newStreetIndex = CompletableFuture.supplyAsync(() -> new StreetVertexIndexService(this));
         }
         LOG.info("Rebuilding edge and vertex indices");
         rebuildVertexAndEdgeIndices();
+        // Services may have been added to the graph since the cache was filled.
+        if (serviceDayCache != null) {
+            serviceDayCache.clear();
+        }
         Set<TripPattern> tableTripPatterns = Sets.newHashSet();
         for (PatternArriveVertex pav : Iterables.filter(this.getVertices(), PatternArriveVertex.class)) {
             tableTripPatterns.add(pav.getTripPattern());
@@ -754,6 +800,11 @@ public class Graph implements Serializable {
         }
         // TODO: Move this ^ stuff into the graph index
         this.index = new GraphIndex(this);
+        if (newStreetIndex != null) {
+            streetIndex = newStreetIndex.join();
+            LOG.info("street index built");
+        }
+        // The flex index matches flex hops to the street index.
         if (useFlexService ) {
             this.flexIndex = new FlexIndex();
             flexIndex.init(this);
@@ -918,6 +969,20 @@ public class Graph implements Serializable {
         return this.calendarService;
     }
 
+    /** @return the ServiceDays and sets of running services by date, shared by all the requests made on this graph. */
+    public ServiceDayCache getServiceDayCache() {
+        ServiceDayCache cache = serviceDayCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = serviceDayCache;
+                if (cache == null) {
+                    serviceDayCache = cache = new ServiceDayCache(this);
+                }
+            }
+        }
+        return cache;
+    }
+
     public int removeEdgelessVertices() {
         int removed = 0;
         List<Vertex> toRemove = new LinkedList<Vertex>();
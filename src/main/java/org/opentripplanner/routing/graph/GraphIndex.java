@@ -31,7 +31,6 @@ import org.opentripplanner.model.Route;
 import org.opentripplanner.model.Stop;
 import org.opentripplanner.model.Trip;
 import org.opentripplanner.model.calendar.ServiceDate;
-import org.opentripplanner.model.CalendarService;
 import org.opentripplanner.common.LuceneIndex;
 import org.opentripplanner.common.geometry.HashGridSpatialIndex;
 import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
@@ -66,6 +65,7 @@ import javax.ws.rs.core.Response;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 
 /**
@@ -82,16 +82,16 @@ public class GraphIndex {
     public static final int MAX_WALK_METERS = 1000;
 
     // TODO: consistently key on model object or id string
-    public final Map<String, Vertex> vertexForId = Maps.newHashMap();
+    public final Map<String, Vertex> vertexForId;
     public final Map<String, Map<String, Agency>> agenciesForFeedId = Maps.newHashMap();
     public final Map<String, FeedInfo> feedInfoForId = Maps.newHashMap();
     public final Map<FeedScopedId, Stop> stopForId = Maps.newHashMap();
-    public final Map<FeedScopedId, Trip> tripForId = Maps.newHashMap();
+    public final Map<FeedScopedId, Trip> tripForId;
     public final Map<FeedScopedId, Route> routeForId = Maps.newHashMap();
     public final Map<FeedScopedId, String> serviceForId = Maps.newHashMap();
     public final Map<String, TripPattern> patternForId = Maps.newHashMap();
     public final Map<Stop, TransitStop> stopVertexForStop = Maps.newHashMap();
-    public final Map<Trip, TripPattern> patternForTrip = Maps.newHashMap();
+    public final Map<Trip, TripPattern> patternForTrip;
     public final Multimap<String, TripPattern> patternsForFeedId = ArrayListMultimap.create();
     public final Multimap<Route, TripPattern> patternsForRoute = ArrayListMultimap.create();
     public final Multimap<Stop, TripPattern> patternsForStop = ArrayListMultimap.create();
@@ -101,16 +101,13 @@ public class GraphIndex {
     public final Map<String, StopCluster> stopClusterForId = Maps.newHashMap();
     public final Map<FeedScopedId, Geometry> flexAreasById = Maps.newHashMap();
 
-    /* Should eventually be replaced with new serviceId indexes. */
-    private final CalendarService calendarService;
-    private final Map<FeedScopedId,Integer> serviceCodes;
-
     /* Full-text search extensions */
     public LuceneIndex luceneIndex;
 
-    /* Separate transfers for profile routing */
-    public Multimap<StopCluster, ProfileTransfer> transfersFromStopCluster;
-    private HashGridSpatialIndex<StopCluster> stopClusterSpatialIndex = null;
+    /* Separate transfers for profile routing, null until they are ready */
+    public volatile Multimap<StopCluster, ProfileTransfer> transfersFromStopCluster;
+    /* Set once the stop clusters are ready */
+    private volatile HashGridSpatialIndex<StopCluster> stopClusterSpatialIndex = null;
 
     /* This is a workaround, and should probably eventually be removed. */
     public Graph graph;
@@ -138,7 +135,7 @@ public class GraphIndex {
         Collection<Edge> edges = graph.getEdges();
         /* We will keep a separate set of all vertices in case some have the same label. 
          * Maybe we should just guarantee unique labels. */
-        Set<Vertex> vertices = Sets.newHashSet();
+        Set<Vertex> vertices = Sets.newHashSetWithExpectedSize(graph.countVertices());
         for (Edge edge : edges) {
             vertices.add(edge.getFromVertex());
             vertices.add(edge.getToVertex());
@@ -148,20 +145,31 @@ public class GraphIndex {
                 patternForId.put(pattern.code, pattern);
             }
         }
-        for (Vertex vertex : vertices) {
-            vertexForId.put(vertex.getLabel(), vertex);
-            if (vertex instanceof TransitStop) {
-                TransitStop transitStop = (TransitStop) vertex;
-                Stop stop = transitStop.getStop();
-                stopForId.put(stop.getId(), stop);
-                stopVertexForStop.put(stop, transitStop);
-                stopsForParentStation.put(stop.getParentStation(), stop);
-            }
-        }
-        for (TransitStop stopVertex : stopVertexForStop.values()) {
-            Envelope envelope = new Envelope(stopVertex.getCoordinate());
-            stopSpatialIndex.insert(envelope, stopVertex);
+        int nTrips = 0;
+        for (TripPattern pattern : patternForId.values()) {
+            nTrips += pattern.getTrips().size();
         }
+        vertexForId = Maps.newHashMapWithExpectedSize(vertices.size());
+        tripForId = Maps.newHashMapWithExpectedSize(nTrips);
+        patternForTrip = Maps.newHashMapWithExpectedSize(nTrips);
+
+        // The vertex and stop indexes and the pattern indexes fill separate maps, so they are built in parallel.
+        CompletableFuture<Void> stopIndexes = CompletableFuture.runAsync(() -> {
+            for (Vertex vertex : vertices) {
+                vertexForId.put(vertex.getLabel(), vertex);
+                if (vertex instanceof TransitStop) {
+                    TransitStop transitStop = (TransitStop) vertex;
+                    Stop stop = transitStop.getStop();
+                    stopForId.put(stop.getId(), stop);
+                    stopVertexForStop.put(stop, transitStop);
+                    stopsForParentStation.put(stop.getParentStation(), stop);
+                }
+            }
+            for (TransitStop stopVertex : stopVertexForStop.values()) {
+                Envelope envelope = new Envelope(stopVertex.getCoordinate());
+                stopSpatialIndex.insert(envelope, stopVertex);
+            }
+        });
 
         for (TripPattern pattern : patternForId.values()) {
             patternsForFeedId.put(pattern.getFeedId(), pattern);
@@ -178,10 +186,8 @@ public class GraphIndex {
         for (Route route : patternsForRoute.asMap().keySet()) {
             routeForId.put(route.getId(), route);
         }
+        stopIndexes.join();
 
-        // Copy these two service indexes from the graph until we have better ones.
-        calendarService = graph.getCalendarService();
-        serviceCodes = graph.serviceCodes;
         this.graph = graph;
         graphQL = new GraphQL(
                 new IndexGraphQLSchema(this).indexSchema,
@@ -204,18 +210,90 @@ public class GraphIndex {
      * Therefore it is not done automatically, and any method requiring stop clusters should call this method
      * to ensure that the necessary indexes are lazy-initialized.
      */
-    public synchronized void clusterStopsAsNeeded() {
+    public void clusterStopsAsNeeded() {
         if (stopClusterSpatialIndex == null) {
-            clusterStops();
-            LOG.info("Creating a spatial index for stop clusters.");
-            stopClusterSpatialIndex = new HashGridSpatialIndex<>();
-            for (StopCluster cluster : stopClusterForId.values()) {
-                Envelope envelope = new Envelope(new Coordinate(cluster.lon, cluster.lat));
-                stopClusterSpatialIndex.insert(envelope, cluster);
+            synchronized (this) {
+                if (stopClusterSpatialIndex == null) {
+                    clusterStops();
+                    LOG.info("Creating a spatial index for stop clusters.");
+                    HashGridSpatialIndex<StopCluster> spatialIndex = new HashGridSpatialIndex<>();
+                    for (StopCluster cluster : stopClusterForId.values()) {
+                        Envelope envelope = new Envelope(new Coordinate(cluster.lon, cluster.lat));
+                        spatialIndex.insert(envelope, cluster);
+                    }
+                    // Publish the clusters only once they are complete.
+                    stopClusterSpatialIndex = spatialIndex;
+                }
+            }
+        }
+    }
+
+    /** @return true if the stop clusters have been built, and using them will not wait for clustering. */
+    public boolean isStopClustersReady() {
+        return stopClusterSpatialIndex != null;
+    }
+
+    /** @return the cluster of the given stop, first building the stop clusters if needed. */
+    public StopCluster getStopClusterForStop(Stop stop) {
+        clusterStopsAsNeeded();
+        return stopClusterForStop.get(stop);
+    }
+
+    /** @return the stop cluster with the given id, first building the stop clusters if needed. */
+    public StopCluster getStopClusterForId(String id) {
+        clusterStopsAsNeeded();
+        return stopClusterForId.get(id);
+    }
+
+    /** @return all stop clusters, first building them if needed. */
+    public Collection<StopCluster> getStopClusters() {
+        clusterStopsAsNeeded();
+        return stopClusterForId.values();
+    }
+
+    /** Lazy-initialize the profile transfers, as well as the stop clusters they depend on. */
+    public void initializeProfileTransfersAsNeeded() {
+        if (transfersFromStopCluster == null) {
+            clusterStopsAsNeeded();
+            synchronized (this) {
+                // why another if statement? so that if another thread initialized this in the meantime
+                // we don't initialize it again.
+                if (transfersFromStopCluster == null) {
+                    initializeProfileTransfers();
+                }
             }
         }
     }
 
+    /** @return true if the profile transfers have been built. */
+    public boolean isProfileTransfersReady() {
+        return transfersFromStopCluster != null;
+    }
+
+    /**
+     * Build the stop clusters, and optionally the profile transfers, in a background thread. They are otherwise built
+     * by the first request which needs them, which can take a long time on a large graph. Requests which need them
+     * before they are ready wait for them to be finished, other requests are not delayed.
+     */
+    public void buildRarelyUsedIndexesInBackground(final boolean profileTransfers) {
+        Thread thread = new ThreadFactoryBuilder().setDaemon(true)
+                .setNameFormat("GraphIndex-" + graph.routerId + "-%d").build().newThread(() -> {
+            try {
+                long startTime = System.currentTimeMillis();
+                clusterStopsAsNeeded();
+                if (profileTransfers) {
+                    initializeProfileTransfersAsNeeded();
+                }
+                LOG.info("Built background indexes for router '{}' in {} msec", graph.routerId,
+                        System.currentTimeMillis() - startTime);
+            } catch (Exception e) {
+                LOG.error("Error while building background indexes, they will be built on demand.", e);
+            }
+        });
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
     private void analyzeServices() {
         // This is a mess because CalendarService, CalendarServiceData, etc. are all in OBA.
         // TODO catalog days of the week and exceptions for each service day.
@@ -236,7 +314,7 @@ public class GraphIndex {
      * Find the best transfers between each pair of patterns that pass near one another.
      */
     public void initializeProfileTransfers() {
-        transfersFromStopCluster = HashMultimap.create();
+        Multimap<StopCluster, ProfileTransfer> transfersFromStopCluster = HashMultimap.create();
         final double TRANSFER_RADIUS = 500.0; // meters
         Map<P2<TripPattern>, ProfileTransfer.GoodTransferList> transfers = Maps.newHashMap();
         LOG.info("Finding transfers between clusters...");
@@ -296,6 +374,8 @@ public class GraphIndex {
          * (Transfer transfer : transfersForStop.get(stop)) { System.out.println("    " +
          * transfer.toString()); } }
          */
+        // Publish the transfers only once they are complete.
+        this.transfersFromStopCluster = transfersFromStopCluster;
         LOG.info("Done finding transfers.");
     }
 
@@ -367,15 +447,12 @@ public class GraphIndex {
     }
 
 
-    /** An OBA Service Date is a local date without timezone, only year month and day. */
+    /**
+     * An OBA Service Date is a local date without timezone, only year month and day.
+     * The set is computed once per date by the graph's ServiceDayCache, a copy is returned so callers may modify it.
+     */
     public BitSet servicesRunning (ServiceDate date) {
-        BitSet services = new BitSet(calendarService.getServiceIds().size());
-        for (FeedScopedId serviceId : calendarService.getServiceIdsOnDate(date)) {
-            int n = serviceCodes.get(serviceId);
-            if (n < 0) continue;
-            services.set(n);
-        }
-        return services;
+        return (BitSet) graph.getServiceDayCache().getServicesRunning(date).clone();
     }
 
     /**
@@ -451,7 +528,7 @@ public class GraphIndex {
 
             // Loop through all possible days
             for (ServiceDate serviceDate : serviceDates) {
-                ServiceDay sd = new ServiceDay(graph, serviceDate, calendarService, pattern.route.getAgency().getId());
+                ServiceDay sd = graph.getServiceDayCache().getServiceDay(serviceDate, pattern.route.getAgency().getId());
                 Timetable tt;
                 if (snapshot != null){
                     tt = snapshot.resolve(pattern, serviceDate);
@@ -527,7 +604,7 @@ public class GraphIndex {
             } else {
                 tt = pattern.scheduledTimetable;
             }
-            ServiceDay sd = new ServiceDay(graph, serviceDate, calendarService, pattern.route.getAgency().getId());
+            ServiceDay sd = graph.getServiceDayCache().getServiceDay(serviceDate, pattern.route.getAgency().getId());
             int sidx = 0;
             for (Stop currStop : pattern.stopPattern.stops) {
                 if (currStop == stop) {
@@ -32,6 +32,12 @@ public abstract class Vertex implements Serializable, Cloneable {
     private static int maxIndex = 0;
 
     private int index;
+
+    /**
+     * The index at creation. Unlike the index, this does not change when the graph renumbers its vertices, so vertices
+     * already stored in hash-based collections (including deserialized ones) can still be found.
+     */
+    private final int hashCode;
     
     /* short debugging name */
     private final String label;
@@ -55,6 +61,7 @@ public abstract class Vertex implements Serializable, Cloneable {
         this.x = x;
         this.y = y;
         this.index = maxIndex  ++;
+        this.hashCode = index;
         // null graph means temporary vertex
         if (g != null)
             g.addVertex(this);
@@ -82,7 +89,7 @@ public abstract class Vertex implements Serializable, Cloneable {
 
     @Override
     public int hashCode() {
-        return index;
+        return hashCode;
     }
 
     // Stupid method for deserialization, initialize transient fields.
@@ -266,6 +273,13 @@ public abstract class Vertex implements Serializable, Cloneable {
         return maxIndex;
     }
 
+    /** Make sure that the vertices created from now on get an index of at least the given count. */
+    public static void reserveIndices(int count) {
+        if (maxIndex < count) {
+            maxIndex = count;
+        }
+    }
+
 
     /* SERIALIZATION METHODS */
 
@@ -1,12 +1,10 @@
 package org.opentripplanner.routing.impl;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import org.opentripplanner.model.FeedScopedId;
@@ -14,16 +12,18 @@ import org.opentripplanner.routing.alertpatch.AlertPatch;
 import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.routing.services.AlertPatchService;
 
-import com.google.common.collect.LinkedListMultimap;
-import com.google.common.collect.ListMultimap;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
 
+/**
+ * Holds the alert patches of one updater. Changes are made by a single writer, and published to readers as an
+ * immutable snapshot, so a reader never sees half of an update.
+ */
 public class AlertPatchServiceImpl implements AlertPatchService {
 
     private Graph graph;
 
-    private Map<String, AlertPatch> alertPatches = new HashMap<String, AlertPatch>();
-    private ListMultimap<FeedScopedId, AlertPatch> patchesByRoute = LinkedListMultimap.create();
-    private ListMultimap<FeedScopedId, AlertPatch> patchesByStop = LinkedListMultimap.create();
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap());
 
     public AlertPatchServiceImpl(Graph graph) {
         this.graph = graph;
@@ -31,90 +31,103 @@ public class AlertPatchServiceImpl implements AlertPatchService {
 
     @Override
     public Collection<AlertPatch> getAllAlertPatches() {
-        return alertPatches.values();
+        return snapshot.alertPatches.values();
     }
 
     @Override
     public Collection<AlertPatch> getStopPatches(FeedScopedId stop) {
-        List<AlertPatch> result = patchesByStop.get(stop);
-        if (result == null) {
-            result = Collections.emptyList();
-        }
-        return result;
+        return snapshot.patchesByStop.get(stop);
     }
 
     @Override
     public Collection<AlertPatch> getRoutePatches(FeedScopedId route) {
-        List<AlertPatch> result = patchesByRoute.get(route);
-        if (result == null) {
-            result = Collections.emptyList();
-        }
-        return result;
-
+        return snapshot.patchesByRoute.get(route);
     }
 
     @Override
-    public synchronized void apply(AlertPatch alertPatch) {
-        if (alertPatches.containsKey(alertPatch.getId())) {
-            expire(alertPatches.get(alertPatch.getId()));
-        }
-
-        alertPatch.apply(graph);
-        alertPatches.put(alertPatch.getId(), alertPatch);
-
-        FeedScopedId stop = alertPatch.getStop();
-        if (stop != null) {
-            patchesByStop.put(stop, alertPatch);
-        }
-        FeedScopedId route = alertPatch.getRoute();
-        if (route != null) {
-            patchesByRoute.put(route, alertPatch);
-        }
+    public void apply(AlertPatch alertPatch) {
+        update(Collections.emptySet(), Collections.singletonList(alertPatch));
     }
 
     @Override
     public void expire(Set<String> purge) {
-        for (String patchId : purge) {
-            if (alertPatches.containsKey(patchId)) {
-                expire(alertPatches.get(patchId));
-            }
-        }
-
-        alertPatches.keySet().removeAll(purge);
+        update(purge, Collections.emptyList());
     }
 
     @Override
     public void expireAll() {
-        for (AlertPatch alertPatch : alertPatches.values()) {
-            expire(alertPatch);
-        }
-        alertPatches.clear();
+        update(snapshot.alertPatches.keySet(), Collections.emptyList());
     }
 
     @Override
     public void expireAllExcept(Set<String> retain) {
-        ArrayList<String> toRemove = new ArrayList<String>();
+        Set<String> purge = new HashSet<>(snapshot.alertPatches.keySet());
+        purge.removeAll(retain);
+        update(purge, Collections.emptyList());
+    }
 
-        for (Entry<String, AlertPatch> entry : alertPatches.entrySet()) {
-            final String key = entry.getKey();
-            if (!retain.contains(key)) {
-                toRemove.add(key);
-                expire(entry.getValue());
+    @Override
+    public synchronized void update(Set<String> expiredIds, Collection<AlertPatch> newPatches) {
+        Map<String, AlertPatch> alertPatches = new LinkedHashMap<>(snapshot.alertPatches);
+        Map<String, AlertPatch> toApply = new LinkedHashMap<>();
+        for (AlertPatch alertPatch : newPatches) {
+            toApply.put(alertPatch.getId(), alertPatch);
+        }
+        boolean changed = false;
+        for (String patchId : expiredIds) {
+            AlertPatch existing = alertPatches.get(patchId);
+            if (existing == null) {
+                continue;
             }
+            if (existing.equals(toApply.get(patchId))) {
+                // Expired and created again without changes, keep the one already applied to the graph.
+                toApply.remove(patchId);
+                continue;
+            }
+            existing.remove(graph);
+            alertPatches.remove(patchId);
+            changed = true;
         }
-        alertPatches.keySet().removeAll(toRemove);
-    }
-
-    private void expire(AlertPatch alertPatch) {
-        FeedScopedId stop = alertPatch.getStop();
-        if (stop != null) {
-            patchesByStop.remove(stop, alertPatch);
+        for (AlertPatch alertPatch : toApply.values()) {
+            AlertPatch existing = alertPatches.get(alertPatch.getId());
+            if (existing != null) {
+                if (existing.equals(alertPatch)) {
+                    continue;
+                }
+                existing.remove(graph);
+            }
+            alertPatch.apply(graph);
+            alertPatches.put(alertPatch.getId(), alertPatch);
+            changed = true;
         }
-        FeedScopedId route = alertPatch.getRoute();
-        if (route != null) {
-            patchesByRoute.remove(route, alertPatch);
+        if (changed) {
+            snapshot = new Snapshot(alertPatches);
         }
+    }
 
-        alertPatch.remove(graph);
+    /** The alert patches with the indexes by stop and route, never modified once published. */
+    private static class Snapshot {
+
+        final ImmutableMap<String, AlertPatch> alertPatches;
+
+        final ImmutableListMultimap<FeedScopedId, AlertPatch> patchesByRoute;
+
+        final ImmutableListMultimap<FeedScopedId, AlertPatch> patchesByStop;
+
+        Snapshot(Map<String, AlertPatch> alertPatches) {
+            this.alertPatches = ImmutableMap.copyOf(alertPatches);
+            ImmutableListMultimap.Builder<FeedScopedId, AlertPatch> byRoute = ImmutableListMultimap.builder();
+            ImmutableListMultimap.Builder<FeedScopedId, AlertPatch> byStop = ImmutableListMultimap.builder();
+            for (AlertPatch alertPatch : alertPatches.values()) {
+                if (alertPatch.getStop() != null) {
+                    byStop.put(alertPatch.getStop(), alertPatch);
+                }
+                if (alertPatch.getRoute() != null) {
+                    byRoute.put(alertPatch.getRoute(), alertPatch);
+                }
+            }
+            this.patchesByRoute = byRoute.build();
+            this.patchesByStop = byStop.build();
+        }
     }
 }
@@ -7,6 +7,7 @@ import java.util.Collection;
 import java.util.Currency;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -22,6 +23,7 @@ import org.opentripplanner.model.Stop;
 import org.opentripplanner.routing.core.Fare;
 import org.opentripplanner.routing.core.Fare.FareType;
 import org.opentripplanner.routing.core.FareComponent;
+import org.opentripplanner.routing.core.FareRuleIndex;
 import org.opentripplanner.routing.core.FareRuleSet;
 import org.opentripplanner.routing.core.Money;
 import org.opentripplanner.routing.core.State;
@@ -71,6 +73,78 @@ class FareAndId {
     }
 }
 
+/**
+ * The attributes of a sequence of consecutive rides that fare rules are matched against. The fare search extends a
+ * sequence one ride at a time instead of collecting the attributes again for each longer sequence.
+ */
+class RideSequence {
+    final List<Ride> rides = new ArrayList<>();
+    final Set<String> zones = new HashSet<>();
+    final Set<FeedScopedId> routes = new HashSet<>();
+    final Set<String> agencies = new HashSet<>();
+    final Set<FeedScopedId> trips = new HashSet<>();
+    int transfersUsed = -1;
+    String endZone;
+    long lastRideStartTime;
+    long lastRideEndTime;
+    // Set when the rides are not all from the same feed, which no fare rule matches.
+    boolean multiFeed = false;
+
+    RideSequence add(Ride ride) {
+        if (!rides.isEmpty() && !ride.feedId.equals(first().feedId)) {
+            multiFeed = true;
+        }
+        rides.add(ride);
+        lastRideStartTime = ride.startTime;
+        lastRideEndTime = ride.endTime;
+        endZone = ride.endZone;
+        agencies.add(ride.agency);
+        routes.add(ride.route);
+        zones.addAll(ride.zones);
+        trips.add(ride.trip);
+        transfersUsed += 1;
+        return this;
+    }
+
+    Ride first() {
+        return rides.get(0);
+    }
+}
+
+/**
+ * The key of the fare attributes matching a sequence of rides with a collection of fare rules. Rides are compared by
+ * identity, as they are created anew for each path.
+ */
+class RideSequenceKey {
+    final Collection<FareRuleSet> fareRules;
+    final Ride[] rides;
+
+    RideSequenceKey(Collection<FareRuleSet> fareRules, List<Ride> rides) {
+        this.fareRules = fareRules;
+        this.rides = rides.toArray(new Ride[0]);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof RideSequenceKey)) return false;
+        RideSequenceKey other = (RideSequenceKey) o;
+        if (fareRules != other.fareRules || rides.length != other.rides.length) return false;
+        for (int i = 0; i < rides.length; i++) {
+            if (rides[i] != other.rides[i]) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = System.identityHashCode(fareRules);
+        for (Ride ride : rides) {
+            hash = 31 * hash + System.identityHashCode(ride);
+        }
+        return hash;
+    }
+}
+
 /**
  * This fare service module handles the cases that GTFS handles within a single feed.
  * It cannot necessarily handle multi-feed graphs, because a rule-less fare attribute
@@ -89,12 +163,44 @@ public class DefaultFareServiceImpl implements FareService, Serializable {
     /** For each fare type (regular, student, etc...) the collection of rules that apply. */
     protected Map<FareType, Collection<FareRuleSet>> fareRulesPerType;
 
+    /**
+     * The index of each collection of fare rules in fareRulesPerType, built when first needed. Other collections that
+     * subclasses may pass to the search are not indexed.
+     */
+    private transient volatile Map<Collection<FareRuleSet>, FareRuleIndex> fareRuleIndexes;
+
+    /**
+     * The fare attributes matching each ride sequence, for the duration of one getCost call on this thread. Many fare
+     * types, and subclasses pricing each ride for each fare type, match the same ride sequences again.
+     */
+    private static final ThreadLocal<Map<RideSequenceKey, List<FareAttribute>>> matchingAttributes =
+            new ThreadLocal<>();
+
     public DefaultFareServiceImpl() {
         fareRulesPerType = new HashMap<>();
     }
 
     public void addFareRules(FareType fareType, Collection<FareRuleSet> fareRules) {
         fareRulesPerType.put(fareType, new ArrayList<>(fareRules));
+        fareRuleIndexes = null;
+    }
+
+    /** @return the index of the given fare rules, or null if they are not the rules of a fare type. */
+    private FareRuleIndex getFareRuleIndex(Collection<FareRuleSet> fareRules) {
+        Map<Collection<FareRuleSet>, FareRuleIndex> indexes = fareRuleIndexes;
+        if (indexes == null) {
+            synchronized (this) {
+                indexes = fareRuleIndexes;
+                if (indexes == null) {
+                    indexes = new IdentityHashMap<>();
+                    for (Collection<FareRuleSet> rules : fareRulesPerType.values()) {
+                        indexes.put(rules, new FareRuleIndex(rules));
+                    }
+                    fareRuleIndexes = indexes;
+                }
+            }
+        }
+        return indexes.get(fareRules);
     }
 
     protected List<Ride> createRides(GraphPath path) {
@@ -146,6 +252,19 @@ public class DefaultFareServiceImpl implements FareService, Serializable {
 
     @Override
     public Fare getCost(GraphPath path, List<Leg> legs) {
+        // Subclasses may call back into this method, only the outermost call owns the memoized matches.
+        if (matchingAttributes.get() != null) {
+            return computeCost(path, legs);
+        }
+        matchingAttributes.set(new HashMap<>());
+        try {
+            return computeCost(path, legs);
+        } finally {
+            matchingAttributes.remove();
+        }
+    }
+
+    private Fare computeCost(GraphPath path, List<Leg> legs) {
         List<Ride> rides = createRides(path);
         // If there are no rides, there's no fare.
         if (rides.size() == 0) {
@@ -214,6 +333,8 @@ public class DefaultFareServiceImpl implements FareService, Serializable {
     private FareSearch performSearch(FareType fareType, List<Ride> rides,
             Collection<FareRuleSet> fareRules) {
         FareSearch r = new FareSearch(rides.size());
+        // The sequence of rides starting at each ride, one ride longer on each diagonal.
+        RideSequence[] sequences = new RideSequence[rides.size()];
 
         // Dynamic algorithm to calculate fare cost.
         // This is a modified Floyd-Warshall algorithm, a key thing to remember is that
@@ -222,7 +343,10 @@ public class DefaultFareServiceImpl implements FareService, Serializable {
         for (int i = 0; i < rides.size(); i++) {
             // each diagonal
             for (int j = 0; j < rides.size() - i; j++) {
-                FareAndId best = getBestFareAndId(fareType, rides.subList(j, j + i + 1), fareRules);
+                if (i == 0) {
+                    sequences[j] = new RideSequence();
+                }
+                FareAndId best = getBestFareAndId(fareType, sequences[j].add(rides.get(j + i)), fareRules);
                 float cost = best.fare;
                 if (cost < 0) {
                     LOG.error("negative cost for a ride sequence");
@@ -319,50 +443,74 @@ public class DefaultFareServiceImpl implements FareService, Serializable {
 
     private FareAndId getBestFareAndId(FareType fareType, List<Ride> rides,
             Collection<FareRuleSet> fareRules) {
-        Set<String> zones = new HashSet<String>();
-        Set<FeedScopedId> routes = new HashSet<FeedScopedId>();
-        Set<String> agencies = new HashSet<String>();
-        Set<FeedScopedId> trips = new HashSet<FeedScopedId>();
-        int transfersUsed = -1;
-        
-        Ride firstRide = rides.get(0);
-        long   startTime = firstRide.startTime;
-        String startZone = firstRide.startZone;
-        String endZone = firstRide.endZone;
-        String feedId = firstRide.feedId;
-        long lastRideStartTime = firstRide.startTime;
-        long lastRideEndTime = firstRide.endTime;
+        RideSequence sequence = new RideSequence();
         for (Ride ride : rides) {
-            if ( ! ride.feedId.equals(feedId)) {
-                LOG.debug("skipped multi-feed ride sequence {}", rides);
-                return new FareAndId(Float.POSITIVE_INFINITY, null);
-            }
-            lastRideStartTime = ride.startTime;
-            lastRideEndTime = ride.endTime;
-            endZone = ride.endZone;
-            agencies.add(ride.agency);
-            routes.add(ride.route);
-            zones.addAll(ride.zones);
-            trips.add(ride.trip);
-            transfersUsed += 1;
+            sequence.add(ride);
+        }
+        return getBestFareAndId(fareType, sequence, fareRules);
+    }
+
+    private FareAndId getBestFareAndId(FareType fareType, RideSequence sequence,
+            Collection<FareRuleSet> fareRules) {
+        if (sequence.multiFeed) {
+            LOG.debug("skipped multi-feed ride sequence {}", sequence.rides);
+            return new FareAndId(Float.POSITIVE_INFINITY, null);
         }
-        
+
         FareAttribute bestAttribute = null;
         float bestFare = Float.POSITIVE_INFINITY;
-        long tripTime = lastRideStartTime - startTime;
-        long journeyTime = lastRideEndTime - startTime;
-        	
         // find the best fare that matches this set of rides
-        for (FareRuleSet ruleSet : fareRules) {
+        for (FareAttribute attribute : getMatchingAttributes(sequence, fareRules)) {
+            float newFare = getFarePrice(attribute, fareType);
+            if (newFare < bestFare) {
+                bestAttribute = attribute;
+                bestFare = newFare;
+            }
+        }
+        LOG.debug("{} best for {}", bestAttribute, sequence.rides);
+        if (bestFare == Float.POSITIVE_INFINITY) {
+            LOG.debug("No fare for a ride sequence: {}", sequence.rides);
+        }
+        return new FareAndId(bestFare, bestAttribute == null ? null : bestAttribute.getId());
+    }
+
+    /**
+     * @return the fare attributes of the rules matching the ride sequence, which do not depend on the fare type, in
+     * the order of the rules.
+     */
+    private List<FareAttribute> getMatchingAttributes(RideSequence sequence, Collection<FareRuleSet> fareRules) {
+        Map<RideSequenceKey, List<FareAttribute>> memo = matchingAttributes.get();
+        RideSequenceKey key = null;
+        if (memo != null) {
+            key = new RideSequenceKey(fareRules, sequence.rides);
+            List<FareAttribute> attributes = memo.get(key);
+            if (attributes != null) {
+                return attributes;
+            }
+        }
+
+        Ride firstRide = sequence.first();
+        long startTime = firstRide.startTime;
+        String startZone = firstRide.startZone;
+        String feedId = firstRide.feedId;
+        long tripTime = sequence.lastRideStartTime - startTime;
+        long journeyTime = sequence.lastRideEndTime - startTime;
+
+        FareRuleIndex index = getFareRuleIndex(fareRules);
+        Collection<FareRuleSet> candidates = index == null ? fareRules
+                : index.getCandidates(feedId, firstRide.route, startZone, sequence.endZone);
+        List<FareAttribute> attributes = new ArrayList<>();
+        for (FareRuleSet ruleSet : candidates) {
             FareAttribute attribute = ruleSet.getFareAttribute();
             // fares also don't really have an agency id, they will have the per-feed default id
             // check only if the fare is not mapped to an agency
             if (!ruleSet.hasAgencyDefined() && !attribute.getId().getAgencyId().equals(feedId))
                 continue;
             
-            if (ruleSet.matches(agencies, startZone, endZone, zones, routes, trips)) {
+            if (ruleSet.matches(sequence.agencies, startZone, sequence.endZone, sequence.zones, sequence.routes,
+                    sequence.trips)) {
                 // TODO Maybe move the code below in FareRuleSet::matches() ?
-                if (attribute.isTransfersSet() && attribute.getTransfers() < transfersUsed) {
+                if (attribute.isTransfersSet() && attribute.getTransfers() < sequence.transfersUsed) {
                     continue;
                 }
                 // assume transfers are evaluated at boarding time,
@@ -375,18 +523,13 @@ public class DefaultFareServiceImpl implements FareService, Serializable {
                     journeyTime > attribute.getJourneyDuration()) {
                     continue;
                 }
-                float newFare = getFarePrice(attribute, fareType);
-                if (newFare < bestFare) {
-                    bestAttribute = attribute;
-                    bestFare = newFare;
-                }
+                attributes.add(attribute);
             }
         }
-        LOG.debug("{} best for {}", bestAttribute, rides);
-        if (bestFare == Float.POSITIVE_INFINITY) {
-            LOG.debug("No fare for a ride sequence: {}", rides);
+        if (memo != null) {
+            memo.put(key, attributes);
         }
-        return new FareAndId(bestFare, bestAttribute == null ? null : bestAttribute.getId());
+        return attributes;
     }
     
     private float getFarePrice(FareAttribute fare, FareType type) {
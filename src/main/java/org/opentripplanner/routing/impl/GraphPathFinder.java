@@ -7,8 +7,10 @@ import org.opentripplanner.common.model.GenericLocation;
 import org.opentripplanner.routing.algorithm.AStar;
 import org.opentripplanner.routing.algorithm.strategies.EuclideanRemainingWeightHeuristic;
 import org.opentripplanner.routing.algorithm.strategies.InterleavedBidirectionalHeuristic;
+import org.opentripplanner.routing.algorithm.strategies.LandmarkRemainingWeightHeuristic;
 import org.opentripplanner.routing.algorithm.strategies.RemainingWeightHeuristic;
 import org.opentripplanner.routing.algorithm.strategies.TrivialRemainingWeightHeuristic;
+import org.opentripplanner.routing.contraction.ContractionHierarchy;
 import org.opentripplanner.routing.core.RoutingRequest;
 import org.opentripplanner.routing.core.State;
 import org.opentripplanner.routing.edgetype.LegSwitchingEdge;
@@ -19,6 +21,8 @@ import org.opentripplanner.routing.flex.DeviatedRouteGraphModifier;
 import org.opentripplanner.routing.flex.FlagStopGraphModifier;
 import org.opentripplanner.routing.graph.Edge;
 import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.landmarks.LandmarkService;
+import org.opentripplanner.routing.landmarks.LandmarkSet;
 import org.opentripplanner.routing.spt.DominanceFunction;
 import org.opentripplanner.routing.spt.GraphPath;
 import org.opentripplanner.standalone.Router;
@@ -61,6 +65,11 @@ public class GraphPathFinder {
         this.router = router;
     }
 
+    /** @return the AStar instance used for all the searches of one request. */
+    protected AStar createAStar() {
+        return new AStar();
+    }
+
     /**
      * Repeatedly build shortest path trees, retaining the best path to the destination after each try.
      * For search N, all trips used in itineraries retained from trips 0..(N-1) are "banned" to create variety.
@@ -77,7 +86,7 @@ public class GraphPathFinder {
         }
 
         // Reuse one instance of AStar for all N requests, which are carried out sequentially
-        AStar aStar = new AStar();
+        AStar aStar = createAStar();
         if (options.rctx == null) {
             // This call will also set the start and end vertices
             options.setRoutingContext(router.graph);
@@ -109,8 +118,16 @@ public class GraphPathFinder {
             heuristic = new InterleavedBidirectionalHeuristic();
             reversedSearchHeuristic = new InterleavedBidirectionalHeuristic();
         } else {
-            heuristic = new EuclideanRemainingWeightHeuristic();
-            reversedSearchHeuristic = new EuclideanRemainingWeightHeuristic();
+            // Use precomputed landmarks for car and bicycle searches when the graph has them for this kind of request.
+            LandmarkService landmarkService = router.graph.getService(LandmarkService.class);
+            LandmarkSet landmarks = landmarkService == null ? null : landmarkService.forRequest(options);
+            if (landmarks != null) {
+                heuristic = new LandmarkRemainingWeightHeuristic(landmarks);
+                reversedSearchHeuristic = new LandmarkRemainingWeightHeuristic(landmarks);
+            } else {
+                heuristic = new EuclideanRemainingWeightHeuristic();
+                reversedSearchHeuristic = new EuclideanRemainingWeightHeuristic();
+            }
         }
         options.rctx.remainingWeightHeuristic = heuristic;
 
@@ -151,7 +168,18 @@ public class GraphPathFinder {
         long searchBeginTime = System.currentTimeMillis();
         LOG.debug("BEGIN SEARCH");
         List<GraphPath> paths = Lists.newArrayList();
-        while (paths.size() < options.numItineraries) {
+        // Car-only searches can be answered from a contraction hierarchy if one was built, skipping the search below.
+        // The AStar search only runs when the hierarchy does not apply or finds no usable path.
+        boolean searchWithAStar = true;
+        ContractionHierarchy contractionHierarchy = router.graph.getService(ContractionHierarchy.class);
+        if (contractionHierarchy != null && contractionHierarchy.appliesTo(options)) {
+            GraphPath path = contractionHierarchy.findPath(options);
+            if (path != null && isWithinMaxHours(options, path)) {
+                paths.add(path);
+                searchWithAStar = false;
+            }
+        }
+        while (searchWithAStar && paths.size() < options.numItineraries) {
             // TODO pull all this timeout logic into a function near org.opentripplanner.util.DateUtils.absoluteTimeout()
             int timeoutIndex = paths.size();
             if (timeoutIndex >= router.timeouts.length) {
@@ -209,14 +237,7 @@ public class GraphPathFinder {
             }
 
             paths.addAll(newPaths.stream()
-                    .filter(path -> {
-                        double duration = options.useRequestedDateTimeInMaxHours
-                            ? options.arriveBy
-                                ? options.dateTime - path.getStartTime()
-                                : path.getEndTime() - options.dateTime
-                            : path.getDuration();
-                        return duration < options.maxHours * 60 * 60;
-                    })
+                    .filter(path -> isWithinMaxHours(options, path))
                     .collect(Collectors.toList()));
 
             LOG.debug("we have {} paths", paths.size());
@@ -226,6 +247,15 @@ public class GraphPathFinder {
         return paths;
     }
 
+    private static boolean isWithinMaxHours(RoutingRequest options, GraphPath path) {
+        double duration = options.useRequestedDateTimeInMaxHours
+            ? options.arriveBy
+                ? options.dateTime - path.getStartTime()
+                : path.getEndTime() - options.dateTime
+            : path.getDuration();
+        return duration < options.maxHours * 60 * 60;
+    }
+
     /**
      * Do a full reversed search to compact the legs of the path.
      *
@@ -351,8 +381,7 @@ public class GraphPathFinder {
         reversedOptions.rctx.remainingWeightHeuristic = remainingWeightHeuristic;
         reversedOptions.maxTransfers = 4;
         reversedOptions.longDistance = true;
-        reversedOptions.bannedTrips = options.bannedTrips;
-        reversedOptions.bannedTripSequences = options.bannedTripSequences;
+        reversedOptions.shareBannedTrips(options);
         return reversedOptions;
     }
 
@@ -375,6 +404,9 @@ public class GraphPathFinder {
                 paths = getGraphPathsConsideringIntermediates(relaxedRequest);
             }
             request.rctx.debugOutput.finishedCalculating();
+            // If the search never boarded a TNC, the arrival estimates requested when the request was parsed have not
+            // been waited for yet. Do so anyway, to report when no TNC service is available at the origin.
+            request.getTransportationNetworkCompanyEtaAtOrigin();
         } catch (VertexNotFoundException e) {
             LOG.info("Vertex not found: " + request.from + " : " + request.to);
             throw e;
@@ -102,7 +102,14 @@ public class InputStreamGraphSource implements GraphSource {
             } else {
                 Router newRouter = loadGraph();
                 if (newRouter != null) {
-                    // Load OK
+                    // Load OK. The current router, if any, keeps serving requests while the new one is warmed up.
+                    if (newRouter.warmUp != null && newRouter.warmUp.isEnabled()) {
+                        try {
+                            newRouter.warmUp.warmUp(newRouter, router);
+                        } catch (Exception e) {
+                            LOG.warn("Warm-up of router '{}' failed, swapping it in anyway.", routerId, e);
+                        }
+                    }
                     if (router != null) {
                         LOG.info("Reloading '{}': post-evicting router", routerId);
                         router.shutdown();
@@ -0,0 +1,118 @@
+package org.opentripplanner.routing.landmarks;
+
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.core.TraverseModeSet;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.vertextype.TransitVertex;
+
+/**
+ * A family of street searches that can share one set of landmark distances. Each profile defines a cost for every
+ * edge that is a lower bound on the traversal weight of that edge for any request the profile applies to, divided by
+ * a request-dependent factor. Shortest path distances under these costs are then lower bounds on the weight of any
+ * path the search could find, which is what the landmark heuristic needs to stay admissible.
+ *
+ * Edges touching the transit layer are left out entirely since these profiles never apply to transit searches.
+ * All other edges that are not StreetEdges (links to rental stations, elevators, parking etc.) have zero cost.
+ */
+public enum LandmarkProfile {
+
+    /**
+     * Car-only searches. Costs are seconds at the edge's car speed, and the weight of a driven street edge is at least
+     * that time multiplied by the walk reluctance (which is applied to all modes) plus a non-negative turn cost.
+     */
+    CAR {
+        @Override
+        protected double streetEdgeCost(StreetEdge edge) {
+            if (!edge.canTraverseIncludingBarrier(TraverseMode.CAR)) return NOT_TRAVERSABLE;
+            return edge.getDistance() / edge.getCarSpeed();
+        }
+
+        @Override
+        public boolean appliesTo(RoutingRequest options) {
+            return options.carLandmarkHeuristic && options.isCarOnly();
+        }
+
+        @Override
+        public double weightPerCost(RoutingRequest options) {
+            return Math.max(0, options.walkReluctance);
+        }
+    },
+
+    /**
+     * Non-transit bicycle searches, possibly with bike rental and walking the bike. Costs are effective lengths in
+     * meters: the smallest of the lengths StreetEdge uses for any bicycle optimization type or for walking. The weight
+     * of an edge is at least that length divided by the highest possible speed, multiplied by the lowest reluctance.
+     */
+    BICYCLE {
+        @Override
+        protected double streetEdgeCost(StreetEdge edge) {
+            double cost = Double.POSITIVE_INFINITY;
+            if (edge.canTraverseIncludingBarrier(TraverseMode.BICYCLE)) {
+                double safety = edge.getBicycleSafetyFactor() * edge.getDistance();
+                if (edge.getBicycleSafetyFactor() <= GREENWAY_SAFETY_FACTOR) {
+                    safety *= GREENWAY_BONUS;
+                }
+                cost = Math.min(edge.getDistance(), safety);
+                cost = Math.min(cost, edge.getSlopeSpeedEffectiveLength());
+                cost = Math.min(cost, edge.getSlopeWorkCostEffectiveLength());
+            }
+            if (edge.canTraverseIncludingBarrier(TraverseMode.WALK)) {
+                cost = Math.min(cost, edge.getWalkComfortScore() * edge.getSlopeWalkSpeedEffectiveLength());
+            }
+            return cost == Double.POSITIVE_INFINITY ? NOT_TRAVERSABLE : Math.max(0, cost);
+        }
+
+        @Override
+        public boolean appliesTo(RoutingRequest options) {
+            TraverseModeSet modes = options.modes;
+            return options.bicycleLandmarkHeuristic
+                    && modes.getBicycle()
+                    && (modes.getMask() & ~BICYCLE_AND_WALK.getMask()) == 0
+                    && !options.wheelchairAccessible
+                    && !options.allowCarRental
+                    && !options.allowVehicleRental
+                    && !options.useTransportationNetworkCompany;
+        }
+
+        @Override
+        public double weightPerCost(RoutingRequest options) {
+            RoutingRequest walking = options.bikeWalkingOptions == null ? options : options.bikeWalkingOptions;
+            double minReluctance = Math.min(
+                    Math.min(options.walkReluctance, options.stairsReluctance),
+                    Math.min(walking.walkReluctance, walking.stairsReluctance));
+            double maxSpeed = Math.max(Math.max(options.bikeSpeed, options.walkSpeed), walking.walkSpeed);
+            return Math.max(0, minReluctance) / maxSpeed;
+        }
+    };
+
+    /** Returned by edgeCost for edges that cannot be used at all by searches with this profile. */
+    public static final double NOT_TRAVERSABLE = -1;
+
+    /** Mirrors the special treatment of greenways in StreetEdge. */
+    private static final double GREENWAY_SAFETY_FACTOR = 0.1;
+    private static final double GREENWAY_BONUS = 0.66;
+
+    private static final TraverseModeSet BICYCLE_AND_WALK = new TraverseModeSet(TraverseMode.BICYCLE, TraverseMode.WALK);
+
+    /** @return the cost of traversing the given edge, or NOT_TRAVERSABLE. */
+    public double edgeCost(Edge edge) {
+        if (edge.getFromVertex() instanceof TransitVertex || edge.getToVertex() instanceof TransitVertex) {
+            return NOT_TRAVERSABLE;
+        }
+        if (edge instanceof StreetEdge) {
+            return streetEdgeCost((StreetEdge) edge);
+        }
+        return 0;
+    }
+
+    protected abstract double streetEdgeCost(StreetEdge edge);
+
+    /** @return whether the landmark distances for this profile are lower bounds for the given request. */
+    public abstract boolean appliesTo(RoutingRequest options);
+
+    /** @return the factor converting costs of this profile into lower bounds on weight for the given request. */
+    public abstract double weightPerCost(RoutingRequest options);
+
+}
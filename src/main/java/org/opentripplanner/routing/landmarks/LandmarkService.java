@@ -0,0 +1,36 @@
+package org.opentripplanner.routing.landmarks;
+
+import org.opentripplanner.routing.core.RoutingRequest;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Graph service holding the landmark costs computed at build time by LandmarkModule, one LandmarkSet per profile.
+ */
+public class LandmarkService implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Map<LandmarkProfile, LandmarkSet> landmarkSets = new HashMap<>();
+
+    public void put(LandmarkSet landmarkSet) {
+        landmarkSets.put(landmarkSet.profile, landmarkSet);
+    }
+
+    public LandmarkSet get(LandmarkProfile profile) {
+        return landmarkSets.get(profile);
+    }
+
+    /** @return landmark costs that give valid lower bounds for the given request, or null if there are none. */
+    public LandmarkSet forRequest(RoutingRequest options) {
+        for (LandmarkSet landmarkSet : landmarkSets.values()) {
+            if (landmarkSet.profile.appliesTo(options)) {
+                return landmarkSet;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,101 @@
+package org.opentripplanner.routing.landmarks;
+
+import org.opentripplanner.routing.graph.Vertex;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Shortest path costs from and to a small number of landmark vertices, for every vertex that was in the graph when
+ * the landmarks were computed. Costs are in the units of a LandmarkProfile, with positive infinity for vertices that
+ * cannot reach or be reached from a landmark.
+ *
+ * Costs are stored in two flat float arrays interleaved by vertex (all landmarks of one vertex are adjacent) since
+ * the heuristic always reads every landmark for a single vertex at a time.
+ *
+ * Vertex indexes are not stable across graph serialization, so the vertices themselves are stored and the mapping
+ * from vertex index to array position is rebuilt lazily after loading.
+ */
+public class LandmarkSet implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public final LandmarkProfile profile;
+
+    private final Vertex[] vertices;
+
+    private final Vertex[] landmarks;
+
+    /** Cost from landmark l to the vertex at position p is at p * landmarks.length + l. */
+    private final float[] fromLandmark;
+
+    /** Cost from the vertex at position p to landmark l is at p * landmarks.length + l. */
+    private final float[] toLandmark;
+
+    private transient volatile int[] positionByVertexIndex;
+
+    public LandmarkSet(LandmarkProfile profile, Vertex[] vertices, Vertex[] landmarks, float[] fromLandmark,
+            float[] toLandmark) {
+        this.profile = profile;
+        this.vertices = vertices;
+        this.landmarks = landmarks;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+    }
+
+    public int getLandmarkCount() {
+        return landmarks.length;
+    }
+
+    public Vertex getLandmark(int l) {
+        return landmarks[l];
+    }
+
+    public int getVertexCount() {
+        return vertices.length;
+    }
+
+    /** @return the cost from landmark l to the vertex at the given position. */
+    public float fromLandmark(int position, int l) {
+        return fromLandmark[position * landmarks.length + l];
+    }
+
+    /** @return the cost from the vertex at the given position to landmark l. */
+    public float toLandmark(int position, int l) {
+        return toLandmark[position * landmarks.length + l];
+    }
+
+    /**
+     * @return the array position of the given vertex, or -1 if it has no landmark costs (because it is a temporary
+     * vertex or was added to the graph after the landmarks were computed).
+     */
+    public int getPosition(Vertex vertex) {
+        int[] positions = positionByVertexIndex;
+        if (positions == null) {
+            positions = buildPositions();
+        }
+        int index = vertex.getIndex();
+        if (index < 0 || index >= positions.length) return -1;
+        int position = positions[index];
+        // Check identity in case indexes were reassigned since the positions were built.
+        if (position < 0 || vertices[position] != vertex) return -1;
+        return position;
+    }
+
+    private synchronized int[] buildPositions() {
+        if (positionByVertexIndex == null) {
+            int maxIndex = 0;
+            for (Vertex v : vertices) {
+                maxIndex = Math.max(maxIndex, v.getIndex());
+            }
+            int[] positions = new int[maxIndex + 1];
+            Arrays.fill(positions, -1);
+            for (int p = 0; p < vertices.length; p++) {
+                positions[vertices[p].getIndex()] = p;
+            }
+            positionByVertexIndex = positions;
+        }
+        return positionByVertexIndex;
+    }
+
+}
@@ -20,4 +20,10 @@ public interface AlertPatchService {
     void expireAll();
 
     void expireAllExcept(Set<String> ids);
+
+    /**
+     * Expire the patches with the given ids and apply the given patches as one change, so that readers see either
+     * all or none of it. Patches equal to the patch they replace are left in place.
+     */
+    void update(Set<String> expiredIds, Collection<AlertPatch> alertPatches);
 }
@@ -1,5 +1,6 @@
 package org.opentripplanner.routing.services;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.geotools.referencing.factory.DeferredAuthorityFactory;
 import org.geotools.util.WeakCollectionCleaner;
 import org.opentripplanner.routing.error.GraphNotFoundException;
@@ -12,7 +13,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
@@ -53,6 +56,9 @@ public class GraphService {
 
     private ScheduledExecutorService scanExecutor;
 
+    /** Runs the reloads requested in the background one at a time, created on the first such request. */
+    private ExecutorService backgroundReloadExecutor;
+
     public GraphService() {
         this(false);
     }
@@ -134,6 +140,19 @@ public class GraphService {
         return allSucceeded;
     }
 
+    /**
+     * Reload all registered graphs in a background thread, without pre-evicting them: each current router keeps serving
+     * requests until the new one has been loaded and warmed up (see RouterWarmUp) and is swapped in.
+     * @return the result of reloadGraphs, once the reload is done.
+     */
+    public synchronized Future<Boolean> reloadGraphsInBackground(boolean force) {
+        if (backgroundReloadExecutor == null) {
+            backgroundReloadExecutor = Executors.newSingleThreadExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("GraphReload-%d").setDaemon(true).build());
+        }
+        return backgroundReloadExecutor.submit(() -> reloadGraphs(false, force));
+    }
+
     /**
      * Reload a registered graph. If the reload fails, evict (remove) the graph.
      * 
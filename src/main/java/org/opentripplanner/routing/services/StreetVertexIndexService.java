@@ -6,7 +6,8 @@ import org.locationtech.jts.geom.LineString;
 import org.opentripplanner.analyst.core.Sample;
 import org.opentripplanner.analyst.request.SampleFactory;
 import org.opentripplanner.common.geometry.GeometryUtils;
-import org.opentripplanner.common.geometry.HashGridSpatialIndex;
+import org.opentripplanner.common.geometry.PackedHilbertRTree;
+import org.opentripplanner.common.geometry.PackedSpatialIndex;
 import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
 import org.opentripplanner.common.model.GenericLocation;
 import org.opentripplanner.common.model.P2;
@@ -32,7 +33,6 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -48,11 +48,12 @@ public class StreetVertexIndexService {
     private Graph graph;
 
     /**
-     * Contains only instances of {@link StreetEdge}
+     * The spatial indexes are bulk-loaded when this service is created. Only the edges change afterwards, when the
+     * StreetSplitter splits them, and these changes go to the small mutable overlay of the index.
      */
-    private HashGridSpatialIndex edgeTree;
-    private HashGridSpatialIndex transitStopTree;
-    private HashGridSpatialIndex verticesTree;
+    private PackedSpatialIndex<Edge> edgeTree;
+    private PackedSpatialIndex<TransitStop> transitStopTree;
+    private PackedSpatialIndex<Vertex> verticesTree;
 
     // private static final double SEARCH_RADIUS_M = 100; // meters
     // private static final double SEARCH_RADIUS_DEG = DistanceLibrary.metersToDegrees(SEARCH_RADIUS_M);
@@ -98,9 +99,6 @@ public class StreetVertexIndexService {
             LOG.warn("Multiple StreetVertexIndexServices detected on the same graph! Make sure only the most recently created one is used going forward!");
         }
         graphsWithStreetVertexIndexServices.add(graph);
-        edgeTree = new HashGridSpatialIndex<>();
-        transitStopTree = new HashGridSpatialIndex<>();
-        verticesTree = new HashGridSpatialIndex<>();
         postSetup();
         streetSplitter = new StreetSplitter(graph, edgeTree, transitStopTree);
     }
@@ -198,38 +196,40 @@ public class StreetVertexIndexService {
         return GeometryUtils.splitGeometryAtPoint(geometry, nearestPoint);
     }
 
-    @SuppressWarnings("rawtypes")
     private void postSetup() {
-        for (Vertex gv : graph.getVertices()) {
-            Vertex v = gv;
+        List<Envelope> edgeEnvelopes = new ArrayList<>();
+        List<Edge> edges = new ArrayList<>();
+        List<Envelope> transitStopEnvelopes = new ArrayList<>();
+        List<TransitStop> transitStops = new ArrayList<>();
+        List<Envelope> vertexEnvelopes = new ArrayList<>();
+        List<Vertex> vertices = new ArrayList<>();
+        for (Vertex v : graph.getVertices()) {
             /*
              * We add all edges with geometry, skipping transit, filtering them out after. We do not
              * index transit edges as we do not need them and some GTFS do not have shape data, so
-             * long straight lines between 2 faraway stations will wreck performance on a hash grid
-             * spatial index.
-             *
-             * If one need to store transit edges in the index, we could improve the hash grid
-             * rasterizing splitting long segments.
+             * long straight lines between 2 faraway stations would make for large useless nodes.
              */
-            synchronized (this) {
-                // place a lock here in order to ensure writes are thread-safe to the edgeTree
-                for (Edge e : gv.getOutgoing()) {
-                    if (e instanceof PatternEdge || e instanceof SimpleTransfer)
-                        continue;
-                    LineString geometry = e.getGeometry();
-                    if (geometry == null) {
-                        continue;
-                    }
-                    edgeTree.insert(geometry, e);
+            for (Edge e : v.getOutgoing()) {
+                if (e instanceof PatternEdge || e instanceof SimpleTransfer)
+                    continue;
+                LineString geometry = e.getGeometry();
+                if (geometry == null) {
+                    continue;
                 }
+                edgeEnvelopes.add(geometry.getEnvelopeInternal());
+                edges.add(e);
             }
+            Envelope env = new Envelope(v.getCoordinate());
             if (v instanceof TransitStop) {
-                Envelope env = new Envelope(v.getCoordinate());
-                transitStopTree.insert(env, v);
+                transitStopEnvelopes.add(env);
+                transitStops.add((TransitStop) v);
             }
-            Envelope env = new Envelope(v.getCoordinate());
-            verticesTree.insert(env, v);
+            vertexEnvelopes.add(env);
+            vertices.add(v);
         }
+        edgeTree = new PackedSpatialIndex<>(edgeEnvelopes, edges);
+        transitStopTree = new PackedSpatialIndex<>(transitStopEnvelopes, transitStops);
+        verticesTree = new PackedSpatialIndex<>(vertexEnvelopes, vertices);
     }
 
     /**
@@ -255,18 +255,22 @@ public class StreetVertexIndexService {
      * @param envelope
      * @return
      */
-    @SuppressWarnings("unchecked")
     public List<Vertex> getVerticesForEnvelope(Envelope envelope) {
-        List<Vertex> vertices = verticesTree.query(envelope);
-        // Here we assume vertices list modifiable
-        for (Iterator<Vertex> iv = vertices.iterator(); iv.hasNext();) {
-            Vertex v = iv.next();
-            if (!envelope.contains(new Coordinate(v.getLon(), v.getLat())))
-                iv.remove();
-        }
+        List<Vertex> vertices = new ArrayList<>();
+        visitVerticesInEnvelope(envelope, vertices::add);
         return vertices;
     }
 
+    /**
+     * Visits the vertices within the specified envelope, without allocating any collection.
+     */
+    public void visitVerticesInEnvelope(Envelope envelope, PackedHilbertRTree.Visitor<Vertex> visitor) {
+        verticesTree.visit(envelope, v -> {
+            if (envelope.contains(v.getLon(), v.getLat()))
+                visitor.visit(v);
+        });
+    }
+
     /**
      * Return the edges whose geometry intersect with the specified envelope. Warning: edges w/o
      * geometry will not be indexed.
@@ -274,16 +278,12 @@ public class StreetVertexIndexService {
      * @param envelope
      * @return
      */
-    @SuppressWarnings("unchecked")
     public Collection<Edge> getEdgesForEnvelope(Envelope envelope) {
-        List<Edge> edges = edgeTree.query(envelope);
-        for (Iterator<Edge> ie = edges.iterator(); ie.hasNext();) {
-            Edge e = ie.next();
-            Envelope eenv = e.getGeometry().getEnvelopeInternal();
-            //Envelope eenv = e.getEnvelope();
-            if (!envelope.intersects(eenv))
-                ie.remove();
-        }
+        List<Edge> edges = new ArrayList<>();
+        edgeTree.visit(envelope, e -> {
+            if (envelope.intersects(e.getGeometry().getEnvelopeInternal()))
+                edges.add(e);
+        });
         return edges;
     }
 
@@ -291,14 +291,12 @@ public class StreetVertexIndexService {
      * @param envelope
      * @return The transit stops within an envelope.
      */
-    @SuppressWarnings("unchecked")
     public List<TransitStop> getTransitStopForEnvelope(Envelope envelope) {
-        List<TransitStop> transitStops = transitStopTree.query(envelope);
-        for (Iterator<TransitStop> its = transitStops.iterator(); its.hasNext();) {
-            TransitStop ts = its.next();
-            if (!envelope.intersects(new Coordinate(ts.getLon(), ts.getLat())))
-                its.remove();
-        }
+        List<TransitStop> transitStops = new ArrayList<>();
+        transitStopTree.visit(envelope, ts -> {
+            if (envelope.intersects(ts.getLon(), ts.getLat()))
+                transitStops.add(ts);
+        });
         return transitStops;
     }
 
@@ -0,0 +1,105 @@
+package org.opentripplanner.routing.transportation_network_company;
+
+import org.opentripplanner.routing.error.TransportationNetworkCompanyAvailabilityException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * The earliest arrival of a TNC vehicle at the origin of a trip, requested from the TNC providers when the routing
+ * request is parsed and only waited for when the search first needs it. This way the latency of the providers overlaps
+ * the linking of the origin and destination and the initialization of the heuristic instead of adding to them.
+ */
+public class TransportationNetworkCompanyEta {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TransportationNetworkCompanyEta.class);
+
+    private final Future<List<ArrivalTime>> arrivalTimes;
+
+    private final boolean wheelchairAccessible;
+
+    /** Whether the ETA applies to the search, that is for a "depart at" trip that begins soonish. */
+    private final boolean applicable;
+
+    /** The earliest ETA in seconds, or -1 if it does not apply. Null until the arrival times have been received. */
+    private volatile Integer earliestEta;
+
+    /** The exception thrown by the first call if the ETA could not be determined, rethrown by later calls. */
+    private volatile RuntimeException failure;
+
+    /**
+     * @param arrivalTimes the pending request to the TNC providers.
+     * @param wheelchairAccessible only consider ride types with this accessibility.
+     * @param applicable whether the earliest ETA should be used in the search, or only checked to exist.
+     */
+    public TransportationNetworkCompanyEta(Future<List<ArrivalTime>> arrivalTimes, boolean wheelchairAccessible,
+            boolean applicable) {
+        this.arrivalTimes = arrivalTimes;
+        this.wheelchairAccessible = wheelchairAccessible;
+        this.applicable = applicable;
+    }
+
+    /**
+     * Wait for the arrival times if they have not been received yet.
+     *
+     * @return the earliest ETA in seconds of an acceptable ride type, or -1 if it should not be used in this search.
+     * @throws TransportationNetworkCompanyAvailabilityException if no acceptable ride type is available at the origin.
+     */
+    public int getEarliestEta() {
+        if (failure != null) {
+            throw failure;
+        }
+        Integer eta = earliestEta;
+        if (eta == null) {
+            try {
+                eta = earliestEta = findEarliestEta();
+            } catch (RuntimeException e) {
+                failure = e;
+                throw e;
+            }
+        }
+        return eta;
+    }
+
+    private int findEarliestEta() {
+        List<ArrivalTime> arrivalEstimates;
+        try {
+            arrivalEstimates = arrivalTimes.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnsupportedOperationException(
+                "Interrupted while verifying availability of Transportation Network Company service");
+        } catch (ExecutionException e) {
+            LOG.error("Unable to verify availability of Transportation Network Company service", e);
+            throw new UnsupportedOperationException(
+                "Unable to verify availability of Transportation Network Company service due to error: " +
+                    e.getCause().getMessage()
+            );
+        }
+
+        /**
+         * iterate through results and find earliest ETA of an acceptable ride type
+         * this also checks if any of the ride types are wheelchair accessible or not
+         * if the request requires a wheelchair accessible ride and no arrival estimates are
+         * found, then the TransportationNetworkCompanyAvailabilityException will be thrown.
+         */
+        int earliest = Integer.MAX_VALUE;
+        for (ArrivalTime arrivalEstimate : arrivalEstimates) {
+            if (
+                arrivalEstimate.estimatedSeconds < earliest &&
+                    wheelchairAccessible == arrivalEstimate.wheelchairAccessible
+            ) {
+                earliest = arrivalEstimate.estimatedSeconds;
+            }
+        }
+
+        if (earliest == Integer.MAX_VALUE) {
+            // no acceptable ride types found
+            throw new TransportationNetworkCompanyAvailabilityException();
+        }
+        return applicable ? earliest : -1;
+    }
+}
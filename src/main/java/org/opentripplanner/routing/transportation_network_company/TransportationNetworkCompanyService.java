@@ -13,6 +13,7 @@
 
 package org.opentripplanner.routing.transportation_network_company;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.opentripplanner.api.model.Place;
 import org.opentripplanner.updater.transportation_network_company.TransportationNetworkCompanyDataSource;
 import org.slf4j.Logger;
@@ -33,6 +34,11 @@ public class TransportationNetworkCompanyService implements Serializable {
 
     private static Logger LOG = LoggerFactory.getLogger(TransportationNetworkCompanyService.class);
 
+    /** Runs the arrival time requests which are started before a search and waited for during it. */
+    private static final ExecutorService asyncRequests = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("tnc-eta-%d").setDaemon(true).build()
+    );
+
     private Map<TransportationNetworkCompany, TransportationNetworkCompanyDataSource> sources =
         new HashMap<>();
 
@@ -84,6 +90,15 @@ public class TransportationNetworkCompanyService implements Serializable {
         return arrivalTimes;
     }
 
+    /**
+     * Start getting the ETA estimates from the specified TNC companies in the background.
+     *
+     * @see #getArrivalTimes(String, Place)
+     */
+    public Future<List<ArrivalTime>> getArrivalTimesAsync(String companies, Place place) {
+        return asyncRequests.submit(() -> getArrivalTimes(companies, place));
+    }
+
     private List<TransportationNetworkCompanyDataSource> parseCompanies(String companies) {
         List<TransportationNetworkCompanyDataSource> companyDataSources = new ArrayList<>();
 
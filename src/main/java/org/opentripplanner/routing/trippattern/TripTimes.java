@@ -42,6 +42,9 @@ public class TripTimes implements Serializable, Comparable<TripTimes>, Cloneable
      */
     public static final int UNAVAILABLE = -1;
 
+    /** Marks an UNAVAILABLE time in the realtime delay arrays. */
+    private static final short UNAVAILABLE_DELAY = Short.MIN_VALUE;
+
     /**
      * This allows re-using the same scheduled arrival and departure time arrays for many
      * different TripTimes. It is also used in materializing frequency-based TripTimes.
@@ -76,15 +79,29 @@ public class TripTimes implements Serializable, Comparable<TripTimes>, Cloneable
      */
     final int[] scheduledDepartureTimes;
 
+    /**
+     * The real-time updates of the arrival times, as a delay in seconds relative to the scheduled
+     * arrival at each stop, or UNAVAILABLE_DELAY. Realtime feeds mostly propagate a delay of a few
+     * minutes along the trip, so a short is enough and halves the size of the updated times, which
+     * are created for each updated trip in every timetable snapshot. When arrival and departure
+     * delays are the same at every stop, which is the usual case, both fields point to the same
+     * array. Null when this trip has not been updated, or when some updated time is too far from the
+     * scheduled one and arrivalTimes is used instead.
+     */
+    private short[] arrivalDelays;
+
+    /** The real-time updates of the departure times, see arrivalDelays. */
+    private short[] departureDelays;
+
     /**
      * The time in seconds after midnight at which the vehicle arrives at each stop, accounting for
-     * any real-time updates. Non-final to allow updates.
+     * any real-time updates. Only used when the updated times cannot be stored as short delays.
      */
     int[] arrivalTimes;
 
     /**
      * The time in seconds after midnight at which the vehicle leaves each stop, accounting for
-     * any real-time updates. Non-final to allow updates.
+     * any real-time updates. Only used when the updated times cannot be stored as short delays.
      */
     int[] departureTimes;
 
@@ -191,6 +208,8 @@ public class TripTimes implements Serializable, Comparable<TripTimes>, Cloneable
         this.headsigns = deduplicator.deduplicateStringArray(makeHeadsignsArray(stopTimes));
         // We set these to null to indicate that this is a non-updated/scheduled TripTimes.
         // We cannot point to the scheduled times because they are shifted, and updated times are not.
+        this.arrivalDelays = null;
+        this.departureDelays = null;
         this.arrivalTimes = null;
         this.departureTimes = null;
         this.timepoints = deduplicator.deduplicateBitSet(timepoints);
@@ -290,12 +309,20 @@ public class TripTimes implements Serializable, Comparable<TripTimes>, Cloneable
 
     /** @return the time in seconds after midnight that the vehicle arrives at the stop. */
     public int getArrivalTime(final int stop) {
+        if (arrivalDelays != null) {
+            final short delay = arrivalDelays[stop];
+            return delay == UNAVAILABLE_DELAY ? UNAVAILABLE : getScheduledArrivalTime(stop) + delay;
+        }
         if (arrivalTimes == null) return getScheduledArrivalTime(stop);
         else return arrivalTimes[stop]; // updated times are not time shifted.
     }
 
     /** @return the amount of time in seconds that the vehicle waits at the stop. */
     public int getDepartureTime(final int stop) {
+        if (departureDelays != null) {
+            final short delay = departureDelays[stop];
+            return delay == UNAVAILABLE_DELAY ? UNAVAILABLE : getScheduledDepartureTime(stop) + delay;
+        }
         if (departureTimes == null) return getScheduledDepartureTime(stop);
         else return departureTimes[stop]; // updated times are not time shifted.
     }
@@ -379,7 +406,7 @@ public class TripTimes implements Serializable, Comparable<TripTimes>, Cloneable
      *         information is actually available in this TripTimes.
      */
     public boolean isScheduled() {
-        return departureTimes == null && arrivalTimes == null;
+        return arrivalDelays == null && departureTimes == null && arrivalTimes == null;
     }
 
     /**
@@ -534,9 +561,11 @@ public class TripTimes implements Serializable, Comparable<TripTimes>, Cloneable
 
     /** Cancel this entire trip */
     public void cancel() {
-        arrivalTimes = new int[getNumStops()];
-        Arrays.fill(arrivalTimes, UNAVAILABLE);
-        departureTimes = arrivalTimes;
+        arrivalDelays = new short[getNumStops()];
+        Arrays.fill(arrivalDelays, UNAVAILABLE_DELAY);
+        departureDelays = arrivalDelays;
+        arrivalTimes = null;
+        departureTimes = null;
 
         // Update the real-time state
         realTimeState = RealTimeState.CANCELED;
@@ -544,42 +573,95 @@ public class TripTimes implements Serializable, Comparable<TripTimes>, Cloneable
 
     public void updateDepartureTime(final int stop, final int time) {
         checkCreateTimesArrays();
+        if (departureDelays != null) {
+            final int delay = time - getScheduledDepartureTime(stop);
+            if (time == UNAVAILABLE || fitsInShortDelay(delay)) {
+                unshareDelays();
+                departureDelays[stop] = time == UNAVAILABLE ? UNAVAILABLE_DELAY : (short) delay;
+                return;
+            }
+            useTimesArrays();
+        }
         departureTimes[stop] = time;
     }
 
     public void updateDepartureDelay(final int stop, final int delay) {
-        checkCreateTimesArrays();
-        departureTimes[stop] = scheduledDepartureTimes[stop] + timeShift + delay;
+        updateDepartureTime(stop, getScheduledDepartureTime(stop) + delay);
     }
 
     public void updateArrivalTime(final int stop, final int time) {
         checkCreateTimesArrays();
+        if (arrivalDelays != null) {
+            final int delay = time - getScheduledArrivalTime(stop);
+            if (time == UNAVAILABLE || fitsInShortDelay(delay)) {
+                unshareDelays();
+                arrivalDelays[stop] = time == UNAVAILABLE ? UNAVAILABLE_DELAY : (short) delay;
+                return;
+            }
+            useTimesArrays();
+        }
         arrivalTimes[stop] = time;
     }
 
     public void updateArrivalDelay(final int stop, final int delay) {
-        checkCreateTimesArrays();
-        arrivalTimes[stop] = scheduledArrivalTimes[stop] + timeShift + delay;
+        updateArrivalTime(stop, getScheduledArrivalTime(stop) + delay);
     }
 
     /**
-     * If they don't already exist, create arrays for updated arrival and departure times
-     * that are just time-shifted copies of the zero-based scheduled departure times.
+     * Let the arrival and departure delays share the same array if they are equal at every stop.
+     * This is called once the updates of a trip are complete, before it is added to a timetable
+     * snapshot. Later updates of this TripTimes will copy the array again.
+     */
+    public void compactUpdates() {
+        if (arrivalDelays != null && arrivalDelays != departureDelays
+                && Arrays.equals(arrivalDelays, departureDelays)) {
+            departureDelays = arrivalDelays;
+        }
+    }
+
+    private static boolean fitsInShortDelay(final int delay) {
+        return delay > UNAVAILABLE_DELAY && delay <= Short.MAX_VALUE;
+    }
+
+    /** Before modifying one of the delay arrays, make sure it is not also the other one. */
+    private void unshareDelays() {
+        if (departureDelays == arrivalDelays) {
+            departureDelays = arrivalDelays.clone();
+        }
+    }
+
+    /**
+     * If they don't already exist, create arrays for updated arrival and departure times, with
+     * delays of zero at every stop.
      */
     private void checkCreateTimesArrays() {
-        if (arrivalTimes == null) {
-            arrivalTimes = Arrays.copyOf(scheduledArrivalTimes, scheduledArrivalTimes.length);
-            departureTimes = Arrays.copyOf(scheduledDepartureTimes, scheduledDepartureTimes.length);
-            for (int i = 0; i < arrivalTimes.length; i++) {
-                arrivalTimes[i] += timeShift;
-                departureTimes[i] += timeShift;
-            }
+        if (arrivalDelays == null && arrivalTimes == null) {
+            arrivalDelays = new short[getNumStops()];
+            departureDelays = new short[getNumStops()];
 
             // Update the real-time state
             realTimeState = RealTimeState.UPDATED;
         }
     }
 
+    /**
+     * Replace the delay arrays by arrays of updated times, when an updated time is too far from the
+     * scheduled one to be stored as a short delay.
+     */
+    private void useTimesArrays() {
+        final int nStops = getNumStops();
+        final int[] arrivals = new int[nStops];
+        final int[] departures = new int[nStops];
+        for (int s = 0; s < nStops; s++) {
+            arrivals[s] = getArrivalTime(s);
+            departures[s] = getDepartureTime(s);
+        }
+        arrivalDelays = null;
+        departureDelays = null;
+        arrivalTimes = arrivals;
+        departureTimes = departures;
+    }
+
     public int getNumStops () {
         return scheduledArrivalTimes.length;
     }
@@ -608,7 +690,7 @@ public class TripTimes implements Serializable, Comparable<TripTimes>, Cloneable
     * without updates for now (frequency trips don't have updates).
     */
     public TripTimes timeShift (final int stop, final int time, final boolean depart) {
-        if (arrivalTimes != null || departureTimes != null) return null;
+        if (!isScheduled()) return null;
         final TripTimes shifted = this.clone();
         // Adjust 0-based times to match desired stoptime.
         final int shift = time - (depart ? getDepartureTime(stop) : getArrivalTime(stop));
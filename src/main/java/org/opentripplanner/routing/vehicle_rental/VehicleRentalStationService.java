@@ -19,10 +19,8 @@ import org.opentripplanner.updater.vehicle_rental.GBFSMappings.SystemInformation
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * A service to help link between the vehicle rental updaters and API requests and graph searches. This class holds
@@ -34,7 +32,11 @@ public class VehicleRentalStationService implements Serializable {
     /* vehicleRentalRegions is a map of vehicle network name to its service area. */
     private Map<String, VehicleRentalRegion> vehicleRentalRegions = new HashMap<>();
 
-    private Set<VehicleRentalStation> vehicleRentalStations = new HashSet<VehicleRentalStation>();
+    /* Each station mapped to itself, so that an update can be compared with the station it replaces. */
+    private Map<VehicleRentalStation, VehicleRentalStation> vehicleRentalStations = new HashMap<>();
+
+    /* Incremented whenever a station is added, removed or changes state, so that cached views can be refreshed. */
+    private transient volatile long version = 0;
 
     /* A map of vehicle network name to the latest errors encountered while fetching the feed */
     private Map<String, List<RentalUpdaterError>> errorsByNetwork = new HashMap<>();
@@ -43,17 +45,37 @@ public class VehicleRentalStationService implements Serializable {
     private Map<String, SystemInformation.SystemInformationData> systemInformationDataByNetwork = new HashMap<>();
 
     public Collection<VehicleRentalStation> getVehicleRentalStations() {
-        return vehicleRentalStations;
+        return vehicleRentalStations.values();
+    }
+
+    public synchronized void addVehicleRentalStation(VehicleRentalStation vehicleRentalStation) {
+        // Replace the old reference, as the key is not replaced if already present
+        VehicleRentalStation previous = vehicleRentalStations.remove(vehicleRentalStation);
+        vehicleRentalStations.put(vehicleRentalStation, vehicleRentalStation);
+        if (previous == null || !sameState(previous, vehicleRentalStation)) {
+            version++;
+        }
+    }
+
+    public synchronized void removeVehicleRentalStation(VehicleRentalStation vehicleRentalStation) {
+        if (vehicleRentalStations.remove(vehicleRentalStation) != null) {
+            version++;
+        }
     }
 
-    public void addVehicleRentalStation(VehicleRentalStation vehicleRentalStation) {
-        // Remove old reference first, as adding will be a no-op if already present
-        vehicleRentalStations.remove(vehicleRentalStation);
-        vehicleRentalStations.add(vehicleRentalStation);
+    /**
+     * @return a number that changes whenever a station is added or removed, or changes position or availability.
+     */
+    public long getVersion() {
+        return version;
     }
 
-    public void removeVehicleRentalStation(VehicleRentalStation vehicleRentalStation) {
-        vehicleRentalStations.remove(vehicleRentalStation);
+    private static boolean sameState(VehicleRentalStation a, VehicleRentalStation b) {
+        return a.x == b.x && a.y == b.y &&
+            a.vehiclesAvailable == b.vehiclesAvailable &&
+            a.spacesAvailable == b.spacesAvailable &&
+            a.allowPickup == b.allowPickup &&
+            a.allowDropoff == b.allowDropoff;
     }
 
     public Map<String, VehicleRentalRegion> getVehicleRentalRegions() {
@@ -57,6 +57,16 @@ public class CommandLineParameters implements Cloneable {
             description = "The directory under which to cache OSM and NED tiles. Default is BASE_PATH/cache.")
     public File cacheDirectory;
 
+    @Parameter(names = {"--buildStreet"},
+            description = "Build only the street network from the OSM and elevation inputs and save it as "
+                    + "streetGraph.obj, to be reused by later builds with --loadStreet.")
+    public boolean buildStreet;
+
+    @Parameter(names = {"--loadStreet"},
+            description = "Build a graph by adding transit to the street network saved by an earlier build with "
+                    + "--buildStreet, instead of building the street network from OSM.")
+    public boolean loadStreet;
+
     @Parameter(names = {"--inMemory"},
             description = "Pass the graph to the server in-memory after building it, without saving to disk.")
     public boolean inMemory;
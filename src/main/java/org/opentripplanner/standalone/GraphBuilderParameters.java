@@ -7,10 +7,12 @@ import org.opentripplanner.graph_builder.services.osm.CustomNamer;
 import org.opentripplanner.profile.StopClusterMode;
 import org.opentripplanner.routing.graph.GraphIndex;
 import org.opentripplanner.routing.impl.DefaultFareServiceFactory;
+import org.opentripplanner.routing.landmarks.LandmarkProfile;
 import org.opentripplanner.routing.services.FareServiceFactory;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -231,6 +233,23 @@ public class GraphBuilderParameters {
      */
     public boolean multiThreadElevationCalculations;
 
+    /**
+     * The number of landmarks to select for the landmark (ALT) goal direction heuristic used in car and bicycle street
+     * searches. Every landmark costs 8 bytes per vertex per profile. The default of zero disables landmarks.
+     */
+    public final int landmarks;
+
+    /**
+     * The search profiles to compute landmarks for, a subset of CAR and BICYCLE. Only used when landmarks is positive.
+     */
+    public final List<LandmarkProfile> landmarkProfiles;
+
+    /**
+     * Whether to build a contraction hierarchy over the car street network, which is used to answer car-only
+     * searches without a full graph search.
+     */
+    public final boolean contractionHierarchy;
+
     /**
      * Set all parameters from the given Jackson JSON tree, applying defaults.
      * Supplying MissingNode.getInstance() will cause all the defaults to be applied.
@@ -274,6 +293,16 @@ public class GraphBuilderParameters {
         writeCachedElevations = config.path("writeCachedElevations").asBoolean(false);
         includeEllipsoidToGeoidDifference = config.path("includeEllipsoidToGeoidDifference").asBoolean(false);
         multiThreadElevationCalculations = config.path("multiThreadElevationCalculations").asBoolean(false);
+        landmarks = config.path("landmarks").asInt(0);
+        landmarkProfiles = new ArrayList<>();
+        if (config.has("landmarkProfiles")) {
+            for (JsonNode profile : config.path("landmarkProfiles")) {
+                landmarkProfiles.add(LandmarkProfile.valueOf(profile.asText()));
+            }
+        } else {
+            landmarkProfiles.addAll(Arrays.asList(LandmarkProfile.values()));
+        }
+        contractionHierarchy = config.path("contractionHierarchy").asBoolean(false);
     }
 
 
@@ -92,11 +92,13 @@ public class OTPApplication extends Application {
             SurfaceResource.class,
             PointSetResource.class,
             GraphInspectorTileResource.class,
+            VectorTileResource.class,
             ScriptResource.class,
             UpdaterStatusResource.class,
             ScenarioResource.class,
             RepeatedRaptorTestResource.class,
             TransportationNetworkCompanyResource.class,
+            TravelTimeMatrixResource.class,
             /* Features and Filters: extend Jersey, manipulate requests and responses. */
             CorsFilter.class,
             MultiPartFeature.class,
@@ -2,6 +2,10 @@ package org.opentripplanner.standalone;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
 import org.opentripplanner.analyst.DiskBackedPointSetCache;
@@ -31,6 +35,9 @@ public class OTPServer {
     // Optional Analyst global modules (caches)
     public SurfaceCache surfaceCache;
     public PointSetCache pointSetCache;
+
+    /** A bounded pool shared by all travel time matrix requests, so concurrent requests cannot oversubscribe the CPU. */
+    public ExecutorService matrixExecutor;
     public ScriptingService scriptingService;
 
     public CommandLineParameters params;
@@ -47,6 +54,8 @@ public class OTPServer {
         if (params.analyst) {
             surfaceCache = new SurfaceCache(30);
             pointSetCache = new DiskBackedPointSetCache(100, params.pointSetDirectory);
+            matrixExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                    new ThreadFactoryBuilder().setNameFormat("TravelTimeMatrix-%d").setDaemon(true).build());
         }
 
         scriptingService = new ScriptingService(this);
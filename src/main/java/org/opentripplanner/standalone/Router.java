@@ -10,6 +10,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import org.opentripplanner.analyst.request.*;
 import org.opentripplanner.analyst.scenario.ScenarioStore;
 import org.opentripplanner.inspector.TileRendererManager;
+import org.opentripplanner.inspector.vector.VectorTileManager;
 import org.opentripplanner.reflect.ReflectiveInitializer;
 import org.opentripplanner.routing.core.RoutingRequest;
 import org.opentripplanner.routing.core.TraverseMode;
@@ -47,6 +48,8 @@ public class Router {
     // Inspector/debug services
     public TileRendererManager tileRendererManager;
 
+    public VectorTileManager vectorTileManager;
+
     // Analyst services
     public TileCache tileCache;
     public Renderer renderer;
@@ -62,6 +65,9 @@ public class Router {
     /** Storage for non-destructive alternatives analysis scenarios. */
     public ScenarioStore scenarioStore = new ScenarioStore();
 
+    /** Warms up this router before it replaces another one on reload, and samples the requests it serves. */
+    public RouterWarmUp warmUp;
+
     public Router(String id, Graph graph) {
         this.id = id;
         this.graph = graph;
@@ -81,6 +87,7 @@ public class Router {
     public void startup(JsonNode config) {
 
         this.tileRendererManager = new TileRendererManager(this.graph);
+        this.vectorTileManager = new VectorTileManager(this.graph);
 
         // Analyst Modules FIXME make these optional based on JSON?
         {
@@ -160,9 +167,18 @@ public class Router {
             graph.setUseFlexService(useFlexService.asBoolean(false));
         }
 
+        this.warmUp = new RouterWarmUp(config.path("warmUp"));
+
         /* Create Graph updater modules from JSON config. */
         GraphUpdaterConfigurator.setupGraph(this.graph, config);
 
+        /* Build the rarely used indexes in the background, so that they do not delay serving plan requests. */
+        if (graph.index != null) {
+            JsonNode precomputeProfileTransfers = config.get("precomputeProfileTransfers");
+            graph.index.buildRarelyUsedIndexesInBackground(
+                    precomputeProfileTransfers != null && precomputeProfileTransfers.asBoolean(false));
+        }
+
         /* Compute ellipsoidToGeoidDifference for this Graph */
         try {
             WorldEnvelope env = graph.getEnvelope();
@@ -0,0 +1,217 @@
+package org.opentripplanner.standalone;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.opentripplanner.api.parameter.QualifiedModeSet;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.impl.GraphPathFinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Warms up a freshly loaded router before it replaces the current one, so that the first requests after a graph reload
+ * do not all hit cold JIT-compiled code, empty caches and unbuilt lazy indexes. Configured with the "warmUp" object of
+ * router-config.json, for instance:
+ *
+ * <pre>
+ * "warmUp": {
+ *     "queries": [ { "fromPlace": "45.52,-122.68", "toPlace": "45.49,-122.61", "mode": "TRANSIT,WALK" } ],
+ *     "recentRequests": 50,
+ *     "rounds": 3,
+ *     "maxSeconds": 120,
+ *     "stopTreeCache": false
+ * }
+ * </pre>
+ *
+ * The configured queries are planned at the current time with the router's default parameters. Each router also keeps
+ * a sample of the most recent plan requests it served, which are replayed against the router replacing it. The
+ * duration of the last warm-up is exposed by the routers API.
+ */
+public class RouterWarmUp {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RouterWarmUp.class);
+
+    /** The configured warm-up queries. */
+    private final List<JsonNode> queries = new ArrayList<>();
+
+    /** How many of the most recent plan requests to keep, to be replayed against the next router. */
+    private final int recentRequests;
+
+    /** How many times each query is planned, since the JIT compiler only optimizes code run often enough. */
+    private final int rounds;
+
+    /** The time after which the warm-up is cut short, so that a reload does not wait forever on slow queries. */
+    private final int maxSeconds;
+
+    /** Whether to build the stop tree cache used by analyst and profile routing. */
+    private final boolean stopTreeCache;
+
+    /** The sample of recent requests, oldest first. */
+    private final Deque<RoutingRequest> recentRequestSample = new ArrayDeque<>();
+
+    private long lastDurationMillis;
+
+    private long lastCachesMillis;
+
+    private int lastQueries;
+
+    private int lastFailedQueries;
+
+    private boolean lastCutShort;
+
+    /** @param config the "warmUp" object of the router config, or a missing node when no warm-up is configured. */
+    public RouterWarmUp(JsonNode config) {
+        for (JsonNode query : config.path("queries")) {
+            queries.add(query);
+        }
+        recentRequests = config.path("recentRequests").asInt(0);
+        rounds = config.path("rounds").asInt(3);
+        maxSeconds = config.path("maxSeconds").asInt(120);
+        stopTreeCache = config.path("stopTreeCache").asBoolean(false);
+    }
+
+    /** @return whether there is anything to do before the router is swapped in. */
+    public boolean isEnabled() {
+        return !queries.isEmpty() || recentRequests > 0 || stopTreeCache;
+    }
+
+    /**
+     * Keep a copy of a plan request in the sample of recent requests, if enabled. Must be called before the search,
+     * while the request has no routing context.
+     */
+    public void recordRequest(RoutingRequest request) {
+        if (recentRequests <= 0) return;
+        RoutingRequest copy = request.clone();
+        // Do not keep waiting for the TNC arrival estimates when replaying the request against another graph.
+        copy.transportationNetworkCompanyEta = null;
+        synchronized (recentRequestSample) {
+            recentRequestSample.addLast(copy);
+            if (recentRequestSample.size() > recentRequests) {
+                recentRequestSample.removeFirst();
+            }
+        }
+    }
+
+    /** @return copies of the recent requests in the sample, oldest first. */
+    private List<RoutingRequest> getRecentRequests() {
+        synchronized (recentRequestSample) {
+            return new ArrayList<>(recentRequestSample);
+        }
+    }
+
+    /**
+     * Build the lazy indexes of the router, then plan the configured queries and the recent requests of the previous
+     * router with it. Failing queries are logged and counted, they do not prevent the router from being swapped in.
+     *
+     * @param router the newly loaded router, which is not serving requests yet.
+     * @param previousRouter the router it will replace, whose recent requests are replayed, or null.
+     */
+    public void warmUp(Router router, Router previousRouter) {
+        long startTime = System.currentTimeMillis();
+        long deadline = startTime + maxSeconds * 1000L;
+        LOG.info("Warming up router '{}' before swapping it in...", router.id);
+        if (router.graph.index != null) {
+            router.graph.index.clusterStopsAsNeeded();
+            if (stopTreeCache) {
+                router.graph.index.getStopTreeCache();
+            }
+        }
+        long cachesMillis = System.currentTimeMillis() - startTime;
+
+        List<RoutingRequest> requests = new ArrayList<>();
+        for (JsonNode query : queries) {
+            try {
+                requests.add(buildRequest(router, query));
+            } catch (Exception e) {
+                LOG.warn("Invalid warm-up query {}: {}", query, e.toString());
+            }
+        }
+        if (previousRouter != null && previousRouter.warmUp != null) {
+            requests.addAll(previousRouter.warmUp.getRecentRequests());
+        }
+
+        int planned = 0;
+        int failed = 0;
+        boolean cutShort = false;
+        GraphPathFinder gpFinder = new GraphPathFinder(router);
+        planning:
+        for (int round = 0; round < rounds; round++) {
+            for (RoutingRequest template : requests) {
+                if (System.currentTimeMillis() > deadline) {
+                    cutShort = true;
+                    break planning;
+                }
+                RoutingRequest request = template.clone();
+                request.routerId = router.id;
+                request.rctx = null;
+                try {
+                    gpFinder.graphPathFinderEntryPoint(request);
+                } catch (Exception e) {
+                    // Not finding a path is expected for some of the replayed requests.
+                    LOG.debug("Warm-up query failed: {}", e.toString());
+                    failed++;
+                } finally {
+                    if (request.rctx != null) {
+                        request.cleanup();
+                    }
+                }
+                planned++;
+            }
+        }
+        long durationMillis = System.currentTimeMillis() - startTime;
+        synchronized (this) {
+            lastDurationMillis = durationMillis;
+            lastCachesMillis = cachesMillis;
+            lastQueries = planned;
+            lastFailedQueries = failed;
+            lastCutShort = cutShort;
+        }
+        LOG.info("Warmed up router '{}' in {} msec: built caches in {} msec, planned {} queries ({} failed){}.",
+                router.id, durationMillis, cachesMillis, planned, failed, cutShort ? ", cut short after the time limit" : "");
+    }
+
+    /** Make a request from a configured query, with the default parameters of the router and the current time. */
+    private static RoutingRequest buildRequest(Router router, JsonNode query) {
+        RoutingRequest request = router.defaultRoutingRequest.clone();
+        request.routerId = router.id;
+        request.setDateTime(new Date());
+        request.setFromString(query.get("fromPlace").asText());
+        request.setToString(query.get("toPlace").asText());
+        if (query.has("mode")) {
+            new QualifiedModeSet(query.get("mode").asText()).applyToRoutingRequest(request);
+            request.setModes(request.modes);
+        }
+        if (query.has("arriveBy")) {
+            request.setArriveBy(query.get("arriveBy").asBoolean());
+        }
+        return request;
+    }
+
+    /** @return the duration in milliseconds of the last warm-up of this router, 0 if it was not warmed up. */
+    public synchronized long getLastDurationMillis() {
+        return lastDurationMillis;
+    }
+
+    /** @return the part of the last warm-up spent building the lazy indexes and caches. */
+    public synchronized long getLastCachesMillis() {
+        return lastCachesMillis;
+    }
+
+    public synchronized int getLastQueries() {
+        return lastQueries;
+    }
+
+    public synchronized int getLastFailedQueries() {
+        return lastFailedQueries;
+    }
+
+    /** @return whether the last warm-up was stopped by its time limit before planning all the queries. */
+    public synchronized boolean isLastCutShort() {
+        return lastCutShort;
+    }
+}
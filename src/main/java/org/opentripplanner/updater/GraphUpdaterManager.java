@@ -4,12 +4,11 @@ import com.beust.jcommander.internal.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -25,9 +24,10 @@ import org.slf4j.LoggerFactory;
  * GraphUpdaterManager updaterManager = graph.getUpdaterManager();
  * </pre>
  * 
- * Each updater will run in its own thread. When changes to the graph have to be made by these
- * updaters, this should be done via the execute method of this manager to prevent race conditions
- * between graph write operations.
+ * Polling updaters are run at their polling period on a small shared pool of threads, other updaters
+ * run in their own thread. When changes to the graph have to be made by these updaters, this should
+ * be done via the execute method of this manager to prevent race conditions between graph write
+ * operations.
  * 
  */
 public class GraphUpdaterManager {
@@ -44,21 +44,36 @@ public class GraphUpdaterManager {
      */
     private ThreadFactory threadFactory;
 
+    /**
+     * The number of threads shared by the polling updaters. Polls mostly wait on the network, and an
+     * updater is only polled again once its previous poll has finished.
+     */
+    private static final int POLLING_THREADS = 4;
+
     /**
      * OTP's multi-version concurrency control model for graph updating allows simultaneous reads,
      * but never simultaneous writes. We ensure this policy is respected by having a single writer
-     * thread, which sequentially executes all graph updater tasks. Each task is a runnable that is
-     * scheduled with the ExecutorService to run at regular intervals.
-     * FIXME in reality we're not using scheduleAtFixedInterval. We're scheduling for immediate execution from separate threads that sleep in a loop.
+     * thread, which sequentially executes all graph updater tasks, in the order they were submitted.
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * The threads on which the polling updaters are scheduled at their polling period.
      */
-    private ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private ScheduledExecutorService pollingScheduler;
 
     /**
-     * A pool of threads on which the updaters will run.
-     * This creates a pool that will auto-scale up to any size (maximum pool size is MAX_INT).
-     * FIXME The polling updaters occupy an entire thread, sleeping in between polling operations.
+     * A pool of threads on which the updaters that do not poll will run, e.g. those listening to a
+     * websocket. This creates a pool that will auto-scale up to any size (maximum pool size is MAX_INT).
      */
-    private ExecutorService updaterPool = Executors.newCachedThreadPool();
+    private ExecutorService updaterPool;
+
+    /**
+     * The graph writer runnables submitted with executeLatest that have not started yet, by key.
+     */
+    private final Map<Object, PendingWriter> pendingWritersByKey = new HashMap<>();
+
+    private final GraphWriterMetrics writerMetrics = new GraphWriterMetrics();
 
     /**
      * Keep track of all updaters so we can cleanly free resources associated with them at shutdown.
@@ -83,6 +98,7 @@ public class GraphUpdaterManager {
         
         threadFactory = new ThreadFactoryBuilder().setNameFormat("GraphUpdater-" + routerId + "-%d").build();
         scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        pollingScheduler = Executors.newScheduledThreadPool(POLLING_THREADS, threadFactory);
         updaterPool = Executors.newCachedThreadPool(threadFactory);
     }
 
@@ -90,9 +106,11 @@ public class GraphUpdaterManager {
         // TODO: find a better way to stop these threads
 
         // Shutdown updaters
+        pollingScheduler.shutdownNow();
         updaterPool.shutdownNow();
         try {
-            boolean ok = updaterPool.awaitTermination(30, TimeUnit.SECONDS);
+            boolean ok = pollingScheduler.awaitTermination(30, TimeUnit.SECONDS)
+                    && updaterPool.awaitTermination(30, TimeUnit.SECONDS);
             if (!ok) {
                 LOG.warn("Timeout waiting for updaters to finish.");
             }
@@ -137,10 +155,58 @@ public class GraphUpdaterManager {
      * @param runnable is a graph writer runnable
      */
     public void execute(GraphWriterRunnable runnable) {
+        submit(null, new PendingWriter(runnable));
+    }
+
+    /**
+     * Like execute, but if a runnable submitted with the same key has not started yet, it is
+     * dropped from the queue. This one is queued at the end as usual, so the runnables that are
+     * applied still run in the order they were submitted, e.g. a newer full dataset never runs
+     * before an older incremental update. Only use this for runnables that carry the complete state
+     * of their source, so that skipping the older one loses nothing. This keeps an updater that
+     * polls faster than the graph writer can keep up with from filling the queue with outdated data.
+     *
+     * @param key identifies the source of the runnable, usually the updater itself
+     * @param runnable is a graph writer runnable
+     */
+    public void executeLatest(Object key, GraphWriterRunnable runnable) {
+        PendingWriter pendingWriter = new PendingWriter(runnable);
+        synchronized (pendingWritersByKey) {
+            PendingWriter replaced = pendingWritersByKey.put(key, pendingWriter);
+            if (replaced != null) {
+                // The replaced writer is skipped when the scheduler reaches it.
+                replaced.runnable = null;
+                writerMetrics.recordDequeued();
+                writerMetrics.recordCoalesced();
+            }
+        }
+        submit(key, pendingWriter);
+    }
+
+    private void submit(Object key, PendingWriter pendingWriter) {
+        writerMetrics.recordQueued();
         scheduler.submit(() -> {
+            GraphWriterRunnable runnable;
+            synchronized (pendingWritersByKey) {
+                runnable = pendingWriter.runnable;
+                if (runnable == null) {
+                    // Replaced by a newer runnable with the same key, queued after this one.
+                    return;
+                }
+                // Once removed the runnable can no longer be replaced.
+                if (key != null) {
+                    pendingWritersByKey.remove(key);
+                }
+            }
+            writerMetrics.recordDequeued();
+            long submitTime = pendingWriter.submitTime;
+            long startTime = System.currentTimeMillis();
             try {
                 runnable.run(graph);
+                long endTime = System.currentTimeMillis();
+                writerMetrics.recordApplied(endTime - submitTime, endTime - startTime);
             } catch (Exception e) {
+                writerMetrics.recordFailed();
                 LOG.error("Error while running graph writer {}:", runnable.getClass().getName(), e);
             }
         });
@@ -151,11 +217,17 @@ public class GraphUpdaterManager {
     }
 
     /**
-     * This should be called only once at startup to kick off every updater in its own thread, and only after all
-     * the updaters have had their setup methods called.
+     * This should be called only once at startup to kick off every updater, and only after all the
+     * updaters have had their setup methods called. Polling updaters are scheduled to poll with their
+     * polling period between the end of a poll and the start of the next one, other updaters are
+     * started in their own thread.
      */
     public void startUpdaters() {
         for (GraphUpdater updater : updaterList) {
+            if (updater instanceof PollingGraphUpdater) {
+                schedulePolling((PollingGraphUpdater) updater);
+                continue;
+            }
             LOG.info("Starting new thread for updater {}", updater.toString());
             updaterPool.execute(() -> {
                 try {
@@ -167,6 +239,26 @@ public class GraphUpdaterManager {
         }
     }
 
+    private void schedulePolling(PollingGraphUpdater updater) {
+        Runnable poll = () -> {
+            try {
+                updater.poll();
+            } catch (InterruptedException e) {
+                LOG.info("Polling updater {} was interrupted and is stopping.", updater.getClass().getName());
+                Thread.currentThread().interrupt();
+            }
+        };
+        int pollingPeriodSeconds = updater.getPollingPeriodSeconds();
+        if (pollingPeriodSeconds <= 0) {
+            // Non-positive polling period values mean to run the updater only once.
+            LOG.info("Scheduling updater {} to run only once", updater);
+            pollingScheduler.execute(poll);
+        } else {
+            LOG.info("Scheduling updater {} every {} seconds", updater, pollingPeriodSeconds);
+            pollingScheduler.scheduleWithFixedDelay(poll, 0, pollingPeriodSeconds, TimeUnit.SECONDS);
+        }
+    }
+
     /**
      * Just an example of fetching status information from the graph updater manager to expose it in a web service.
      * More useful stuff should be added later.
@@ -188,4 +280,33 @@ public class GraphUpdaterManager {
         if (id >= updaterList.size()) return null;
         return updaterList.get(id);
     }
+
+    /**
+     * @return the status of every updater, in the order of their IDs.
+     */
+    public List<UpdaterStatus> getUpdaterStatuses () {
+        List<UpdaterStatus> ret = new ArrayList<>();
+        int i = 0;
+        for (GraphUpdater updater : updaterList) {
+            ret.add(new UpdaterStatus(i++, updater));
+        }
+        return ret;
+    }
+
+    public GraphWriterMetrics getWriterMetrics () {
+        return writerMetrics;
+    }
+
+    /** A submitted graph writer runnable, which is replaced when it is coalesced with a newer one. */
+    private static class PendingWriter {
+
+        /** Set to null when a newer runnable with the same key replaces this one before it starts. */
+        GraphWriterRunnable runnable;
+
+        final long submitTime = System.currentTimeMillis();
+
+        PendingWriter(GraphWriterRunnable runnable) {
+            this.runnable = runnable;
+        }
+    }
 }
@@ -0,0 +1,97 @@
+package org.opentripplanner.updater;
+
+/**
+ * Counters for the graph writer runnables executed by the GraphUpdaterManager, exposed by the updater status API.
+ * The latency of a runnable is the time from its submission until it has been applied to the graph, which is how late
+ * realtime data reaches the routing.
+ */
+public class GraphWriterMetrics {
+
+    private int queueDepth;
+
+    private int maxQueueDepth;
+
+    private long applied;
+
+    private long failed;
+
+    private long coalesced;
+
+    private long lastLatencyMillis;
+
+    private long maxLatencyMillis;
+
+    private long totalLatencyMillis;
+
+    private long lastRunMillis;
+
+    private long maxRunMillis;
+
+    synchronized void recordQueued() {
+        queueDepth++;
+        maxQueueDepth = Math.max(maxQueueDepth, queueDepth);
+    }
+
+    synchronized void recordDequeued() {
+        queueDepth--;
+    }
+
+    synchronized void recordCoalesced() {
+        coalesced++;
+    }
+
+    synchronized void recordApplied(long latencyMillis, long runMillis) {
+        applied++;
+        lastLatencyMillis = latencyMillis;
+        maxLatencyMillis = Math.max(maxLatencyMillis, latencyMillis);
+        totalLatencyMillis += latencyMillis;
+        lastRunMillis = runMillis;
+        maxRunMillis = Math.max(maxRunMillis, runMillis);
+    }
+
+    synchronized void recordFailed() {
+        failed++;
+    }
+
+    /** @return the number of runnables waiting to be applied. */
+    public synchronized int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public synchronized int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public synchronized long getApplied() {
+        return applied;
+    }
+
+    public synchronized long getFailed() {
+        return failed;
+    }
+
+    /** @return the number of runnables that were replaced by a newer one of the same updater before being applied. */
+    public synchronized long getCoalesced() {
+        return coalesced;
+    }
+
+    public synchronized long getLastLatencyMillis() {
+        return lastLatencyMillis;
+    }
+
+    public synchronized long getMaxLatencyMillis() {
+        return maxLatencyMillis;
+    }
+
+    public synchronized long getMeanLatencyMillis() {
+        return applied == 0 ? 0 : totalLatencyMillis / applied;
+    }
+
+    public synchronized long getLastRunMillis() {
+        return lastRunMillis;
+    }
+
+    public synchronized long getMaxRunMillis() {
+        return maxRunMillis;
+    }
+}
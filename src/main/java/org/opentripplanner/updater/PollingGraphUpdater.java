@@ -5,6 +5,8 @@ import org.opentripplanner.routing.graph.Graph;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * This abstract class implements logic that is shared between all polling updaters.
  * Usage example ('polling' name is an example and 'polling-updater' should be the type of a
@@ -37,25 +39,31 @@ public abstract class PollingGraphUpdater implements GraphUpdater {
     /** The type name in the preferences JSON. FIXME String type codes seem like a red flag, should probably be removed. */
     private String type;
 
+    /** The number of polls, failed or not. */
+    private final AtomicLong pollCount = new AtomicLong();
+
+    /** The number of polls that threw an exception. */
+    private final AtomicLong pollErrorCount = new AtomicLong();
+
+    private volatile long lastPollTime;
+
+    private volatile long lastPollDurationMillis;
+
+    /**
+     * Poll in a loop on the calling thread. The GraphUpdaterManager does not use this, it schedules calls to poll()
+     * on a shared executor instead.
+     */
     @Override
     final public void run() {
         try {
             LOG.info("Polling updater started: {}", this);
             while (true) {
-                try {
-                    // Run concrete polling graph updater's implementation method.
-                    runPolling();
-                    if (pollingPeriodSeconds <= 0) {
-                        // Non-positive polling period values mean to run the updater only once.
-                        LOG.info("As requested in configuration, updater {} has run only once and will now stop.",
-                                this.getClass().getSimpleName());
-                        break;
-                    }
-                } catch (InterruptedException e) {
-                    throw e;
-                } catch (Exception e) {
-                    LOG.error("Error while running polling updater of type {}", type, e);
-                    // TODO Should we cancel the task? Or after n consecutive failures? cancel();
+                poll();
+                if (pollingPeriodSeconds <= 0) {
+                    // Non-positive polling period values mean to run the updater only once.
+                    LOG.info("As requested in configuration, updater {} has run only once and will now stop.",
+                            this.getClass().getSimpleName());
+                    break;
                 }
                 Thread.sleep(pollingPeriodSeconds * 1000);
             }
@@ -65,6 +73,47 @@ public abstract class PollingGraphUpdater implements GraphUpdater {
         }
     }
 
+    /**
+     * Run the concrete polling graph updater's implementation method once, logging any error so that the next poll
+     * still happens.
+     */
+    final void poll() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        try {
+            runPolling();
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            pollErrorCount.incrementAndGet();
+            LOG.error("Error while running polling updater of type {}", type, e);
+            // TODO Should we cancel the task? Or after n consecutive failures? cancel();
+        } finally {
+            lastPollTime = start;
+            lastPollDurationMillis = System.currentTimeMillis() - start;
+            pollCount.incrementAndGet();
+        }
+    }
+
+    public int getPollingPeriodSeconds() {
+        return pollingPeriodSeconds;
+    }
+
+    public long getPollCount() {
+        return pollCount.get();
+    }
+
+    public long getPollErrorCount() {
+        return pollErrorCount.get();
+    }
+
+    public long getLastPollTime() {
+        return lastPollTime;
+    }
+
+    public long getLastPollDurationMillis() {
+        return lastPollDurationMillis;
+    }
+
     /** Shared configuration code for all polling graph updaters. */
     @Override
     final public void configure (Graph graph, JsonNode config) throws Exception {
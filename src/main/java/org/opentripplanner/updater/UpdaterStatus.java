@@ -0,0 +1,39 @@
+package org.opentripplanner.updater;
+
+/**
+ * The status of one graph updater as reported by the updater status API.
+ */
+public class UpdaterStatus {
+
+    public int id;
+
+    public String type;
+
+    public String description;
+
+    /** The polling period, or null for updaters that do not poll. */
+    public Integer pollingPeriodSeconds;
+
+    public long pollCount;
+
+    public long pollErrorCount;
+
+    /** The time at which the last poll started in milliseconds since the epoch, or 0 if it has not polled yet. */
+    public long lastPollTime;
+
+    public long lastPollDurationMillis;
+
+    UpdaterStatus(int id, GraphUpdater updater) {
+        this.id = id;
+        this.type = updater.getClass().getSimpleName();
+        this.description = updater.toString();
+        if (updater instanceof PollingGraphUpdater) {
+            PollingGraphUpdater pollingUpdater = (PollingGraphUpdater) updater;
+            this.pollingPeriodSeconds = pollingUpdater.getPollingPeriodSeconds();
+            this.pollCount = pollingUpdater.getPollCount();
+            this.pollErrorCount = pollingUpdater.getPollErrorCount();
+            this.lastPollTime = pollingUpdater.getLastPollTime();
+            this.lastPollDurationMillis = pollingUpdater.getLastPollDurationMillis();
+        }
+    }
+}
@@ -24,6 +24,10 @@ import static org.opentripplanner.routing.alertpatch.AlertPatch.MISSING_INT_FIEL
 
 /**
  * This updater only includes GTFS-Realtime Service Alert feeds.
+ *
+ * Most alerts in a feed stay the same from one message to the next, and applying a patch means walking the trip
+ * patterns or stops it concerns. Each message is therefore compared with the previous one, and only the patches of
+ * entities that were added, removed or changed are passed on to the AlertPatchService, in a single update.
  * @author novalis
  *
  */
@@ -32,7 +36,11 @@ public class AlertsUpdateHandler {
 
     private String feedId;
 
-    private Set<String> patchIds = new HashSet<String>();
+    /** The alert of each entity in the previous message. Protobuf messages compare by content. */
+    private Map<String, GtfsRealtime.Alert> alertsByEntityId = new HashMap<>();
+
+    /** The ids of the patches created for each entity in the previous message. */
+    private Map<String, Set<String>> patchIdsByEntityId = new HashMap<>();
 
     private AlertPatchService alertPatchService;
 
@@ -43,20 +51,43 @@ public class AlertsUpdateHandler {
     private GtfsRealtimeFuzzyTripMatcher fuzzyTripMatcher;
 
     public void update(FeedMessage message) {
-        alertPatchService.expire(patchIds);
-        patchIds.clear();
-
+        Map<String, GtfsRealtime.Alert> alerts = new LinkedHashMap<>();
         for (FeedEntity entity : message.getEntityList()) {
             if (!entity.hasAlert()) {
                 continue;
             }
-            GtfsRealtime.Alert alert = entity.getAlert();
-            String id = entity.getId();
-            handleAlert(id, alert);
+            alerts.put(entity.getId(), entity.getAlert());
+        }
+
+        Set<String> expiredPatchIds = new HashSet<>();
+        for (Map.Entry<String, GtfsRealtime.Alert> previous : alertsByEntityId.entrySet()) {
+            if (!previous.getValue().equals(alerts.get(previous.getKey()))) {
+                expiredPatchIds.addAll(patchIdsByEntityId.remove(previous.getKey()));
+            }
+        }
+        List<AlertPatch> patches = new ArrayList<>();
+        for (Map.Entry<String, GtfsRealtime.Alert> entry : alerts.entrySet()) {
+            if (!entry.getValue().equals(alertsByEntityId.get(entry.getKey()))) {
+                Set<String> patchIds = new HashSet<>();
+                handleAlert(entry.getKey(), entry.getValue(), patchIds, patches);
+                patchIdsByEntityId.put(entry.getKey(), patchIds);
+            }
+        }
+        alertsByEntityId = alerts;
+
+        if (!expiredPatchIds.isEmpty() || !patches.isEmpty()) {
+            log.debug("Alerts feed {}: {} entities, {} patches expired, {} patches applied", feedId, alerts.size(),
+                expiredPatchIds.size(), patches.size());
+            alertPatchService.update(expiredPatchIds, patches);
         }
     }
 
-    private void handleAlert(String id, GtfsRealtime.Alert alert) {
+    /**
+     * Create the patches for one alert entity.
+     * @param patchIds the ids of the patches are added to this set.
+     * @param patches the patches are added to this list.
+     */
+    private void handleAlert(String id, GtfsRealtime.Alert alert, Set<String> patchIds, List<AlertPatch> patches) {
         Alert alertText = new Alert();
         alertText.alertDescriptionText = deBuffer(alert.getDescriptionText());
         alertText.alertHeaderText = deBuffer(alert.getHeaderText());
@@ -150,8 +181,7 @@ public class AlertsUpdateHandler {
 
             patch.setId(patchId);
             patchIds.add(patchId);
-
-            alertPatchService.apply(patch);
+            patches.add(patch);
         }
     }
 
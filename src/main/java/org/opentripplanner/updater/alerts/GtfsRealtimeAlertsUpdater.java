@@ -101,8 +101,9 @@ public class GtfsRealtimeAlertsUpdater extends PollingGraphUpdater {
                 return;
             }
 
-            // Handle update in graph writer runnable
-            updaterManager.execute(new GraphWriterRunnable() {
+            // Handle update in graph writer runnable. The feed holds every alert, so a feed still
+            // waiting to be applied can be dropped.
+            updaterManager.executeLatest(this, new GraphWriterRunnable() {
                 @Override
                 public void run(Graph graph) {
                     updateHandler.update(feed);
@@ -100,7 +100,8 @@ public class BikeParkUpdater extends PollingGraphUpdater {
 
         // Create graph writer runnable to apply these stations to the graph
         BikeParkGraphWriterRunnable graphWriterRunnable = new BikeParkGraphWriterRunnable(bikeParks);
-        updaterManager.execute(graphWriterRunnable);
+        // Each update holds every bike park of the feed, so an update still waiting can be dropped
+        updaterManager.executeLatest(this, graphWriterRunnable);
     }
 
     @Override
@@ -139,7 +139,8 @@ public class BikeRentalUpdater extends PollingGraphUpdater {
         LOG.debug("Updating bike rental stations from " + source);
         source.update();
 
-        updaterManager.execute(new BikeRentalGraphWriterRunnable(source));
+        // Each update holds every station of the feed, so an update still waiting can be dropped
+        updaterManager.executeLatest(this, new BikeRentalGraphWriterRunnable(source));
     }
 
     @Override
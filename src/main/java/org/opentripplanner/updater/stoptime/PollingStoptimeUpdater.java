@@ -143,7 +143,12 @@ public class PollingStoptimeUpdater extends PollingGraphUpdater {
             // Handle trip updates via graph writer runnable
             TripUpdateGraphWriterRunnable runnable =
                     new TripUpdateGraphWriterRunnable(fullDataset, updates, feedId);
-            updaterManager.execute(runnable);
+            if (fullDataset) {
+                // A full dataset replaces everything before it, so one still waiting can be dropped
+                updaterManager.executeLatest(this, runnable);
+            } else {
+                updaterManager.execute(runnable);
+            }
         }
     }
 
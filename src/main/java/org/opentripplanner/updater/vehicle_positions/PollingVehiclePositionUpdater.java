@@ -21,12 +21,15 @@ import java.util.List;
  * rt.sourceType = gtfs-http
  * rt.url = http://host.tld/path
  * rt.feedId = TA
+ * rt.maxVehicleAgeSeconds = 300
  * </pre>
  *
  */
 public class PollingVehiclePositionUpdater extends PollingGraphUpdater {
     private static final Logger LOG = LoggerFactory.getLogger(PollingVehiclePositionUpdater.class);
 
+    private static final int DEFAULT_MAX_VEHICLE_AGE_SECONDS = 300;
+
     /**
      * Parent update manager. Is used to execute graph writer runnables.
      */
@@ -42,6 +45,11 @@ public class PollingVehiclePositionUpdater extends PollingGraphUpdater {
      */
     private String feedId;
 
+    /**
+     * How long vehicles are kept after the last update that contained them, so that they disappear when the feed
+     * stops updating
+     */
+    private int maxVehicleAgeSeconds;
 
     @Override
     public void setGraphUpdaterManager(GraphUpdaterManager updaterManager) {
@@ -52,6 +60,7 @@ public class PollingVehiclePositionUpdater extends PollingGraphUpdater {
     public void configurePolling(Graph graph, JsonNode config) throws Exception {
         // Create update streamer from preferences
         feedId = config.path("feedId").asText("");
+        maxVehicleAgeSeconds = config.path("maxVehicleAgeSeconds").asInt(DEFAULT_MAX_VEHICLE_AGE_SECONDS);
         String sourceType = config.path("sourceType").asText();
         if (sourceType != null) {
             if (sourceType.equals("gtfs-http")) {
@@ -74,6 +83,10 @@ public class PollingVehiclePositionUpdater extends PollingGraphUpdater {
 
     @Override
     public void setup(Graph graph) {
+        // The vehicle position store is shared by all vehicle position updaters
+        if (graph.vehiclePositionStore == null) {
+            graph.vehiclePositionStore = new VehiclePositionStore();
+        }
         // Only create a realtime vehicle positions source if none exists already
         if (graph.vehiclePositionPatternMatcher == null) {
             // Add snapshot source to graph
@@ -94,8 +107,9 @@ public class PollingVehiclePositionUpdater extends PollingGraphUpdater {
         if (updates != null) {
             // Handle updating trip positions via graph writer runnable
             VehiclePositionUpdaterRunnable runnable =
-                    new VehiclePositionUpdaterRunnable(updates, feedId);
-            updaterManager.execute(runnable);
+                    new VehiclePositionUpdaterRunnable(updates, feedId, maxVehicleAgeSeconds);
+            // Each update holds every vehicle of the feed, so an update still waiting can be dropped
+            updaterManager.executeLatest(this, runnable);
         }
     }
 
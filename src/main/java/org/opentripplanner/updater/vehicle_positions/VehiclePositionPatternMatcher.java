@@ -11,6 +11,7 @@ import org.opentripplanner.routing.vertextype.TransitStop;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -60,6 +61,19 @@ public class VehiclePositionPatternMatcher {
         }
     }
 
+    /**
+     * @return the vehicle positions currently on the patterns of the given feed.
+     */
+    public List<RealtimeVehiclePosition> getVehiclePositions(String feedId) {
+        List<RealtimeVehiclePosition> positions = new ArrayList<>();
+        for (TripPattern pattern : graphIndex.patternsForFeedId.get(feedId)) {
+            if (pattern.vehiclePositions != null) {
+                positions.addAll(pattern.vehiclePositions.values());
+            }
+        }
+        return positions;
+    }
+
     /**
      * Attempts to match each vehicle position to a pattern, then adds each to a pattern
      * @param vehiclePositions  List of vehicle positions to match to patterns
@@ -94,6 +108,8 @@ public class VehiclePositionPatternMatcher {
                     Arrays.asList(pattern.stopVertices)
             );
             newPosition.patternId = pattern.code;
+            newPosition.tripId = trip.getId();
+            newPosition.routeId = pattern.route.getId();
 
             if (pattern.vehiclePositions == null) {
                 pattern.vehiclePositions = new HashMap<>();
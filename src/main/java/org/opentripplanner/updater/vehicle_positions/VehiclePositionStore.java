@@ -0,0 +1,306 @@
+package org.opentripplanner.updater.vehicle_positions;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import org.locationtech.jts.geom.Envelope;
+import org.opentripplanner.index.model.RealtimeVehiclePosition;
+import org.opentripplanner.model.FeedScopedId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Holds the realtime vehicle positions of all vehicle position updaters, indexed by a grid of small lat/lon cells, by
+ * route and by pattern, so that the API can answer map viewport queries without looking at every vehicle.
+ *
+ * Updates are made by the graph writer thread, one feed at a time, and published to readers as an immutable snapshot,
+ * so a reader never sees half of an update. Every update that changes anything gets a new version number. A vehicle
+ * keeps the version at which its position last changed, and removed vehicles are remembered for a while, which allows
+ * clients to ask only for what changed since the version they already have.
+ *
+ * Vehicles are removed when they are missing from the latest update of their feed, and when their feed has not
+ * reported them for longer than the maximum age given by the updater, so vehicles of a feed that stopped updating do
+ * not stay on the map forever.
+ */
+public class VehiclePositionStore {
+
+    /** The size of the grid cells in degrees, about a kilometer in latitude. */
+    private static final double CELL_SIZE_DEGREES = 0.01;
+
+    /** The maximum number of removed vehicles remembered to answer queries for changes since a given version. */
+    private static final int MAX_REMOVED_VEHICLES = 10000;
+
+    private volatile Snapshot snapshot = new Snapshot(0, Collections.emptyMap(), Collections.emptyMap(), 0);
+
+    /** @return the version of the latest update. */
+    public long getVersion() {
+        return snapshot.version;
+    }
+
+    /**
+     * Replace the vehicles of a feed.
+     *
+     * @param positions the vehicles currently reported by the feed, which must have their trip ID set.
+     * @param maxAgeSeconds how long a vehicle is kept after the last update of its feed that contained it.
+     */
+    public void update(String feedId, Collection<RealtimeVehiclePosition> positions, int maxAgeSeconds) {
+        update(feedId, positions, maxAgeSeconds, System.currentTimeMillis());
+    }
+
+    synchronized void update(String feedId, Collection<RealtimeVehiclePosition> positions, int maxAgeSeconds,
+            long now) {
+        Snapshot current = snapshot;
+        long version = current.version + 1;
+        long expiresAt = now + maxAgeSeconds * 1000L;
+        boolean changed = false;
+
+        Map<FeedScopedId, Entry> entries = new HashMap<>();
+        Map<FeedScopedId, Long> removed = new LinkedHashMap<>(current.removed);
+        Set<FeedScopedId> seen = new HashSet<>();
+        for (RealtimeVehiclePosition position : positions) {
+            FeedScopedId tripId = position.tripId;
+            seen.add(tripId);
+            Entry existing = current.entries.get(tripId);
+            if (existing != null && existing.position.equals(position)) {
+                // Keep the version so the vehicle is not sent again to clients that already have it.
+                entries.put(tripId, new Entry(feedId, existing.position, existing.version, expiresAt));
+            } else {
+                entries.put(tripId, new Entry(feedId, position, version, expiresAt));
+                removed.remove(tripId);
+                changed = true;
+            }
+        }
+        for (Entry entry : current.entries.values()) {
+            FeedScopedId tripId = entry.position.tripId;
+            if (seen.contains(tripId)) continue;
+            if (entry.feedId.equals(feedId) || entry.expiresAt < now) {
+                removed.remove(tripId);
+                removed.put(tripId, version);
+                changed = true;
+            } else {
+                entries.put(tripId, entry);
+            }
+        }
+        if (!changed) {
+            // Only the expiry times have moved, which readers do not need to see right away.
+            snapshot = new Snapshot(current.version, entries, current.removed, current.oldestRemovedVersion);
+            return;
+        }
+
+        // Forget the oldest removals when there are too many, clients asking for older changes get everything.
+        long oldestRemovedVersion = current.oldestRemovedVersion;
+        List<FeedScopedId> removedIds = new ArrayList<>(removed.keySet());
+        for (int i = 0; i < removedIds.size() - MAX_REMOVED_VEHICLES; i++) {
+            oldestRemovedVersion = Math.max(oldestRemovedVersion, removed.remove(removedIds.get(i)));
+        }
+        snapshot = new Snapshot(version, entries, removed, oldestRemovedVersion);
+    }
+
+    /**
+     * Find vehicles, all filters are optional.
+     *
+     * @param envelope only include vehicles within this lon/lat envelope.
+     * @param routeId only include vehicles on this route.
+     * @param patternId only include vehicles on this pattern.
+     * @param sinceVersion if not null, only include vehicles that changed after this version, and list the vehicles
+     *                     that were removed since then. A complete result is returned when the removed vehicles are
+     *                     no longer known for that version.
+     */
+    public VehiclePositionQueryResult query(Envelope envelope, FeedScopedId routeId, String patternId,
+            Long sinceVersion) {
+        return query(envelope, routeId, patternId, sinceVersion, System.currentTimeMillis());
+    }
+
+    VehiclePositionQueryResult query(Envelope envelope, FeedScopedId routeId, String patternId, Long sinceVersion,
+            long now) {
+        Snapshot current = snapshot;
+        boolean delta = sinceVersion != null && sinceVersion >= current.oldestRemovedVersion
+                && sinceVersion <= current.version;
+        VehiclePositionQueryResult result = new VehiclePositionQueryResult();
+        result.version = current.version;
+        result.complete = !delta;
+
+        for (Entry entry : current.candidates(envelope, routeId, patternId)) {
+            if (delta && entry.version > sinceVersion) {
+                // Handled below with all the vehicles that changed.
+                continue;
+            }
+            boolean matches = entry.matches(envelope, routeId, patternId);
+            boolean expired = entry.expiresAt < now;
+            if (delta) {
+                // The client already has this vehicle if it matches, tell it to drop the vehicle once expired.
+                if (matches && expired) result.removed.add(entry.position.tripId);
+            } else if (matches && !expired) {
+                result.vehicles.add(entry.position);
+            }
+        }
+        if (delta) {
+            // The vehicles that changed are not all among the candidates: a vehicle that moved out of the envelope or
+            // changed route or pattern must be dropped by a client that had it.
+            for (Entry entry : current.changedSince(sinceVersion)) {
+                if (entry.matches(envelope, routeId, patternId) && entry.expiresAt >= now) {
+                    result.vehicles.add(entry.position);
+                } else {
+                    result.removed.add(entry.position.tripId);
+                }
+            }
+            for (Map.Entry<FeedScopedId, Long> removal : current.removed.entrySet()) {
+                if (removal.getValue() > sinceVersion) {
+                    result.removed.add(removal.getKey());
+                }
+            }
+        }
+        return result;
+    }
+
+    /** A vehicle with the version at which it last changed. */
+    private static class Entry {
+
+        final String feedId;
+
+        final RealtimeVehiclePosition position;
+
+        final long version;
+
+        final long expiresAt;
+
+        Entry(String feedId, RealtimeVehiclePosition position, long version, long expiresAt) {
+            this.feedId = feedId;
+            this.position = position;
+            this.version = version;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean matches(Envelope envelope, FeedScopedId routeId, String patternId) {
+            return (envelope == null || envelope.contains(position.lon, position.lat))
+                    && (routeId == null || routeId.equals(position.routeId))
+                    && (patternId == null || patternId.equals(position.patternId));
+        }
+    }
+
+    /** The vehicles with their indexes, never modified once published. */
+    private static class Snapshot {
+
+        final long version;
+
+        final ImmutableMap<FeedScopedId, Entry> entries;
+
+        final ImmutableListMultimap<Long, Entry> entriesByCell;
+
+        final ImmutableListMultimap<FeedScopedId, Entry> entriesByRoute;
+
+        final ImmutableListMultimap<String, Entry> entriesByPattern;
+
+        /** All the vehicles sorted by the version at which they last changed, oldest first. */
+        final ImmutableList<Entry> entriesByVersion;
+
+        /** The trips of removed vehicles with the version at which they were removed, oldest first. */
+        final ImmutableMap<FeedScopedId, Long> removed;
+
+        /** Removals at or before this version may have been forgotten. */
+        final long oldestRemovedVersion;
+
+        Snapshot(long version, Map<FeedScopedId, Entry> entries, Map<FeedScopedId, Long> removed,
+                long oldestRemovedVersion) {
+            this.version = version;
+            this.entries = ImmutableMap.copyOf(entries);
+            this.removed = ImmutableMap.copyOf(removed);
+            this.oldestRemovedVersion = oldestRemovedVersion;
+            ImmutableListMultimap.Builder<Long, Entry> byCell = ImmutableListMultimap.builder();
+            ImmutableListMultimap.Builder<FeedScopedId, Entry> byRoute = ImmutableListMultimap.builder();
+            ImmutableListMultimap.Builder<String, Entry> byPattern = ImmutableListMultimap.builder();
+            for (Entry entry : entries.values()) {
+                byCell.put(cell(cellIndex(entry.position.lat), cellIndex(entry.position.lon)), entry);
+                if (entry.position.routeId != null) {
+                    byRoute.put(entry.position.routeId, entry);
+                }
+                if (entry.position.patternId != null) {
+                    byPattern.put(entry.position.patternId, entry);
+                }
+            }
+            this.entriesByCell = byCell.build();
+            this.entriesByRoute = byRoute.build();
+            this.entriesByPattern = byPattern.build();
+            List<Entry> byVersion = new ArrayList<>(entries.values());
+            byVersion.sort(Comparator.comparingLong(entry -> entry.version));
+            this.entriesByVersion = ImmutableList.copyOf(byVersion);
+        }
+
+        /** @return the vehicles that changed after the given version. */
+        List<Entry> changedSince(long version) {
+            int low = 0;
+            int high = entriesByVersion.size();
+            // Find the first entry with a later version.
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (entriesByVersion.get(mid).version <= version) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return entriesByVersion.subList(low, entriesByVersion.size());
+        }
+
+        /** @return the smallest set of vehicles that contains all vehicles matching the filters. */
+        Collection<Entry> candidates(Envelope envelope, FeedScopedId routeId, String patternId) {
+            if (patternId != null) {
+                return entriesByPattern.get(patternId);
+            }
+            if (routeId != null) {
+                return entriesByRoute.get(routeId);
+            }
+            if (envelope == null) {
+                return entries.values();
+            }
+            int minLat = cellIndex(envelope.getMinY());
+            int maxLat = cellIndex(envelope.getMaxY());
+            int minLon = cellIndex(envelope.getMinX());
+            int maxLon = cellIndex(envelope.getMaxX());
+            long cells = (long) (maxLat - minLat + 1) * (maxLon - minLon + 1);
+            if (cells >= entriesByCell.keySet().size()) {
+                // Looking at every cell of a large envelope is slower than looking at every vehicle.
+                return entries.values();
+            }
+            List<Entry> candidates = new ArrayList<>();
+            for (int lat = minLat; lat <= maxLat; lat++) {
+                for (int lon = minLon; lon <= maxLon; lon++) {
+                    candidates.addAll(entriesByCell.get(cell(lat, lon)));
+                }
+            }
+            return candidates;
+        }
+    }
+
+    private static int cellIndex(double degrees) {
+        return (int) Math.floor(degrees / CELL_SIZE_DEGREES);
+    }
+
+    private static long cell(int lat, int lon) {
+        return ((long) lat << 32) | (lon & 0xFFFFFFFFL);
+    }
+
+    /** The result of a query, serialized by the index API. */
+    public static class VehiclePositionQueryResult {
+
+        /** The version to pass in the next query to only get the changes. */
+        public long version;
+
+        /** True if the vehicles are all matching vehicles rather than only the changed ones. */
+        public boolean complete;
+
+        public List<RealtimeVehiclePosition> vehicles = new ArrayList<>();
+
+        /** The trips of vehicles that were removed or no longer match, only set when the result is not complete. */
+        public List<FeedScopedId> removed = new ArrayList<>();
+    }
+}
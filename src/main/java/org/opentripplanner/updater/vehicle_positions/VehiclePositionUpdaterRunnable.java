@@ -20,7 +20,13 @@ public class VehiclePositionUpdaterRunnable implements GraphWriterRunnable {
 
     private final String feedId;
 
-    public VehiclePositionUpdaterRunnable(final List<VehiclePosition> updates, final String feedId) {
+    /**
+     * How long a vehicle stays in the vehicle position store when it is no longer updated
+     */
+    private final int maxVehicleAgeSeconds;
+
+    public VehiclePositionUpdaterRunnable(final List<VehiclePosition> updates, final String feedId,
+            final int maxVehicleAgeSeconds) {
         // Preconditions
         Preconditions.checkNotNull(updates);
         Preconditions.checkNotNull(feedId);
@@ -28,6 +34,7 @@ public class VehiclePositionUpdaterRunnable implements GraphWriterRunnable {
         // Set fields
         this.updates = updates;
         this.feedId = feedId;
+        this.maxVehicleAgeSeconds = maxVehicleAgeSeconds;
     }
     /**
      * This function is executed to modify patterns
@@ -50,6 +57,12 @@ public class VehiclePositionUpdaterRunnable implements GraphWriterRunnable {
             // "clean" all patterns, removing all vehicles not "seen" in the
             // previous step (stored in the seen trip IDs)
             vehiclePositionPatternMatcher.cleanPatternVehiclePositions(feedId);
+
+            // Publish the vehicles of this feed to the API
+            if (graph.vehiclePositionStore != null) {
+                graph.vehiclePositionStore.update(feedId,
+                        vehiclePositionPatternMatcher.getVehiclePositions(feedId), maxVehicleAgeSeconds);
+            }
         } else {
             LOG.error("Could not find realtime data snapshot source in graph."
                     + " The following updates are not applied: {}", updates);
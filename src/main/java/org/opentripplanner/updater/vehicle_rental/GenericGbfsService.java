@@ -1,5 +1,7 @@
 package org.opentripplanner.updater.vehicle_rental;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -13,11 +15,13 @@ import org.opentripplanner.routing.vehicle_rental.VehicleRentalRegion;
 import org.opentripplanner.routing.vehicle_rental.VehicleRentalStation;
 import org.opentripplanner.updater.JsonConfigurable;
 import org.opentripplanner.updater.RentalUpdaterError;
+import org.opentripplanner.updater.vehicle_rental.GBFSMappings.BaseGbfsResponse;
 import org.opentripplanner.updater.vehicle_rental.GBFSMappings.FreeBikeStatus;
 import org.opentripplanner.updater.vehicle_rental.GBFSMappings.GbfsResponse;
 import org.opentripplanner.updater.vehicle_rental.GBFSMappings.StationInformation;
 import org.opentripplanner.updater.vehicle_rental.GBFSMappings.StationStatus;
 import org.opentripplanner.updater.vehicle_rental.GBFSMappings.SystemInformation;
+import org.opentripplanner.util.HttpUtils;
 import org.opentripplanner.util.NonLocalizedString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,6 +37,10 @@ import static org.opentripplanner.util.HttpUtils.getDataFromUrlOrFile;
 
 /**
  * A standalone service for consuming a GBFS
+ *
+ * The GBFS files are cached between updates. A file is not fetched again before its ttl has passed since it was last
+ * updated, and then only with a conditional request using its ETag and Last-Modified headers. The stations are only
+ * rebuilt from the files that changed.
  */
 public class GenericGbfsService implements VehicleRentalDataSource, JsonConfigurable {
     private static final Logger LOG = LoggerFactory.getLogger(GenericGbfsService.class);
@@ -60,6 +68,13 @@ public class GenericGbfsService implements VehicleRentalDataSource, JsonConfigur
     private SystemInformation.SystemInformationData systemInformationData;
     private Date systemStartDate;
 
+    // items cached between updates
+    private final Map<String, CachedFeed> cachedFeedsByUrl = new HashMap<>();
+    private StationInformation lastStationInformation;
+    private StationStatus lastStationStatus;
+    private List<VehicleRentalStation> dockedStations;
+    private List<RentalUpdaterError> dockedStationErrors;
+
     public GenericGbfsService() {
         this(null, null, "en");
     }
@@ -417,15 +432,6 @@ public class GenericGbfsService implements VehicleRentalDataSource, JsonConfigur
             return;
         }
 
-        // organize stations by id
-        Map<String, VehicleRentalStation> stationsByStationId = new HashMap<>();
-        for (StationInformation.DockingStationInformation station : stationInfo.data.stations) {
-            VehicleRentalStation vehicleRentalStation = parseDockingStation(station);
-            if (vehicleRentalStation != null) {
-                stationsByStationId.put(vehicleRentalStation.id, vehicleRentalStation);
-            }
-        }
-
         // get status statuses
         if (stationStatusUrl == null) {
             addError(
@@ -441,6 +447,24 @@ public class GenericGbfsService implements VehicleRentalDataSource, JsonConfigur
             // Don't process null station status info
             return;
         }
+        if (stationInfo == lastStationInformation && stationStatus == lastStationStatus) {
+            // Neither file has changed since the last update.
+            errors.addAll(dockedStationErrors);
+            stations.addAll(dockedStations);
+            vehiclesUpdated = true;
+            return;
+        }
+        int nErrorsBefore = errors.size();
+
+        // organize stations by id
+        Map<String, VehicleRentalStation> stationsByStationId = new LinkedHashMap<>();
+        for (StationInformation.DockingStationInformation station : stationInfo.data.stations) {
+            VehicleRentalStation vehicleRentalStation = parseDockingStation(station);
+            if (vehicleRentalStation != null) {
+                stationsByStationId.put(vehicleRentalStation.id, vehicleRentalStation);
+            }
+        }
+
         // update each vehicle rental station found in station information URL/file.
         for (StationStatus.DockingStationStatusInformation station : stationStatus.data.stations) {
             VehicleRentalStation vehicleRentalStation = stationsByStationId.get(station.station_id);
@@ -483,45 +507,101 @@ public class GenericGbfsService implements VehicleRentalDataSource, JsonConfigur
                 stationStatus.last_updated
             );
         }
-        stations.addAll(stationsByStationId.values());
+        lastStationInformation = stationInfo;
+        lastStationStatus = stationStatus;
+        dockedStations = new ArrayList<>(stationsByStationId.values());
+        dockedStationErrors = new ArrayList<>(errors.subList(nErrorsBefore, errors.size()));
+        stations.addAll(dockedStations);
         vehiclesUpdated = true;
     }
 
     private void updateFreeFloatingVehicles(String freeBikeStatusUrl) {
-        FreeBikeStatus floatingBikes = fetchAndParseFromUrl(freeBikeStatusUrl, FreeBikeStatus.class);
-        if (floatingBikes == null) {
+        FloatingVehicles floatingVehicles = fetchAndParseFromUrl(freeBikeStatusUrl, false, this::parseFreeBikeStatus);
+        if (floatingVehicles == null) {
             addError(
                 RentalUpdaterError.Severity.ALL_FLOATING_VEHICLES,
                 "Unable to fetch/parse floating vehicles."
             );
             return;
         }
-        for (FreeBikeStatus.FreeBike bike : floatingBikes.data.bikes) {
-            if (!bike.is_disabled && !bike.is_reserved) {
-                VehicleRentalStation floatingVehicle = new VehicleRentalStation();
-                // some GBFS feeds have `null` as the value for bike_id. If that happens, just set the id to be a UUID.
-                floatingVehicle.id = bike.bike_id == null
-                    ? UUID.randomUUID().toString()
-                    : bike.bike_id;
-                floatingVehicle.name = new NonLocalizedString(bike.bike_id);
-                floatingVehicle.x = bike.lon;
-                floatingVehicle.y = bike.lat;
-
-                floatingVehicle.allowDropoff = false;
-                floatingVehicle.allowPickup = true;
-                floatingVehicle.isFloatingVehicle = true;
-                floatingVehicle.networks = Sets.newHashSet(networkName);
-                floatingVehicle.spacesAvailable = 0;
-                floatingVehicle.vehiclesAvailable = 1;
-                floatingVehicle.lastReportedEpochSeconds = RentalStation.getLastReportedTimeUsingFallbacks(
-                    bike.last_reported,
-                    floatingBikes.last_updated
-                );
+        stations.addAll(floatingVehicles.vehicles);
+        vehiclesUpdated = true;
+    }
 
-                stations.add(floatingVehicle);
+    /**
+     * Parse free_bike_status.json one bike at a time, as it can list tens of thousands of vehicles. The available
+     * vehicles are converted to rental stations right away.
+     */
+    private FloatingVehicles parseFreeBikeStatus(InputStream data) throws IOException {
+        FloatingVehicles floatingVehicles = new FloatingVehicles();
+        boolean bikesFound = false;
+        try (JsonParser parser = mapper.getFactory().createParser(data)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("free_bike_status is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (field.equals("last_updated") && token.isNumeric()) {
+                    floatingVehicles.last_updated = parser.getIntValue();
+                } else if (field.equals("ttl") && token.isNumeric()) {
+                    floatingVehicles.ttl = parser.getIntValue();
+                } else if (field.equals("data") && token == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String dataField = parser.getCurrentName();
+                        if (parser.nextToken() == JsonToken.START_ARRAY && dataField.equals("bikes")) {
+                            bikesFound = true;
+                            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                                FreeBikeStatus.FreeBike bike = mapper.readValue(parser, FreeBikeStatus.FreeBike.class);
+                                if (!Boolean.TRUE.equals(bike.is_disabled) && !Boolean.TRUE.equals(bike.is_reserved)) {
+                                    floatingVehicles.vehicles.add(makeFloatingVehicle(bike));
+                                }
+                            }
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
             }
         }
-        vehiclesUpdated = true;
+        if (!bikesFound) {
+            throw new IOException("no bikes found in free_bike_status");
+        }
+        // The feed-wide time can come after the bikes.
+        for (VehicleRentalStation floatingVehicle : floatingVehicles.vehicles) {
+            floatingVehicle.lastReportedEpochSeconds = RentalStation.getLastReportedTimeUsingFallbacks(
+                floatingVehicle.lastReportedEpochSeconds,
+                floatingVehicles.last_updated
+            );
+        }
+        return floatingVehicles;
+    }
+
+    private VehicleRentalStation makeFloatingVehicle(FreeBikeStatus.FreeBike bike) {
+        VehicleRentalStation floatingVehicle = new VehicleRentalStation();
+        // some GBFS feeds have `null` as the value for bike_id. If that happens, just set the id to be a UUID.
+        floatingVehicle.id = bike.bike_id == null
+            ? UUID.randomUUID().toString()
+            : bike.bike_id;
+        floatingVehicle.name = new NonLocalizedString(bike.bike_id);
+        floatingVehicle.x = bike.lon;
+        floatingVehicle.y = bike.lat;
+
+        floatingVehicle.allowDropoff = false;
+        floatingVehicle.allowPickup = true;
+        floatingVehicle.isFloatingVehicle = true;
+        floatingVehicle.networks = Sets.newHashSet(networkName);
+        floatingVehicle.spacesAvailable = 0;
+        floatingVehicle.vehiclesAvailable = 1;
+        floatingVehicle.lastReportedEpochSeconds = bike.last_reported;
+        return floatingVehicle;
+    }
+
+    /** The available vehicles parsed from free_bike_status.json, with the feed-wide fields. */
+    private static class FloatingVehicles extends BaseGbfsResponse {
+        final List<VehicleRentalStation> vehicles = new ArrayList<>();
     }
 
     /**
@@ -567,13 +647,6 @@ public class GenericGbfsService implements VehicleRentalDataSource, JsonConfigur
         return vehicleRentalStation;
     }
 
-    /**
-     * Helper method to fetch and parse from a non-required URL/file.
-     */
-    private <T> T fetchAndParseFromUrl(String url, Class<T> clazz) {
-        return fetchAndParseFromUrl(url, clazz, false);
-    }
-
     /**
      * Helper method to fetch from a URL/file and then deserialize into the given type.
      *
@@ -587,25 +660,102 @@ public class GenericGbfsService implements VehicleRentalDataSource, JsonConfigur
         Class<T> clazz,
         boolean required
     ) {
-        InputStream data = fetchFromUrl(url, required);
-        if (data == null) {
+        return fetchAndParseFromUrl(url, required, data -> mapper.readValue(data, clazz));
+    }
+
+    /**
+     * Helper method to fetch from a URL/file and then parse it, unless it has not changed since it was last parsed.
+     *
+     * @return the result of the parser, which is the same instance as returned by the previous call if the file has
+     * not changed, or null if some error were encountered.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T fetchAndParseFromUrl(String url, boolean required, GbfsParser<T> parser) {
+        if (url == null) {
             return null;
         }
+        long now = System.currentTimeMillis();
+        CachedFeed cached = cachedFeedsByUrl.get(url);
+        if (cached != null && now < cached.expiresAtMillis) {
+            return (T) cached.response;
+        }
+        HttpUtils.ConditionalResponse response = null;
         try {
-            return mapper.readValue(data, clazz);
+            response = HttpUtils.getDataFromUrlOrFileIfModified(
+                url,
+                headerName,
+                headerValue,
+                cached == null ? null : cached.etag,
+                cached == null ? null : cached.lastModified
+            );
         } catch (IOException e) {
-            LOG.error("Failed to parse data fetched from feed: {} at URL: {}", networkName, url);
-            e.printStackTrace();
-        } finally {
-            try {
-                data.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+            LOG.warn("Failed to fetch from url: {}. Error: {}", url, e);
+        }
+        if (response == null) {
+            if (required) {
+                LOG.error("Received no data from URL fetch from: {}", url);
             }
+            return null;
+        }
+        if (response.notModified && cached != null) {
+            // Not modified now, so the data will remain valid for another ttl.
+            cached.expiresAtMillis = expiresAtMillis(cached.response, now);
+            return (T) cached.response;
+        }
+        try (InputStream data = response.content) {
+            T parsed = parser.parse(data);
+            if (parsed != null) {
+                CachedFeed feed = new CachedFeed();
+                feed.response = parsed;
+                feed.etag = response.etag;
+                feed.lastModified = response.lastModified;
+                feed.expiresAtMillis = expiresAtMillis(parsed, null);
+                cachedFeedsByUrl.put(url, feed);
+            }
+            return parsed;
+        } catch (IOException e) {
+            LOG.error("Failed to parse data fetched from feed: {} at URL: {}", networkName, url, e);
         }
         return null;
     }
 
+    /**
+     * @param validSinceMillis the time the data was known to be valid, or null to use the time the feed says it was
+     * last updated.
+     * @return the time until which the given GBFS response will not change according to its ttl, which is in the past
+     * if the response has no ttl.
+     */
+    private static long expiresAtMillis(Object parsed, Long validSinceMillis) {
+        if (!(parsed instanceof BaseGbfsResponse)) {
+            return 0;
+        }
+        BaseGbfsResponse gbfsResponse = (BaseGbfsResponse) parsed;
+        if (gbfsResponse.ttl == null || gbfsResponse.ttl <= 0) {
+            return 0;
+        }
+        long since;
+        if (validSinceMillis != null) {
+            since = validSinceMillis;
+        } else if (gbfsResponse.last_updated != null && gbfsResponse.last_updated > 0) {
+            since = gbfsResponse.last_updated * 1000L;
+        } else {
+            since = System.currentTimeMillis();
+        }
+        return since + gbfsResponse.ttl * 1000L;
+    }
+
+    private interface GbfsParser<T> {
+        T parse(InputStream data) throws IOException;
+    }
+
+    /** A parsed GBFS file with what is needed to tell whether it has changed. */
+    private static class CachedFeed {
+        Object response;
+        String etag;
+        String lastModified;
+        long expiresAtMillis;
+    }
+
     /**
      * Helper method to fetch from a URL where a response is not required.
      */
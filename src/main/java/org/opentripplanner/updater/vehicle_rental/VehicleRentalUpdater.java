@@ -30,12 +30,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import static org.opentripplanner.graph_builder.linking.StreetSplitter.NON_DESTRUCTIVE_SPLIT;
@@ -68,6 +68,12 @@ public class VehicleRentalUpdater extends PollingGraphUpdater {
 
     Map<VehicleRentalStation, VehicleRentalStationVertex> verticesByStation = new HashMap<>();
 
+    /**
+     * The latest data for the stations that are on the graph, as seen by the polling thread. This is compared with
+     * each update so that only stations that changed are passed to the graph writer.
+     */
+    private Map<VehicleRentalStation, VehicleRentalStation> currentStations = new HashMap<>();
+
     @Override
     protected void runPolling() {
         LOG.debug("Updating vehicle rental stations and regions from " + source);
@@ -77,6 +83,95 @@ public class VehicleRentalUpdater extends PollingGraphUpdater {
         updaterManager.execute(new VehicleRentalGraphWriterRunnable(source));
     }
 
+    /**
+     * Determine which stations should be on the graph after this update, and which of them are new or changed
+     * compared to the stations currently on the graph.
+     *
+     * @param changedStations the new or changed stations are added to this list.
+     * @param removedStations the stations that should be removed from the graph are added to this list.
+     */
+    void diffStations(List<VehicleRentalStation> stations, List<RentalUpdaterError> errors,
+            List<VehicleRentalStation> changedStations, List<VehicleRentalStation> removedStations) {
+        // check if any critical errors occurred
+        boolean feedWideError = false;
+        boolean allStationsError = false;
+        boolean allFloatingVehiclesError = false;
+        for (RentalUpdaterError error : errors) {
+            switch (error.severity) {
+                case FEED_WIDE:
+                    feedWideError = true;
+                    break;
+                case ALL_STATIONS:
+                    allStationsError = true;
+                    break;
+                case ALL_FLOATING_VEHICLES:
+                    allFloatingVehiclesError = true;
+                    break;
+            }
+        }
+
+        Map<VehicleRentalStation, VehicleRentalStation> stationsInUpdate = new HashMap<>();
+        // Use stations from the update if a feed-wide error did not occur
+        if (!feedWideError && stations != null) {
+            for (VehicleRentalStation station : stations) {
+                if (!DateUtils.withinTimeToLive(station.lastReportedEpochSeconds, timeToLiveMinutes)) {
+                    // skip station as it does not have fresh-enough data
+                    continue;
+                }
+                stationsInUpdate.put(station, station);
+                VehicleRentalStation current = currentStations.get(station);
+                if (current == null || hasChanged(current, station)) {
+                    changedStations.add(station);
+                }
+            }
+        }
+
+        // Remove the stations that were not present in the update
+        for (VehicleRentalStation station : currentStations.values()) {
+            if (stationsInUpdate.containsKey(station)) {
+                // station present in update, do not remove
+                continue;
+            }
+
+            // if there was an error with fetching stations, do not remove any stations that had a last reported
+            // time within the time to live threshold
+            if (
+                allStationsError &&
+                    !station.isFloatingVehicle &&
+                    DateUtils.withinTimeToLive(station.lastReportedEpochSeconds, timeToLiveMinutes)
+            ) {
+                stationsInUpdate.put(station, station);
+                continue;
+            }
+
+            // if there was an error with fetching floating vehicles, do not remove any stations that had a last
+            // reported time within the time to live threshold
+            if (
+                allFloatingVehiclesError &&
+                    station.isFloatingVehicle &&
+                    DateUtils.withinTimeToLive(station.lastReportedEpochSeconds, timeToLiveMinutes)
+            ) {
+                stationsInUpdate.put(station, station);
+                continue;
+            }
+
+            removedStations.add(station);
+        }
+        currentStations = stationsInUpdate;
+    }
+
+    /**
+     * @return whether the station differs from the current one in any way that matters to routing. A change in the
+     * last reported time alone is not passed on to the graph.
+     */
+    private static boolean hasChanged(VehicleRentalStation current, VehicleRentalStation station) {
+        return current.x != station.x || current.y != station.y ||
+            current.vehiclesAvailable != station.vehiclesAvailable ||
+            current.spacesAvailable != station.spacesAvailable ||
+            current.allowPickup != station.allowPickup ||
+            current.allowDropoff != station.allowDropoff;
+    }
+
     @Override
     protected void configurePolling(Graph graph, JsonNode config) throws Exception {
         network = config.path("network").asText();
@@ -124,17 +219,19 @@ public class VehicleRentalUpdater extends PollingGraphUpdater {
         private final List<RentalUpdaterError> errors;
         private final List<VehicleRentalRegion> regions;
         private final boolean regionsUpdated;
-        private final List<VehicleRentalStation> stations;
+        private final List<VehicleRentalStation> changedStations = new ArrayList<>();
+        private final List<VehicleRentalStation> removedStations = new ArrayList<>();
         private final SystemInformation.SystemInformationData systemInformationData;
 
         private final GeometryFactory geometryFactory = new GeometryFactory();
 
+        /** Created on the polling thread, which also determines the stations that changed. */
         public VehicleRentalGraphWriterRunnable(VehicleRentalDataSource source) {
             errors = source.getErrors();
             regions = source.getRegions();
             regionsUpdated = source.regionsUpdated();
-            stations = source.getStations();
             systemInformationData = source.getSystemInformation();
+            diffStations(source.getStations(), errors, changedStations, removedStations);
         }
 
         @Override
@@ -146,94 +243,36 @@ public class VehicleRentalUpdater extends PollingGraphUpdater {
         }
 
         private void applyStations(Graph graph) {
-            // check if any critical errors occurred
-            boolean feedWideError = false;
-            boolean allStationsError = false;
-            boolean allFloatingVehiclesError = false;
-            for (RentalUpdaterError error : errors) {
-                switch (error.severity) {
-                    case FEED_WIDE:
-                        feedWideError = true;
-                        break;
-                    case ALL_STATIONS:
-                        allStationsError = true;
-                        break;
-                    case ALL_FLOATING_VEHICLES:
-                        allFloatingVehiclesError = true;
-                        break;
-                }
-            }
+            LOG.info("Updating vehicle rental stations for network {}: {} new or changed, {} removed.", network,
+                changedStations.size(), removedStations.size());
 
-            Set<VehicleRentalStation> toRemove = new HashSet<>();
-            Set<VehicleRentalStation> stationsInUpdate = new HashSet<>();
-            LOG.info("Updating vehicle rental stations for network {}.", network);
-
-            // Apply stations to graph if a feed-wide error did not occur
-            if (!feedWideError) {
-                // add any new stations that have fresh-enough data and update vehicle counts for existing stations
-                for (VehicleRentalStation station : stations) {
-                    if (!DateUtils.withinTimeToLive(station.lastReportedEpochSeconds, timeToLiveMinutes)) {
-                        // skip station as it does not have fresh-enough data
-                        continue;
-                    }
-                    service.addVehicleRentalStation(station);
-                    stationsInUpdate.add(station);
-                    VehicleRentalStationVertex vertex = verticesByStation.get(station);
-                    if (vertex == null) {
-                        makeVertex(graph, station);
-                    } else if (vertex.hasDifferentApproximatePosition(station)) {
-                        LOG.info("Vehicle rental {} has changed position, re-graphing", station);
-
-                        // First remove the old vertices and edges
-                        splitter.removeRentalStationVertexAndAssociatedSemiPermanentVerticesAndEdges(vertex);
-
-                        // then make a new vertices and edges
-                        makeVertex(graph, station);
-                    } else {
-                        vertex.setVehiclesAvailable(station.vehiclesAvailable);
-                        vertex.setSpacesAvailable(station.spacesAvailable);
-                    }
+            // add any new stations and update vehicle counts for existing stations
+            for (VehicleRentalStation station : changedStations) {
+                service.addVehicleRentalStation(station);
+                VehicleRentalStationVertex vertex = verticesByStation.get(station);
+                if (vertex == null) {
+                    makeVertex(graph, station);
+                } else if (vertex.hasDifferentApproximatePosition(station)) {
+                    LOG.info("Vehicle rental {} has changed position, re-graphing", station);
+
+                    // First remove the old vertices and edges
+                    splitter.removeRentalStationVertexAndAssociatedSemiPermanentVerticesAndEdges(vertex);
+
+                    // then make a new vertices and edges
+                    makeVertex(graph, station);
+                } else {
+                    vertex.setVehiclesAvailable(station.vehiclesAvailable);
+                    vertex.setSpacesAvailable(station.spacesAvailable);
                 }
             }
 
-            // Add stations that were not present in the update to a list of stations to remove
-            for (Entry<VehicleRentalStation, VehicleRentalStationVertex> entry : verticesByStation.entrySet()) {
-                VehicleRentalStation station = entry.getKey();
-                if (stationsInUpdate.contains(station)) {
-                    // station present in update, do not remove
-                    continue;
+            for (VehicleRentalStation station : removedStations) {
+                VehicleRentalStationVertex vertex = verticesByStation.remove(station);
+                if (vertex != null) {
+                    splitter.removeRentalStationVertexAndAssociatedSemiPermanentVerticesAndEdges(vertex);
                 }
-
-                // if there was an error with fetching stations, do not remove any stations that had a last reported
-                // time within the time to live threshold
-                if (
-                    allStationsError &&
-                        !station.isFloatingVehicle &&
-                        DateUtils.withinTimeToLive(station.lastReportedEpochSeconds, timeToLiveMinutes)
-                ) {
-                    continue;
-                }
-
-                // if there was an error with fetching floating vehicles, do not remove any stations that had a last
-                // reported time within the time to live threshold
-                if (
-                    allFloatingVehiclesError &&
-                        station.isFloatingVehicle &&
-                        DateUtils.withinTimeToLive(station.lastReportedEpochSeconds, timeToLiveMinutes)
-                ) {
-                    continue;
-                }
-
-                splitter.removeRentalStationVertexAndAssociatedSemiPermanentVerticesAndEdges(entry.getValue());
-
-                toRemove.add(station);
                 service.removeVehicleRentalStation(station);
             }
-
-            for (VehicleRentalStation station : toRemove) {
-                // post-iteration removal to avoid concurrent modification
-                verticesByStation.remove(station);
-            }
         }
 
         private void makeVertex(Graph graph, VehicleRentalStation station) {
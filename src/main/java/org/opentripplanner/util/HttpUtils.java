@@ -8,8 +8,11 @@ import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
@@ -17,6 +20,7 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
 import org.apache.http.config.SocketConfig;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
 
 public class HttpUtils {
     
@@ -44,6 +48,72 @@ public class HttpUtils {
         return entity.getContent();
     }
 
+    /**
+     * Fetch a URL unless it has not changed since the response with the given validators was received. Local files
+     * are always read.
+     *
+     * @param etag the ETag header of the previous response, or null.
+     * @param lastModified the Last-Modified header of the previous response, or null.
+     * @return the response, or null if the request failed.
+     */
+    public static ConditionalResponse getDataFromUrlOrFileIfModified(
+        String urlOrFile,
+        String requestHeaderName,
+        String requestHeaderValue,
+        String etag,
+        String lastModified
+    ) throws IOException {
+        URL url = new URL(urlOrFile);
+        String proto = url.getProtocol();
+        if (!proto.equals("http") && !proto.equals("https")) {
+            return new ConditionalResponse(false, url.openStream(), null, null);
+        }
+        HttpGet httpget = new HttpGet(urlOrFile);
+        if (requestHeaderValue != null) {
+            httpget.addHeader(requestHeaderName, requestHeaderValue);
+        }
+        if (etag != null) {
+            httpget.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+        if (lastModified != null) {
+            httpget.addHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        }
+        HttpResponse response = getClient().execute(httpget);
+        int status = response.getStatusLine().getStatusCode();
+        if (status == HttpStatus.SC_NOT_MODIFIED) {
+            EntityUtils.consumeQuietly(response.getEntity());
+            return new ConditionalResponse(true, null, etag, lastModified);
+        }
+        HttpEntity entity = response.getEntity();
+        if (status != HttpStatus.SC_OK || entity == null) {
+            EntityUtils.consumeQuietly(entity);
+            return null;
+        }
+        return new ConditionalResponse(false, entity.getContent(), headerValue(response, HttpHeaders.ETAG),
+            headerValue(response, HttpHeaders.LAST_MODIFIED));
+    }
+
+    private static String headerValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header == null ? null : header.getValue();
+    }
+
+    /** The response to a conditional request: either new content with its validators, or not modified. */
+    public static class ConditionalResponse {
+        public final boolean notModified;
+        /** The content, to be closed by the caller. Null if not modified. */
+        public final InputStream content;
+        public final String etag;
+        public final String lastModified;
+
+        public ConditionalResponse(boolean notModified, InputStream content, String etag, String lastModified) {
+            this.notModified = notModified;
+            this.content = content;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
     public static void testUrl(String url) throws IOException {
         HttpHead head = new HttpHead(url);
         HttpClient httpclient = getClient();
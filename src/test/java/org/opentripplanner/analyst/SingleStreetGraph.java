@@ -0,0 +1,36 @@
+package org.opentripplanner.analyst;
+
+import org.opentripplanner.common.model.GenericLocation;
+import org.opentripplanner.routing.algorithm.AStar;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.spt.ShortestPathTree;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+
+/**
+ * A graph with a single 1 km street from a (10.0, 10.0) to b (10.01, 10.0), for the analyst tests that need a small
+ * shortest path tree to build time surfaces from.
+ */
+public class SingleStreetGraph {
+
+    public final Graph graph = new Graph();
+
+    public final IntersectionVertex a = new IntersectionVertex(graph, "a", 10.0, 10.0);
+
+    public final IntersectionVertex b = new IntersectionVertex(graph, "b", 10.01, 10.0);
+
+    public SingleStreetGraph() {
+        new StreetEdge(a, b, null, "ab", 1000, StreetTraversalPermission.ALL, false);
+    }
+
+    /** @return the tree of a walk search from a. */
+    public ShortestPathTree walkFromA() {
+        RoutingRequest options = new RoutingRequest(TraverseMode.WALK);
+        options.from = new GenericLocation(10.0, 10.0);
+        options.setRoutingContext(graph, a, b);
+        return new AStar().getShortestPathTree(options);
+    }
+}
@@ -0,0 +1,54 @@
+package org.opentripplanner.analyst;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.spt.ShortestPathTree;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TimeSurfaceTest {
+
+    private IntersectionVertex a, b, isolated;
+
+    private ShortestPathTree spt;
+
+    @Before
+    public void setUp() {
+        SingleStreetGraph street = new SingleStreetGraph();
+        a = street.a;
+        b = street.b;
+        isolated = new IntersectionVertex(street.graph, "isolated", 10.02, 10.0);
+        spt = street.walkFromA();
+    }
+
+    @Test
+    public void testTimesByIndex() {
+        TimeSurface surface = new TimeSurface(spt, false);
+        int[] times = surface.getTimesByIndex();
+        assertEquals(Vertex.getMaxIndex(), times.length);
+        assertEquals(0, times[a.getIndex()]);
+        assertTrue(times[b.getIndex()] > 0);
+        assertEquals(surface.getTime(b), times[b.getIndex()]);
+        assertEquals(TimeSurface.UNREACHABLE, times[isolated.getIndex()]);
+        // The array is built once and shared by the callers.
+        assertSame(times, surface.getTimesByIndex());
+    }
+
+    @Test
+    public void testUniqueIdsWhenBuiltConcurrently() {
+        // Each surface allocates a large map, so keep this small.
+        int n = 50;
+        Set<Integer> ids = IntStream.range(0, n).parallel()
+                .mapToObj(i -> new TimeSurface(spt, false).id)
+                .collect(Collectors.toSet());
+        assertEquals(n, ids.size());
+    }
+}
@@ -0,0 +1,191 @@
+package org.opentripplanner.analyst;
+
+import junit.framework.TestCase;
+import org.opentripplanner.common.model.GenericLocation;
+import org.opentripplanner.graph_builder.module.GraphBuilderModuleSummary;
+import org.opentripplanner.graph_builder.module.osm.DefaultWayPropertySetSource;
+import org.opentripplanner.graph_builder.module.osm.OpenStreetMapModule;
+import org.opentripplanner.openstreetmap.impl.FileBasedOpenStreetMapProviderImpl;
+import org.opentripplanner.routing.algorithm.AStar;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.core.TraverseModeSet;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.services.StreetVertexIndexService;
+import org.opentripplanner.routing.spt.ShortestPathTree;
+import org.opentripplanner.routing.vertextype.OsmVertex;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TravelTimeMatrixTest extends TestCase {
+
+    private static final int CUTOFF_SECONDS = 3600;
+
+    private static final TraverseModeSet WALK = new TraverseModeSet(TraverseMode.WALK);
+
+    private static PointSet makePointSet(String... ids) {
+        PointSet pset = new PointSet(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            pset.ids[i] = ids[i];
+        }
+        return pset;
+    }
+
+    /** @return a PointSet with one point at each of the given vertices, and one far away from the graph. */
+    private static PointSet makePointSet(String prefix, List<Vertex> vertices) {
+        PointSet pset = makePointSet(new String[vertices.size() + 1]);
+        for (int i = 0; i < vertices.size(); i++) {
+            pset.ids[i] = prefix + i;
+            pset.lats[i] = vertices.get(i).getLat();
+            pset.lons[i] = vertices.get(i).getLon();
+        }
+        pset.ids[vertices.size()] = prefix + "far";
+        pset.lats[vertices.size()] = 0.0;
+        pset.lons[vertices.size()] = 0.0;
+        return pset;
+    }
+
+    private static Graph buildGraph() throws IOException {
+        Graph graph = new Graph();
+        OpenStreetMapModule loader = new OpenStreetMapModule();
+        loader.setDefaultWayPropertySetSource(new DefaultWayPropertySetSource());
+        FileBasedOpenStreetMapProviderImpl provider = new FileBasedOpenStreetMapProviderImpl();
+        File file = new File(URLDecoder.decode(OpenStreetMapModule.class.getResource("NYC_small.osm.gz").getFile(),
+                "UTF-8"));
+        provider.setPath(file);
+        loader.setProvider(provider);
+        loader.buildGraph(graph, new GraphBuilderModuleSummary(loader));
+        graph.routerId = "default";
+        graph.streetIndex = new StreetVertexIndexService(graph);
+        return graph;
+    }
+
+    /** @return the travel times from one origin computed with a TimeSurface, as the other analyst requests do. */
+    private static int[] referenceRow(Graph graph, PointSet origins, int origin, PointSet destinations) {
+        RoutingRequest request = new RoutingRequest(TraverseMode.WALK);
+        request.from = new GenericLocation(origins.getLat(origin), origins.getLon(origin));
+        request.batch = true;
+        request.worstTime = request.dateTime + CUTOFF_SECONDS;
+        request.setRoutingContext(graph);
+        ShortestPathTree spt = new AStar().getShortestPathTree(request);
+        int[] times = destinations.getOrCreateSampleSet(graph).eval(new TimeSurface(spt, false));
+        request.cleanup();
+        return times;
+    }
+
+    public void testComputedRows() throws Exception {
+        Graph graph = buildGraph();
+        List<Vertex> vertices = new ArrayList<>();
+        // Only vertices that can be walked from are used as samples.
+        for (Vertex vertex : graph.getVertices()) {
+            if (vertex instanceof OsmVertex && vertex.getOutgoing().stream()
+                    .anyMatch(e -> e instanceof StreetEdge && ((StreetEdge) e).canTraverse(WALK))) {
+                vertices.add(vertex);
+            }
+        }
+        vertices.sort(Comparator.comparing(Vertex::getLabel));
+        PointSet origins = makePointSet("o", vertices.subList(0, 4));
+        PointSet destinations = makePointSet("d", vertices.subList(0, 6));
+
+        RoutingRequest prototype = new RoutingRequest(TraverseMode.WALK);
+        TravelTimeMatrix matrix = new TravelTimeMatrix(graph, prototype, origins, destinations, CUTOFF_SECONDS);
+        Map<Integer, int[]> rows = new HashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            matrix.run(executor, 1, new TravelTimeMatrix.RowWriter() {
+                @Override
+                public void writeHeader(PointSet o, PointSet d) {
+                }
+
+                @Override
+                public void writeRow(int originIndex, String originId, int[] times) {
+                    assertEquals(origins.ids[originIndex], originId);
+                    assertNull(rows.put(originIndex, times));
+                }
+
+                @Override
+                public void finish() {
+                }
+            });
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(origins.capacity, rows.size());
+        for (int o = 0; o < origins.capacity; o++) {
+            int[] times = rows.get(o);
+            assertEquals(destinations.capacity, times.length);
+            // Nothing is reachable from or near the point far from the graph.
+            assertEquals(Integer.MAX_VALUE, times[destinations.capacity - 1]);
+            if (o == origins.capacity - 1) {
+                for (int t : times) {
+                    assertEquals(Integer.MAX_VALUE, t);
+                }
+                continue;
+            }
+            // The origins are also destinations, which are reached right away.
+            assertTrue(times[o] < 60);
+            for (int d = 0; d < destinations.capacity; d++) {
+                assertTrue(times[d] >= 0);
+            }
+            int[] expected = referenceRow(graph, origins, o, destinations);
+            for (int d = 0; d < destinations.capacity; d++) {
+                assertEquals("origin " + o + " destination " + d, expected[d], times[d]);
+            }
+        }
+    }
+
+    public void testCsvRows() throws IOException {
+        PointSet origins = makePointSet("a", "b");
+        PointSet destinations = makePointSet("x", "y", "z");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TravelTimeMatrix.RowWriter writer = new TravelTimeMatrix.CsvRowWriter(out);
+        writer.writeHeader(origins, destinations);
+        writer.writeRow(1, "b", new int[] { 60, Integer.MAX_VALUE, 0 });
+        writer.finish();
+        assertEquals("origin,x,y,z\nb,60,-1,0\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    public void testBinaryRows() throws IOException {
+        PointSet origins = makePointSet("a");
+        PointSet destinations = makePointSet("x", "y", "z");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TravelTimeMatrix.RowWriter writer = new TravelTimeMatrix.BinaryRowWriter(out);
+        writer.writeHeader(origins, destinations);
+        writer.writeRow(0, "a", new int[] { 100, Integer.MAX_VALUE, 3600 });
+        writer.finish();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        byte[] magic = new byte[4];
+        in.readFully(magic);
+        assertEquals("OTPM", new String(magic, StandardCharsets.US_ASCII));
+        assertEquals(TravelTimeMatrix.BinaryRowWriter.VERSION, in.readInt());
+        assertEquals(1, in.readInt());
+        assertEquals(3, in.readInt());
+        assertEquals(0, in.readInt());
+        // 101 fits in a single varint byte
+        assertEquals(101, in.readUnsignedByte());
+        // unreachable is encoded as zero
+        assertEquals(0, in.readUnsignedByte());
+        // 3601 = 0x0E11 takes two bytes, low seven bits first
+        assertEquals(0x11 | 0x80, in.readUnsignedByte());
+        assertEquals(0x1C, in.readUnsignedByte());
+        assertEquals(-1, in.read());
+    }
+
+}
@@ -0,0 +1,80 @@
+package org.opentripplanner.analyst.core;
+
+import org.geotools.geometry.Envelope2D;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Before;
+import org.junit.Test;
+import org.opentripplanner.analyst.SingleStreetGraph;
+import org.opentripplanner.analyst.TimeSurface;
+import org.opentripplanner.analyst.request.RenderRequest;
+import org.opentripplanner.analyst.request.TileRequest;
+import org.opentripplanner.api.parameter.Layer;
+import org.opentripplanner.api.parameter.MIMEImageFormat;
+import org.opentripplanner.api.parameter.Style;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+import static org.junit.Assert.assertEquals;
+
+public class TileTest {
+
+    private IntersectionVertex a, b;
+
+    private TimeSurface surface;
+
+    /** A 2x2 tile whose left column of pixels lies between a and b, with no street under the right column. */
+    private Tile tile;
+
+    private Sample sample;
+
+    @Before
+    public void setUp() {
+        SingleStreetGraph street = new SingleStreetGraph();
+        a = street.a;
+        b = street.b;
+        surface = new TimeSurface(street.walkFromA(), false);
+
+        sample = new Sample(a, 2000, b, 3000);
+        Envelope2D bbox = new Envelope2D(DefaultGeographicCRS.WGS84, 10.0, 9.99, 0.02, 0.02);
+        tile = new DynamicTile(new TileRequest(bbox, 2, 2), (lon, lat) -> lon < 10.01 ? sample : null);
+    }
+
+    @Test
+    public void testSampleColumns() {
+        assertEquals(4, tile.getSampleCount());
+        // Pixels are stored in row-major order, so the left column holds pixels 0 and 2.
+        for (int i : new int[] { 0, 2 }) {
+            assertEquals(a.getIndex(), tile.v0s[i]);
+            assertEquals(b.getIndex(), tile.v1s[i]);
+            assertEquals(2000, tile.d0s[i]);
+            assertEquals(3000, tile.d1s[i]);
+        }
+        for (int i : new int[] { 1, 3 }) {
+            assertEquals(Tile.NO_VERTEX, tile.v0s[i]);
+            assertEquals(Tile.NO_VERTEX, tile.v1s[i]);
+        }
+    }
+
+    @Test
+    public void testImageMatchesSampleEvaluation() {
+        long seconds = sample.eval(surface);
+        assertEquals(seconds, tile.eval(0, surface.getTimesByIndex(), surface.walkSpeed));
+
+        RenderRequest renderRequest = new RenderRequest(new MIMEImageFormat("image/png"), Layer.TRAVELTIME,
+                Style.COLOR30, false, false);
+        BufferedImage image = tile.generateImage(surface, renderRequest);
+        byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        assertEquals((byte) (seconds / 60), pixels[0]);
+        assertEquals((byte) (seconds / 60), pixels[2]);
+        assertEquals(Tile.UNREACHABLE, pixels[1]);
+        assertEquals(Tile.UNREACHABLE, pixels[3]);
+
+        // The difference of a surface with itself is zero wherever it is reachable.
+        pixels = ((DataBufferByte) tile.linearCombination(1, surface, -1, surface, 0, renderRequest)
+                .getRaster().getDataBuffer()).getData();
+        assertEquals(0, pixels[0]);
+        assertEquals(Tile.UNREACHABLE, pixels[1]);
+    }
+}
@@ -0,0 +1,98 @@
+package org.opentripplanner.analyst.request;
+
+import org.geotools.geometry.Envelope2D;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Before;
+import org.junit.Test;
+import org.opentripplanner.analyst.SingleStreetGraph;
+import org.opentripplanner.analyst.TimeSurface;
+import org.opentripplanner.analyst.core.DynamicTile;
+import org.opentripplanner.analyst.core.Sample;
+import org.opentripplanner.analyst.core.Tile;
+import org.opentripplanner.api.parameter.Layer;
+import org.opentripplanner.api.parameter.MIMEImageFormat;
+import org.opentripplanner.api.parameter.Style;
+import org.opentripplanner.routing.spt.ShortestPathTree;
+
+import javax.ws.rs.core.Response;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class RendererTest {
+
+    private static final RenderRequest PNG = new RenderRequest(new MIMEImageFormat("image/png"), Layer.TRAVELTIME,
+            Style.COLOR30, false, false);
+
+    private ShortestPathTree spt;
+
+    private TileRequest tileRequest;
+
+    private CountingTileCache tileCache;
+
+    private Renderer renderer;
+
+    /** Serves a single tile and counts how many times it was asked for it, that is how many images were rendered. */
+    private static class CountingTileCache extends TileCache {
+
+        final Tile tile;
+
+        int gets = 0;
+
+        CountingTileCache(Tile tile) {
+            super(null);
+            this.tile = tile;
+        }
+
+        @Override
+        public Tile get(TileRequest req) {
+            gets++;
+            return tile;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        SingleStreetGraph street = new SingleStreetGraph();
+        spt = street.walkFromA();
+
+        Sample sample = new Sample(street.a, 100, street.b, 100);
+        tileRequest = new TileRequest(new Envelope2D(DefaultGeographicCRS.WGS84, 10.0, 9.99, 0.02, 0.02), 4, 4);
+        tileCache = new CountingTileCache(new DynamicTile(tileRequest, (lon, lat) -> sample));
+        renderer = new Renderer(tileCache);
+    }
+
+    @Test
+    public void testPngCache() throws Exception {
+        TimeSurface surface = new TimeSurface(spt, false);
+        Response first = renderer.getResponse(tileRequest, surface, null, PNG);
+        assertEquals(1, tileCache.gets);
+
+        // Same surface, tile and style: the encoded image is served from the cache.
+        Response second = renderer.getResponse(tileRequest, surface, null, PNG);
+        assertEquals(1, tileCache.gets);
+        assertSame(first.getEntity(), second.getEntity());
+
+        // Another surface with the same times still has its own id, so it is rendered again.
+        TimeSurface otherSurface = new TimeSurface(spt, false);
+        Response third = renderer.getResponse(tileRequest, otherSurface, null, PNG);
+        assertEquals(2, tileCache.gets);
+        assertNotSame(first.getEntity(), third.getEntity());
+
+        // So is another style.
+        renderer.getResponse(tileRequest, surface, null,
+                new RenderRequest(PNG.format, Layer.TRAVELTIME, Style.GRAY, false, false));
+        assertEquals(3, tileCache.gets);
+    }
+
+    @Test
+    public void testOtherFormatsNotCached() throws Exception {
+        TimeSurface surface = new TimeSurface(spt, false);
+        RenderRequest gif = new RenderRequest(new MIMEImageFormat("image/gif"), Layer.TRAVELTIME, Style.COLOR30,
+                false, false);
+        renderer.getResponse(tileRequest, surface, null, gif);
+        renderer.getResponse(tileRequest, surface, null, gif);
+        assertEquals(2, tileCache.gets);
+    }
+}
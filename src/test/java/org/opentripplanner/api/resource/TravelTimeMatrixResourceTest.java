@@ -0,0 +1,140 @@
+package org.opentripplanner.api.resource;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opentripplanner.analyst.PointFeature;
+import org.opentripplanner.analyst.PointSet;
+import org.opentripplanner.analyst.PointSetCache;
+import org.opentripplanner.api.parameter.QualifiedModeSet;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.impl.MemoryGraphSource;
+import org.opentripplanner.routing.services.GraphService;
+import org.opentripplanner.routing.services.StreetVertexIndexService;
+import org.opentripplanner.standalone.CommandLineParameters;
+import org.opentripplanner.standalone.OTPServer;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TravelTimeMatrixResourceTest {
+
+    private OTPServer otpServer;
+
+    /** Serves the PointSets of a map, like DiskBackedPointSetCache serves those of a directory. */
+    private static class MapPointSetCache extends PointSetCache {
+
+        private final Map<String, PointSet> pointSetsById;
+
+        MapPointSetCache(Map<String, PointSet> pointSetsById) {
+            this.pointSetsById = pointSetsById;
+            // Like the loader of DiskBackedPointSetCache, this loader returns null for unknown IDs.
+            this.pointSets = CacheBuilder.newBuilder().build(CacheLoader.from(pointSetsById::get));
+        }
+
+        @Override
+        public List<String> getPointSetIds() {
+            return new ArrayList<>(pointSetsById.keySet());
+        }
+    }
+
+    private static PointSet makePointSet(String... ids) {
+        PointSet pointSet = new PointSet(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            PointFeature feature = new PointFeature(ids[i]);
+            feature.setLat(0.0);
+            feature.setLon(0.0);
+            pointSet.addFeature(feature, i);
+        }
+        return pointSet;
+    }
+
+    @Before
+    public void setUp() {
+        otpServer = new OTPServer(new CommandLineParameters(), new GraphService());
+        Graph graph = new Graph();
+        graph.streetIndex = new StreetVertexIndexService(graph);
+        otpServer.getGraphService().registerGraph("", new MemoryGraphSource("", graph));
+    }
+
+    @After
+    public void tearDown() {
+        if (otpServer.matrixExecutor != null) {
+            otpServer.matrixExecutor.shutdown();
+        }
+    }
+
+    private void startAnalyst() {
+        Map<String, PointSet> pointSets = new HashMap<>();
+        pointSets.put("origins", makePointSet("a", "b"));
+        pointSets.put("destinations", makePointSet("x"));
+        otpServer.pointSetCache = new MapPointSetCache(pointSets);
+        otpServer.matrixExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    private Response getMatrix(String origins, String destinations, String format) {
+        TravelTimeMatrixResource resource = new TravelTimeMatrixResource() {
+            {
+                otpServer = TravelTimeMatrixResourceTest.this.otpServer;
+                // The graph has no transit service, which transit searches would report as an error.
+                modes = new QualifiedModeSet("WALK");
+            }
+        };
+        resource.routerId = "";
+        return resource.getMatrix(origins, destinations, format, 60);
+    }
+
+    private static void assertBadRequest(Response response, String message) {
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+        assertEquals("Bad request: " + message, response.getEntity());
+    }
+
+    @Test
+    public void testRequiresAnalystMode() {
+        assertBadRequest(getMatrix("origins", "destinations", "csv"),
+                "Travel time matrices are only available when the server is in analyst mode.");
+    }
+
+    @Test
+    public void testUnknownPointSets() {
+        startAnalyst();
+        assertBadRequest(getMatrix("unknown", "destinations", "csv"), "Missing or invalid origin PointSet ID.");
+        assertBadRequest(getMatrix(null, "destinations", "csv"), "Missing or invalid origin PointSet ID.");
+        assertBadRequest(getMatrix("origins", "unknown", "csv"), "Missing or invalid destination PointSet ID.");
+        assertBadRequest(getMatrix("origins", null, "csv"), "Missing or invalid destination PointSet ID.");
+    }
+
+    @Test
+    public void testFormat() throws Exception {
+        startAnalyst();
+        assertBadRequest(getMatrix("origins", "destinations", "xml"), "Format must be csv or binary.");
+
+        Response binary = getMatrix("origins", "destinations", "binary");
+        assertEquals(Response.Status.OK.getStatusCode(), binary.getStatus());
+        assertEquals("application/octet-stream", binary.getMediaType().toString());
+
+        Response csv = getMatrix("origins", "destinations", "csv");
+        assertEquals(Response.Status.OK.getStatusCode(), csv.getStatus());
+        assertEquals("text/csv", csv.getMediaType().toString());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingOutput) csv.getEntity()).write(out);
+        String matrix = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        // The graph has no streets, so nothing is reachable. Rows come in the order they are computed.
+        assertTrue(matrix.startsWith("origin,x\n"));
+        assertTrue(matrix.contains("\na,-1\n"));
+        assertTrue(matrix.contains("\nb,-1\n"));
+        assertEquals(3, matrix.split("\n").length);
+    }
+}
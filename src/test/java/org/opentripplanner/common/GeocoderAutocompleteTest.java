@@ -0,0 +1,63 @@
+package org.opentripplanner.common;
+
+import org.junit.Test;
+import org.opentripplanner.common.GeocoderAutocomplete.Entry;
+import org.opentripplanner.common.LuceneIndex.Category;
+import org.opentripplanner.common.LuceneIndex.LuceneResult;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GeocoderAutocompleteTest {
+
+    private static final GeocoderAutocomplete AUTOCOMPLETE = new GeocoderAutocomplete(Arrays.asList(
+        new Entry(Category.STOP, "Main St & 1st Ave", "1234", "TriMet:1", 45.5, -122.6),
+        new Entry(Category.STOP, "Maine Station", null, "TriMet:2", 45.6, -122.7),
+        new Entry(Category.CLUSTER, "Main Street Transit Center", null, "C1", 45.7, -122.8),
+        new Entry(Category.CORNER, "North Main St & Oak St", null, null, 45.8, -122.9),
+        new Entry(Category.CORNER, "Oak St & Pine St", null, null, 45.9, -123.0)
+    ));
+
+    @Test
+    public void testPrefixOfAnyWord() {
+        List<LuceneResult> results = AUTOCOMPLETE.query("MAIN", true, true, true, 10);
+        assertEquals(4, results.size());
+        // Names starting with the prefix come first, shortest first.
+        assertEquals("stop Maine Station ", results.get(0).description);
+        assertEquals("stop Main St & 1st Ave (1234)", results.get(1).description);
+        assertEquals("TriMet:1", results.get(1).id);
+        assertEquals("cluster Main Street Transit Center ", results.get(2).description);
+        assertEquals("corner North Main St & Oak St ", results.get(3).description);
+        assertEquals(45.8, results.get(3).lat, 0);
+        assertEquals(-122.9, results.get(3).lng, 0);
+
+        assertEquals(2, AUTOCOMPLETE.query("oak", true, true, true, 10).size());
+        assertEquals(1, AUTOCOMPLETE.query("main st", true, true, true, 1).size());
+        assertTrue(AUTOCOMPLETE.query("zzz", true, true, true, 10).isEmpty());
+        assertTrue(AUTOCOMPLETE.query(" ", true, true, true, 10).isEmpty());
+    }
+
+    @Test
+    public void testCategoriesAndCodes() {
+        List<LuceneResult> results = AUTOCOMPLETE.query("main", false, false, true, 10);
+        assertEquals(1, results.size());
+        assertEquals("corner North Main St & Oak St ", results.get(0).description);
+
+        results = AUTOCOMPLETE.query("12", true, false, false, 10);
+        assertEquals(1, results.size());
+        assertEquals("TriMet:1", results.get(0).id);
+    }
+
+    @Test
+    public void testPrefixInsideNames() {
+        // Every name has a word starting with "st", none starts with it.
+        assertEquals(5, AUTOCOMPLETE.query("st", true, true, true, 10).size());
+        List<LuceneResult> results = AUTOCOMPLETE.query("st & o", true, true, true, 10);
+        assertEquals(1, results.size());
+        assertEquals("corner North Main St & Oak St ", results.get(0).description);
+        assertEquals(3, AUTOCOMPLETE.query("st & ", true, true, true, 10).size());
+    }
+}
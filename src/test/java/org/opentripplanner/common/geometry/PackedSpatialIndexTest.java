@@ -0,0 +1,81 @@
+package org.opentripplanner.common.geometry;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.strtree.STRtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PackedSpatialIndexTest {
+
+    private static Envelope randomEnvelope(Random rand) {
+        Coordinate a = new Coordinate(rand.nextDouble() * 0.1 - 0.05, rand.nextDouble() * 0.1 + 44.0);
+        Coordinate b = new Coordinate(a.x + rand.nextDouble() * 0.005, a.y + rand.nextDouble() * 0.005);
+        return new Envelope(a, b);
+    }
+
+    /**
+     * Insert many random envelopes into both a packed R-tree and a JTS STRtree and check that random queries return
+     * the same items. Unlike the hash grid, the packed R-tree does not return false positives.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSameResultsAsSTRtree() {
+        Random rand = new Random(42);
+        for (int n : new int[] { 0, 1, 15, 16, 17, 1000 }) {
+            List<Envelope> envelopes = new ArrayList<>();
+            STRtree strTree = new STRtree();
+            for (int i = 0; i < n; i++) {
+                Envelope envelope = randomEnvelope(rand);
+                envelopes.add(envelope);
+                strTree.insert(envelope, envelope);
+            }
+            PackedHilbertRTree<Envelope> packed = new PackedHilbertRTree<>(envelopes, envelopes);
+            assertEquals(n, packed.size());
+
+            for (int i = 0; i < 200; i++) {
+                Envelope searchEnv = randomEnvelope(rand);
+                List<Envelope> found = new ArrayList<>();
+                packed.visit(searchEnv, found::add);
+                Set<Envelope> expected = new HashSet<>();
+                for (Envelope envelope : (List<Envelope>) strTree.query(searchEnv)) {
+                    if (envelope.intersects(searchEnv)) {
+                        expected.add(envelope);
+                    }
+                }
+                assertEquals(expected.size(), found.size());
+                assertEquals(expected, new HashSet<>(found));
+            }
+        }
+    }
+
+    @Test
+    public void testInsertAndRemove() {
+        Envelope a = new Envelope(0, 1, 0, 1);
+        Envelope b = new Envelope(2, 3, 2, 3);
+        PackedSpatialIndex<String> index = new PackedSpatialIndex<>(Arrays.asList(a, b), Arrays.asList("a", "b"));
+        Envelope all = new Envelope(-1, 4, -1, 4);
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), new HashSet<>(index.query(all)));
+
+        Envelope c = new Envelope(0.5, 2.5, 0.5, 2.5);
+        index.insert(c, "c");
+        assertTrue(index.remove(a, "a"));
+        assertFalse(index.remove(a, "a"));
+        assertEquals(new HashSet<>(Arrays.asList("b", "c")), new HashSet<>(index.query(all)));
+        assertEquals(Collections.singletonList("c"), index.query(new Envelope(0.6, 0.7, 0.6, 0.7)));
+
+        assertTrue(index.remove(c, "c"));
+        assertEquals(Collections.singletonList("b"), index.query(all));
+    }
+}
@@ -0,0 +1,144 @@
+package org.opentripplanner.common.pqueue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class IndexedFourAryHeapTest {
+
+    private static class Node implements HeapElement {
+        final double key;
+        int heapIndex = -1;
+
+        Node(double key) {
+            this.key = key;
+        }
+
+        @Override
+        public int getHeapIndex() {
+            return heapIndex;
+        }
+
+        @Override
+        public void setHeapIndex(int heapIndex) {
+            this.heapIndex = heapIndex;
+        }
+    }
+
+    @Test
+    public void testSameOrderAsBinHeap() {
+        Random random = new Random(42);
+        IndexedFourAryHeap<Node> heap = new IndexedFourAryHeap<>(10);
+        BinHeap<Node> binHeap = new BinHeap<>(10);
+        for (int i = 0; i < 10000; i++) {
+            Node node = new Node(random.nextInt(1000));
+            heap.insert(node, node.key);
+            binHeap.insert(node, node.key);
+            // interleave extractions with insertions as a search does
+            if (i % 3 == 0) {
+                assertEquals(binHeap.peek_min_key(), heap.peek_min_key(), 0);
+                assertEquals(binHeap.extract_min().key, heap.extract_min().key, 0);
+            }
+        }
+        assertEquals(binHeap.size(), heap.size());
+        while (!heap.empty()) {
+            assertEquals(binHeap.extract_min().key, heap.extract_min().key, 0);
+        }
+        assertNull(heap.extract_min());
+        assertNull(heap.peek_min());
+    }
+
+    @Test
+    public void testRemoveAndReplace() {
+        Random random = new Random(42);
+        IndexedFourAryHeap<Node> heap = new IndexedFourAryHeap<>();
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Node node = new Node(random.nextDouble());
+            nodes.add(node);
+            heap.insert(node, node.key);
+        }
+        // remove every other node, and replace the others by a node with a random new key
+        List<Node> remaining = new ArrayList<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            if (i % 2 == 0) {
+                assertTrue(heap.remove(node));
+                assertFalse(heap.contains(node));
+                assertFalse(heap.remove(node));
+            } else {
+                Node replacement = new Node(random.nextDouble());
+                heap.replace(node, replacement, replacement.key);
+                assertFalse(heap.contains(node));
+                assertTrue(heap.contains(replacement));
+                remaining.add(replacement);
+            }
+        }
+        assertEquals(remaining.size(), heap.size());
+        remaining.sort((a, b) -> Double.compare(a.key, b.key));
+        for (Node node : remaining) {
+            assertSame(node, heap.extract_min());
+        }
+        assertTrue(heap.empty());
+    }
+
+    @Test
+    public void testDecreaseKey() {
+        IndexedFourAryHeap<Node> heap = new IndexedFourAryHeap<>();
+        Node a = new Node(5);
+        Node b = new Node(3);
+        heap.insert(a, 5);
+        heap.insert(b, 3);
+        heap.insert_or_dec_key(a, 1);
+        // a higher key does not change anything
+        heap.insert_or_dec_key(b, 10);
+        assertEquals(2, heap.size());
+        assertEquals(1, heap.peek_min_key(), 0);
+        assertSame(a, heap.extract_min());
+        assertSame(b, heap.extract_min());
+    }
+
+    /**
+     * Each vertex receives a series of ever better states, as in a car search where many paths lead to the same
+     * intersection. The binary heap keeps every state until it is visited, while the indexed heap only keeps the best
+     * one per vertex.
+     */
+    @Test
+    public void testQueueSizeWithDominatedStates() {
+        Random random = new Random(42);
+        int nVertices = 1000;
+        Node[] best = new Node[nVertices];
+        IndexedFourAryHeap<Node> heap = new IndexedFourAryHeap<>();
+        BinHeap<Node> binHeap = new BinHeap<>();
+        for (int i = 0; i < 10000; i++) {
+            int vertex = random.nextInt(nVertices);
+            Node node = new Node(random.nextDouble());
+            if (best[vertex] != null && best[vertex].key <= node.key) continue;
+            binHeap.insert(node, node.key);
+            if (best[vertex] == null) {
+                heap.insert(node, node.key);
+            } else {
+                heap.replace(best[vertex], node, node.key);
+            }
+            best[vertex] = node;
+        }
+        assertTrue(heap.size() <= nVertices);
+        assertTrue(binHeap.size() > heap.size());
+        Node previous = null;
+        while (!heap.empty()) {
+            Node node = heap.extract_min();
+            if (previous != null) {
+                assertTrue(previous.key <= node.key);
+            }
+            previous = node;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.opentripplanner.graph_builder;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opentripplanner.graph_builder.model.StreetGraphInputs;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.standalone.CommandLineParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/** Tests building a street graph with --buildStreet and reusing it with --loadStreet. */
+public class GraphBuilderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File dir;
+
+    private File osmFile;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = temporaryFolder.newFolder();
+        osmFile = new File(dir, "skoyen.osm.pbf");
+        Files.copy(Paths.get("src/test/resources/org/opentripplanner/graph_builder/module/osm/skoyen.osm.pbf"),
+                osmFile.toPath());
+    }
+
+    private static CommandLineParameters params(boolean buildStreet, boolean loadStreet) {
+        CommandLineParameters params = new CommandLineParameters();
+        params.buildStreet = buildStreet;
+        params.loadStreet = loadStreet;
+        return params;
+    }
+
+    private Graph buildStreetGraph() {
+        GraphBuilder streetBuilder = GraphBuilder.forDirectory(params(true, false), dir);
+        assertNotNull(streetBuilder);
+        streetBuilder.run();
+        assertTrue(new File(dir, GraphBuilder.STREET_GRAPH_FILENAME).exists());
+        assertFalse(new File(dir, GraphBuilder.GRAPH_FILENAME).exists());
+        return streetBuilder.getGraph();
+    }
+
+    @Test
+    public void testBuildAndLoadStreetGraph() {
+        Graph streetGraph = buildStreetGraph();
+        assertTrue(streetGraph.hasStreets);
+
+        GraphBuilder builder = GraphBuilder.forDirectory(params(false, true), dir);
+        assertNotNull(builder);
+        Graph graph = builder.getGraph();
+        assertTrue(graph.hasStreets);
+        assertEquals(streetGraph.getVertices().size(), graph.getVertices().size());
+        assertEquals(streetGraph.getService(StreetGraphInputs.class), graph.getService(StreetGraphInputs.class));
+
+        builder.run();
+        assertTrue(new File(dir, GraphBuilder.GRAPH_FILENAME).exists());
+    }
+
+    @Test
+    public void testRejectsBothOptions() {
+        assertNull(GraphBuilder.forDirectory(params(true, true), dir));
+    }
+
+    @Test
+    public void testRejectsMissingStreetGraph() {
+        assertNull(GraphBuilder.forDirectory(params(false, true), dir));
+    }
+
+    @Test
+    public void testRejectsGraphNotBuiltWithBuildStreet() throws IOException {
+        GraphBuilder builder = GraphBuilder.forDirectory(params(false, false), dir);
+        builder.run();
+        Files.move(new File(dir, GraphBuilder.GRAPH_FILENAME).toPath(),
+                new File(dir, GraphBuilder.STREET_GRAPH_FILENAME).toPath());
+
+        assertNull(GraphBuilder.forDirectory(params(false, true), dir));
+    }
+
+    @Test
+    public void testRejectsChangedStreetInputs() {
+        buildStreetGraph();
+        assertTrue(osmFile.setLastModified(osmFile.lastModified() - 60000));
+
+        assertNull(GraphBuilder.forDirectory(params(false, true), dir));
+    }
+}
@@ -8,6 +8,8 @@ import org.locationtech.jts.geom.LineString;
 import org.opentripplanner.common.geometry.GeometryUtils;
 import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
 import org.opentripplanner.common.model.GenericLocation;
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.model.Stop;
 import org.opentripplanner.routing.bike_rental.BikeRentalStation;
 import org.opentripplanner.routing.core.RoutingContext;
 import org.opentripplanner.routing.core.RoutingRequest;
@@ -18,6 +20,7 @@ import org.opentripplanner.routing.edgetype.RentABikeOnEdge;
 import org.opentripplanner.routing.edgetype.SemiPermanentPartialStreetEdge;
 import org.opentripplanner.routing.edgetype.StreetBikeRentalLink;
 import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.StreetTransitLink;
 import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
 import org.opentripplanner.routing.edgetype.TemporaryEdge;
 import org.opentripplanner.routing.edgetype.TemporaryFreeEdge;
@@ -28,8 +31,10 @@ import org.opentripplanner.routing.graph.Vertex;
 import org.opentripplanner.routing.vertextype.BikeRentalStationVertex;
 import org.opentripplanner.routing.vertextype.IntersectionVertex;
 import org.opentripplanner.routing.vertextype.SemiPermanentSplitterVertex;
+import org.opentripplanner.routing.vertextype.SplitterVertex;
 import org.opentripplanner.routing.vertextype.StreetVertex;
 import org.opentripplanner.routing.vertextype.TemporarySplitterVertex;
+import org.opentripplanner.routing.vertextype.TransitStop;
 import org.opentripplanner.util.NonLocalizedString;
 
 import java.util.ArrayList;
@@ -744,6 +749,59 @@ public class StreetSplitterTest {
         return numMatches;
     }
 
+    /**
+     * Tests that stops next to the same street are all linked when they are linked together, each one to its own
+     * piece of the street that was split by the stops before it.
+     */
+    @Test
+    public void canLinkStopsAlongTheSameStreet () {
+        Graph g = new Graph();
+        StreetVertex a = new IntersectionVertex(g, "A", 0.0, 0.0);
+        StreetVertex b = new IntersectionVertex(g, "B", 0.01, 0.0);
+        createStreetEdge(a, b, "a -> b");
+        createStreetEdge(b, a, "b -> a");
+        List<TransitStop> stops = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            stops.add(createTransitStop(g, "stop " + i, 0.002 * i, 0.0001));
+        }
+        // - and a stop that is too far from the street to be linked
+        TransitStop farAwayStop = createTransitStop(g, "far away", 0.005, 0.5);
+
+        StreetSplitter splitter = new StreetSplitter(g);
+        splitter.linkAllStationsToGraph();
+
+        for (TransitStop stop : stops) {
+            List<StreetVertex> linkedVertices = new ArrayList<>();
+            for (Edge edge : stop.getOutgoing()) {
+                if (edge instanceof StreetTransitLink) {
+                    linkedVertices.add((StreetVertex) edge.getToVertex());
+                }
+            }
+            // one splitter vertex for each direction of the street
+            assertEquals(2, linkedVertices.size());
+            for (StreetVertex splitterVertex : linkedVertices) {
+                assertTrue(splitterVertex instanceof SplitterVertex);
+                assertEquals(stop.getLon(), splitterVertex.getLon(), 1e-9);
+                assertEquals(0.0, splitterVertex.getLat(), 1e-9);
+            }
+        }
+        assertTrue(farAwayStop.getOutgoing().isEmpty());
+        // every stop replaces the two edges it is linked to with four new ones
+        int nStreetEdges = 0;
+        for (Edge edge : g.getEdges()) {
+            if (edge instanceof StreetEdge) nStreetEdges++;
+        }
+        assertEquals(2 + 2 * stops.size(), nStreetEdges);
+    }
+
+    private TransitStop createTransitStop(Graph g, String id, double lon, double lat) {
+        Stop stop = new Stop();
+        stop.setId(new FeedScopedId("agency", id));
+        stop.setLon(lon);
+        stop.setLat(lat);
+        return new TransitStop(g, stop);
+    }
+
     private void createStreetEdge(StreetVertex v0, StreetVertex v1, String name) {
         LineString geom = gf
             .createLineString(new Coordinate[] { v0.getCoordinate(), v1.getCoordinate() });
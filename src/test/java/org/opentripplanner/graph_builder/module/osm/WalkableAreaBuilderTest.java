@@ -0,0 +1,100 @@
+package org.opentripplanner.graph_builder.module.osm;
+
+import org.junit.Test;
+import org.opentripplanner.graph_builder.module.GraphBuilderModuleSummary;
+import org.opentripplanner.openstreetmap.impl.FileBasedOpenStreetMapProviderImpl;
+import org.opentripplanner.routing.edgetype.AreaEdge;
+import org.opentripplanner.routing.edgetype.AreaEdgeList;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+
+import java.io.File;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Builds the walkable areas of the USF extract with and without visibility graphs. The area groups are processed in
+ * parallel when building with visibility, which must not change the graph built.
+ */
+public class WalkableAreaBuilderTest {
+
+    private static Graph buildGraph(boolean skipVisibility) throws Exception {
+        Graph graph = new Graph();
+        OpenStreetMapModule loader = new OpenStreetMapModule();
+        loader.skipVisibility = skipVisibility;
+        loader.setDefaultWayPropertySetSource(new DefaultWayPropertySetSource());
+        FileBasedOpenStreetMapProviderImpl provider = new FileBasedOpenStreetMapProviderImpl();
+        File file = new File(URLDecoder.decode(OpenStreetMapModule.class.getResource("usf_area.osm.gz").getFile(),
+                "UTF-8"));
+        provider.setPath(file);
+        loader.setProvider(provider);
+        loader.buildGraph(graph, new GraphBuilderModuleSummary(loader));
+        return graph;
+    }
+
+    /**
+     * @return for each vertex in label order, its outgoing area edges in the order they were added, with their
+     * endpoints and lengths.
+     */
+    private static List<String> describeAreaEdges(Graph graph) {
+        List<Vertex> vertices = new ArrayList<>(graph.getVertices());
+        vertices.sort(Comparator.comparing(Vertex::getLabel));
+        List<String> areaEdges = new ArrayList<>();
+        for (Vertex vertex : vertices) {
+            for (Edge edge : vertex.getOutgoing()) {
+                if (edge instanceof AreaEdge) {
+                    areaEdges.add(edge.getFromVertex().getLabel() + " -> " + edge.getToVertex().getLabel() + " "
+                            + ((AreaEdge) edge).getDistance());
+                }
+            }
+        }
+        return areaEdges;
+    }
+
+    @Test
+    public void testAreaEdgesAndVertices() throws Exception {
+        Graph graph = buildGraph(false);
+        int nAreaEdges = 0;
+        for (Edge edge : graph.getEdges()) {
+            if (!(edge instanceof AreaEdge)) continue;
+            nAreaEdges++;
+            AreaEdgeList area = ((AreaEdge) edge).getArea();
+            assertNotNull(area);
+            assertTrue(area.getEdges().contains(edge));
+            assertTrue(edge.getFromVertex() instanceof IntersectionVertex);
+            assertTrue(edge.getToVertex() instanceof IntersectionVertex);
+            assertSame(edge.getFromVertex(), graph.getVertex(edge.getFromVertex().getLabel()));
+            assertSame(edge.getToVertex(), graph.getVertex(edge.getToVertex().getLabel()));
+        }
+        assertTrue(nAreaEdges > 0);
+
+        // The visibility graph adds edges across the areas to those along their rings.
+        int nRingEdges = 0;
+        for (Edge edge : buildGraph(true).getEdges()) {
+            if (edge instanceof AreaEdge) nRingEdges++;
+        }
+        assertTrue(nRingEdges > 0);
+        assertTrue(nAreaEdges > nRingEdges);
+    }
+
+    @Test
+    public void testRepeatedBuildsAreIdentical() throws Exception {
+        Graph first = buildGraph(false);
+        List<String> firstAreaEdges = describeAreaEdges(first);
+        for (int i = 0; i < 3; i++) {
+            Graph graph = buildGraph(false);
+            assertEquals(first.getVertices().size(), graph.getVertices().size());
+            assertEquals(first.getEdges().size(), graph.getEdges().size());
+            assertEquals(firstAreaEdges, describeAreaEdges(graph));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.opentripplanner.inspector.vector;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.opentripplanner.common.geometry.GeometryUtils;
+import org.opentripplanner.routing.graph.Graph;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class VectorTileManagerTest {
+
+    /** A layer with one point in the middle of each tile, recording how often it is encoded. */
+    private static class CountingLayer implements VectorTileLayer {
+        final String name;
+        long version = 0;
+        int nEncoded = 0;
+
+        CountingLayer(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int getMinZoom() {
+            return 10;
+        }
+
+        @Override
+        public long getVersion(Graph graph) {
+            return version;
+        }
+
+        @Override
+        public void addFeatures(Graph graph, Envelope envelope, VectorTileEncoder encoder) {
+            nEncoded++;
+            encoder.addPoint(1, envelope.centre(), Collections.singletonMap("name", name));
+            encoder.addLineString(2, GeometryUtils.makeLineString(envelope.getMinX() - 1, envelope.getMinY(),
+                    envelope.getMaxX() + 1, envelope.getMaxY()), Collections.emptyMap());
+        }
+    }
+
+    private CountingLayer rental;
+
+    private CountingLayer stops;
+
+    private VectorTileManager manager;
+
+    @Before
+    public void setUp() {
+        manager = new VectorTileManager(new Graph());
+        rental = new CountingLayer("testRental");
+        stops = new CountingLayer("testStops");
+        manager.registerLayer(rental);
+        manager.registerLayer(stops);
+    }
+
+    @Test
+    public void testTileIsConcatenationOfLayers() throws Exception {
+        byte[] both = manager.getTile(Arrays.asList("testRental", "testStops"), 15, 5241, 12664);
+        byte[] rentalOnly = manager.getTile(Collections.singletonList("testRental"), 15, 5241, 12664);
+        byte[] stopsOnly = manager.getTile(Collections.singletonList("testStops"), 15, 5241, 12664);
+        assertEquals(rentalOnly.length + stopsOnly.length, both.length);
+        assertArrayEquals(rentalOnly, Arrays.copyOf(both, rentalOnly.length));
+
+        // The tile holds one layer message with the layer name and two features.
+        CodedInputStream tile = CodedInputStream.newInstance(rentalOnly);
+        assertEquals(WireFormat.makeTag(3, WireFormat.WIRETYPE_LENGTH_DELIMITED), tile.readTag());
+        CodedInputStream layer = CodedInputStream.newInstance(tile.readByteArray());
+        assertTrue(tile.isAtEnd());
+        int nFeatures = 0;
+        String name = null;
+        for (int tag = layer.readTag(); tag != 0; tag = layer.readTag()) {
+            if (WireFormat.getTagFieldNumber(tag) == 1) {
+                name = layer.readString();
+            } else {
+                if (WireFormat.getTagFieldNumber(tag) == 2) nFeatures++;
+                layer.skipField(tag);
+            }
+        }
+        assertEquals("testRental", name);
+        assertEquals(2, nFeatures);
+    }
+
+    @Test
+    public void testLayersAreCachedAndInvalidatedSeparately() {
+        manager.getTile(Arrays.asList("testRental", "testStops"), 15, 5241, 12664);
+        manager.getTile(Arrays.asList("testRental", "testStops"), 15, 5241, 12664);
+        assertEquals(1, rental.nEncoded);
+        assertEquals(1, stops.nEncoded);
+
+        rental.version++;
+        manager.getTile(Arrays.asList("testRental", "testStops"), 15, 5241, 12664);
+        assertEquals(2, rental.nEncoded);
+        assertEquals(1, stops.nEncoded);
+
+        manager.invalidate("testStops");
+        manager.getTile(Arrays.asList("testRental", "testStops"), 15, 5241, 12664);
+        assertEquals(2, rental.nEncoded);
+        assertEquals(2, stops.nEncoded);
+    }
+
+    @Test
+    public void testLayersAreSkippedBelowMinZoom() {
+        assertEquals(0, manager.getTile(Arrays.asList("testRental", "testStops"), 9, 163, 395).length);
+        assertEquals(0, rental.nEncoded);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownLayer() {
+        manager.getTile(Collections.singletonList("nothing"), 15, 5241, 12664);
+    }
+
+}
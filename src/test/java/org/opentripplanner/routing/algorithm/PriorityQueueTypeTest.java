@@ -0,0 +1,90 @@
+package org.opentripplanner.routing.algorithm;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opentripplanner.graph_builder.module.GraphBuilderModuleSummary;
+import org.opentripplanner.graph_builder.module.osm.DefaultWayPropertySetSource;
+import org.opentripplanner.graph_builder.module.osm.OpenStreetMapModule;
+import org.opentripplanner.openstreetmap.impl.FileBasedOpenStreetMapProviderImpl;
+import org.opentripplanner.routing.core.PriorityQueueType;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.spt.GraphPath;
+
+import java.io.File;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that removing dominated states from the queue (INDEXED_FOUR_ARY_HEAP) does not change the paths found by
+ * street searches, compared to leaving them in the queue to be skipped when polled (BINARY_HEAP).
+ */
+public class PriorityQueueTypeTest {
+
+    private static final int N_SEARCHES = 30;
+
+    private static Graph graph;
+
+    private static List<Vertex> vertices;
+
+    @BeforeClass
+    public static void loadGraph() throws Exception {
+        graph = new Graph();
+        OpenStreetMapModule loader = new OpenStreetMapModule();
+        loader.setDefaultWayPropertySetSource(new DefaultWayPropertySetSource());
+        FileBasedOpenStreetMapProviderImpl provider = new FileBasedOpenStreetMapProviderImpl();
+        File file = new File(URLDecoder.decode(OpenStreetMapModule.class.getResource("NYC_small.osm.gz").getFile(),
+                "UTF-8"));
+        provider.setPath(file);
+        loader.setProvider(provider);
+        loader.buildGraph(graph, new GraphBuilderModuleSummary(loader));
+        vertices = new ArrayList<>(graph.getVertices());
+        vertices.sort(Comparator.comparing(Vertex::getLabel));
+    }
+
+    @Test
+    public void testCarSearches() {
+        compareQueues(TraverseMode.CAR, 1);
+    }
+
+    @Test
+    public void testBikeSearches() {
+        compareQueues(TraverseMode.BICYCLE, 2);
+    }
+
+    private void compareQueues(TraverseMode mode, long seed) {
+        Random random = new Random(seed);
+        for (int i = 0; i < N_SEARCHES; i++) {
+            Vertex from = vertices.get(random.nextInt(vertices.size()));
+            Vertex to = vertices.get(random.nextInt(vertices.size()));
+            GraphPath binaryHeapPath = search(mode, PriorityQueueType.BINARY_HEAP, from, to);
+            GraphPath indexedHeapPath = search(mode, PriorityQueueType.INDEXED_FOUR_ARY_HEAP, from, to);
+            String message = mode + " search from " + from.getLabel() + " to " + to.getLabel();
+            if (binaryHeapPath == null) {
+                assertNull(message, indexedHeapPath);
+                continue;
+            }
+            assertNotNull(message, indexedHeapPath);
+            assertEquals(message, binaryHeapPath.getWeight(), indexedHeapPath.getWeight(), 1e-6);
+            assertEquals(message, binaryHeapPath.getDuration(), indexedHeapPath.getDuration());
+        }
+    }
+
+    private static GraphPath search(TraverseMode mode, PriorityQueueType queueType, Vertex from, Vertex to) {
+        RoutingRequest options = new RoutingRequest(mode);
+        options.priorityQueue = queueType;
+        options.setRoutingContext(graph, from, to);
+        GraphPath path = new AStar().getShortestPathTree(options).getPath(to, false);
+        options.cleanup();
+        return path;
+    }
+}
@@ -196,9 +196,9 @@ public class TestBanning extends TestCase {
                         usedTripDefs);
                 T2<FeedScopedId, BannedStopSet> tripDefToBan = usedTripDefsList.get(rand
                         .nextInt(usedTripDefs.size()));
-                options.bannedTrips.put(tripDefToBan.first, tripDefToBan.second);
+                options.banTrip(tripDefToBan.first, tripDefToBan.second);
             }
-            options.bannedTrips.clear();
+            options.clearBannedTrips();
         }
     }
 }
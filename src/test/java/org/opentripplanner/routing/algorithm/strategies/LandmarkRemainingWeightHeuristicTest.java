@@ -0,0 +1,173 @@
+package org.opentripplanner.routing.algorithm.strategies;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opentripplanner.graph_builder.module.GraphBuilderModuleSummary;
+import org.opentripplanner.graph_builder.module.LandmarkModule;
+import org.opentripplanner.graph_builder.module.osm.DefaultWayPropertySetSource;
+import org.opentripplanner.graph_builder.module.osm.OpenStreetMapModule;
+import org.opentripplanner.openstreetmap.impl.FileBasedOpenStreetMapProviderImpl;
+import org.opentripplanner.routing.algorithm.AStar;
+import org.opentripplanner.routing.algorithm.TraverseVisitor;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.core.TraverseModeSet;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.landmarks.LandmarkProfile;
+import org.opentripplanner.routing.landmarks.LandmarkService;
+import org.opentripplanner.routing.landmarks.LandmarkSet;
+import org.opentripplanner.routing.spt.DominanceFunction;
+import org.opentripplanner.routing.spt.GraphPath;
+import org.opentripplanner.routing.spt.ShortestPathTree;
+import org.opentripplanner.routing.vertextype.StreetVertex;
+
+import java.io.File;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the landmark heuristic finds paths of the same weight as the Euclidean heuristic (it must be admissible)
+ * while visiting fewer vertices. The portland test graph has no streets, so this uses the NYC street extract also used
+ * by TriangleInequalityTest.
+ */
+public class LandmarkRemainingWeightHeuristicTest {
+
+    private static final int N_PAIRS = 40;
+
+    private static Graph graph;
+
+    private static List<Vertex> streetVertices = new ArrayList<>();
+
+    @BeforeClass
+    public static void onlyOnce() throws Exception {
+        graph = new Graph();
+        OpenStreetMapModule loader = new OpenStreetMapModule();
+        loader.setDefaultWayPropertySetSource(new DefaultWayPropertySetSource());
+        FileBasedOpenStreetMapProviderImpl provider = new FileBasedOpenStreetMapProviderImpl();
+        File file = new File(URLDecoder.decode(OpenStreetMapModule.class.getResource("NYC_small.osm.gz").getFile(),
+                "UTF-8"));
+        provider.setPath(file);
+        loader.setProvider(provider);
+        loader.buildGraph(graph, new GraphBuilderModuleSummary(loader));
+        graph.rebuildVertexAndEdgeIndices();
+
+        LandmarkModule landmarkModule = new LandmarkModule(8, Arrays.asList(LandmarkProfile.values()));
+        landmarkModule.buildGraph(graph, new GraphBuilderModuleSummary(landmarkModule));
+
+        for (Vertex v : graph.getVertices()) {
+            if (v instanceof StreetVertex) streetVertices.add(v);
+        }
+        // Make the random pairs independent of hash ordering.
+        streetVertices.sort(Comparator.comparing(Vertex::getLabel));
+    }
+
+    @Test
+    public void testLandmarksComputed() {
+        LandmarkService service = graph.getService(LandmarkService.class);
+        assertNotNull(service);
+        for (LandmarkProfile profile : LandmarkProfile.values()) {
+            LandmarkSet landmarks = service.get(profile);
+            assertNotNull(landmarks);
+            assertEquals(8, landmarks.getLandmarkCount());
+            int position = landmarks.getPosition(landmarks.getLandmark(0));
+            assertEquals(0f, landmarks.fromLandmark(position, 0), 0f);
+            assertEquals(0f, landmarks.toLandmark(position, 0), 0f);
+        }
+    }
+
+    @Test
+    public void testRequestSelection() {
+        LandmarkService service = graph.getService(LandmarkService.class);
+        RoutingRequest car = new RoutingRequest(new TraverseModeSet(TraverseMode.CAR));
+        assertEquals(LandmarkProfile.CAR, service.forRequest(car).profile);
+        car.carLandmarkHeuristic = false;
+        assertNull(service.forRequest(car));
+        RoutingRequest bike = new RoutingRequest(new TraverseModeSet(TraverseMode.BICYCLE, TraverseMode.WALK));
+        bike.allowBikeRental = true;
+        assertEquals(LandmarkProfile.BICYCLE, service.forRequest(bike).profile);
+        assertNull(service.forRequest(new RoutingRequest(new TraverseModeSet(TraverseMode.WALK))));
+        assertNull(service.forRequest(new RoutingRequest(new TraverseModeSet(TraverseMode.CAR, TraverseMode.WALK))));
+    }
+
+    @Test
+    public void testCar() {
+        compareHeuristics(new TraverseModeSet(TraverseMode.CAR), false);
+        compareHeuristics(new TraverseModeSet(TraverseMode.CAR), true);
+    }
+
+    @Test
+    public void testBicycle() {
+        compareHeuristics(new TraverseModeSet(TraverseMode.BICYCLE, TraverseMode.WALK), false);
+        compareHeuristics(new TraverseModeSet(TraverseMode.BICYCLE, TraverseMode.WALK), true);
+    }
+
+    private void compareHeuristics(TraverseModeSet modes, boolean arriveBy) {
+        LandmarkService service = graph.getService(LandmarkService.class);
+        Random random = new Random(42);
+        long euclideanVisited = 0;
+        long landmarkVisited = 0;
+        int nPaths = 0;
+        for (int i = 0; i < N_PAIRS; i++) {
+            Vertex from = streetVertices.get(random.nextInt(streetVertices.size()));
+            Vertex to = streetVertices.get(random.nextInt(streetVertices.size()));
+            RoutingRequest options = new RoutingRequest(modes);
+            options.setArriveBy(arriveBy);
+            LandmarkSet landmarks = service.forRequest(options);
+            assertNotNull(landmarks);
+
+            VisitCounter euclidean = new VisitCounter();
+            GraphPath euclideanPath = search(options, from, to, new EuclideanRemainingWeightHeuristic(), euclidean);
+            VisitCounter landmark = new VisitCounter();
+            GraphPath landmarkPath = search(options, from, to, new LandmarkRemainingWeightHeuristic(landmarks),
+                    landmark);
+            if (euclideanPath == null) {
+                assertNull(landmarkPath);
+                continue;
+            }
+            assertNotNull(landmarkPath);
+            assertEquals(euclideanPath.getWeight(), landmarkPath.getWeight(), 1e-6);
+            euclideanVisited += euclidean.nVisited;
+            landmarkVisited += landmark.nVisited;
+            nPaths++;
+        }
+        System.out.printf("%s%s: %d paths, %d vertices visited with Euclidean heuristic, %d with landmarks%n",
+                modes, arriveBy ? " (arriveBy)" : "", nPaths, euclideanVisited, landmarkVisited);
+        assertTrue(nPaths > 0);
+        assertTrue(landmarkVisited <= euclideanVisited);
+    }
+
+    private GraphPath search(RoutingRequest prototype, Vertex from, Vertex to, RemainingWeightHeuristic heuristic,
+            VisitCounter counter) {
+        RoutingRequest options = prototype.clone();
+        options.longDistance = true;
+        options.dominanceFunction = new DominanceFunction.MinimumWeight();
+        options.setRoutingContext(graph, from, to);
+        options.rctx.remainingWeightHeuristic = heuristic;
+        AStar aStar = new AStar();
+        aStar.setTraverseVisitor(counter);
+        ShortestPathTree spt = aStar.getShortestPathTree(options);
+        GraphPath path = spt.getPath(options.arriveBy ? from : to, false);
+        options.cleanup();
+        return path;
+    }
+
+    private static class VisitCounter implements TraverseVisitor {
+        int nVisited = 0;
+        @Override public void visitEdge(Edge edge, State state) { }
+        @Override public void visitVertex(State state) { nVisited++; }
+        @Override public void visitEnqueue(State state) { }
+    }
+
+}
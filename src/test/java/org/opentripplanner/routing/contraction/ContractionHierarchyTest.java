@@ -0,0 +1,259 @@
+package org.opentripplanner.routing.contraction;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opentripplanner.graph_builder.module.ContractionHierarchyModule;
+import org.opentripplanner.graph_builder.module.GraphBuilderModuleSummary;
+import org.opentripplanner.graph_builder.module.osm.DefaultWayPropertySetSource;
+import org.opentripplanner.graph_builder.module.osm.OpenStreetMapModule;
+import org.opentripplanner.openstreetmap.impl.FileBasedOpenStreetMapProviderImpl;
+import org.opentripplanner.routing.algorithm.AStar;
+import org.opentripplanner.routing.core.ConstantIntersectionTraversalCostModel;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.impl.GraphPathFinder;
+import org.opentripplanner.routing.spt.DominanceFunction;
+import org.opentripplanner.routing.spt.GraphPath;
+import org.opentripplanner.routing.spt.ShortestPathTree;
+import org.opentripplanner.standalone.Router;
+
+import java.io.File;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Compares contraction hierarchy queries with plain AStar searches on the NYC street extract. Intersection costs are
+ * set to zero so that both minimize the same driving time, which is also the only case where GraphPathFinder uses the
+ * hierarchy.
+ */
+public class ContractionHierarchyTest {
+
+    private static final int N_PAIRS = 50;
+
+    private static Graph graph;
+
+    private static ContractionHierarchy hierarchy;
+
+    private static List<Vertex> carVertices = new ArrayList<>();
+
+    @BeforeClass
+    public static void onlyOnce() throws Exception {
+        graph = new Graph();
+        OpenStreetMapModule loader = new OpenStreetMapModule();
+        loader.setDefaultWayPropertySetSource(new DefaultWayPropertySetSource());
+        FileBasedOpenStreetMapProviderImpl provider = new FileBasedOpenStreetMapProviderImpl();
+        File file = new File(URLDecoder.decode(OpenStreetMapModule.class.getResource("NYC_small.osm.gz").getFile(),
+                "UTF-8"));
+        provider.setPath(file);
+        loader.setProvider(provider);
+        loader.buildGraph(graph, new GraphBuilderModuleSummary(loader));
+        graph.rebuildVertexAndEdgeIndices();
+
+        ContractionHierarchyModule module = new ContractionHierarchyModule();
+        module.buildGraph(graph, new GraphBuilderModuleSummary(module));
+        hierarchy = graph.getService(ContractionHierarchy.class);
+
+        Set<Vertex> vertices = new HashSet<>();
+        for (StreetEdge edge : graph.getStreetEdges()) {
+            if (edge.canTraverseIncludingBarrier(TraverseMode.CAR)) {
+                vertices.add(edge.getFromVertex());
+            }
+        }
+        carVertices.addAll(vertices);
+        carVertices.sort(Comparator.comparing(Vertex::getLabel));
+    }
+
+    private static double drivingTime(List<Edge> edges) {
+        double time = 0;
+        for (Edge edge : edges) {
+            StreetEdge streetEdge = (StreetEdge) edge;
+            time += streetEdge.getDistance() / streetEdge.getCarSpeed();
+        }
+        return time;
+    }
+
+    private static RoutingRequest carRequest() {
+        RoutingRequest options = new RoutingRequest(TraverseMode.CAR);
+        options.carContractionHierarchy = true;
+        options.setWalkReluctance(1.0);
+        options.traversalCostModel = new ConstantIntersectionTraversalCostModel(0);
+        options.dominanceFunction = new DominanceFunction.MinimumWeight();
+        options.longDistance = true;
+        return options;
+    }
+
+    @Test
+    public void testHierarchyBuilt() {
+        assertNotNull(hierarchy);
+        assertTrue(hierarchy.getNodeCount() > 0);
+        assertTrue(hierarchy.getArcCount() > 0);
+    }
+
+    @Test
+    public void testMatchesAStar() {
+        Random random = new Random(42);
+        int nCompared = 0;
+        int nTraversable = 0;
+        long aStarMillis = 0;
+        long hierarchyMillis = 0;
+        for (int i = 0; i < N_PAIRS; i++) {
+            Vertex from = carVertices.get(random.nextInt(carVertices.size()));
+            Vertex to = carVertices.get(random.nextInt(carVertices.size()));
+            if (from == to) continue;
+
+            RoutingRequest options = carRequest();
+            options.setRoutingContext(graph, from, to);
+            long t0 = System.nanoTime();
+            ShortestPathTree spt = new AStar().getShortestPathTree(options);
+            GraphPath aStarPath = spt.getPath(to, false);
+            long t1 = System.nanoTime();
+            List<Edge> edges = hierarchy.findEdges(from, to);
+            GraphPath hierarchyPath = hierarchy.findPath(options);
+            long t2 = System.nanoTime();
+            aStarMillis += (t1 - t0) / 1000000;
+            hierarchyMillis += (t2 - t1) / 1000000;
+            options.cleanup();
+            if (aStarPath == null) continue;
+
+            // The hierarchy ignores turn restrictions, so its path can only be faster or equal.
+            assertNotNull(edges);
+            assertTrue(drivingTime(edges) <= aStarPath.getWeight() + 1e-3);
+            assertEquals(from, edges.get(0).getFromVertex());
+            assertEquals(to, edges.get(edges.size() - 1).getToVertex());
+            for (int e = 1; e < edges.size(); e++) {
+                assertEquals(edges.get(e - 1).getToVertex(), edges.get(e).getFromVertex());
+            }
+            nCompared++;
+            if (hierarchyPath != null) {
+                // A path that obeys all restrictions is also optimal under them.
+                assertEquals(aStarPath.getWeight(), hierarchyPath.getWeight(), 1e-3);
+                nTraversable++;
+            }
+        }
+        System.out.printf("Compared %d car paths (%d traversable): AStar %d msec, contraction hierarchy %d msec%n",
+                nCompared, nTraversable, aStarMillis, hierarchyMillis);
+        assertTrue(nCompared > 0);
+    }
+
+    @Test
+    public void testArriveBy() {
+        Random random = new Random(7);
+        for (int i = 0; i < N_PAIRS; i++) {
+            Vertex from = carVertices.get(random.nextInt(carVertices.size()));
+            Vertex to = carVertices.get(random.nextInt(carVertices.size()));
+            if (from == to) continue;
+            RoutingRequest options = carRequest();
+            options.setArriveBy(true);
+            options.setRoutingContext(graph, from, to);
+            GraphPath path = hierarchy.findPath(options);
+            options.cleanup();
+            if (path == null) continue;
+            assertEquals(from, path.states.getFirst().getVertex());
+            assertEquals(to, path.states.getLast().getVertex());
+            return;
+        }
+    }
+
+    /** A GraphPathFinder counting the AStar searches it runs. */
+    private static class CountingGraphPathFinder extends GraphPathFinder {
+
+        int aStarSearches = 0;
+
+        CountingGraphPathFinder(Router router) {
+            super(router);
+        }
+
+        @Override
+        protected AStar createAStar() {
+            return new AStar() {
+                @Override
+                public ShortestPathTree getShortestPathTree(RoutingRequest req, double relTimeoutSeconds) {
+                    aStarSearches++;
+                    return super.getShortestPathTree(req, relTimeoutSeconds);
+                }
+            };
+        }
+    }
+
+    @Test
+    public void testCarOnlyRequestSkipsAStar() {
+        Router router = new Router("default", graph);
+        Random random = new Random(11);
+        for (int i = 0; i < N_PAIRS; i++) {
+            Vertex from = carVertices.get(random.nextInt(carVertices.size()));
+            Vertex to = carVertices.get(random.nextInt(carVertices.size()));
+            if (from == to) continue;
+            RoutingRequest probe = carRequest();
+            probe.setRoutingContext(graph, from, to);
+            GraphPath hierarchyPath = hierarchy.findPath(probe);
+            probe.cleanup();
+            if (hierarchyPath == null) continue;
+
+            RoutingRequest options = carRequest();
+            options.setRoutingContext(graph, from, to);
+            assertTrue(hierarchy.appliesTo(options));
+            CountingGraphPathFinder finder = new CountingGraphPathFinder(router);
+            List<GraphPath> paths = finder.getPaths(options);
+            options.cleanup();
+            assertEquals(1, paths.size());
+            assertEquals(0, finder.aStarSearches);
+            assertEquals(hierarchyPath.getWeight(), paths.get(0).getWeight(), 1e-3);
+            return;
+        }
+        fail("No traversable contraction hierarchy path found.");
+    }
+
+    @Test
+    public void testDefaultRequestMatchesAStar() {
+        Router router = new Router("default", graph);
+        Random random = new Random(3);
+        int nCompared = 0;
+        for (int i = 0; i < N_PAIRS / 5; i++) {
+            Vertex from = carVertices.get(random.nextInt(carVertices.size()));
+            Vertex to = carVertices.get(random.nextInt(carVertices.size()));
+            if (from == to) continue;
+
+            // The hierarchy is off by default, and even when enabled the default intersection cost model is not the
+            // metric of the hierarchy, so it must not be used.
+            RoutingRequest options = new RoutingRequest(TraverseMode.CAR);
+            options.setRoutingContext(graph, from, to);
+            assertFalse(hierarchy.appliesTo(options));
+            options.carContractionHierarchy = true;
+            assertFalse(hierarchy.appliesTo(options));
+            CountingGraphPathFinder finder = new CountingGraphPathFinder(router);
+            List<GraphPath> paths = finder.getPaths(options);
+            options.cleanup();
+
+            RoutingRequest aStarOptions = new RoutingRequest(TraverseMode.CAR);
+            aStarOptions.dominanceFunction = new DominanceFunction.MinimumWeight();
+            aStarOptions.setRoutingContext(graph, from, to);
+            GraphPath aStarPath = new AStar().getShortestPathTree(aStarOptions).getPath(to, false);
+            aStarOptions.cleanup();
+
+            assertTrue(finder.aStarSearches > 0);
+            if (aStarPath == null) {
+                assertTrue(paths.isEmpty());
+                continue;
+            }
+            assertEquals(1, paths.size());
+            assertEquals(aStarPath.getWeight(), paths.get(0).getWeight(), 1e-3);
+            nCompared++;
+        }
+        assertTrue(nCompared > 0);
+    }
+}
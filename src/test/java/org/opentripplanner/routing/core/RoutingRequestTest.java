@@ -6,9 +6,14 @@ import org.opentripplanner.model.FeedScopedId;
 import org.opentripplanner.model.Route;
 import org.opentripplanner.model.Trip;
 import org.opentripplanner.common.model.GenericLocation;
+import org.opentripplanner.routing.request.BannedStopSet;
+
+import java.util.stream.IntStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.opentripplanner.routing.core.TraverseMode.CAR;
 
@@ -65,4 +70,99 @@ public class RoutingRequestTest {
         route.setAgency(agency);
         assertEquals(0, routingRequest.preferencesPenaltyForRoute(trip.getRoute()));
     }
+
+    @Test
+    public void testCloneCopiesBansOnWrite() {
+        FeedScopedId tripA = new FeedScopedId("agency", "A");
+        FeedScopedId tripB = new FeedScopedId("agency", "B");
+        FeedScopedId tripC = new FeedScopedId("agency", "C");
+        RoutingRequest original = new RoutingRequest();
+        original.banTrip(tripA, BannedStopSet.ALL);
+
+        RoutingRequest clone = original.clone();
+        assertTrue(clone.bannedTrips.containsKey(tripA));
+
+        clone.banTrip(tripB, BannedStopSet.ALL);
+        assertTrue(clone.bannedTrips.containsKey(tripB));
+        assertFalse(original.bannedTrips.containsKey(tripB));
+
+        original.banTrip(tripC, BannedStopSet.ALL);
+        assertTrue(original.bannedTrips.containsKey(tripC));
+        assertFalse(clone.bannedTrips.containsKey(tripC));
+
+        clone.clearBannedTrips();
+        assertTrue(clone.bannedTrips.isEmpty());
+        assertTrue(original.bannedTrips.containsKey(tripA));
+    }
+
+    @Test
+    public void testCloneCopiesBikeWalkingOptionsOnWrite() {
+        RoutingRequest original = new RoutingRequest(new TraverseModeSet("BICYCLE,WALK"));
+        original.setMaxWalkDistance(1000);
+        RoutingRequest clone = original.clone();
+        assertSame(original.bikeWalkingOptions, clone.bikeWalkingOptions);
+
+        clone.setMaxWalkDistance(500);
+        assertNotSame(original.bikeWalkingOptions, clone.bikeWalkingOptions);
+        assertEquals(1000, original.bikeWalkingOptions.maxWalkDistance, 0);
+        assertEquals(500, clone.bikeWalkingOptions.maxWalkDistance, 0);
+
+        clone.setArriveBy(true);
+        assertTrue(clone.bikeWalkingOptions.arriveBy);
+        assertFalse(original.bikeWalkingOptions.arriveBy);
+
+        // A walk-only request is its own bike walking options, and so is its clone.
+        RoutingRequest walk = new RoutingRequest();
+        RoutingRequest walkClone = walk.clone();
+        assertSame(walkClone, walkClone.bikeWalkingOptions);
+    }
+
+    /**
+     * Follows the cloning done while finding several itineraries: one clone of the original request, then for each
+     * itinerary a reversed clone sharing its bans, and a ban added to the search request.
+     */
+    @Test
+    public void testMultiItineraryClonesAreIsolated() {
+        final int N_ITINERARIES = 3;
+        RoutingRequest request = new RoutingRequest(new TraverseModeSet("BICYCLE,WALK,TRANSIT"));
+        request.banTrip(new FeedScopedId("agency", "banned"), BannedStopSet.ALL);
+
+        RoutingRequest options = request.clone();
+        for (int i = 0; i < N_ITINERARIES; i++) {
+            RoutingRequest reversed = options.reversedClone();
+            reversed.shareBannedTrips(options);
+            assertEquals(1 + i, reversed.bannedTrips.size());
+
+            FeedScopedId tripId = new FeedScopedId("agency", "T" + i);
+            options.banTrip(tripId, BannedStopSet.ALL);
+            assertTrue(options.bannedTrips.containsKey(tripId));
+            assertFalse(reversed.bannedTrips.containsKey(tripId));
+
+            reversed.mutableBikeWalkingOptions().softWalkLimiting = false;
+            assertFalse(reversed.bikeWalkingOptions.softWalkLimiting);
+            assertTrue(options.bikeWalkingOptions.softWalkLimiting);
+        }
+        assertEquals(1 + N_ITINERARIES, options.bannedTrips.size());
+        assertEquals(1, request.bannedTrips.size());
+        assertTrue(request.bikeWalkingOptions.softWalkLimiting);
+    }
+
+    /** A shared prototype request, as used by TravelTimeMatrix, may be cloned and its clones modified concurrently. */
+    @Test
+    public void testConcurrentClonesOfPrototype() {
+        RoutingRequest prototype = new RoutingRequest(new TraverseModeSet("BICYCLE,WALK"));
+        prototype.banTrip(new FeedScopedId("agency", "banned"), BannedStopSet.ALL);
+        RoutingRequest prototypeBikeWalkingOptions = prototype.bikeWalkingOptions;
+
+        IntStream.range(0, 1000).parallel().forEach(i -> {
+            RoutingRequest clone = prototype.clone();
+            clone.banTrip(new FeedScopedId("agency", "T" + i), BannedStopSet.ALL);
+            clone.mutableBikeWalkingOptions().maxWalkDistance = i;
+            assertEquals(2, clone.bannedTrips.size());
+            assertNotSame(prototypeBikeWalkingOptions, clone.bikeWalkingOptions);
+        });
+        assertEquals(1, prototype.bannedTrips.size());
+        assertSame(prototypeBikeWalkingOptions, prototype.bikeWalkingOptions);
+        assertEquals(Double.MAX_VALUE, prototype.bikeWalkingOptions.maxWalkDistance, 0);
+    }
 }
@@ -0,0 +1,47 @@
+package org.opentripplanner.routing.core;
+
+import org.opentripplanner.GtfsTest;
+import org.opentripplanner.model.calendar.ServiceDate;
+
+import java.util.BitSet;
+import java.util.TimeZone;
+
+public class ServiceDayCacheTest extends GtfsTest {
+
+    @Override
+    public String getFeedName() {
+        return "vermont/ruralcommunity-flex-vt-us.zip";
+    }
+
+    public void testSameAsUncachedServiceDay() {
+        ServiceDayCache cache = graph.getServiceDayCache();
+        TimeZone timeZone = graph.getTimeZone();
+        ServiceDate date = new ServiceDate(2018, 5, 23);
+        for (int i = 0; i < 14; i++) {
+            ServiceDay uncached = new ServiceDay(graph, date, graph.getCalendarService(), timeZone);
+            ServiceDay cached = cache.getServiceDay(date, timeZone);
+            assertEquals(uncached, cached);
+            assertEquals(date, cached.getServiceDate());
+            assertEquals(uncached.serviceIdsRunning, cached.serviceIdsRunning);
+            assertEquals(uncached.serviceIdsRunning, graph.index.servicesRunning(date));
+            // The same instances are handed out to later requests.
+            assertSame(cached, cache.getServiceDay(date, timeZone));
+            assertSame(cache.getServicesRunning(date), cached.serviceIdsRunning);
+            date = date.next();
+        }
+    }
+
+    public void testServicesRunningReturnsCopy() {
+        ServiceDate date = new ServiceDate(2018, 5, 23);
+        BitSet services = graph.index.servicesRunning(date);
+        services.set(services.length() + 1);
+        assertFalse(services.equals(graph.index.servicesRunning(date)));
+    }
+
+    public void testClearedOnIndex() {
+        ServiceDate date = new ServiceDate(2018, 5, 23);
+        ServiceDay before = graph.getServiceDayCache().getServiceDay(date, graph.getTimeZone());
+        graph.index(false);
+        assertNotSame(before, graph.getServiceDayCache().getServiceDay(date, graph.getTimeZone()));
+    }
+}
@@ -2,16 +2,24 @@ package org.opentripplanner.routing.edgetype.factory;
 
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Test;
+import org.locationtech.jts.geom.LineString;
 import org.opentripplanner.gtfs.MockGtfs;
 import org.opentripplanner.graph_builder.module.GtfsFeedId;
 import org.opentripplanner.gtfs.GtfsLibrary;
+import org.opentripplanner.routing.edgetype.PatternHop;
 import org.opentripplanner.routing.edgetype.TransitBoardAlight;
 import org.opentripplanner.routing.edgetype.TripPattern;
 import org.opentripplanner.routing.graph.Edge;
 import org.opentripplanner.routing.graph.Graph;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
 public class PatternHopFactoryTest {
 
     @Test
@@ -41,4 +49,44 @@ public class PatternHopFactoryTest {
         }
     }
 
+    /**
+     * Two trip patterns following the same shape between the same stops should share the geometry of that hop, even
+     * though the geometries are created concurrently.
+     */
+    @Test
+    public void testSharedHopGeometry() throws IOException {
+        MockGtfs gtfs = MockGtfs.create();
+        gtfs.putAgencies(1);
+        gtfs.putRoutes(1);
+        gtfs.putCalendars(1);
+        gtfs.putLines("stops.txt", "stop_id,stop_name,stop_lat,stop_lon",
+                "s0,S0,47.00,-122.0", "s1,S1,47.01,-122.0", "s2,S2,47.02,-122.0");
+        gtfs.putLines("shapes.txt", "shape_id,shape_pt_lat,shape_pt_lon,shape_pt_sequence",
+                "sh0,47.000,-122.000,0", "sh0,47.005,-122.001,1", "sh0,47.010,-122.000,2",
+                "sh0,47.015,-122.001,3", "sh0,47.020,-122.000,4");
+        gtfs.putLines("trips.txt", "route_id,service_id,trip_id,shape_id",
+                "r0,sid0,t0,sh0", "r0,sid0,t1,sh0");
+        gtfs.putLines("stop_times.txt", "trip_id,stop_id,stop_sequence,arrival_time,departure_time",
+                "t0,s0,0,08:00:00,08:00:00", "t0,s1,1,08:05:00,08:05:00", "t0,s2,2,08:10:00,08:10:00",
+                "t1,s0,0,09:00:00,09:00:00", "t1,s1,1,09:05:00,09:05:00");
+
+        GtfsFeedId feedId = new GtfsFeedId.Builder().id("").build();
+        PatternHopFactory factory = new PatternHopFactory(
+                GtfsLibrary.createContext(feedId, gtfs.read())
+        );
+        Graph graph = new Graph();
+        factory.run(graph);
+
+        List<LineString> firstHopGeometries = new ArrayList<>();
+        for (Edge edge : graph.getEdges()) {
+            if (edge instanceof PatternHop && ((PatternHop) edge).getStopIndex() == 0) {
+                firstHopGeometries.add(((PatternHop) edge).getGeometry());
+            }
+        }
+        assertEquals(2, firstHopGeometries.size());
+        assertSame(firstHopGeometries.get(0), firstHopGeometries.get(1));
+        // the hop follows the shape rather than going straight between the stops
+        assertTrue(firstHopGeometries.get(0).getNumPoints() > 2);
+    }
+
 }
@@ -0,0 +1,65 @@
+package org.opentripplanner.routing.fares;
+
+import org.junit.Test;
+import org.opentripplanner.model.FareAttribute;
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.routing.core.FareRuleIndex;
+import org.opentripplanner.routing.core.FareRuleSet;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class FareRuleIndexTest {
+
+    private static final String FEED_ID = "F";
+
+    private static final FeedScopedId ROUTE_1 = new FeedScopedId(FEED_ID, "1");
+
+    private static final FeedScopedId ROUTE_2 = new FeedScopedId(FEED_ID, "2");
+
+    private static FareRuleSet ruleSet(String feedId, String id) {
+        FareAttribute attribute = new FareAttribute();
+        attribute.setId(new FeedScopedId(feedId, id));
+        return new FareRuleSet(attribute);
+    }
+
+    @Test
+    public void testCandidates() {
+        FareRuleSet anything = ruleSet(FEED_ID, "anything");
+        FareRuleSet otherFeed = ruleSet("G", "otherFeed");
+        FareRuleSet route1 = ruleSet(FEED_ID, "route1");
+        route1.addRoute(ROUTE_1);
+        FareRuleSet aToB = ruleSet(FEED_ID, "aToB");
+        aToB.addOriginDestination("A", "B");
+        FareRuleSet fromA = ruleSet(FEED_ID, "fromA");
+        fromA.addOriginDestination("A", null);
+        FareRuleSet toB = ruleSet(FEED_ID, "toB");
+        toB.addOriginDestination(null, "B");
+        FareRuleIndex index = new FareRuleIndex(Arrays.asList(anything, otherFeed, route1, aToB, fromA, toB));
+
+        assertEquals(Arrays.asList(anything, route1, aToB, fromA, toB), index.getCandidates(FEED_ID, ROUTE_1, "A", "B"));
+        assertEquals(Arrays.asList(anything, fromA), index.getCandidates(FEED_ID, ROUTE_2, "A", "C"));
+        // Rules with only a destination match rides without an origin zone, or starting in that zone.
+        assertEquals(Arrays.asList(anything, toB), index.getCandidates(FEED_ID, ROUTE_2, null, "B"));
+        assertEquals(Arrays.asList(anything, toB), index.getCandidates(FEED_ID, ROUTE_2, "B", "C"));
+        assertEquals(Arrays.asList(otherFeed), index.getCandidates("G", ROUTE_2, "B", "C"));
+    }
+
+    @Test
+    public void testCandidatesAreASupersetOfMatches() {
+        FareRuleSet agencyRule = ruleSet(FEED_ID, "agency");
+        agencyRule.setAgency("agency");
+        agencyRule.addRoute(ROUTE_1);
+        agencyRule.addRoute(ROUTE_2);
+        agencyRule.addOriginDestination("A", "B");
+        agencyRule.addOriginDestination("C", "D");
+        FareRuleIndex index = new FareRuleIndex(Arrays.asList(agencyRule));
+
+        // Agency rules are not bound to the feed of their attribute.
+        List<FareRuleSet> candidates = index.getCandidates("G", ROUTE_2, "C", "D");
+        assertEquals(Arrays.asList(agencyRule), candidates);
+        assertEquals(0, index.getCandidates("G", ROUTE_2, "A", "D").size());
+    }
+}
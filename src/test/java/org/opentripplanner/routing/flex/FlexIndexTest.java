@@ -0,0 +1,119 @@
+package org.opentripplanner.routing.flex;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.opentripplanner.ConstantsForTests;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+import org.opentripplanner.routing.vertextype.flex.TemporaryTransitStop;
+
+import java.util.Comparator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class FlexIndexTest {
+
+    private static final int MAX_WALK_DISTANCE = 804;
+
+    // On Jay-Lyn (route 1382), which has flag stops, see VermontFlexRoutingTest
+    private static final Coordinate FLAG_STOP = new Coordinate(-72.019371, 44.4214596);
+
+    // In the service area of the call-and-ride route 7415
+    private static final Coordinate CALL_AND_RIDE = new Coordinate(-72.05881118774415, 44.38485134435363);
+
+    // Off the coast of Massachusetts, far from any flex service
+    private static final Coordinate NOWHERE = new Coordinate(-70.0, 42.0);
+
+    private Graph graph = ConstantsForTests.getInstance().getVermontGraph();
+
+    /** Counts the vertices visited by the street search for flex hops. */
+    private static class CountingFlagStopGraphModifier extends FlagStopGraphModifier {
+
+        int visitedVertices = 0;
+
+        CountingFlagStopGraphModifier(Graph graph) {
+            super(graph);
+        }
+
+        @Override
+        public void vertexVisitor(State state) {
+            visitedVertices++;
+        }
+    }
+
+    @Test
+    public void testHasHopsNear() {
+        assertTrue(graph.flexIndex.hasHopsNear(FLAG_STOP, MAX_WALK_DISTANCE));
+        assertFalse(graph.flexIndex.hasHopsNear(NOWHERE, MAX_WALK_DISTANCE));
+    }
+
+    @Test
+    public void testHasDeviatedServiceAt() {
+        assertTrue(graph.flexIndex.hasDeviatedServiceAt(CALL_AND_RIDE));
+        assertFalse(graph.flexIndex.hasDeviatedServiceAt(NOWHERE));
+    }
+
+    @Test
+    public void testSearchWithHopsInReach() {
+        RoutingRequest options = new RoutingRequest();
+        options.setMaxWalkDistance(MAX_WALK_DISTANCE);
+        options.setDateTime("2018-05-23", "1:37pm", graph.getTimeZone());
+        options.setFromString("44.4214596,-72.019371");
+        options.setToString("44.4277732,-72.01203514");
+        options.setRoutingContext(graph);
+        int temporaryStops = countTemporaryStops(options);
+
+        CountingFlagStopGraphModifier modifier = new CountingFlagStopGraphModifier(graph);
+        modifier.createForwardHops(options);
+        assertTrue(modifier.visitedVertices > 0);
+        assertTrue(countTemporaryStops(options) > temporaryStops);
+        options.rctx.destroy();
+    }
+
+    @Test
+    public void testSearchWithNoHopsInReachIsSkipped() {
+        Vertex from = graph.getVertices().stream()
+                .filter(v -> v instanceof IntersectionVertex)
+                .filter(v -> !graph.flexIndex.hasHopsNear(v.getCoordinate(), MAX_WALK_DISTANCE))
+                .min(Comparator.comparing(Vertex::getLabel))
+                .orElse(null);
+        assertNotNull("The Vermont graph has streets away from flag stop routes", from);
+        Vertex to = graph.getVertices().stream()
+                .filter(v -> v instanceof IntersectionVertex && v != from)
+                .min(Comparator.comparing(Vertex::getLabel))
+                .get();
+
+        RoutingRequest options = new RoutingRequest();
+        options.setMaxWalkDistance(MAX_WALK_DISTANCE);
+        options.setDateTime("2018-05-23", "1:37pm", graph.getTimeZone());
+        options.setRoutingContext(graph, from, to);
+        int temporaryStops = countTemporaryStops(options);
+
+        CountingFlagStopGraphModifier modifier = new CountingFlagStopGraphModifier(graph);
+        modifier.createForwardHops(options);
+        assertEquals(0, modifier.visitedVertices);
+        assertEquals(temporaryStops, countTemporaryStops(options));
+
+        // Running the search anyway does not find any hop either.
+        CountingFlagStopGraphModifier unprunedModifier = new CountingFlagStopGraphModifier(graph) {
+            @Override
+            public boolean hasFlexServiceNear(Vertex initVertex, RoutingRequest rr) {
+                return true;
+            }
+        };
+        unprunedModifier.createForwardHops(options);
+        assertTrue(unprunedModifier.visitedVertices > 0);
+        assertEquals(temporaryStops, countTemporaryStops(options));
+        options.rctx.destroy();
+    }
+
+    private static int countTemporaryStops(RoutingRequest options) {
+        return (int) options.rctx.temporaryVertices.stream().filter(v -> v instanceof TemporaryTransitStop).count();
+    }
+}
@@ -222,4 +222,22 @@ public class GraphIndexTest extends GtfsTest {
         // graph.index.luceneIndex
     }
 
+    /** Stop clusters are no longer built with the index, but on demand or in the background. */
+    public void testStopClustersBuiltOnDemand() throws InterruptedException {
+        assertFalse(graph.index.isStopClustersReady());
+        Stop stop = graph.index.stopForId.values().iterator().next();
+        assertNotNull(graph.index.getStopClusterForStop(stop));
+        assertTrue(graph.index.isStopClustersReady());
+        assertFalse(graph.index.isProfileTransfersReady());
+
+        graph.index(false);
+        assertFalse(graph.index.isStopClustersReady());
+        graph.index.buildRarelyUsedIndexesInBackground(true);
+        // Waits for the background thread if it has not finished yet.
+        graph.index.initializeProfileTransfersAsNeeded();
+        assertTrue(graph.index.isStopClustersReady());
+        assertTrue(graph.index.isProfileTransfersReady());
+        assertEquals(graph.index.stopForId.size(), graph.index.stopClusterForStop.size());
+    }
+
 }
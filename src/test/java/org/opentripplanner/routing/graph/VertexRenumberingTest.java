@@ -0,0 +1,125 @@
+package org.opentripplanner.routing.graph;
+
+import org.junit.Test;
+import org.opentripplanner.graph_builder.module.GraphBuilderModuleSummary;
+import org.opentripplanner.graph_builder.module.osm.DefaultWayPropertySetSource;
+import org.opentripplanner.graph_builder.module.osm.OpenStreetMapModule;
+import org.opentripplanner.openstreetmap.impl.FileBasedOpenStreetMapProviderImpl;
+import org.opentripplanner.routing.algorithm.AStar;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.spt.GraphPath;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+
+import java.io.File;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class VertexRenumberingTest {
+
+    private static final int N_SEARCHES = 40;
+
+    @Test
+    public void testRenumberedInSpatialOrder() {
+        Graph graph = new Graph();
+        // Created far from their spatial order.
+        Vertex east = new IntersectionVertex(graph, "east", 10.2, 10.0);
+        Vertex west = new IntersectionVertex(graph, "west", 10.0, 10.0);
+        Vertex middle = new IntersectionVertex(graph, "middle", 10.1, 10.0);
+        graph.renumberVertices();
+        graph.rebuildVertexAndEdgeIndices();
+
+        List<Vertex> byIndex = new ArrayList<>(graph.getVertices());
+        byIndex.sort(Comparator.comparingInt(Vertex::getIndex));
+        for (int i = 0; i < byIndex.size(); i++) {
+            assertEquals(i, byIndex.get(i).getIndex());
+            assertSame(byIndex.get(i), graph.getVertexById(i));
+        }
+        assertEquals(1, Math.abs(middle.getIndex() - west.getIndex()));
+        assertEquals(1, Math.abs(middle.getIndex() - east.getIndex()));
+
+        // Vertices created afterwards do not reuse a renumbered index.
+        Vertex later = new IntersectionVertex(graph, "later", 10.3, 10.0);
+        assertTrue(later.getIndex() >= byIndex.size());
+    }
+
+    @Test
+    public void testHashCollectionsSurviveRenumbering() {
+        // Make sure the vertices get new indexes.
+        Vertex.reserveIndices(10);
+        Graph graph = new Graph();
+        Vertex east = new IntersectionVertex(graph, "east", 10.2, 10.0);
+        Vertex west = new IntersectionVertex(graph, "west", 10.0, 10.0);
+        Set<Vertex> vertices = new HashSet<>(Arrays.asList(east, west));
+        int eastIndex = east.getIndex();
+        graph.renumberVertices();
+
+        assertNotEquals(eastIndex, east.getIndex());
+        assertTrue(vertices.contains(east));
+        assertTrue(vertices.contains(west));
+    }
+
+    /**
+     * Runs the same street searches on the NYC extract with vertices numbered in creation order, then in spatial order.
+     * The paths found must not change.
+     */
+    @Test
+    public void testRenumberingKeepsStreetPaths() throws Exception {
+        Graph graph = new Graph();
+        OpenStreetMapModule loader = new OpenStreetMapModule();
+        loader.setDefaultWayPropertySetSource(new DefaultWayPropertySetSource());
+        FileBasedOpenStreetMapProviderImpl provider = new FileBasedOpenStreetMapProviderImpl();
+        File file = new File(URLDecoder.decode(OpenStreetMapModule.class.getResource("NYC_small.osm.gz").getFile(),
+                "UTF-8"));
+        provider.setPath(file);
+        loader.setProvider(provider);
+        loader.buildGraph(graph, new GraphBuilderModuleSummary(loader));
+        graph.rebuildVertexAndEdgeIndices();
+
+        List<Vertex> vertices = new ArrayList<>(graph.getVertices());
+        vertices.sort(Comparator.comparing(Vertex::getLabel));
+        Random random = new Random(42);
+        List<Vertex[]> pairs = new ArrayList<>();
+        for (int i = 0; i < N_SEARCHES; i++) {
+            pairs.add(new Vertex[] {
+                vertices.get(random.nextInt(vertices.size())), vertices.get(random.nextInt(vertices.size()))
+            });
+        }
+
+        double[] weightsBefore = search(graph, pairs);
+        graph.renumberVertices();
+        graph.rebuildVertexAndEdgeIndices();
+        double[] weightsAfter = search(graph, pairs);
+
+        for (int i = 0; i < weightsBefore.length; i++) {
+            assertEquals(weightsBefore[i], weightsAfter[i], 1e-6);
+        }
+    }
+
+    /** @return the weight of the path found for each pair and mode, or -1 when there is none. */
+    private static double[] search(Graph graph, List<Vertex[]> pairs) {
+        double[] weights = new double[2 * pairs.size()];
+        int i = 0;
+        for (TraverseMode mode : new TraverseMode[] { TraverseMode.WALK, TraverseMode.CAR }) {
+            for (Vertex[] pair : pairs) {
+                RoutingRequest options = new RoutingRequest(mode);
+                options.setRoutingContext(graph, pair[0], pair[1]);
+                GraphPath path = new AStar().getShortestPathTree(options).getPath(pair[1], false);
+                weights[i++] = path == null ? -1 : path.getWeight();
+                options.cleanup();
+            }
+        }
+        return weights;
+    }
+}
@@ -8,6 +8,7 @@ import junit.framework.TestCase;
 import org.junit.Test;
 import org.opentripplanner.graph_builder.module.EmbedConfig;
 import org.opentripplanner.graph_builder.module.GraphBuilderModuleSummary;
+import org.opentripplanner.routing.core.RoutingRequest;
 import org.opentripplanner.routing.edgetype.StreetEdge;
 import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
 import org.opentripplanner.routing.error.GraphNotFoundException;
@@ -15,6 +16,7 @@ import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.routing.services.GraphService;
 import org.opentripplanner.routing.vertextype.IntersectionVertex;
 import org.opentripplanner.routing.vertextype.StreetVertex;
+import org.opentripplanner.standalone.Router;
 
 import java.io.*;
 
@@ -255,4 +257,42 @@ public class GraphServiceTest extends TestCase {
         assertEquals(graphRouterConfig, routerConfig);
         assertEquals(graphRouterConfig.get("timeout"), routerConfig.get("timeout"));
     }
+
+    @Test
+    public final void testReloadInBackgroundWithWarmUp() throws Exception {
+        GraphService graphService = new GraphService();
+        InputStreamGraphSource.FileFactory graphSourceFactory = new InputStreamGraphSource.FileFactory(basePath);
+        graphSourceFactory.save("A", new ByteArrayInputStream(smallGraphData));
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode routerConfig = mapper.createObjectNode();
+        ObjectNode warmUpConfig = routerConfig.putObject("warmUp");
+        ObjectNode query = warmUpConfig.putArray("queries").addObject();
+        query.put("fromPlace", "0,0");
+        query.put("toPlace", "0.1,0");
+        query.put("mode", "WALK");
+        warmUpConfig.put("recentRequests", 1);
+        warmUpConfig.put("rounds", 2);
+        mapper.writeValue(new File(new File(basePath, "A"), Router.ROUTER_CONFIG_FILENAME), routerConfig);
+
+        assertTrue(graphService.registerGraph("A", graphSourceFactory.createGraphSource("A")));
+        Router router = graphService.getRouter("A");
+        // The first load is warmed up with the configured query only.
+        assertEquals(2, router.warmUp.getLastQueries());
+
+        // Only the most recent request is kept in the sample.
+        RoutingRequest request = new RoutingRequest();
+        request.setFromString("0.1,0");
+        router.warmUp.recordRequest(request);
+        request = new RoutingRequest();
+        request.setFromString("0,0");
+        request.setToString("0.1,0");
+        router.warmUp.recordRequest(request);
+
+        assertTrue(graphService.reloadGraphsInBackground(true).get());
+        Router reloadedRouter = graphService.getRouter("A");
+        assertNotSame(router, reloadedRouter);
+        // The configured query and the recent request of the previous router, planned twice each.
+        assertEquals(4, reloadedRouter.warmUp.getLastQueries());
+        assertFalse(reloadedRouter.warmUp.isLastCutShort());
+    }
 }
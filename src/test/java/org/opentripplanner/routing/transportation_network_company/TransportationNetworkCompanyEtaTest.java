@@ -0,0 +1,85 @@
+package org.opentripplanner.routing.transportation_network_company;
+
+import org.junit.Test;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.error.TransportationNetworkCompanyAvailabilityException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class TransportationNetworkCompanyEtaTest {
+
+    private static final List<ArrivalTime> ARRIVAL_TIMES = Arrays.asList(
+        new ArrivalTime(TransportationNetworkCompany.UBER, "a", "UberX", 300, false),
+        new ArrivalTime(TransportationNetworkCompany.UBER, "b", "UberWAV", 600, true),
+        new ArrivalTime(TransportationNetworkCompany.LYFT, "c", "Lyft", 120, false)
+    );
+
+    @Test
+    public void testWaitsForArrivalTimes() {
+        CompletableFuture<List<ArrivalTime>> arrivalTimes = new CompletableFuture<>();
+        RoutingRequest request = new RoutingRequest();
+        request.transportationNetworkCompanyEta = new TransportationNetworkCompanyEta(arrivalTimes, false, true);
+        // The arrival times are received while the search is being set up.
+        arrivalTimes.complete(ARRIVAL_TIMES);
+        assertEquals(120, request.getTransportationNetworkCompanyEtaAtOrigin());
+        assertEquals(120, request.clone().getTransportationNetworkCompanyEtaAtOrigin());
+    }
+
+    @Test
+    public void testWheelchairAccessibleAndNotApplicable() {
+        TransportationNetworkCompanyEta eta = new TransportationNetworkCompanyEta(
+            CompletableFuture.completedFuture(ARRIVAL_TIMES), true, true);
+        assertEquals(600, eta.getEarliestEta());
+        eta = new TransportationNetworkCompanyEta(CompletableFuture.completedFuture(ARRIVAL_TIMES), true, false);
+        assertEquals(-1, eta.getEarliestEta());
+    }
+
+    @Test(expected = TransportationNetworkCompanyAvailabilityException.class)
+    public void testUnavailable() {
+        RoutingRequest request = new RoutingRequest();
+        request.transportationNetworkCompanyEta = new TransportationNetworkCompanyEta(
+            CompletableFuture.completedFuture(Collections.emptyList()), false, false);
+        request.getTransportationNetworkCompanyEtaAtOrigin();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testProviderError() {
+        CompletableFuture<List<ArrivalTime>> arrivalTimes = new CompletableFuture<>();
+        arrivalTimes.completeExceptionally(new RuntimeException("timeout"));
+        new TransportationNetworkCompanyEta(arrivalTimes, false, true).getEarliestEta();
+    }
+
+    @Test
+    public void testFailureIsCached() {
+        AtomicInteger nGets = new AtomicInteger();
+        CompletableFuture<List<ArrivalTime>> arrivalTimes = new CompletableFuture<List<ArrivalTime>>() {
+            @Override
+            public List<ArrivalTime> get() throws InterruptedException, ExecutionException {
+                nGets.incrementAndGet();
+                return super.get();
+            }
+        };
+        arrivalTimes.completeExceptionally(new RuntimeException("timeout"));
+        TransportationNetworkCompanyEta eta = new TransportationNetworkCompanyEta(arrivalTimes, false, true);
+        UnsupportedOperationException first = null;
+        for (int i = 0; i < 3; i++) {
+            try {
+                eta.getEarliestEta();
+                fail();
+            } catch (UnsupportedOperationException e) {
+                if (first == null) first = e;
+                assertSame(first, e);
+            }
+        }
+        assertEquals(1, nGets.get());
+    }
+}
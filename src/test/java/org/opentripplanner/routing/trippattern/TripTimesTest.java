@@ -165,11 +165,11 @@ public class TripTimesTest {
         assertFalse(tripTimesForTripA.tripOrTripSequenceIsBanned(s0, 0));
 
         // trip should be banned if exactly one of the trips is banned
-        request.bannedTrips.put(tripAId, BannedStopSet.ALL);
+        request.banTrip(tripAId, BannedStopSet.ALL);
         assertTrue(tripTimesForTripA.tripOrTripSequenceIsBanned(s0, 0));
 
         // trip should not be banned if only part of a banned sequence would exist
-        request.bannedTrips.clear();
+        request.clearBannedTrips();
         request.bannedTripSequences.add(Arrays.asList(tripAId, tripBId));
         assertFalse(tripTimesForTripA.tripOrTripSequenceIsBanned(s0, 0));
 
@@ -311,6 +311,39 @@ public class TripTimesTest {
         }
     }
 
+    @Test
+    public void testCompactUpdates() {
+        TripTimes updatedTripTimesA = new TripTimes(originalTripTimes);
+        for (int i = 0; i < stops.length; i++) {
+            updatedTripTimesA.updateArrivalDelay(i, 120);
+            updatedTripTimesA.updateDepartureDelay(i, 120);
+        }
+        updatedTripTimesA.compactUpdates();
+        assertFalse(updatedTripTimesA.isScheduled());
+
+        // Updating the departure after the arrays have been shared must not change the arrival.
+        updatedTripTimesA.updateDepartureDelay(3, 180);
+        assertEquals(3 * 60 + 120, updatedTripTimesA.getArrivalTime(3));
+        assertEquals(3 * 60 + 180, updatedTripTimesA.getDepartureTime(3));
+        assertEquals(4 * 60 + 120, updatedTripTimesA.getDepartureTime(4));
+    }
+
+    @Test
+    public void testLargeUpdate() {
+        TripTimes updatedTripTimesA = new TripTimes(originalTripTimes);
+        updatedTripTimesA.updateArrivalDelay(1, 30);
+        updatedTripTimesA.updateDepartureTime(0, TripTimes.UNAVAILABLE);
+        // This delay does not fit in a short, the updates switch to full times.
+        updatedTripTimesA.updateArrivalDelay(2, 12 * 3600);
+
+        assertEquals(TripTimes.UNAVAILABLE, updatedTripTimesA.getDepartureTime(0));
+        assertEquals(60 + 30, updatedTripTimesA.getArrivalTime(1));
+        assertEquals(2 * 60 + 12 * 3600, updatedTripTimesA.getArrivalTime(2));
+        assertEquals(12 * 3600, updatedTripTimesA.getArrivalDelay(2));
+        assertEquals(2 * 60, updatedTripTimesA.getDepartureTime(2));
+        assertEquals(3 * 60, updatedTripTimesA.getArrivalTime(3));
+    }
+
     @Test
     public void testApply() {
         Trip trip = new Trip();
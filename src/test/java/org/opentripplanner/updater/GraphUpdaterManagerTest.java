@@ -0,0 +1,57 @@
+package org.opentripplanner.updater;
+
+import org.junit.Test;
+import org.opentripplanner.routing.graph.Graph;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GraphUpdaterManagerTest {
+
+    @Test
+    public void testPendingRunnablesWithTheSameKeyAreCoalesced() throws InterruptedException {
+        GraphUpdaterManager manager = new GraphUpdaterManager(new Graph());
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(1);
+            List<String> applied = new CopyOnWriteArrayList<>();
+
+            // Keep the graph writer busy so the following runnables stay queued.
+            manager.execute(graph -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            Object key = new Object();
+            manager.executeLatest(key, graph -> applied.add("first"));
+            manager.execute(graph -> applied.add("other"));
+            manager.executeLatest(key, graph -> applied.add("second"));
+            manager.executeLatest(key, graph -> applied.add("third"));
+            manager.execute(graph -> done.countDown());
+            assertEquals(3, manager.getWriterMetrics().getQueueDepth());
+
+            release.countDown();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+
+            // Only the latest runnable is applied, after those submitted before it.
+            assertEquals(2, applied.size());
+            assertEquals("other", applied.get(0));
+            assertEquals("third", applied.get(1));
+            assertEquals(2, manager.getWriterMetrics().getCoalesced());
+            assertEquals(0, manager.getWriterMetrics().getQueueDepth());
+        } finally {
+            manager.stop();
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.google.transit.realtime.GtfsRealtime;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Spy;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.opentripplanner.routing.alertpatch.AlertPatch;
@@ -12,9 +13,14 @@ import org.opentripplanner.routing.services.AlertPatchService;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 @RunWith(MockitoJUnitRunner.class)
 public class AlertsUpdateHandlerTest {
@@ -55,6 +61,37 @@ public class AlertsUpdateHandlerTest {
         assertEquals(new Date(20 * 1000), patch.getAlert().effectiveEndDate);
     }
 
+    @Test
+    public void testOnlyChangedAlertsAreUpdated() {
+        GtfsRealtime.FeedMessage message = GtfsRealtime.FeedMessage.newBuilder()
+            .setHeader(GtfsRealtime.FeedHeader.newBuilder().setGtfsRealtimeVersion("1.0"))
+            .addEntity(GtfsRealtime.FeedEntity.newBuilder().setAlert(generateAlertWithTimePeriod(10, 20)).setId("1"))
+            .addEntity(GtfsRealtime.FeedEntity.newBuilder().setAlert(generateAlertWithTimePeriod(30, 40)).setId("2"))
+            .build();
+        handler.update(message);
+        assertEquals(2, service.getAllAlertPatches().size());
+
+        // The same alerts again do not change anything.
+        handler.update(message);
+        verify(service, times(1)).update(anySetOf(String.class), anyCollectionOf(AlertPatch.class));
+
+        // Only the patch of the changed alert is replaced, and the removed alert is expired.
+        GtfsRealtime.FeedMessage changed = message.toBuilder()
+            .setEntity(1, GtfsRealtime.FeedEntity.newBuilder().setAlert(generateAlertWithTimePeriod(30, 50)).setId("2"))
+            .build();
+        handler.update(changed);
+        ArgumentCaptor<Set> expired = ArgumentCaptor.forClass(Set.class);
+        ArgumentCaptor<Collection> applied = ArgumentCaptor.forClass(Collection.class);
+        verify(service, times(2)).update(expired.capture(), applied.capture());
+        assertEquals(1, expired.getValue().size());
+        assertEquals(1, applied.getValue().size());
+        assertEquals(2, service.getAllAlertPatches().size());
+
+        handler.update(changed.toBuilder().removeEntity(0).build());
+        assertEquals(1, service.getAllAlertPatches().size());
+        assertEquals(new Date(50 * 1000), service.getAllAlertPatches().iterator().next().getAlert().effectiveEndDate);
+    }
+
     private AlertPatch processOneAlert(GtfsRealtime.Alert alert) {
         GtfsRealtime.FeedMessage message = GtfsRealtime.FeedMessage.newBuilder()
             .setHeader(GtfsRealtime.FeedHeader.newBuilder().setGtfsRealtimeVersion("1.0"))
@@ -92,5 +129,11 @@ public class AlertsUpdateHandlerTest {
         public void apply(AlertPatch alertPatch) {
             patches.add(alertPatch);
         }
+
+        @Override
+        public void update(Set<String> expiredIds, Collection<AlertPatch> alertPatches) {
+            patches.removeIf(patch -> expiredIds.contains(patch.getId()));
+            patches.addAll(alertPatches);
+        }
     }
 }
\ No newline at end of file
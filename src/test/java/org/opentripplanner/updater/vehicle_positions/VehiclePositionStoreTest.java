@@ -0,0 +1,160 @@
+package org.opentripplanner.updater.vehicle_positions;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.opentripplanner.index.model.RealtimeVehiclePosition;
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.updater.vehicle_positions.VehiclePositionStore.VehiclePositionQueryResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VehiclePositionStoreTest {
+
+    private static final String FEED_ID = "A";
+
+    private static final long NOW = 1_600_000_000_000L;
+
+    private static RealtimeVehiclePosition vehicle(String tripId, String routeId, double lat, double lon) {
+        RealtimeVehiclePosition position = new RealtimeVehiclePosition();
+        position.tripId = new FeedScopedId(FEED_ID, tripId);
+        position.routeId = new FeedScopedId(FEED_ID, routeId);
+        position.patternId = routeId + ":0:01";
+        position.lat = lat;
+        position.lon = lon;
+        return position;
+    }
+
+    @Test
+    public void testQueryByEnvelopeAndRoute() {
+        VehiclePositionStore store = new VehiclePositionStore();
+        store.update(FEED_ID, Arrays.asList(
+                vehicle("t1", "r1", 45.50, -122.60),
+                vehicle("t2", "r2", 45.51, -122.61),
+                vehicle("t3", "r1", 46.00, -123.00)), 300, NOW);
+
+        Envelope envelope = new Envelope(-122.7, -122.5, 45.4, 45.6);
+        VehiclePositionQueryResult result = store.query(envelope, null, null, null, NOW);
+        assertTrue(result.complete);
+        assertEquals(2, result.vehicles.size());
+
+        result = store.query(envelope, new FeedScopedId(FEED_ID, "r1"), null, null, NOW);
+        assertEquals(1, result.vehicles.size());
+        assertEquals("t1", result.vehicles.get(0).tripId.getId());
+
+        result = store.query(null, null, "r1:0:01", null, NOW);
+        assertEquals(2, result.vehicles.size());
+    }
+
+    @Test
+    public void testChangesSinceVersion() {
+        VehiclePositionStore store = new VehiclePositionStore();
+        store.update(FEED_ID, Arrays.asList(
+                vehicle("t1", "r1", 45.50, -122.60),
+                vehicle("t2", "r1", 45.51, -122.61),
+                vehicle("t3", "r1", 45.52, -122.62)), 300, NOW);
+        long version = store.getVersion();
+
+        // Unchanged positions do not create a new version.
+        store.update(FEED_ID, Arrays.asList(
+                vehicle("t1", "r1", 45.50, -122.60),
+                vehicle("t2", "r1", 45.51, -122.61),
+                vehicle("t3", "r1", 45.52, -122.62)), 300, NOW + 1000);
+        assertEquals(version, store.getVersion());
+
+        // t2 moves, t3 disappears from the feed
+        store.update(FEED_ID, Arrays.asList(
+                vehicle("t1", "r1", 45.50, -122.60),
+                vehicle("t2", "r1", 45.53, -122.63)), 300, NOW + 2000);
+        VehiclePositionQueryResult result = store.query(null, null, null, version, NOW + 2000);
+        assertFalse(result.complete);
+        assertEquals(1, result.vehicles.size());
+        assertEquals("t2", result.vehicles.get(0).tripId.getId());
+        assertEquals(Collections.singletonList(new FeedScopedId(FEED_ID, "t3")), result.removed);
+
+        // A vehicle moving out of the envelope is removed for the client
+        Envelope envelope = new Envelope(-122.61, -122.59, 45.49, 45.515);
+        result = store.query(envelope, null, null, version, NOW + 2000);
+        assertTrue(result.vehicles.isEmpty());
+        assertTrue(result.removed.contains(new FeedScopedId(FEED_ID, "t2")));
+
+        // An unknown version gives a complete result
+        result = store.query(null, null, null, store.getVersion() + 10, NOW + 2000);
+        assertTrue(result.complete);
+        assertEquals(2, result.vehicles.size());
+    }
+
+    @Test
+    public void testStaleVehiclesExpire() {
+        VehiclePositionStore store = new VehiclePositionStore();
+        store.update(FEED_ID, Collections.singletonList(vehicle("t1", "r1", 45.50, -122.60)), 60, NOW);
+        store.update("B", Collections.emptyList(), 60, NOW);
+
+        assertEquals(1, store.query(null, null, null, null, NOW + 30_000).vehicles.size());
+        assertEquals(0, store.query(null, null, null, null, NOW + 61_000).vehicles.size());
+
+        // An update of another feed removes the expired vehicles of the feed that stopped updating.
+        long version = store.getVersion();
+        store.update("B", Collections.emptyList(), 60, NOW + 61_000);
+        VehiclePositionQueryResult result = store.query(null, null, null, version, NOW + 61_000);
+        assertEquals(Collections.singletonList(new FeedScopedId(FEED_ID, "t1")), result.removed);
+    }
+
+    @Test
+    public void testVehicleLeavingEnvelopeAmongManyCells() {
+        // Enough vehicles in other cells that the envelope query only looks at the cells of the envelope.
+        List<RealtimeVehiclePosition> vehicles = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            vehicles.add(vehicle("other" + i, "r2", 45.0 + i * 0.05, -122.0));
+        }
+        vehicles.add(vehicle("t1", "r1", 45.505, -122.605));
+        VehiclePositionStore store = new VehiclePositionStore();
+        store.update(FEED_ID, vehicles, 300, NOW);
+        long version = store.getVersion();
+        Envelope envelope = new Envelope(-122.609, -122.601, 45.501, 45.509);
+        assertEquals(1, store.query(envelope, null, null, null, NOW).vehicles.size());
+
+        // t1 moves far away, into a cell of its own.
+        vehicles.set(vehicles.size() - 1, vehicle("t1", "r1", 47.0, -120.0));
+        store.update(FEED_ID, vehicles, 300, NOW + 1000);
+        VehiclePositionQueryResult result = store.query(envelope, null, null, version, NOW + 1000);
+        assertFalse(result.complete);
+        assertTrue(result.vehicles.isEmpty());
+        assertEquals(Collections.singletonList(new FeedScopedId(FEED_ID, "t1")), result.removed);
+    }
+
+    @Test
+    public void testVehicleChangingRoute() {
+        VehiclePositionStore store = new VehiclePositionStore();
+        store.update(FEED_ID, Arrays.asList(
+                vehicle("t1", "r1", 45.50, -122.60),
+                vehicle("t2", "r1", 45.51, -122.61)), 300, NOW);
+        long version = store.getVersion();
+
+        store.update(FEED_ID, Arrays.asList(
+                vehicle("t1", "r2", 45.50, -122.60),
+                vehicle("t2", "r1", 45.51, -122.61)), 300, NOW + 1000);
+        FeedScopedId t1 = new FeedScopedId(FEED_ID, "t1");
+
+        VehiclePositionQueryResult result =
+                store.query(null, new FeedScopedId(FEED_ID, "r1"), null, version, NOW + 1000);
+        assertTrue(result.vehicles.isEmpty());
+        assertEquals(Collections.singletonList(t1), result.removed);
+
+        result = store.query(null, null, "r1:0:01", version, NOW + 1000);
+        assertTrue(result.vehicles.isEmpty());
+        assertEquals(Collections.singletonList(t1), result.removed);
+
+        // A client following the new route gets the vehicle.
+        result = store.query(null, new FeedScopedId(FEED_ID, "r2"), null, version, NOW + 1000);
+        assertEquals(1, result.vehicles.size());
+        assertEquals(t1, result.vehicles.get(0).tripId);
+        assertTrue(result.removed.isEmpty());
+    }
+}
@@ -15,12 +15,20 @@ package org.opentripplanner.updater.vehicle_rental;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpServer;
 import junit.framework.TestCase;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.opentripplanner.routing.vehicle_rental.VehicleRentalStation;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TestGenericGbfsService extends TestCase {
     private ObjectMapper mapper = new ObjectMapper();
@@ -76,4 +84,56 @@ public class TestGenericGbfsService extends TestCase {
         assertEquals(-122.65073, secondVehicle.x);
         assertEquals(45.519958, secondVehicle.y);
     }
+
+    /**
+     * Serves the test feed over HTTP with an ETag per file, and checks that files which have not changed are not
+     * downloaded and parsed again.
+     */
+    @Test
+    public void testNotModifiedFeedsAreReused() throws IOException {
+        AtomicInteger notModifiedResponses = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        String baseUrl = "http://localhost:" + server.getAddress().getPort() + "/vehicle_rental/";
+        server.createContext("/vehicle_rental/", exchange -> {
+            String fileName = exchange.getRequestURI().getPath().substring("/vehicle_rental/".length());
+            String etag = "\"" + fileName + "\"";
+            exchange.getResponseHeaders().add("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModifiedResponses.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                String content = new String(Files.readAllBytes(Paths.get("src/test/resources/vehicle_rental", fileName)),
+                    StandardCharsets.UTF_8);
+                // Point the feeds listed in gbfs.json at this server rather than at the files.
+                byte[] body = content.replace("file:src/test/resources/vehicle_rental/", baseUrl)
+                    .getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        try {
+            config.put("url", baseUrl);
+            GenericGbfsService gbfsVehicleRentalDataSource = new GenericGbfsService();
+            gbfsVehicleRentalDataSource.configure(null, config);
+
+            gbfsVehicleRentalDataSource.update();
+            assertEquals(0, notModifiedResponses.get());
+            assertEquals(4, gbfsVehicleRentalDataSource.getStations().size());
+
+            // The test files have a ttl of 0, so they are requested again, and all of them except gbfs.json (which is
+            // not cached) are not modified.
+            gbfsVehicleRentalDataSource.update();
+            assertEquals(4, notModifiedResponses.get());
+            List<VehicleRentalStation> rentalStations = gbfsVehicleRentalDataSource.getStations();
+            assertEquals(4, rentalStations.size());
+            assertEquals("portland", rentalStations.get(0).id);
+            assertEquals(5, rentalStations.get(0).vehiclesAvailable);
+        } finally {
+            server.stop(0);
+        }
+    }
 }
@@ -0,0 +1,105 @@
+package org.opentripplanner.updater.vehicle_rental;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Before;
+import org.junit.Test;
+import org.opentripplanner.routing.vehicle_rental.VehicleRentalStation;
+import org.opentripplanner.updater.RentalUpdaterError;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class VehicleRentalUpdaterTest {
+
+    private VehicleRentalUpdater updater;
+
+    private final List<VehicleRentalStation> changed = new ArrayList<>();
+
+    private final List<VehicleRentalStation> removed = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        ObjectNode config = new ObjectMapper().createObjectNode();
+        config.put("network", "LIME");
+        config.put("sourceType", "gbfs");
+        config.put("url", "file:src/test/resources/vehicle_rental");
+        updater = new VehicleRentalUpdater();
+        updater.configurePolling(null, config);
+    }
+
+    private static VehicleRentalStation station(String id, int vehiclesAvailable, boolean isFloatingVehicle) {
+        VehicleRentalStation station = new VehicleRentalStation();
+        station.id = id;
+        station.x = -122.6;
+        station.y = 45.5;
+        station.vehiclesAvailable = vehiclesAvailable;
+        station.spacesAvailable = isFloatingVehicle ? 0 : 10;
+        station.isFloatingVehicle = isFloatingVehicle;
+        station.lastReportedEpochSeconds = System.currentTimeMillis() / 1000;
+        return station;
+    }
+
+    private void diff(List<VehicleRentalStation> stations, RentalUpdaterError... errors) {
+        changed.clear();
+        removed.clear();
+        updater.diffStations(stations, Arrays.asList(errors), changed, removed);
+    }
+
+    private static List<String> ids(List<VehicleRentalStation> stations) {
+        List<String> ids = new ArrayList<>();
+        for (VehicleRentalStation station : stations) {
+            ids.add(station.id);
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    @Test
+    public void testAddedChangedAndRemovedStations() {
+        diff(Arrays.asList(station("a", 1, false), station("b", 2, false), station("c", 1, true)));
+        assertEquals(Arrays.asList("a", "b", "c"), ids(changed));
+        assertTrue(removed.isEmpty());
+
+        // a only has a new last reported time, b has one vehicle less, c is gone and d is new.
+        VehicleRentalStation a = station("a", 1, false);
+        a.lastReportedEpochSeconds += 60;
+        diff(Arrays.asList(a, station("b", 1, false), station("d", 1, true)));
+        assertEquals(Arrays.asList("b", "d"), ids(changed));
+        assertEquals(Collections.singletonList("c"), ids(removed));
+
+        // Nothing changed.
+        diff(Arrays.asList(station("a", 1, false), station("b", 1, false), station("d", 1, true)));
+        assertTrue(changed.isEmpty());
+        assertTrue(removed.isEmpty());
+    }
+
+    @Test
+    public void testStationsKeptWhenTheirFileFailed() {
+        diff(Arrays.asList(station("a", 1, false), station("b", 1, true)));
+
+        // The docked stations could not be fetched: a stays on the graph, b is no longer in the feed.
+        diff(Collections.emptyList(), new RentalUpdaterError(RentalUpdaterError.Severity.ALL_STATIONS, "failed"));
+        assertTrue(changed.isEmpty());
+        assertEquals(Collections.singletonList("b"), ids(removed));
+
+        // a is still known, so it is not reported as new when it comes back unchanged.
+        diff(Collections.singletonList(station("a", 1, false)));
+        assertTrue(changed.isEmpty());
+        assertTrue(removed.isEmpty());
+    }
+
+    @Test
+    public void testFeedWideErrorRemovesAllStations() {
+        diff(Arrays.asList(station("a", 1, false), station("b", 1, true)));
+        diff(Collections.singletonList(station("a", 2, false)),
+            new RentalUpdaterError(RentalUpdaterError.Severity.FEED_WIDE, "failed"));
+        assertTrue(changed.isEmpty());
+        assertEquals(Arrays.asList("a", "b"), ids(removed));
+    }
+}
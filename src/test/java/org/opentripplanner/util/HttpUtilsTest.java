@@ -0,0 +1,111 @@
+package org.opentripplanner.util;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HttpUtilsTest {
+
+    private static final String ETAG = "\"v1\"";
+
+    private static final String LAST_MODIFIED = "Tue, 20 Oct 2026 10:00:00 GMT";
+
+    private HttpServer server;
+
+    private String url;
+
+    /** The If-None-Match header of the last request received by the server. */
+    private String lastIfNoneMatch;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/data", exchange -> {
+            lastIfNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            exchange.getResponseHeaders().add("ETag", ETAG);
+            exchange.getResponseHeaders().add("Last-Modified", LAST_MODIFIED);
+            if (ETAG.equals(lastIfNoneMatch)) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                byte[] body = "content".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+            exchange.close();
+        });
+        server.createContext("/missing", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testModified() throws IOException {
+        HttpUtils.ConditionalResponse response =
+            HttpUtils.getDataFromUrlOrFileIfModified(url + "/data", null, null, null, null);
+        assertFalse(response.notModified);
+        assertNull(lastIfNoneMatch);
+        assertEquals(ETAG, response.etag);
+        assertEquals(LAST_MODIFIED, response.lastModified);
+        try (InputStream content = response.content) {
+            assertEquals("content", new String(ByteStreams.toByteArray(content), StandardCharsets.UTF_8));
+        }
+
+        // Content that changed since the previous response is fetched again.
+        response = HttpUtils.getDataFromUrlOrFileIfModified(url + "/data", null, null, "\"v0\"", null);
+        assertFalse(response.notModified);
+        assertEquals("\"v0\"", lastIfNoneMatch);
+        response.content.close();
+    }
+
+    @Test
+    public void testNotModified() throws IOException {
+        HttpUtils.ConditionalResponse response =
+            HttpUtils.getDataFromUrlOrFileIfModified(url + "/data", null, null, ETAG, LAST_MODIFIED);
+        assertTrue(response.notModified);
+        assertEquals(ETAG, lastIfNoneMatch);
+        assertNull(response.content);
+        // The validators of the previous response remain valid.
+        assertEquals(ETAG, response.etag);
+        assertEquals(LAST_MODIFIED, response.lastModified);
+    }
+
+    @Test
+    public void testFailedRequest() throws IOException {
+        assertNull(HttpUtils.getDataFromUrlOrFileIfModified(url + "/missing", null, null, null, null));
+    }
+
+    @Test
+    public void testFilesAreAlwaysRead() throws IOException {
+        String file = new File("src/test/resources/vehicle_rental/gbfs.json").toURI().toString();
+        HttpUtils.ConditionalResponse response =
+            HttpUtils.getDataFromUrlOrFileIfModified(file, null, null, ETAG, LAST_MODIFIED);
+        assertFalse(response.notModified);
+        try (InputStream content = response.content) {
+            assertTrue(content.read() >= 0);
+        }
+    }
+}